@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.bench.search;
+
+import static org.apache.solr.bench.Docs.docs;
+import static org.apache.solr.bench.generators.SourceDSL.doubles;
+import static org.apache.solr.bench.generators.SourceDSL.integers;
+import static org.apache.solr.bench.generators.SourceDSL.longs;
+import static org.apache.solr.bench.generators.SourceDSL.strings;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.bench.Docs;
+import org.apache.solr.bench.MiniClusterState;
+import org.apache.solr.client.solrj.impl.NoOpResponseParser;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Timeout;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** A benchmark of the throughput of the /export handler for different sorts. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Warmup(time = 10, iterations = 3)
+@Measurement(time = 20, iterations = 5)
+@Fork(value = 1)
+@Timeout(time = 60)
+public class ExportSorting {
+
+  static final String COLLECTION = "exportCollection";
+
+  @State(Scope.Benchmark)
+  public static class BenchState {
+
+    @Param({"1000000"})
+    int docCount;
+
+    // the number of segments of the index, whose runs are sorted concurrently
+    @Param({"16"})
+    int segmentCount;
+
+    // the sortThreads param of the requests, 1 sorts the runs on the thread filling the batches
+    @Param({"1", "4"})
+    int sortThreads;
+
+    @Param({"int", "long,int", "string", "string,double"})
+    String sortKey;
+
+    private QueryRequest request;
+
+    @Setup(Level.Trial)
+    public void setup(MiniClusterState.MiniClusterBenchState miniClusterState) throws Exception {
+      System.setProperty("maxMergeAtOnce", "50");
+      System.setProperty("segmentsPerTier", "50");
+
+      miniClusterState.startMiniCluster(1);
+      miniClusterState.createCollection(COLLECTION, 1, 1);
+
+      Docs docs =
+          docs()
+              .field("id", integers().incrementing())
+              .field("int_i", integers().allWithMaxCardinality(100000))
+              .field("long_l", longs().all())
+              .field("double_d", doubles().all())
+              .field(
+                  "string_s",
+                  strings().basicLatinAlphabet().maxCardinality(10000).ofLengthBetween(4, 16));
+      miniClusterState.index(COLLECTION, docs, docCount);
+      miniClusterState.forceMerge(COLLECTION, segmentCount);
+
+      StringBuilder sort = new StringBuilder();
+      for (String type : sortKey.split(",")) {
+        if (sort.length() > 0) {
+          sort.append(',');
+        }
+        sort.append(type).append('_').append(type.charAt(0)).append(" asc");
+      }
+      ModifiableSolrParams params =
+          MiniClusterState.params(
+              CommonParams.Q, "*:*",
+              CommonParams.FL, "id,int_i,long_l,double_d,string_s",
+              CommonParams.SORT, sort.toString(),
+              CommonParams.WT, CommonParams.JSON,
+              "sortThreads", Integer.toString(sortThreads));
+      request = new QueryRequest(params);
+      request.setPath("/export");
+      // the response is consumed as a stream but not parsed
+      request.setResponseParser(new NoOpResponseParser(CommonParams.JSON));
+    }
+  }
+
+  @Benchmark
+  @Timeout(time = 500, timeUnit = TimeUnit.SECONDS)
+  public Object export(MiniClusterState.MiniClusterBenchState miniClusterState, BenchState state)
+      throws Exception {
+    NamedList<Object> response = miniClusterState.client.request(state.request, COLLECTION);
+    return response;
+  }
+}
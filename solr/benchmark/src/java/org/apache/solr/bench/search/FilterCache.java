@@ -66,8 +66,18 @@ public class FilterCache {
     @Param({"true:true:1", "true:false:1", "true:true:0", "true:false:0", "false:false:0"})
     String cacheEnabledAsyncSize;
 
+    /**
+     * Whether medium density filters (such as those of frequency 2) are cached as a compressed
+     * RoaringDocSet rather than a BitDocSet. Compare the filterCache ramBytesUsed metric logged
+     * after each iteration for the memory side of the trade-off.
+     */
+    @Param({"false", "true"})
+    String compressedDocSets;
+
     QueryRequest q1 = new QueryRequest(new SolrQuery("q", "*:*", "fq", "Ea_b:true"));
     QueryRequest q2 = new QueryRequest(new SolrQuery("q", "*:*", "fq", "FB_b:true"));
+    QueryRequest q3 =
+        new QueryRequest(new SolrQuery("q", "*:*", "fq", "Ea_b:true", "fq", "FB_b:true"));
     String baseUrl;
 
     @Setup(Level.Trial)
@@ -80,6 +90,7 @@ public class FilterCache {
       System.setProperty("filterCache.size", cacheSize);
       System.setProperty("filterCache.initialSize", cacheSize);
       System.setProperty("filterCache.async", asyncCache);
+      System.setProperty("solr.search.compressedDocSets", compressedDocSets);
 
       miniClusterState.startMiniCluster(1);
       miniClusterState.createCollection(COLLECTION, 1, 1);
@@ -150,4 +161,13 @@ public class FilterCache {
     return miniClusterState.client.requestWithBaseUrl(
         benchState.baseUrl, COLLECTION, benchState.q1);
   }
+
+  /** Intersects two cached filters on every request. */
+  @Benchmark
+  public Object filterCacheIntersection(
+      BenchState benchState, MiniClusterState.MiniClusterBenchState miniClusterState)
+      throws SolrServerException, IOException {
+    return miniClusterState.client.requestWithBaseUrl(
+        benchState.baseUrl, COLLECTION, benchState.q3);
+  }
 }
@@ -92,7 +92,18 @@ public class JsonFaceting {
     @Param({"3000"})
     int facetCard2;
 
+    // indexSearcherExecutorThreads of each node, the facets sorted by count count the segments
+    // concurrently with more than 0
+    @Param({"0", "4"})
+    int searchThreads;
+
+    // the digest of the percentile() aggregations
+    @Param({"tdigest", "ddsketch"})
+    String percentileSketch;
+
     private ModifiableSolrParams params;
+    private ModifiableSolrParams countParams;
+    private ModifiableSolrParams percentileParams;
 
     @Setup(Level.Trial)
     public void setup(
@@ -101,6 +112,8 @@ public class JsonFaceting {
 
       System.setProperty("maxMergeAtOnce", "30");
       System.setProperty("segmentsPerTier", "30");
+      System.setProperty("solr.searchThreads", Integer.toString(searchThreads));
+      System.setProperty("solr.facet.multiThreaded.minDomainSize", "0");
 
       miniClusterState.startMiniCluster(nodeCount);
 
@@ -158,6 +171,46 @@ public class JsonFaceting {
               + " , f8:{type:terms, field:'facet_s', limit:2, sort:'x desc', facet:{x:'countvals(int4_i_dv)'}  } "
               + '}');
 
+      countParams = new ModifiableSolrParams();
+
+      MiniClusterState.params(
+          countParams,
+          "q",
+          "*:*",
+          "json.facet",
+          "{f1:{method:'"
+              + fm
+              + "', type:terms, field:'facet_s', facet:{x:'sum(int3_i_dv)'}  }"
+              + " , f2:{method:'"
+              + fm
+              + "', type:terms, field:'facet2_s', facet:{x:'min(int3_i_dv)', y:'max(int3_i_dv)'}  } "
+              + " , f3:{method:'"
+              + fm
+              + "', type:terms, field:'facet3_s', facet:{x:'avg(int2_i_dv)'}  } "
+              + " , f4:{method:'"
+              + fm
+              + "', type:terms, field:'facet_s', sort:'index asc', facet:{x:'unique(facet2_s)'}  } "
+              + '}');
+
+      percentileParams = new ModifiableSolrParams();
+
+      String percentile =
+          "{type:func, func:'percentile(int3_i_dv,50,90,99)', sketch:" + percentileSketch + "}";
+      MiniClusterState.params(
+          percentileParams,
+          "q",
+          "*:*",
+          "json.facet",
+          "{p:"
+              + percentile
+              + " , f1:{type:terms, field:'facet_s', limit:100, facet:{p:"
+              + percentile
+              + "}  }"
+              + " , f2:{type:terms, field:'facet2_s', limit:10, sort:'p desc', facet:{p:"
+              + percentile
+              + "}  } "
+              + '}');
+
       // MiniClusterState.log("params: " + params + "\n");
     }
 
@@ -192,4 +245,34 @@ public class JsonFaceting {
 
     return result;
   }
+
+  @Benchmark
+  @Timeout(time = 500, timeUnit = TimeUnit.SECONDS)
+  public Object jsonFacetByCount(
+      MiniClusterState.MiniClusterBenchState miniClusterState,
+      BenchState state,
+      BenchState.ThreadState threadState)
+      throws Exception {
+    final var url = miniClusterState.nodes.get(threadState.random.nextInt(state.nodeCount));
+    QueryRequest queryRequest = new QueryRequest(state.countParams);
+    return miniClusterState
+        .client
+        .requestWithBaseUrl(url, state.collection, queryRequest)
+        .getResponse();
+  }
+
+  @Benchmark
+  @Timeout(time = 500, timeUnit = TimeUnit.SECONDS)
+  public Object jsonFacetPercentiles(
+      MiniClusterState.MiniClusterBenchState miniClusterState,
+      BenchState state,
+      BenchState.ThreadState threadState)
+      throws Exception {
+    final var url = miniClusterState.nodes.get(threadState.random.nextInt(state.nodeCount));
+    QueryRequest queryRequest = new QueryRequest(state.percentileParams);
+    return miniClusterState
+        .client
+        .requestWithBaseUrl(url, state.collection, queryRequest)
+        .getResponse();
+  }
 }
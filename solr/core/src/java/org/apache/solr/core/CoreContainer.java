@@ -142,6 +142,7 @@ import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.request.SolrRequestHandler;
 import org.apache.solr.request.SolrRequestInfo;
 import org.apache.solr.search.CacheConfig;
+import org.apache.solr.search.CacheRamBudgetManager;
 import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrFieldCacheBean;
 import org.apache.solr.search.SolrIndexSearcher;
@@ -286,6 +287,8 @@ public class CoreContainer {
 
   private volatile Map<String, SolrCache<?, ?>> caches;
 
+  private volatile CacheRamBudgetManager cacheRamBudgetManager;
+
   private final ObjectCache objectCache = new ObjectCache();
 
   public final NodeRoles nodeRoles = new NodeRoles(System.getProperty(NodeRoles.NODE_ROLES_PROP));
@@ -740,6 +743,14 @@ public class CoreContainer {
     return caches.get(name);
   }
 
+  /**
+   * The manager of the RAM budget shared by the caches of all cores, or null if {@code
+   * cacheRamBudgetMB} is not configured in solr.xml.
+   */
+  public CacheRamBudgetManager getCacheRamBudgetManager() {
+    return cacheRamBudgetManager;
+  }
+
   /**
    * The {@link SolrClientCache} is mostly for streaming expressions. Prefer other clients for other
    * use-cases.
@@ -860,6 +871,11 @@ public class CoreContainer {
       this.caches = Collections.unmodifiableMap(m);
     }
 
+    if (cfg.getCacheRamBudgetMB() > 0) {
+      cacheRamBudgetManager = new CacheRamBudgetManager(cfg.getCacheRamBudgetMB());
+      cacheRamBudgetManager.initializeMetrics(solrMetricsContext, "cacheRamBudget");
+    }
+
     StartupLoggingUtils.checkRequestLogging();
 
     hostName = cfg.getNodeName();
@@ -1348,6 +1364,10 @@ public class CoreContainer {
         }
       }
 
+      if (cacheRamBudgetManager != null) {
+        IOUtils.closeQuietly(cacheRamBudgetManager);
+      }
+
       try {
         objectCache.close();
       } catch (IOException e) {
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.core;
+
+import static org.apache.solr.common.params.CommonParams.DISTRIB;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.EventParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.Utils;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warms the first searcher of a core with the queries that were the hottest before the core was
+ * last closed, so that the caches don't start cold after a restart.
+ *
+ * <p>The {@link org.apache.solr.handler.component.QueryComponent} records the handler, query,
+ * filters and sort of each request. The most frequent ones are written to a snapshot in the core's
+ * data directory every {@code snapshotIntervalSecs} while requests come in, and when the core is
+ * closed. The snapshot is replayed like the queries of a {@link QuerySenderListener}. It is a local
+ * file which isn't replicated, so a replica created on another node, such as when a replica is
+ * moved, still starts cold. Only has an effect when registered for the {@code firstSearcher}
+ * event:
+ *
+ * <pre class="prettyprint">
+ * &lt;listener event="firstSearcher" class="solr.HotQueriesListener"&gt;
+ *   &lt;int name="maxQueries"&gt;100&lt;/int&gt;
+ *   &lt;int name="snapshotIntervalSecs"&gt;300&lt;/int&gt;
+ * &lt;/listener&gt;</pre>
+ *
+ * @lucene.experimental
+ */
+public class HotQueriesListener extends AbstractSolrEventListener {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  public static final String SNAPSHOT_FILE = "hotQueries.json";
+
+  /** The parameters that make up the cache keys of a request */
+  static final List<String> RECORDED_PARAMS =
+      List.of(
+          CommonParams.Q,
+          CommonParams.FQ,
+          CommonParams.SORT,
+          CommonParams.DF,
+          "defType",
+          "q.op");
+
+  private int maxQueries = 100;
+  private long snapshotIntervalNanos = TimeUnit.SECONDS.toNanos(300);
+  private Cache<String, SolrParams> queries;
+  private final AtomicLong lastSnapshot = new AtomicLong(System.nanoTime());
+
+  public HotQueriesListener(SolrCore core) {
+    super(core);
+  }
+
+  @Override
+  public void init(NamedList<?> args) {
+    super.init(args);
+    Object maxQueriesArg = args.get("maxQueries");
+    if (maxQueriesArg != null) {
+      maxQueries = Integer.parseInt(maxQueriesArg.toString());
+    }
+    Object intervalArg = args.get("snapshotIntervalSecs");
+    if (intervalArg != null) {
+      snapshotIntervalNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(intervalArg.toString()));
+    }
+    // the frequency sketch of a size bounded cache tells the hottest queries apart
+    queries = Caffeine.newBuilder().maximumSize(maxQueries * 4L).executor(Runnable::run).build();
+    getCore()
+        .addCloseHook(
+            new CloseHook() {
+              @Override
+              public void preClose(SolrCore core) {
+                snapshot();
+              }
+            });
+  }
+
+  /**
+   * Counts a search request towards the hottest queries, and takes a snapshot in the background
+   * when the last one is older than {@code snapshotIntervalSecs}. Warming requests are ignored.
+   */
+  public void record(SolrQueryRequest req) {
+    SolrParams params = req.getParams();
+    if (params.get(EventParams.EVENT) != null || params.get(CommonParams.Q) == null) {
+      return;
+    }
+    ModifiableSolrParams recorded = new ModifiableSolrParams();
+    String path = req.getPath();
+    String handler = path != null && path.startsWith("/") ? path : params.get(CommonParams.QT);
+    if (handler != null) {
+      recorded.set(CommonParams.QT, handler);
+    }
+    for (String name : RECORDED_PARAMS) {
+      String[] values = params.getParams(name);
+      if (values != null) {
+        recorded.set(name, values);
+      }
+    }
+    queries.get(recorded.toString(), k -> recorded);
+
+    long last = lastSnapshot.get();
+    if (System.nanoTime() - last > snapshotIntervalNanos
+        && lastSnapshot.compareAndSet(last, System.nanoTime())) {
+      getCore().runAsync(this::snapshot);
+    }
+  }
+
+  /** The most frequent of the recorded queries, hottest first. */
+  List<SolrParams> getHottest() {
+    return queries
+        .policy()
+        .eviction()
+        .map(p -> List.copyOf(p.hottest(maxQueries).values()))
+        .orElse(Collections.emptyList());
+  }
+
+  Path getSnapshotPath() {
+    return Path.of(getCore().getDataDir(), SNAPSHOT_FILE);
+  }
+
+  /**
+   * Writes the hottest queries to the snapshot file of the core. Synchronized since a periodic
+   * snapshot may still be running when the core closes, and both write the same temp file.
+   */
+  synchronized void snapshot() {
+    lastSnapshot.set(System.nanoTime());
+    List<SolrParams> hottest = getHottest();
+    if (hottest.isEmpty()) {
+      return;
+    }
+    List<Map<String, Object>> list = new ArrayList<>(hottest.size());
+    for (SolrParams params : hottest) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      for (Map.Entry<String, String[]> entry : params) {
+        map.put(entry.getKey(), List.of(entry.getValue()));
+      }
+      list.add(map);
+    }
+    Path path = getSnapshotPath();
+    Path tmp = path.resolveSibling(SNAPSHOT_FILE + ".tmp");
+    try {
+      Files.write(tmp, Utils.toJSON(list));
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not write the hot queries snapshot {}", path, e);
+    }
+  }
+
+  /** Reads the queries of the snapshot file, or none if there is no snapshot. */
+  @SuppressWarnings("unchecked")
+  List<SolrParams> readSnapshot() {
+    Path path = getSnapshotPath();
+    if (!Files.exists(path)) {
+      return Collections.emptyList();
+    }
+    List<SolrParams> result = new ArrayList<>();
+    try (InputStream in = Files.newInputStream(path)) {
+      for (Map<String, Object> map : (List<Map<String, Object>>) Utils.fromJSON(in)) {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+          for (Object value : (List<Object>) entry.getValue()) {
+            params.add(entry.getKey(), value.toString());
+          }
+        }
+        result.add(params);
+      }
+    } catch (Exception e) {
+      log.warn("Ignoring unreadable hot queries snapshot {}", path, e);
+      return Collections.emptyList();
+    }
+    return result;
+  }
+
+  @Override
+  public void newSearcher(SolrIndexSearcher newSearcher, SolrIndexSearcher currentSearcher) {
+    if (currentSearcher != null) {
+      return;
+    }
+    List<SolrParams> snapshot = readSnapshot();
+    log.info("HotQueriesListener replaying {} queries on {}", snapshot.size(), newSearcher);
+    for (SolrParams query : snapshot) {
+      ModifiableSolrParams params = new ModifiableSolrParams(query);
+      params.set(EventParams.EVENT, EventParams.FIRST_SEARCHER);
+      if (params.get(DISTRIB) == null) {
+        params.set(DISTRIB, false);
+      }
+      SolrQueryRequest req = SolrQueryRequest.wrapSearcher(newSearcher, params);
+      SolrQueryResponse rsp = new SolrQueryResponse();
+      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+      try {
+        getCore().execute(getCore().getRequestHandler(params.get(CommonParams.QT)), req, rsp);
+      } catch (Exception e) {
+        // continue with the other queries, the failure is logged by the request handler
+      } finally {
+        try {
+          req.close();
+        } finally {
+          SolrRequestInfo.clearRequestInfo();
+        }
+      }
+    }
+  }
+}
@@ -106,6 +106,8 @@ public class NodeConfig {
 
   private final int indexSearcherExecutorThreads;
 
+  private final int cacheRamBudgetMB;
+
   @Deprecated private final int transientCacheSize;
 
   private final boolean useSchemaCache;
@@ -146,6 +148,7 @@ public class NodeConfig {
       Integer coreLoadThreads,
       int replayUpdatesThreads,
       int indexSearcherExecutorThreads,
+      int cacheRamBudgetMB,
       int transientCacheSize,
       boolean useSchemaCache,
       String managementPath,
@@ -186,6 +189,7 @@ public class NodeConfig {
     this.coreLoadThreads = coreLoadThreads;
     this.replayUpdatesThreads = replayUpdatesThreads;
     this.indexSearcherExecutorThreads = indexSearcherExecutorThreads;
+    this.cacheRamBudgetMB = cacheRamBudgetMB;
     this.transientCacheSize = transientCacheSize;
     this.useSchemaCache = useSchemaCache;
     this.managementPath = managementPath;
@@ -342,6 +346,14 @@ public class NodeConfig {
     return indexSearcherExecutorThreads;
   }
 
+  /**
+   * The RAM budget shared by the caches of all cores of this node, or a negative value if each
+   * cache is only limited by its own configuration.
+   */
+  public int getCacheRamBudgetMB() {
+    return cacheRamBudgetMB;
+  }
+
   /**
    * Returns a directory, optionally a comma separated list of directories that will be added to
    * Solr's class path for searching for classes and plugins. The path is either absolute or
@@ -605,6 +617,7 @@ public class NodeConfig {
     private int coreLoadThreads = DEFAULT_CORE_LOAD_THREADS;
     private int replayUpdatesThreads = Runtime.getRuntime().availableProcessors();
     private int indexSearcherExecutorThreads = DEFAULT_INDEX_SEARCHER_EXECUTOR_THREADS;
+    private int cacheRamBudgetMB = -1;
     @Deprecated private int transientCacheSize = -1;
     private boolean useSchemaCache = false;
     private String managementPath;
@@ -770,6 +783,11 @@ public class NodeConfig {
       return this;
     }
 
+    public NodeConfigBuilder setCacheRamBudgetMB(int cacheRamBudgetMB) {
+      this.cacheRamBudgetMB = cacheRamBudgetMB;
+      return this;
+    }
+
     // Remove in Solr 10.0
 
     @Deprecated
@@ -920,6 +938,7 @@ public class NodeConfig {
           coreLoadThreads,
           replayUpdatesThreads,
           indexSearcherExecutorThreads,
+          cacheRamBudgetMB,
           transientCacheSize,
           useSchemaCache,
           managementPath,
@@ -297,7 +297,13 @@ public class SolrConfig implements MapSerializable {
       queryResultWindowSize = Math.max(1, get("query").get("queryResultWindowSize").intVal(1));
       queryResultMaxDocsCached =
           get("query").get("queryResultMaxDocsCached").intVal(Integer.MAX_VALUE);
+      maxDocsPerSegmentPartition =
+          Math.max(0, get("query").get("maxDocsPerSegmentPartition").intVal(0));
       enableLazyFieldLoading = get("query").get("enableLazyFieldLoading").boolVal(false);
+      ConfigNode segmentFilterCache = get("query").get("segmentFilterCache");
+      segmentFilterCacheSize =
+          segmentFilterCache.exists() ? segmentFilterCache.intAttr("size", 1000) : 0;
+      segmentFilterCacheMaxRamMB = segmentFilterCache.intAttr("maxRamMB", 100);
 
       filterCacheConfig =
           CacheConfig.getConfig(this, get("query").get("filterCache"), "query/filterCache");
@@ -306,6 +312,8 @@ public class SolrConfig implements MapSerializable {
               this, get("query").get("queryResultCache"), "query/queryResultCache");
       documentCacheConfig =
           CacheConfig.getConfig(this, get("query").get("documentCache"), "query/documentCache");
+      facetCacheConfig =
+          CacheConfig.getConfig(this, get("query").get("facetCache"), "query/facetCache");
       CacheConfig conf =
           CacheConfig.getConfig(this, get("query").get("fieldValueCache"), "query/fieldValueCache");
       if (conf == null) {
@@ -330,6 +338,8 @@ public class SolrConfig implements MapSerializable {
       httpCachingConfig = new HttpCachingConfig(this);
 
       maxWarmingSearchers = get("query").get("maxWarmingSearchers").intVal(1);
+      warmingThreads = Math.max(1, get("query").get("warmingThreads").intVal(1));
+      maxWarmingTimeMs = get("query").get("maxWarmingTimeMs").intVal(-1);
       slowQueryThresholdMillis = get("query").get("slowQueryThresholdMillis").intVal(-1);
       for (SolrPluginInfo plugin : plugins) loadPluginInfo(plugin);
 
@@ -667,12 +677,16 @@ public class SolrConfig implements MapSerializable {
   public final CacheConfig queryResultCacheConfig;
   public final CacheConfig documentCacheConfig;
   public final CacheConfig fieldValueCacheConfig;
+  public final CacheConfig facetCacheConfig;
   public final Map<String, CacheConfig> userCacheConfigs;
   // SolrIndexSearcher - more...
   public final boolean useFilterForSortedQuery;
   public final int queryResultWindowSize;
   public final int queryResultMaxDocsCached;
+  public final int maxDocsPerSegmentPartition;
   public final boolean enableLazyFieldLoading;
+  public final int segmentFilterCacheSize; // 0 if there's no segmentFilterCache
+  public final int segmentFilterCacheMaxRamMB;
 
   // IndexConfig settings
   public final SolrIndexConfig indexConfig;
@@ -682,6 +696,8 @@ public class SolrConfig implements MapSerializable {
   private Map<String, List<PluginInfo>> pluginStore = new LinkedHashMap<>();
 
   public final int maxWarmingSearchers;
+  public final int warmingThreads;
+  public final int maxWarmingTimeMs; // autowarming stops after this long, -1 for no limit
   public final boolean useColdSearcher;
   public final Version luceneMatchVersion;
   protected String dataDir;
@@ -969,7 +985,15 @@ public class SolrConfig implements MapSerializable {
     m.put("useFilterForSortedQuery", useFilterForSortedQuery);
     m.put("queryResultWindowSize", queryResultWindowSize);
     m.put("queryResultMaxDocsCached", queryResultMaxDocsCached);
+    m.put("maxDocsPerSegmentPartition", maxDocsPerSegmentPartition);
     m.put("enableLazyFieldLoading", enableLazyFieldLoading);
+    if (segmentFilterCacheSize > 0) {
+      m.put(
+          "segmentFilterCache",
+          Map.of("size", segmentFilterCacheSize, "maxRamMB", segmentFilterCacheMaxRamMB));
+    }
+    m.put("warmingThreads", warmingThreads);
+    m.put("maxWarmingTimeMs", maxWarmingTimeMs);
     m.put("maxBooleanClauses", booleanQueryMaxClauseCount);
     m.put(MIN_PREFIX_QUERY_TERM_LENGTH, prefixQueryMinPrefixLength);
 
@@ -1002,7 +1026,12 @@ public class SolrConfig implements MapSerializable {
     }
 
     addCacheConfig(
-        m, filterCacheConfig, queryResultCacheConfig, documentCacheConfig, fieldValueCacheConfig);
+        m,
+        filterCacheConfig,
+        queryResultCacheConfig,
+        documentCacheConfig,
+        fieldValueCacheConfig,
+        facetCacheConfig);
     m = new LinkedHashMap<>();
     result.put("requestDispatcher", m);
     m.put("handleSelect", handleSelect);
@@ -111,6 +111,7 @@ import org.apache.solr.handler.admin.api.ReplicationAPIBase;
 import org.apache.solr.handler.api.V2ApiUtils;
 import org.apache.solr.handler.component.HighlightComponent;
 import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.handler.export.ExportWriter;
 import org.apache.solr.logging.MDCLoggingContext;
 import org.apache.solr.metrics.SolrCoreMetricManager;
 import org.apache.solr.metrics.SolrMetricProducer;
@@ -143,6 +144,7 @@ import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.ManagedIndexSchema;
 import org.apache.solr.schema.SimilarityFactory;
 import org.apache.solr.search.QParserPlugin;
+import org.apache.solr.search.SegmentFilterCache;
 import org.apache.solr.search.SolrFieldCacheBean;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.search.ValueSourceParser;
@@ -697,7 +699,7 @@ public class SolrCore implements SolrInfoBean, Closeable {
       final String event = info.attributes.get("event");
       if ("firstSearcher".equals(event)) {
         SolrEventListener obj = createEventListener(info);
-        firstSearcherListeners.add(obj);
+        registerFirstSearcherListener(obj);
         log.debug("Added SolrEventListener for firstSearcher: [{}]", obj);
       } else if ("newSearcher".equals(event)) {
         SolrEventListener obj = createEventListener(info);
@@ -720,6 +722,7 @@ public class SolrCore implements SolrInfoBean, Closeable {
 
   final List<SolrEventListener> firstSearcherListeners = new ArrayList<>();
   final List<SolrEventListener> newSearcherListeners = new ArrayList<>();
+  private volatile HotQueriesListener hotQueriesListener;
 
   /**
    * NOTE: this function is not thread safe. However, it is safe to call within the <code>
@@ -730,6 +733,17 @@ public class SolrCore implements SolrInfoBean, Closeable {
    */
   public void registerFirstSearcherListener(SolrEventListener listener) {
     firstSearcherListeners.add(listener);
+    if (hotQueriesListener == null && listener instanceof HotQueriesListener) {
+      hotQueriesListener = (HotQueriesListener) listener;
+    }
+  }
+
+  /**
+   * The firstSearcher listener recording the queries of this core, looked up once rather than for
+   * every request, or null if there is none.
+   */
+  public HotQueriesListener getHotQueriesListener() {
+    return hotQueriesListener;
   }
 
   /**
@@ -1109,12 +1123,21 @@ public class SolrCore implements SolrInfoBean, Closeable {
       // init pluggable circuit breakers, after metrics because some circuit breakers use metrics
       initPlugins(null, CircuitBreaker.class);
 
-      SolrFieldCacheBean solrFieldCacheBean = new SolrFieldCacheBean();
+      SolrFieldCacheBean solrFieldCacheBean = new SolrFieldCacheBean(this);
       // this is registered at the CONTAINER level because it's not core-specific - for now we
       // also register it here for back-compat
       solrFieldCacheBean.initializeMetrics(solrMetricsContext, "core");
       infoRegistry.put("fieldCache", solrFieldCacheBean);
 
+      if (solrConfig.segmentFilterCacheSize > 0) {
+        segmentFilterCache =
+            new SegmentFilterCache(
+                solrConfig.segmentFilterCacheSize, solrConfig.segmentFilterCacheMaxRamMB);
+        segmentFilterCache.initializeMetrics(solrMetricsContext, "segmentFilterCache");
+      } else {
+        segmentFilterCache = null;
+      }
+
       this.maxWarmingSearchers = solrConfig.maxWarmingSearchers;
       this.slowQueryThresholdMillis = solrConfig.slowQueryThresholdMillis;
 
@@ -1822,6 +1845,33 @@ public class SolrCore implements SolrInfoBean, Closeable {
     }
     assert ObjectReleaseTracker.release(searcherExecutor);
 
+    if (segmentFilterCache != null) {
+      IOUtils.closeQuietly(segmentFilterCache);
+    }
+
+    synchronized (searcherExecutor) {
+      if (warmingExecutor != null) {
+        try {
+          ExecutorUtil.shutdownAndAwaitTermination(warmingExecutor);
+        } catch (Throwable e) {
+          log.error("Exception shutting down warmingExecutor", e);
+          if (e instanceof Error) {
+            throw (Error) e;
+          }
+        }
+      }
+      if (exportSortExecutor != null) {
+        try {
+          ExecutorUtil.shutdownAndAwaitTermination(exportSortExecutor);
+        } catch (Throwable e) {
+          log.error("Exception shutting down exportSortExecutor", e);
+          if (e instanceof Error) {
+            throw (Error) e;
+          }
+        }
+      }
+    }
+
     try {
       // Since we waited for the searcherExecutor to shut down,
       // there should be no more searchers warming in the background
@@ -2065,6 +2115,10 @@ public class SolrCore implements SolrInfoBean, Closeable {
   final ExecutorService searcherExecutor =
       ExecutorUtil.newMDCAwareSingleLazyThreadExecutor(
           new SolrNamedThreadFactory("searcherExecutor"), 60L, TimeUnit.SECONDS);
+  // Pool for warming caches concurrently, created on first use when warmingThreads > 1
+  private volatile ExecutorService warmingExecutor;
+  // Pool for sorting the segments of /export requests ahead, created on first use
+  private volatile ExecutorService exportSortExecutor;
   private int onDeckSearchers; // number of searchers preparing
   // Lock ordering: one can acquire the openSearcherLock and then the searcherLock, but not
   // vice-versa.
@@ -2072,6 +2126,8 @@ public class SolrCore implements SolrInfoBean, Closeable {
   private ReentrantLock openSearcherLock =
       new ReentrantLock(true); // used to serialize opens/reopens for absolute ordering
   private final int maxWarmingSearchers; // max number of on-deck searchers allowed
+  // per segment filter bits that outlive searchers, null unless configured
+  private final SegmentFilterCache segmentFilterCache;
   private final int slowQueryThresholdMillis; // threshold above which a query is considered slow
 
   private RefCounted<SolrIndexSearcher> realtimeSearcher;
@@ -3249,6 +3305,59 @@ public class SolrCore implements SolrInfoBean, Closeable {
     return mgr;
   }
 
+  /**
+   * The pool that the caches of a new searcher are warmed with, bounded by {@code warmingThreads}
+   * in solrconfig.xml. Returns null when warming is single threaded.
+   */
+  public ExecutorService getWarmingExecutor() {
+    if (solrConfig.warmingThreads <= 1) {
+      return null;
+    }
+    ExecutorService executor = warmingExecutor;
+    if (executor == null) {
+      synchronized (searcherExecutor) {
+        executor = warmingExecutor;
+        if (executor == null && !searcherExecutor.isShutdown()) {
+          executor =
+              warmingExecutor =
+                  ExecutorUtil.newMDCAwareCachedThreadPool(
+                      solrConfig.warmingThreads,
+                      Integer.MAX_VALUE,
+                      new SolrNamedThreadFactory("warmingExecutor"));
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * The pool that /export requests asking for more than one {@code sortThreads} sort the runs of
+   * their segments ahead with. It is shared by the requests of this core and bounded by {@link
+   * ExportWriter#MAX_SORT_THREADS}. Returns null once the core is closed.
+   */
+  public ExecutorService getExportSortExecutor() {
+    ExecutorService executor = exportSortExecutor;
+    if (executor == null) {
+      synchronized (searcherExecutor) {
+        executor = exportSortExecutor;
+        if (executor == null && !searcherExecutor.isShutdown()) {
+          executor =
+              exportSortExecutor =
+                  ExecutorUtil.newMDCAwareCachedThreadPool(
+                      ExportWriter.MAX_SORT_THREADS,
+                      Integer.MAX_VALUE,
+                      new SolrNamedThreadFactory("exportSortExecutor"));
+        }
+      }
+    }
+    return executor;
+  }
+
+  /** The per segment filter cache shared by the searchers of this core, or null if disabled. */
+  public SegmentFilterCache getSegmentFilterCache() {
+    return segmentFilterCache;
+  }
+
   public CoreDescriptor getCoreDescriptor() {
     return coreDescriptor;
   }
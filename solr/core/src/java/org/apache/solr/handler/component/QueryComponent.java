@@ -73,6 +73,7 @@ import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.common.util.StrUtils;
+import org.apache.solr.core.HotQueriesListener;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.BasicResultContext;
 import org.apache.solr.response.ResultContext;
@@ -375,6 +376,11 @@ public class QueryComponent extends SearchComponent {
       return;
     }
 
+    HotQueriesListener hotQueries = req.getCore().getHotQueriesListener();
+    if (hotQueries != null) {
+      hotQueries.record(req);
+    }
+
     final boolean multiThreaded = params.getBool(CommonParams.MULTI_THREADED, false);
 
     // -1 as flag if not set.
@@ -31,6 +31,12 @@ class BoolFieldWriter extends StringFieldWriter {
     super(field, fieldType, docValuesCache);
   }
 
+  @Override
+  protected boolean writesOrds(MapWriter.EntryWriter ew) {
+    // the value is written as a boolean
+    return false;
+  }
+
   @Override
   protected void writeBytes(MapWriter.EntryWriter ew, BytesRef ref, FieldType fieldType)
       throws IOException {
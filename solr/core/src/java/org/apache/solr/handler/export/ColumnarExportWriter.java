@@ -0,0 +1,567 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.export;
+
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.BATCH;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.END;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.MAGIC;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_BOOLEAN;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_DATE;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_DOUBLE;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_FLOAT;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_INT;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_LIST;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_LONG;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_MAP;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_NULL;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_OBJECT;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.TYPE_STRING;
+import static org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser.VERSION;
+
+import com.carrotsearch.hppc.IntIntHashMap;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.util.CharsRefBuilder;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser;
+import org.apache.solr.common.IteratorWriter;
+import org.apache.solr.common.MapWriter;
+import org.apache.solr.common.PushWriter;
+import org.apache.solr.schema.FieldType;
+
+/**
+ * Writes the docs of an /export response in the format read by {@link
+ * ColumnarTupleStreamParser}: the docs are gathered into batches of {@code batchSize} rows, and
+ * each batch is written as the column vectors of its fields.
+ *
+ * <p>The dictionary of the terms of a string column is kept from one batch to the next, so that a
+ * batch only sends the terms that weren't sent yet, until the dictionary grows larger than a
+ * batch and is started over. The {@link StringFieldWriter}s pass the segment ordinals of their
+ * values with {@link RowWriter#putOrd}, so that a term is only looked up the first time its
+ * ordinal is seen in a segment.
+ *
+ * <p>Only the docs of the response are written, its header and numFound are left out: an error
+ * is sent as a doc having an {@code EXCEPTION} field, as it is in the other formats.
+ */
+final class ColumnarExportWriter implements PushWriter {
+  private final DataOutputStream out;
+  private final int batchSize;
+  private final Map<String, Column> columns = new LinkedHashMap<>();
+  private final RowWriter rowWriter = new RowWriter();
+  private final CharsRefBuilder cref = new CharsRefBuilder();
+  private int rowCount;
+
+  ColumnarExportWriter(OutputStream os, int batchSize) {
+    this.out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public void writeMap(MapWriter mw) throws IOException {
+    writeHeader();
+    mw.writeMap(
+        new MapWriter.EntryWriter() {
+          @Override
+          public MapWriter.EntryWriter put(CharSequence k, Object v) throws IOException {
+            if ("response".contentEquals(k)) {
+              writeResponse(v);
+            }
+            return this;
+          }
+        });
+    writeEnd();
+  }
+
+  @Override
+  public void writeIterator(IteratorWriter iw) throws IOException {
+    writeHeader();
+    iw.writeIter(this::addRow);
+    writeEnd();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void writeResponse(Object response) throws IOException {
+    MapWriter.EntryWriter docsWriter =
+        new MapWriter.EntryWriter() {
+          @Override
+          public MapWriter.EntryWriter put(CharSequence k, Object v) throws IOException {
+            if ("docs".contentEquals(k)) {
+              if (v instanceof IteratorWriter) {
+                ((IteratorWriter) v).writeIter(ColumnarExportWriter.this::addRow);
+              } else if (v instanceof Iterable) {
+                for (Object doc : (Iterable<Object>) v) {
+                  addRow(doc);
+                }
+              }
+            }
+            return this;
+          }
+        };
+    if (response instanceof MapWriter) {
+      ((MapWriter) response).writeMap(docsWriter);
+    } else if (response instanceof Map) {
+      for (Map.Entry<String, Object> entry : ((Map<String, Object>) response).entrySet()) {
+        docsWriter.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private IteratorWriter.ItemWriter addRow(Object doc) throws IOException {
+    if (doc instanceof MapWriter) {
+      ((MapWriter) doc).writeMap(rowWriter);
+    } else if (doc instanceof Map) {
+      for (Map.Entry<String, Object> entry : ((Map<String, Object>) doc).entrySet()) {
+        rowWriter.put(entry.getKey(), entry.getValue());
+      }
+    } else {
+      return null;
+    }
+    if (++rowCount == batchSize) {
+      writeBatch();
+    }
+    return null;
+  }
+
+  private void writeHeader() throws IOException {
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+  }
+
+  private void writeEnd() throws IOException {
+    writeBatch();
+    out.writeByte(END);
+    out.flush();
+  }
+
+  private void writeBatch() throws IOException {
+    if (rowCount == 0) {
+      return;
+    }
+    out.writeByte(BATCH);
+    writeVInt(out, rowCount);
+    int columnCount = 0;
+    for (Column column : columns.values()) {
+      if (column.count > 0) {
+        ++columnCount;
+      }
+    }
+    writeVInt(out, columnCount);
+    for (Column column : columns.values()) {
+      if (column.count > 0) {
+        column.write(out, rowCount);
+      }
+      column.reset();
+      if (column.terms != null && column.terms.size() > batchSize) {
+        column.clearDictionary();
+      }
+    }
+    rowCount = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.flush();
+  }
+
+  /** Adds the fields of a doc to the columns of the current batch, as the values of its row */
+  class RowWriter implements MapWriter.EntryWriter {
+
+    private Column column(CharSequence name) {
+      return columns.computeIfAbsent(name.toString(), Column::new);
+    }
+
+    @Override
+    public MapWriter.EntryWriter put(CharSequence k, Object v) throws IOException {
+      if (v == null) {
+        return this;
+      }
+      Column column = column(k);
+      if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+        column.putLong(rowCount, TYPE_INT, ((Number) v).intValue());
+      } else if (v instanceof Long) {
+        column.putLong(rowCount, TYPE_LONG, (Long) v);
+      } else if (v instanceof Float) {
+        column.putLong(rowCount, TYPE_FLOAT, Double.doubleToRawLongBits((Float) v));
+      } else if (v instanceof Double) {
+        column.putLong(rowCount, TYPE_DOUBLE, Double.doubleToRawLongBits((Double) v));
+      } else if (v instanceof Boolean) {
+        column.putLong(rowCount, TYPE_BOOLEAN, (Boolean) v ? 1 : 0);
+      } else if (v instanceof Date) {
+        column.putLong(rowCount, TYPE_DATE, ((Date) v).getTime());
+      } else if (v instanceof CharSequence) {
+        column.putString(rowCount, v.toString());
+      } else if (v instanceof IteratorWriter) {
+        column.putObject(rowCount, ((IteratorWriter) v).toList(new ArrayList<>()));
+      } else if (v instanceof MapWriter) {
+        column.putObject(rowCount, ((MapWriter) v).toMap(new LinkedHashMap<>()));
+      } else {
+        column.putObject(rowCount, v);
+      }
+      return this;
+    }
+
+    @Override
+    public MapWriter.EntryWriter put(CharSequence k, int v) {
+      column(k).putLong(rowCount, TYPE_INT, v);
+      return this;
+    }
+
+    @Override
+    public MapWriter.EntryWriter put(CharSequence k, long v) {
+      column(k).putLong(rowCount, TYPE_LONG, v);
+      return this;
+    }
+
+    @Override
+    public MapWriter.EntryWriter put(CharSequence k, float v) {
+      column(k).putLong(rowCount, TYPE_FLOAT, Double.doubleToRawLongBits(v));
+      return this;
+    }
+
+    @Override
+    public MapWriter.EntryWriter put(CharSequence k, double v) {
+      column(k).putLong(rowCount, TYPE_DOUBLE, Double.doubleToRawLongBits(v));
+      return this;
+    }
+
+    @Override
+    public MapWriter.EntryWriter put(CharSequence k, boolean v) {
+      column(k).putLong(rowCount, TYPE_BOOLEAN, v ? 1 : 0);
+      return this;
+    }
+
+    /**
+     * Puts the value of a string field by its ordinal in a segment
+     *
+     * @param leafOrd the ord of the segment
+     * @param values the values of the field in the segment, positioned on the doc
+     */
+    void putOrd(CharSequence k, int leafOrd, SortedDocValues values, FieldType fieldType)
+        throws IOException {
+      column(k).putOrd(rowCount, leafOrd, values, fieldType, cref);
+    }
+  }
+
+  /**
+   * The values of a field in the rows of the current batch. The values of the numeric, boolean
+   * and date columns are held as longs, the doubles and floats by their bits, and the ones of the
+   * string columns as the ordinals of their terms in the dictionary of the column. A column with
+   * values of different types holds them as objects.
+   */
+  private static final class Column {
+    final String name;
+    byte type = TYPE_NULL;
+    final BitSet present = new BitSet();
+    int count;
+    int lastRow = -1;
+    long[] longs = new long[16];
+    Object[] objects;
+    // the dictionary of the string values, kept from one batch to the next
+    Map<String, Integer> dictionary;
+    List<String> terms;
+    int sentTerms; // the number of terms sent in the previous batches
+    boolean dictionaryCleared;
+    // the dictionary ords of the ordinals of the values of each segment
+    IntIntHashMap[] segmentOrds = new IntIntHashMap[0];
+
+    Column(String name) {
+      this.name = name;
+    }
+
+    private boolean startValue(int row) {
+      // a field put twice in a doc keeps its first value
+      if (row == lastRow) {
+        return false;
+      }
+      lastRow = row;
+      present.set(row);
+      return true;
+    }
+
+    void putLong(int row, byte valueType, long value) {
+      if (!startValue(row)) {
+        return;
+      }
+      if (type == TYPE_NULL) {
+        type = valueType;
+      } else if (type != valueType && type != TYPE_OBJECT) {
+        convertToObjects();
+      }
+      if (type == TYPE_OBJECT) {
+        addObject(box(valueType, value));
+      } else {
+        addLong(value);
+      }
+    }
+
+    void putString(int row, String value) {
+      if (!startValue(row)) {
+        return;
+      }
+      if (startString()) {
+        addLong(termOrd(value));
+      } else {
+        addObject(value);
+      }
+    }
+
+    void putOrd(
+        int row, int leafOrd, SortedDocValues values, FieldType fieldType, CharsRefBuilder cref)
+        throws IOException {
+      if (!startValue(row)) {
+        return;
+      }
+      int segmentOrd = values.ordValue();
+      if (!startString()) {
+        addObject(lookupTerm(values, segmentOrd, fieldType, cref));
+        return;
+      }
+      if (leafOrd >= segmentOrds.length) {
+        segmentOrds = Arrays.copyOf(segmentOrds, leafOrd + 1);
+      }
+      IntIntHashMap ords = segmentOrds[leafOrd];
+      if (ords == null) {
+        ords = segmentOrds[leafOrd] = new IntIntHashMap();
+      }
+      int ord = ords.getOrDefault(segmentOrd, -1);
+      if (ord == -1) {
+        ord = termOrd(lookupTerm(values, segmentOrd, fieldType, cref));
+        ords.put(segmentOrd, ord);
+      }
+      addLong(ord);
+    }
+
+    private static String lookupTerm(
+        SortedDocValues values, int segmentOrd, FieldType fieldType, CharsRefBuilder cref)
+        throws IOException {
+      fieldType.indexedToReadable(values.lookupOrd(segmentOrd), cref);
+      return cref.toString();
+    }
+
+    /** Starts a string value, returns false if the column holds objects */
+    private boolean startString() {
+      if (type == TYPE_NULL) {
+        type = TYPE_STRING;
+        if (dictionary == null) {
+          dictionary = new HashMap<>();
+          terms = new ArrayList<>();
+        }
+      } else if (type != TYPE_STRING && type != TYPE_OBJECT) {
+        convertToObjects();
+      }
+      return type == TYPE_STRING;
+    }
+
+    private int termOrd(String term) {
+      Integer ord = dictionary.get(term);
+      if (ord == null) {
+        ord = terms.size();
+        dictionary.put(term, ord);
+        terms.add(term);
+      }
+      return ord;
+    }
+
+    void putObject(int row, Object value) {
+      if (!startValue(row)) {
+        return;
+      }
+      if (type != TYPE_OBJECT) {
+        convertToObjects();
+      }
+      addObject(value);
+    }
+
+    private void addLong(long value) {
+      if (count == longs.length) {
+        longs = Arrays.copyOf(longs, count << 1);
+      }
+      longs[count++] = value;
+    }
+
+    private void addObject(Object value) {
+      if (count == objects.length) {
+        objects = Arrays.copyOf(objects, count << 1);
+      }
+      objects[count++] = value;
+    }
+
+    private void convertToObjects() {
+      objects = new Object[Math.max(16, longs.length)];
+      for (int i = 0; i < count; i++) {
+        objects[i] = box(type, longs[i]);
+      }
+      type = TYPE_OBJECT;
+    }
+
+    private Object box(byte valueType, long value) {
+      switch (valueType) {
+        case TYPE_INT:
+          return (int) value;
+        case TYPE_LONG:
+          return value;
+        case TYPE_FLOAT:
+          return (float) Double.longBitsToDouble(value);
+        case TYPE_DOUBLE:
+          return Double.longBitsToDouble(value);
+        case TYPE_BOOLEAN:
+          return value != 0;
+        case TYPE_DATE:
+          return new Date(value);
+        case TYPE_STRING:
+          return terms.get((int) value);
+        default:
+          throw new IllegalStateException("Not a type of value: " + valueType);
+      }
+    }
+
+    void write(DataOutputStream out, int rowCount) throws IOException {
+      writeString(out, name);
+      out.writeByte(type);
+      if (count == rowCount) {
+        out.writeByte(0);
+      } else {
+        out.writeByte(1);
+        out.write(Arrays.copyOf(present.toByteArray(), (rowCount + 7) >>> 3));
+      }
+      switch (type) {
+        case TYPE_INT:
+          for (int i = 0; i < count; i++) out.writeInt((int) longs[i]);
+          break;
+        case TYPE_LONG:
+        case TYPE_DATE:
+          for (int i = 0; i < count; i++) out.writeLong(longs[i]);
+          break;
+        case TYPE_FLOAT:
+          for (int i = 0; i < count; i++) out.writeFloat((float) Double.longBitsToDouble(longs[i]));
+          break;
+        case TYPE_DOUBLE:
+          for (int i = 0; i < count; i++) out.writeDouble(Double.longBitsToDouble(longs[i]));
+          break;
+        case TYPE_BOOLEAN:
+          for (int i = 0; i < count; i++) out.writeByte((int) longs[i]);
+          break;
+        case TYPE_STRING:
+          out.writeByte(dictionaryCleared ? 1 : 0);
+          writeVInt(out, terms.size() - sentTerms);
+          for (String term : terms.subList(sentTerms, terms.size())) writeString(out, term);
+          sentTerms = terms.size();
+          dictionaryCleared = false;
+          for (int i = 0; i < count; i++) writeVInt(out, (int) longs[i]);
+          break;
+        default:
+          for (int i = 0; i < count; i++) writeValue(out, objects[i]);
+      }
+    }
+
+    void reset() {
+      type = TYPE_NULL;
+      present.clear();
+      count = 0;
+      lastRow = -1;
+      objects = null;
+    }
+
+    /** Starts the dictionary over, the terms of the next batch are all sent */
+    void clearDictionary() {
+      dictionary = null;
+      terms = null;
+      sentTerms = 0;
+      dictionaryCleared = true;
+      segmentOrds = new IntIntHashMap[0];
+    }
+  }
+
+  /** Writes a value tagged with its type */
+  @SuppressWarnings("unchecked")
+  static void writeValue(DataOutputStream out, Object v) throws IOException {
+    if (v == null) {
+      out.writeByte(TYPE_NULL);
+    } else if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+      out.writeByte(TYPE_INT);
+      out.writeInt(((Number) v).intValue());
+    } else if (v instanceof Long) {
+      out.writeByte(TYPE_LONG);
+      out.writeLong((Long) v);
+    } else if (v instanceof Float) {
+      out.writeByte(TYPE_FLOAT);
+      out.writeFloat((Float) v);
+    } else if (v instanceof Double) {
+      out.writeByte(TYPE_DOUBLE);
+      out.writeDouble((Double) v);
+    } else if (v instanceof Boolean) {
+      out.writeByte(TYPE_BOOLEAN);
+      out.writeByte((Boolean) v ? 1 : 0);
+    } else if (v instanceof Date) {
+      out.writeByte(TYPE_DATE);
+      out.writeLong(((Date) v).getTime());
+    } else if (v instanceof IteratorWriter) {
+      writeValue(out, ((IteratorWriter) v).toList(new ArrayList<>()));
+    } else if (v instanceof MapWriter) {
+      writeValue(out, ((MapWriter) v).toMap(new LinkedHashMap<>()));
+    } else if (v instanceof Map) {
+      Map<Object, Object> map = (Map<Object, Object>) v;
+      out.writeByte(TYPE_MAP);
+      writeVInt(out, map.size());
+      for (Map.Entry<Object, Object> entry : map.entrySet()) {
+        writeString(out, String.valueOf(entry.getKey()));
+        writeValue(out, entry.getValue());
+      }
+    } else if (v instanceof Object[]) {
+      writeValue(out, Arrays.asList((Object[]) v));
+    } else if (v instanceof Iterable) {
+      List<Object> list = new ArrayList<>();
+      for (Object o : (Iterable<Object>) v) {
+        list.add(o);
+      }
+      out.writeByte(TYPE_LIST);
+      writeVInt(out, list.size());
+      for (Object o : list) {
+        writeValue(out, o);
+      }
+    } else {
+      out.writeByte(TYPE_STRING);
+      writeString(out, v.toString());
+    }
+  }
+
+  static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    writeVInt(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static void writeVInt(DataOutputStream out, int i) throws IOException {
+    while ((i & ~0x7F) != 0) {
+      out.writeByte((i & 0x7F) | 0x80);
+      i >>>= 7;
+    }
+    out.writeByte(i);
+  }
+}
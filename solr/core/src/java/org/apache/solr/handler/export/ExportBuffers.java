@@ -60,6 +60,8 @@ class ExportBuffers {
   Buffer outputBuffer;
   Runnable filler;
   ExecutorService service;
+  // sorts the runs of the segments ahead when the request asks for more than one sort thread
+  ExportWriter.RunSorter runSorter;
   Throwable error;
   LongAdder outputCounter = new LongAdder();
   volatile boolean shutDown = false;
@@ -96,7 +98,20 @@ class ExportBuffers {
     outputBuffer = bufferTwo;
     SortDoc writerSortDoc = exportWriter.getSortDoc(searcher, sort.getSort());
 
-    MergeIterator mergeIterator = exportWriter.getMergeIterator(leaves, sets, writerSortDoc);
+    int sortThreads = Math.min(exportWriter.sortThreads, leaves.size());
+    if (sortThreads > 1) {
+      ExecutorService sortExecutor = searcher.getCore().getExportSortExecutor();
+      if (sortExecutor != null) {
+        runSorter = new ExportWriter.RunSorter(sortExecutor, sortThreads);
+      }
+    }
+    MergeIterator mergeIterator;
+    try {
+      mergeIterator = exportWriter.getMergeIterator(leaves, sets, writerSortDoc, runSorter);
+    } catch (IOException | RuntimeException e) {
+      shutdownNow();
+      throw e;
+    }
 
     bufferOne.initialize(writerSortDoc);
     bufferTwo.initialize(writerSortDoc);
@@ -200,6 +215,9 @@ class ExportBuffers {
       service.shutdownNow();
       service = null;
     }
+    if (runSorter != null) {
+      runSorter.cancel();
+    }
     shutDown = true;
   }
 
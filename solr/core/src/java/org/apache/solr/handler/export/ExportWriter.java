@@ -31,6 +31,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedDocValues;
@@ -41,6 +48,7 @@ import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.solr.client.solrj.impl.JavaBinResponseParser;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser;
 import org.apache.solr.client.solrj.io.stream.StreamContext;
 import org.apache.solr.client.solrj.io.stream.TupleStream;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
@@ -54,6 +62,7 @@ import org.apache.solr.common.PushWriter;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.params.StreamParams;
+import org.apache.solr.common.util.EnvUtils;
 import org.apache.solr.common.util.JavaBinCodec;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.metrics.SolrMetricsContext;
@@ -93,15 +102,31 @@ import org.slf4j.LoggerFactory;
  * that haven't been sent yet and stores them in a Priority Queue. They are then exported (written
  * across the wire) and marked as sent (unset in the bitmap). This process repeats until all
  * matching documents have been sent.
+ *
+ * <p>The passes are made per segment, and the sorted runs of the segments are merged into the
+ * batches that are exported. With the {@link #SORT_THREADS_PARAM} param, the next run of every
+ * segment is sorted ahead on up to that many threads while the current runs are merged, so that
+ * the passes over the bitmaps of the segments don't all happen on the thread filling the batches.
+ * The threads come from a pool shared by the export requests of the core, see {@link
+ * SolrCore#getExportSortExecutor()}, and the param is capped to {@link #MAX_SORT_THREADS}.
+ *
+ * <p>Besides the response writers, the docs can be written with {@code wt=columnar} as the column
+ * vectors of batches of docs, see {@link ColumnarTupleStreamParser}.
  */
 public class ExportWriter implements SolrCore.RawWriter, Closeable {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   public static final String BATCH_SIZE_PARAM = "batchSize";
   public static final String QUEUE_SIZE_PARAM = "queueSize";
+  public static final String SORT_THREADS_PARAM = "sortThreads";
 
   public static final int DEFAULT_BATCH_SIZE = 30000;
   public static final int DEFAULT_QUEUE_SIZE = 150000;
+
+  /** The max number of threads sorting the runs of the export requests of a core, together. */
+  public static int MAX_SORT_THREADS =
+      EnvUtils.getPropertyAsInteger(
+          "solr.export.maxSortThreads", Runtime.getRuntime().availableProcessors());
   private static final FieldWriter EMPTY_FIELD_WRITER =
       new FieldWriter() {
         @Override
@@ -121,6 +146,8 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
   final int batchSize;
   // The max combined size of the segment level priority queues.
   private int priorityQueueSize;
+  // The number of threads sorting the runs of the segments, 1 to sort them on the filler thread.
+  final int sortThreads;
   StreamExpression streamExpression;
   StreamContext streamContext;
   List<FieldWriter> fieldWriters;
@@ -144,12 +171,16 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     this.metricsPath = metricsPath;
     this.priorityQueueSize = req.getParams().getInt(QUEUE_SIZE_PARAM, DEFAULT_QUEUE_SIZE);
     this.batchSize = DEFAULT_BATCH_SIZE;
+    this.sortThreads =
+        Math.max(1, Math.min(req.getParams().getInt(SORT_THREADS_PARAM, 1), MAX_SORT_THREADS));
   }
 
   @Override
   public String getContentType() {
     if ("javabin".equals(wt)) {
       return JavaBinResponseParser.JAVABIN_CONTENT_TYPE;
+    } else if (ColumnarTupleStreamParser.WT.equals(wt)) {
+      return ColumnarTupleStreamParser.CONTENT_TYPE;
     } else return "json";
   }
 
@@ -197,7 +228,9 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
 
   private void _write(OutputStream os) throws IOException {
     QueryResponseWriter rw = req.getCore().getResponseWriters().get(wt);
-    if (rw instanceof JacksonJsonWriter) {
+    if (ColumnarTupleStreamParser.WT.equals(wt)) {
+      writer = new ColumnarExportWriter(os, batchSize);
+    } else if (rw instanceof JacksonJsonWriter) {
       writer = ((JacksonJsonWriter) rw).getWriter(os, req, res);
     } else if (rw instanceof JavaBinResponseWriter) {
       // todo add support for other writers after testing
@@ -401,6 +434,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
         tupleStream = createTupleStream();
         tupleStream.open();
       } catch (Exception e) {
+        buffers.shutdownNow();
         buffers.getWriter().add((MapWriter) ew -> Tuple.EXCEPTION(e, true).writeMap(ew));
         return;
       }
@@ -711,6 +745,18 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
 
   public MergeIterator getMergeIterator(
       List<LeafReaderContext> leaves, FixedBitSet[] bits, SortDoc sortDoc) throws IOException {
+    return getMergeIterator(leaves, bits, sortDoc, null);
+  }
+
+  /**
+   * Returns an iterator merging the sorted runs of the segments
+   *
+   * @param runSorter sorts the runs of the segments ahead, or null to sort them when the merge
+   *     needs them
+   */
+  MergeIterator getMergeIterator(
+      List<LeafReaderContext> leaves, FixedBitSet[] bits, SortDoc sortDoc, RunSorter runSorter)
+      throws IOException {
     try {
       long totalDocs = 0;
       for (int i = 0; i < leaves.size(); i++) {
@@ -754,7 +800,7 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       for (int i = 0; i < segmentIterators.length; i++) {
         SortQueue sortQueue = new SortQueue(sizes[i], sortDoc.copy());
         segmentIterators[i] =
-            new SegmentIterator(bits[i], leaves.get(i), sortQueue, sortDoc.copy());
+            new SegmentIterator(bits[i], leaves.get(i), sortQueue, sortDoc.copy(), runSorter);
       }
 
       return new MergeIterator(segmentIterators, sortDoc);
@@ -765,16 +811,28 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
   private static class SegmentIterator {
 
     private final FixedBitSet bits;
-    private final SortQueue queue;
     private final SortDoc sortDoc;
     private final LeafReaderContext context;
-    private final SortDoc[] outDocs;
+    // sorts the next run of the segment while the current one is merged, null to sort it when the
+    // current run is exhausted
+    private final RunSorter runSorter;
+
+    private SortQueue queue;
+    private SortDoc[] outDocs;
+    // the queue and docs the next run is sorted into by the runSorter
+    private SortQueue nextQueue;
+    private SortDoc[] nextOutDocs;
+    private Future<Integer> nextRun;
 
     private SortDoc nextDoc;
     private int index;
 
     public SegmentIterator(
-        FixedBitSet bits, LeafReaderContext context, SortQueue sortQueue, SortDoc sortDoc)
+        FixedBitSet bits,
+        LeafReaderContext context,
+        SortQueue sortQueue,
+        SortDoc sortDoc,
+        RunSorter runSorter)
         throws IOException {
       this.bits = bits;
       this.queue = sortQueue;
@@ -782,7 +840,16 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       this.nextDoc = sortDoc.copy();
       this.context = context;
       this.outDocs = new SortDoc[sortQueue.maxSize];
-      topDocs();
+      this.runSorter = runSorter;
+      if (runSorter == null) {
+        topDocs();
+      } else {
+        // the first runs of all the segments are sorted concurrently, before they are merged
+        this.nextQueue = new SortQueue(sortQueue.maxSize, sortDoc.copy());
+        this.nextOutDocs = new SortDoc[sortQueue.maxSize];
+        sortNextRun();
+        index = -1;
+      }
     }
 
     public SortDoc next() throws IOException {
@@ -797,9 +864,6 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
       }
 
       if (_sortDoc != null) {
-        // Clear the bit so it's not loaded again.
-        bits.clear(_sortDoc.docId);
-
         // Load the global ordinal (only matters for strings)
         _sortDoc.setGlobalValues(nextDoc);
 
@@ -813,6 +877,46 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     }
 
     private void topDocs() throws IOException {
+      if (runSorter == null) {
+        index = sortRun(queue, outDocs) - 1;
+        return;
+      }
+
+      int size;
+      try {
+        size = nextRun == null ? 0 : nextRun.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+      }
+      SortQueue sortedQueue = nextQueue;
+      nextQueue = queue;
+      queue = sortedQueue;
+      SortDoc[] sortedDocs = nextOutDocs;
+      nextOutDocs = outDocs;
+      outDocs = sortedDocs;
+      index = size - 1;
+
+      if (size == outDocs.length) {
+        sortNextRun();
+      } else {
+        nextRun = null; // no docs left in the segment
+      }
+    }
+
+    private void sortNextRun() throws IOException {
+      SortQueue runQueue = nextQueue;
+      SortDoc[] runDocs = nextOutDocs;
+      nextRun = runSorter.submit(() -> sortRun(runQueue, runDocs));
+    }
+
+    /**
+     * Sorts the next docs of the segment that weren't sorted yet into the given docs, and clears
+     * their bits so they're not loaded again. Returns the number of sorted docs.
+     */
+    private int sortRun(SortQueue queue, SortDoc[] outDocs) throws IOException {
       try {
         queue.reset();
         SortDoc top = queue.top();
@@ -830,14 +934,16 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
         }
 
         // Pop the queue and load up the array.
-        index = -1;
+        int size = 0;
 
         SortDoc _sortDoc;
         while ((_sortDoc = queue.pop()) != null) {
           if (_sortDoc.docId > -1) {
-            outDocs[++index] = _sortDoc;
+            bits.clear(_sortDoc.docId);
+            outDocs[size++] = _sortDoc;
           }
         }
+        return size;
       } catch (Exception e) {
         log.error("Segment Iterator Error:", e);
         throw new IOException(e);
@@ -845,6 +951,51 @@ public class ExportWriter implements SolrCore.RawWriter, Closeable {
     }
   }
 
+  /**
+   * Sorts the runs of the segments of one request ahead on the shared pool of the core, with at
+   * most as many runs in flight as the request has sort threads.
+   */
+  static final class RunSorter {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private volatile boolean cancelled;
+
+    RunSorter(ExecutorService executor, int sortThreads) {
+      this.executor = executor;
+      this.permits = new Semaphore(sortThreads);
+    }
+
+    Future<Integer> submit(Callable<Integer> run) throws IOException {
+      try {
+        permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+      try {
+        return executor.submit(
+            () -> {
+              try {
+                if (cancelled) {
+                  throw new CancellationException();
+                }
+                return run.call();
+              } finally {
+                permits.release();
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        permits.release();
+        throw new IOException(e);
+      }
+    }
+
+    /** Skips the runs that haven't started yet, once the export is aborted. */
+    void cancel() {
+      cancelled = true;
+    }
+  }
+
   public static class IgnoreException extends IOException {
     @Override
     public void printStackTrace(PrintWriter pw) {
@@ -65,6 +65,22 @@ class StringFieldWriter extends FieldWriter {
     StringValue stringValue = (StringValue) sortDoc.getSortValue(this.field);
     BytesRef ref = null;
 
+    if (writesOrds(ew)) {
+      if (stringValue != null && stringValue.currentOrd == -1) {
+        // Null sort value
+        return false;
+      }
+      SortedDocValues vals =
+          docValuesCache.getSortedDocValues(
+              sortDoc.docId, readerContext.reader(), readerContext.ord);
+      if (vals == null) {
+        return false;
+      }
+      // the terms are looked up by the writer, the first time it sees their ordinals
+      ((ColumnarExportWriter.RowWriter) ew).putOrd(this.field, readerContext.ord, vals, fieldType);
+      return true;
+    }
+
     if (stringValue != null) {
       /*
        We already have the top level ordinal used for sorting.
@@ -105,6 +121,11 @@ class StringFieldWriter extends FieldWriter {
     return true;
   }
 
+  /** Whether the value can be written by its segment ordinal instead of its term */
+  protected boolean writesOrds(MapWriter.EntryWriter ew) {
+    return ew instanceof ColumnarExportWriter.RowWriter;
+  }
+
   protected void writeBytes(MapWriter.EntryWriter ew, BytesRef ref, FieldType fieldType)
       throws IOException {
     if (ew instanceof JavaBinCodec.BinEntryWriter) {
@@ -125,6 +125,15 @@ public final class SlowCompositeReaderWrapper extends LeafReader {
     return "SlowCompositeReaderWrapper(" + in + ")";
   }
 
+  /** Memory used by the ordinal maps from segment to global ordinals built by this reader. */
+  public long getOrdinalMapsRamBytesUsed() {
+    long bytes = 0;
+    for (OrdinalMap map : cachedOrdMaps.values()) {
+      bytes += map.ramBytesUsed();
+    }
+    return bytes;
+  }
+
   @Override
   public CacheHelper getReaderCacheHelper() {
     return in.getReaderCacheHelper();
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.core.SolrInfoBean;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricProducer;
+import org.apache.solr.metrics.SolrMetricsContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enforces a single RAM budget ({@code cacheRamBudgetMB} in solr.xml) across the {@link
+ * CaffeineCache}s of all cores of a node.
+ *
+ * <p>Every cache gets a share of the budget, which is applied as its {@code maxRamMB}. A quarter of
+ * the budget is split evenly, so that no cache is starved entirely, and the rest is handed out in
+ * proportion to the recent hits of each cache. The shares are recomputed periodically, which moves
+ * capacity towards the caches that benefit the most from it. The share, memory use and evictions
+ * of each cache are published as node level metrics.
+ *
+ * @lucene.experimental
+ */
+public class CacheRamBudgetManager implements SolrMetricProducer {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  static final long REBALANCE_INTERVAL_MS = 10_000;
+
+  private final long budgetBytes;
+  // keyed by core name and cache name
+  private final Map<String, Share> shares = new ConcurrentHashMap<>();
+  private final ScheduledThreadPoolExecutor scheduler;
+
+  private SolrMetricsContext solrMetricsContext;
+
+  /** The budget of one cache, which carries over from one searcher's cache to the next. */
+  static class Share {
+    final String coreName;
+    final String cacheName;
+    volatile CaffeineCache<?, ?> cache;
+    long lastHits;
+    double recentHits;
+    volatile long shareBytes;
+    volatile long priorEvictions;
+
+    Share(String coreName, String cacheName) {
+      this.coreName = coreName;
+      this.cacheName = cacheName;
+    }
+
+    long getEvictions() {
+      CaffeineCache<?, ?> c = cache;
+      return priorEvictions + (c == null ? 0 : c.getEvictionCount());
+    }
+  }
+
+  public CacheRamBudgetManager(int budgetMB) {
+    this(budgetMB, true);
+  }
+
+  CacheRamBudgetManager(int budgetMB, boolean scheduled) {
+    this.budgetBytes = budgetMB * 1024L * 1024L;
+    if (scheduled) {
+      scheduler =
+          new ScheduledThreadPoolExecutor(1, new SolrNamedThreadFactory("cacheRamBudgetManager"));
+      scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+      scheduler.scheduleWithFixedDelay(
+          this::rebalanceQuietly,
+          REBALANCE_INTERVAL_MS,
+          REBALANCE_INTERVAL_MS,
+          TimeUnit.MILLISECONDS);
+    } else {
+      scheduler = null;
+    }
+  }
+
+  private static String key(String coreName, String cacheName) {
+    return coreName + "/" + cacheName;
+  }
+
+  /**
+   * Puts a core's cache under the budget. A cache replacing the same named cache of a previous
+   * searcher of the core takes over its share. Caches other than {@link CaffeineCache} are ignored.
+   *
+   * <p>This must be called before the cache is live: a cache limited by size is rebuilt with a RAM
+   * limit, which isn't safe while the cache is in use. The RAM limits are then only changed in
+   * place.
+   */
+  public void register(String coreName, SolrCache<?, ?> cache) {
+    if (!(cache instanceof CaffeineCache)) {
+      return;
+    }
+    CaffeineCache<?, ?> caffeineCache = (CaffeineCache<?, ?>) cache;
+    boolean added = false;
+    synchronized (this) {
+      Share share = shares.get(key(coreName, cache.name()));
+      if (share == null) {
+        share = new Share(coreName, cache.name());
+        // an even share until the rebalance below
+        share.shareBytes = budgetBytes / (shares.size() + 1);
+        shares.put(key(coreName, cache.name()), share);
+        added = true;
+      } else {
+        CaffeineCache<?, ?> previous = share.cache;
+        if (previous != null) {
+          share.priorEvictions += previous.getEvictionCount();
+        }
+        share.lastHits = 0;
+      }
+      caffeineCache.setMaxRamMB(toMB(share.shareBytes));
+      share.cache = caffeineCache;
+    }
+    if (added) {
+      rebalance();
+    }
+  }
+
+  /** Releases the share of the cache, unless a newer searcher's cache took it over already. */
+  public synchronized void unregister(String coreName, SolrCache<?, ?> cache) {
+    Share share = shares.get(key(coreName, cache.name()));
+    if (share != null && share.cache == cache) {
+      shares.remove(key(coreName, cache.name()));
+    }
+  }
+
+  private void rebalanceQuietly() {
+    try {
+      rebalance();
+    } catch (Exception e) {
+      log.warn("Error rebalancing cache RAM budget", e);
+    }
+  }
+
+  /** Recomputes the share of every cache from its hits since the previous call. */
+  synchronized void rebalance() {
+    int n = shares.size();
+    if (n == 0) {
+      return;
+    }
+    double totalRecentHits = 0;
+    for (Share share : shares.values()) {
+      long hits = share.cache.getHitCount();
+      long delta = hits >= share.lastHits ? hits - share.lastHits : hits;
+      share.lastHits = hits;
+      // smooth over a few intervals, so that a quiet period doesn't wipe out a cache
+      share.recentHits = (share.recentHits + delta) / 2;
+      totalRecentHits += share.recentHits;
+    }
+
+    long floorBytes = budgetBytes / 4 / n;
+    long distributable = budgetBytes - floorBytes * n;
+    for (Share share : shares.values()) {
+      double fraction = totalRecentHits > 0 ? share.recentHits / totalRecentHits : 1.0 / n;
+      share.shareBytes = floorBytes + (long) (distributable * fraction);
+      // caches in use are never rebuilt, which would race with their lookups and drop entries
+      if (!share.cache.resizeMaxRamMB(toMB(share.shareBytes)) && log.isDebugEnabled()) {
+        log.debug("No RAM limit to resize for {}/{}", share.coreName, share.cacheName);
+      }
+    }
+  }
+
+  private static int toMB(long bytes) {
+    return (int) Math.max(1, bytes / 1024 / 1024);
+  }
+
+  public long getBudgetBytes() {
+    return budgetBytes;
+  }
+
+  Share getShare(String coreName, String cacheName) {
+    return shares.get(key(coreName, cacheName));
+  }
+
+  @Override
+  public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
+    solrMetricsContext = parentContext.getChildContext(this);
+    MetricsMap metricsMap =
+        new MetricsMap(
+            map -> {
+              long used = 0;
+              for (Share share : shares.values()) {
+                CaffeineCache<?, ?> cache = share.cache;
+                if (cache == null) {
+                  continue;
+                }
+                String prefix = share.coreName + "." + share.cacheName + ".";
+                long ramBytesUsed = cache.ramBytesUsed();
+                used += ramBytesUsed;
+                map.put(prefix + "shareBytes", share.shareBytes);
+                map.put(prefix + "ramBytesUsed", ramBytesUsed);
+                map.put(prefix + "evictions", share.getEvictions());
+              }
+              map.put("budgetBytes", budgetBytes);
+              map.put("ramBytesUsed", used);
+            });
+    solrMetricsContext.gauge(metricsMap, true, scope, SolrInfoBean.Category.CACHE.toString());
+  }
+
+  @Override
+  public SolrMetricsContext getSolrMetricsContext() {
+    return solrMetricsContext;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (scheduler != null) {
+      ExecutorUtil.shutdownAndAwaitTermination(scheduler);
+    }
+    shares.clear();
+    SolrMetricProducer.super.close();
+  }
+}
@@ -26,12 +26,10 @@ import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.lang.invoke.MethodHandles;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
@@ -45,8 +43,6 @@ import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.solr.metrics.MetricsMap;
 import org.apache.solr.metrics.SolrMetricsContext;
 import org.apache.solr.util.IOFunction;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * A SolrCache backed by the Caffeine caching library [1]. By default it uses the Window TinyLFU
@@ -67,7 +63,6 @@ import org.slf4j.LoggerFactory;
  */
 public class CaffeineCache<K, V> extends SolrCacheBase
     implements SolrCache<K, V>, Accountable, RemovalListener<K, V> {
-  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
   private static final long BASE_RAM_BYTES_USED =
       RamUsageEstimator.shallowSizeOfInstance(CaffeineCache.class)
@@ -91,6 +86,7 @@ public class CaffeineCache<K, V> extends SolrCacheBase
   private Cache<K, V> cache;
   private AsyncCache<K, V> asyncCache;
   private long warmupTime;
+  private long warmedKeys;
   private int maxSize;
   private long maxRamBytes;
   private int initialSize;
@@ -360,7 +356,7 @@ public class CaffeineCache<K, V> extends SolrCacheBase
   }
 
   @Override
-  public void setMaxRamMB(int maxRamMB) {
+  public synchronized void setMaxRamMB(int maxRamMB) {
     long newMaxRamBytes = maxRamMB < 0 ? Long.MAX_VALUE : maxRamMB * 1024L * 1024L;
     if (newMaxRamBytes != maxRamBytes) {
       maxRamBytes = newMaxRamBytes;
@@ -383,6 +379,37 @@ public class CaffeineCache<K, V> extends SolrCacheBase
     }
   }
 
+  /**
+   * Changes the RAM limit of a cache that already has one, in place, so that the cache can keep
+   * being used meanwhile. Unlike {@link #setMaxRamMB(int)}, this never rebuilds the cache.
+   *
+   * @return false if the cache has no RAM limit to change
+   */
+  synchronized boolean resizeMaxRamMB(int maxRamMB) {
+    Optional<Eviction<K, V>> evictionOpt = cache.policy().eviction();
+    if (maxRamMB < 0 || evictionOpt.isEmpty() || !evictionOpt.get().isWeighted()) {
+      return false;
+    }
+    long newMaxRamBytes = maxRamMB * 1024L * 1024L;
+    if (newMaxRamBytes != maxRamBytes) {
+      maxRamBytes = newMaxRamBytes;
+      evictionOpt.get().setMaximum(newMaxRamBytes);
+      description = generateDescription(this.maxSize, initialSize);
+      cache.cleanUp();
+    }
+    return true;
+  }
+
+  /** Hits of this cache instance, i.e. since the searcher was opened. */
+  long getHitCount() {
+    return cache.stats().hitCount() + hits.sum();
+  }
+
+  /** Evictions of this cache instance, i.e. since the searcher was opened. */
+  long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+
   protected void adjustMetrics(long hitsAdjust, long insertsAdjust, long lookupsAdjust) {
     hits.add(-hitsAdjust);
     inserts.add(-insertsAdjust);
@@ -406,17 +433,7 @@ public class CaffeineCache<K, V> extends SolrCacheBase
           other.cache.policy().eviction().map(p -> p.hottest(size)).orElse(Collections.emptyMap());
     }
 
-    for (Entry<K, V> entry : hottest.entrySet()) {
-      try {
-        boolean continueRegen =
-            regenerator.regenerateItem(searcher, this, old, entry.getKey(), entry.getValue());
-        if (!continueRegen) {
-          break;
-        }
-      } catch (Exception e) {
-        log.error("Error during auto-warming of key: {}", entry.getKey(), e);
-      }
-    }
+    warmedKeys = regenerateEntries(searcher, this, old, hottest, v -> v);
 
     hits.reset();
     inserts.reset();
@@ -492,6 +509,7 @@ public class CaffeineCache<K, V> extends SolrCacheBase
                 map.put(EVICTIONS_PARAM, stats.evictionCount());
                 map.put(SIZE_PARAM, cache.asMap().size());
                 map.put("warmupTime", warmupTime);
+                map.put("warmedKeys", warmedKeys);
                 map.put(RAM_BYTES_USED_PARAM, ramBytesUsed());
                 map.put(MAX_RAM_MB_PARAM, getMaxRamMB());
 
@@ -84,7 +84,7 @@ public class DocSetCollector extends SimpleCollector {
     } else {
       // set the bits for ids that were collected in the array
       scratch.copyTo(bits);
-      return new BitDocSet(bits, pos);
+      return DocSetUtil.compress(new BitDocSet(bits, pos));
     }
   }
 
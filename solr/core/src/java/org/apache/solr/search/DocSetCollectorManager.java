@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.Collection;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.FixedBitSet;
+
+/**
+ * A {@link CollectorManager} producing the {@link DocSet} of all matching documents, allowing the
+ * searcher's executor to collect leaf slices concurrently.
+ *
+ * <p>All collectors write straight into the words of a single {@link FixedBitSet} of size maxDoc,
+ * so no per-slice sets need to be copied together at the end. A word that lies entirely within a
+ * segment is only ever written by the thread collecting that segment. The first and last word of a
+ * segment may however be shared with the neighbouring segments, so those are accumulated
+ * separately by each collector and OR'ed into the bit set by {@link #reduce}.
+ *
+ * @lucene.experimental
+ */
+public class DocSetCollectorManager
+    implements CollectorManager<DocSetCollectorManager.SliceCollector, DocSet> {
+
+  private final int maxDoc;
+  private final FixedBitSet bits;
+
+  public DocSetCollectorManager(int maxDoc) {
+    this.maxDoc = maxDoc;
+    this.bits = new FixedBitSet(maxDoc);
+  }
+
+  @Override
+  public SliceCollector newCollector() {
+    return new SliceCollector(bits.getBits());
+  }
+
+  @Override
+  public DocSet reduce(Collection<SliceCollector> collectors) throws IOException {
+    final long[] words = bits.getBits();
+    int size = 0;
+    for (SliceCollector collector : collectors) {
+      size += collector.size;
+      for (int i = 0; i < collector.numEdges; i++) {
+        words[collector.edgeWordIndexes[i]] |= collector.edgeWords[i];
+      }
+    }
+    final BitDocSet docSet = new BitDocSet(bits, size);
+    return size <= DocSetUtil.smallSetSize(maxDoc)
+        ? DocSetUtil.toSmallSet(docSet)
+        : DocSetUtil.compress(docSet);
+  }
+
+  /** Collects the segments of one leaf slice. */
+  public static class SliceCollector extends SimpleCollector {
+    private final long[] words;
+
+    // the (possibly shared) first and last word of each segment collected so far
+    private int[] edgeWordIndexes = new int[4];
+    private long[] edgeWords = new long[4];
+    private int numEdges;
+
+    private int base;
+    private int firstWord;
+    private int firstEdge;
+    private int lastWord;
+    private int lastEdge;
+    private int size;
+
+    SliceCollector(long[] words) {
+      this.words = words;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+      base = context.docBase;
+      firstWord = base >>> 6;
+      lastWord = (base + Math.max(context.reader().maxDoc(), 1) - 1) >>> 6;
+      firstEdge = addEdge(firstWord);
+      lastEdge = lastWord == firstWord ? firstEdge : addEdge(lastWord);
+    }
+
+    private int addEdge(int wordIndex) {
+      if (numEdges == edgeWordIndexes.length) {
+        edgeWordIndexes = ArrayUtil.grow(edgeWordIndexes, numEdges + 1);
+        edgeWords = ArrayUtil.growExact(edgeWords, edgeWordIndexes.length);
+      }
+      edgeWordIndexes[numEdges] = wordIndex;
+      edgeWords[numEdges] = 0L;
+      return numEdges++;
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      doc += base;
+      final int wordIndex = doc >>> 6;
+      if (wordIndex == firstWord) {
+        edgeWords[firstEdge] |= 1L << doc;
+      } else if (wordIndex == lastWord) {
+        edgeWords[lastEdge] |= 1L << doc;
+      } else {
+        words[wordIndex] |= 1L << doc;
+      }
+      size++;
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+      return ScoreMode.COMPLETE_NO_SCORES;
+    }
+  }
+}
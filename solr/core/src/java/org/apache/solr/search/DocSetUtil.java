@@ -36,12 +36,27 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.common.util.EnvUtils;
 
 /**
  * @lucene.experimental
  */
 public class DocSetUtil {
 
+  /**
+   * Whether {@link #createDocSetGeneric} may collect leaf slices concurrently when the searcher has
+   * an executor (i.e. {@code indexSearcherExecutorThreads} is configured in solr.xml).
+   */
+  private static final boolean PARALLEL_DOCSETS =
+      EnvUtils.getPropertyAsBool("solr.search.multiThreaded.docSets", true);
+
+  /**
+   * Whether medium density sets are stored as a {@link RoaringDocSet} instead of a {@link
+   * BitDocSet}, trading some speed for a smaller filterCache footprint.
+   */
+  private static final boolean COMPRESSED_DOCSETS =
+      EnvUtils.getPropertyAsBool("solr.search.compressedDocSets", false);
+
   /**
    * The cut-off point for small sets (SortedIntDocSet) vs large sets (BitDocSet)
    *
@@ -53,6 +68,33 @@ public class DocSetUtil {
     return (maxDoc >> 6) + 5; // The +5 is for better test coverage for small sets
   }
 
+  /**
+   * The cut-off point for medium sets (RoaringDocSet) vs large sets (BitDocSet). Above a density
+   * of 1/16 a block of randomly distributed docs takes as much space in a {@link RoaringDocSet}
+   * as in a bit set.
+   */
+  public static int mediumSetSize(int maxDoc) {
+    return maxDoc >>> 4;
+  }
+
+  /**
+   * Returns a {@link RoaringDocSet} with the same docs if compressed sets are enabled ({@code
+   * solr.search.compressedDocSets}) and the set is of medium density, otherwise the set itself.
+   * Small sets are left alone, as callers decide themselves whether to use a {@link
+   * SortedIntDocSet}.
+   */
+  public static DocSet compress(BitDocSet docSet) {
+    if (!COMPRESSED_DOCSETS) {
+      return docSet;
+    }
+    final int maxDoc = docSet.getBits().length();
+    final int size = docSet.size();
+    if (size > smallSetSize(maxDoc) && size <= mediumSetSize(maxDoc)) {
+      return RoaringDocSet.fromBits(docSet.getBits(), size);
+    }
+    return docSet;
+  }
+
   /**
    * Iterates DocSets to test for equality - slow and for testing purposes only.
    *
@@ -138,6 +180,11 @@ public class DocSetUtil {
       return set;
     }
 
+    SegmentFilterCache segmentFilterCache = searcher.getCore().getSegmentFilterCache();
+    if (segmentFilterCache != null && filter == null) {
+      // the per segment bits of a query combined with a DocSet are only valid for this searcher
+      query = segmentFilterCache.wrap(query);
+    }
     return createDocSetGeneric(searcher, query);
   }
 
@@ -146,6 +193,12 @@ public class DocSetUtil {
       throws IOException {
 
     int maxDoc = searcher.getIndexReader().maxDoc();
+
+    if (PARALLEL_DOCSETS && searcher.getExecutor() != null && searcher.getSlices().length > 1) {
+      // as below, any ExitableDirectoryReader.ExitingReaderException is passed on to the caller
+      return getDocSet(searcher.search(query, new DocSetCollectorManager(maxDoc)), searcher);
+    }
+
     DocSetCollector collector = new DocSetCollector(maxDoc);
 
     // This may throw an ExitableDirectoryReader.ExitingReaderException
@@ -248,7 +301,7 @@ public class DocSetUtil {
       return smallSet;
     }
 
-    return docSet;
+    return compress(docSet);
   }
 
   public static DocSet toSmallSet(BitDocSet bitSet) {
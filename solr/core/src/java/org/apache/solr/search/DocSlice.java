@@ -91,6 +91,16 @@ public class DocSlice implements DocList, Accountable {
     return new DocSlice(offset, realLen, docs, scores, matches, maxScore, matchesRelation);
   }
 
+  /** The backing doc ids, which may extend beyond this slice. */
+  int[] getDocs() {
+    return docs;
+  }
+
+  /** The scores of {@link #getDocs()}, or null. */
+  float[] getScores() {
+    return scores;
+  }
+
   @Override
   public boolean hasScores() {
     return scores != null;
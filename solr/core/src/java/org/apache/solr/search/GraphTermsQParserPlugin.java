@@ -532,10 +532,10 @@ abstract class PointSetQuery extends Query implements DocSetProducer, Accountabl
     if (searcher instanceof SolrIndexSearcher) {
       return ((SolrIndexSearcher) searcher).getLiveDocSet().getBits();
     } else { // could happen in Delete-by-query situation
-      // smallSetSize==0 thus will always produce a BitDocSet (FixedBitSet)
+      // smallSetSize==0 thus will never produce a SortedIntDocSet
       DocSetCollector docSetCollector = new DocSetCollector(0, searcher.getIndexReader().maxDoc());
       searcher.search(new MatchAllDocsQuery(), docSetCollector);
-      return ((BitDocSet) docSetCollector.getDocSet()).getBits();
+      return docSetCollector.getDocSet().getFixedBitSet();
     }
   }
 
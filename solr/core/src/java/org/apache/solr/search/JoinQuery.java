@@ -388,10 +388,10 @@ class JoinQuery extends Query implements SolrSearcherRequirer {
               if (resultBits != null) {
                 toTermSet.addAllTo(resultBits);
               } else {
-                if (toTermSet instanceof BitDocSet) {
-                  resultBits = ((BitDocSet) toTermSet).getBits().clone();
-                } else {
+                if (toTermSet instanceof SortedIntDocSet) {
                   resultList.add(toTermSet);
+                } else {
+                  resultBits = toTermSet.getFixedBitSetClone();
                 }
               }
             } else {
@@ -21,18 +21,27 @@ import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.FixedBitSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +49,9 @@ import org.slf4j.LoggerFactory;
 public class MultiThreadedSearcher {
   private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+  /** Number of docs scored between two checks of the query limits in a segment partition. */
+  private static final int LIMITS_CHECK_INTERVAL = 1 << 14;
+
   final SolrIndexSearcher searcher;
 
   public MultiThreadedSearcher(SolrIndexSearcher searcher) {
@@ -94,7 +106,7 @@ public class MultiThreadedSearcher {
     final SolrMultiCollectorManager manager = new SolrMultiCollectorManager(cmd, colls);
     Object[] ret;
     try {
-      ret = searcher.search(query, manager);
+      ret = search(query, manager);
     } catch (EarlyTerminatingCollectorException ex) {
       ret = manager.reduce();
       queryResult.setMaxHitsTerminatedEarly(true);
@@ -119,6 +131,124 @@ public class MultiThreadedSearcher {
     return new SearchResult(scoreMode, ret);
   }
 
+  /**
+   * Like {@link IndexSearcher#search(Query, CollectorManager)}, but splits segments larger than
+   * {@link SolrIndexSearcher#getMaxDocsPerSegmentPartition()} into doc id ranges which are searched
+   * as separate tasks, so that a single large segment can be searched by several threads.
+   */
+  private Object[] search(Query query, SolrMultiCollectorManager manager) throws IOException {
+    final int maxDocsPerPartition = searcher.getMaxDocsPerSegmentPartition();
+    if (maxDocsPerPartition <= 0
+        || searcher.getExecutor() == null
+        || searcher.getLeafContexts().stream()
+            .noneMatch(ctx -> ctx.reader().maxDoc() > maxDocsPerPartition)) {
+      return searcher.search(query, manager);
+    }
+
+    final List<List<LeafPartition>> tasks =
+        partitionSlices(searcher.getSlices(), maxDocsPerPartition);
+    final SolrMultiCollectorManager.Collectors firstCollector = manager.newCollector();
+    final Weight weight =
+        searcher.createWeight(searcher.rewrite(query), firstCollector.scoreMode(), 1f);
+    // captured here since the limits are tracked per request thread
+    final QueryLimits queryLimits = QueryLimits.getCurrentLimits();
+
+    final List<Callable<SolrMultiCollectorManager.Collectors>> callables =
+        new ArrayList<>(tasks.size());
+    for (int i = 0; i < tasks.size(); i++) {
+      final List<LeafPartition> partitions = tasks.get(i);
+      final SolrMultiCollectorManager.Collectors collector =
+          i == 0 ? firstCollector : manager.newCollector();
+      callables.add(
+          () -> {
+            search(partitions, weight, collector, queryLimits);
+            return collector;
+          });
+    }
+    return manager.reduce(searcher.getTaskExecutor().invokeAll(callables));
+  }
+
+  private static void search(
+      List<LeafPartition> partitions, Weight weight, Collector collector, QueryLimits queryLimits)
+      throws IOException {
+    collector.setWeight(weight);
+    for (LeafPartition partition : partitions) {
+      final LeafCollector leafCollector;
+      try {
+        leafCollector = collector.getLeafCollector(partition.ctx);
+      } catch (CollectionTerminatedException e) {
+        continue;
+      }
+      final BulkScorer scorer = weight.bulkScorer(partition.ctx);
+      if (scorer != null) {
+        final Bits liveDocs = partition.ctx.reader().getLiveDocs();
+        try {
+          if (queryLimits.isLimitsEnabled()) {
+            int doc = partition.minDoc;
+            while (doc < partition.maxDoc) {
+              if (queryLimits.shouldExit()) {
+                throw new QueryLimitsExceededException(
+                    "Limits exceeded! (search): " + queryLimits.limitStatusMessage());
+              }
+              final int max = (int) Math.min((long) doc + LIMITS_CHECK_INTERVAL, partition.maxDoc);
+              doc = scorer.score(leafCollector, liveDocs, doc, max);
+            }
+          } else {
+            scorer.score(leafCollector, liveDocs, partition.minDoc, partition.maxDoc);
+          }
+        } catch (CollectionTerminatedException e) {
+          // collection was terminated prematurely, continue with the next partition
+        }
+      }
+      leafCollector.finish();
+    }
+  }
+
+  /**
+   * Turns the searcher's slices into lists of partitions, each list to be searched by one task.
+   * Segments with more than {@code maxDocsPerPartition} docs are taken out of their slice and split
+   * into (nearly) equal doc id ranges, each of which gets its own task. A collector thus never sees
+   * the same segment twice.
+   */
+  static List<List<LeafPartition>> partitionSlices(
+      IndexSearcher.LeafSlice[] slices, int maxDocsPerPartition) {
+    final List<List<LeafPartition>> tasks = new ArrayList<>();
+    for (IndexSearcher.LeafSlice slice : slices) {
+      final List<LeafPartition> wholeSegments = new ArrayList<>();
+      for (LeafReaderContext ctx : slice.leaves) {
+        final int maxDoc = ctx.reader().maxDoc();
+        if (maxDoc <= maxDocsPerPartition) {
+          wholeSegments.add(new LeafPartition(ctx, 0, maxDoc));
+          continue;
+        }
+        final int numPartitions =
+            (int) ((maxDoc + (long) maxDocsPerPartition - 1) / maxDocsPerPartition);
+        for (int i = 0; i < numPartitions; i++) {
+          final int minDoc = (int) ((long) maxDoc * i / numPartitions);
+          final int endDoc = (int) ((long) maxDoc * (i + 1) / numPartitions);
+          tasks.add(Collections.singletonList(new LeafPartition(ctx, minDoc, endDoc)));
+        }
+      }
+      if (!wholeSegments.isEmpty()) {
+        tasks.add(wholeSegments);
+      }
+    }
+    return tasks;
+  }
+
+  /** A range of doc ids {@code [minDoc, maxDoc)} within a single segment. */
+  static class LeafPartition {
+    final LeafReaderContext ctx;
+    final int minDoc;
+    final int maxDoc;
+
+    LeafPartition(LeafReaderContext ctx, int minDoc, int maxDoc) {
+      this.ctx = ctx;
+      this.minDoc = minDoc;
+      this.maxDoc = maxDoc;
+    }
+  }
+
   static boolean allowMT(DelegatingCollector postFilter, QueryCommand cmd) {
     // TODO: it's unclear if segmentTerminateEarly is truly incompatible but
     //  since it has to appropriately denote partial results this needs to be
@@ -141,22 +271,29 @@ public class MultiThreadedSearcher {
     @SuppressWarnings("JdkObsolete")
     private final LinkedList<Integer> skipWords = new LinkedList<>();
 
-    @SuppressWarnings("JdkObsolete")
-    private final LinkedList<Integer> skipBits = new LinkedList<>();
+    private int docBase;
 
     FixedBitSetCollector() {}
 
     @Override
     protected void doSetNextReader(LeafReaderContext context) throws IOException {
       this.bitSets.add(null); // lazy allocate when collecting document(s)
-      this.skipWords.add(context.docBase / 64);
-      this.skipBits.add(context.docBase % 64);
+      this.skipWords.add(0);
+      this.docBase = context.docBase;
     }
 
     @Override
     public void collect(int doc) throws IOException {
       FixedBitSet bitSet = this.bitSets.getLast();
-      final int idx = this.skipBits.getLast() + doc;
+      final int globalDoc = this.docBase + doc;
+
+      if (bitSet == null) {
+        // start at the word of the first collected doc rather than at the segment's first doc;
+        // when only a partition of the segment is searched the leading words would stay empty
+        this.skipWords.removeLast();
+        this.skipWords.addLast(globalDoc >>> 6);
+      }
+      final int idx = globalDoc - (this.skipWords.getLast() << 6);
 
       final int numWords = FixedBitSet.bits2words(idx + 1); // +1 to ensure minimum 1 word
 
@@ -183,7 +320,8 @@ public class MultiThreadedSearcher {
           final int skipWords = this.skipWords.get(bs_idx);
           final long[] itBits = itBitSet.getBits();
           for (int idx = 0; idx < itBits.length && skipWords + idx < allBits.length; ++idx) {
-            allBits[skipWords + idx] ^= itBits[idx];
+            // OR since partitions of the same segment may share a boundary word
+            allBits[skipWords + idx] |= itBits[idx];
           }
         }
       }
@@ -0,0 +1,687 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricsContext;
+import org.apache.solr.util.BufferCleaner;
+import org.apache.solr.util.IOFunction;
+
+/**
+ * A SolrCache that keeps the bulk of its values outside the Java heap, so that large filter and
+ * query result caches don't fill up the old generation. {@link DocSet}s and {@link DocSlice}s are
+ * serialized into direct {@link ByteBuffer}s, and only a small handle per entry is managed on heap
+ * by a Caffeine [1] W-TinyLFU cache, like {@link CaffeineCache}. Values of any other type are
+ * kept on heap as is.
+ *
+ * <p>A hit on a DocSet returns a read-only view that reads the buffer in place, so that only a few
+ * objects are allocated on the heap per lookup, whatever the size of the set. A DocSlice, which is
+ * small, is copied back onto the heap. The memory of an entry is released once it is evicted,
+ * removed or replaced, or once the cache is closed, and no view of it is reachable anymore. Direct
+ * memory is bounded by the JVM's {@code -XX:MaxDirectMemorySize}, which defaults to the maximum
+ * heap size.
+ *
+ * <p>Like {@link CaffeineCache} this cache supports either a maximum size limit (the number of
+ * items) or a maximum ram limit ({@code maxRamMB}), where the latter counts both the on-heap and
+ * the off-heap memory of the entries. The {@code ramBytesUsed} metric likewise counts both, and
+ * {@code offHeapBytesUsed} the off-heap part.
+ *
+ * <p>[1] https://github.com/ben-manes/caffeine
+ *
+ * @lucene.experimental
+ */
+public class OffHeapCache<K, V> extends SolrCacheBase
+    implements SolrCache<K, V>, Accountable, RemovalListener<K, OffHeapCache.Handle> {
+
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(OffHeapCache.class)
+          + RamUsageEstimator.shallowSizeOfInstance(CacheStats.class)
+          + 4 * RamUsageEstimator.shallowSizeOfInstance(LongAdder.class);
+
+  private static final long RAM_BYTES_PER_FUTURE =
+      RamUsageEstimator.shallowSizeOfInstance(CompletableFuture.class);
+
+  public static final String OFF_HEAP_BYTES_USED_PARAM = "offHeapBytesUsed";
+
+  private CacheStats priorStats;
+  private long priorHits;
+  private long priorInserts;
+  private long priorLookups;
+
+  private String description = "Off-heap Cache";
+  private LongAdder hits;
+  private LongAdder inserts;
+  private LongAdder lookups;
+  private Cache<K, Handle> cache;
+  private AsyncCache<K, Handle> asyncCache;
+  private long warmupTime;
+  private long warmedKeys;
+  private int maxSize;
+  private long maxRamBytes;
+  private int initialSize;
+  private int maxIdleTimeSec;
+  private boolean async;
+
+  private MetricsMap cacheMap;
+  private SolrMetricsContext solrMetricsContext;
+
+  private final LongAdder ramBytes = new LongAdder();
+  private final LongAdder offHeapBytes = new LongAdder();
+
+  public OffHeapCache() {
+    this.priorStats = CacheStats.empty();
+  }
+
+  @Override
+  public Object init(Map<String, String> args, Object persistence, CacheRegenerator regenerator) {
+    super.init(args, regenerator);
+    String str = args.get(SIZE_PARAM);
+    maxSize = (str == null) ? 1024 : Integer.parseInt(str);
+    str = args.get(INITIAL_SIZE_PARAM);
+    initialSize = Math.min((str == null) ? 1024 : Integer.parseInt(str), maxSize);
+    str = args.get(MAX_IDLE_TIME_PARAM);
+    maxIdleTimeSec = str == null ? -1 : Integer.parseInt(str);
+    str = args.get(MAX_RAM_MB_PARAM);
+    int maxRamMB = str == null ? -1 : Double.valueOf(str).intValue();
+    maxRamBytes = maxRamMB < 0 ? Long.MAX_VALUE : maxRamMB * 1024L * 1024L;
+    async = Boolean.parseBoolean(args.getOrDefault(ASYNC_PARAM, "true"));
+
+    description =
+        String.format(
+            Locale.ROOT,
+            "Off-heap Cache(maxSize=%d, initialSize=%d%s%s)",
+            maxSize,
+            initialSize,
+            maxRamMB < 0 ? "" : ", maxRamMB=" + maxRamMB,
+            isAutowarmingOn() ? (", " + getAutowarmDescription()) : "");
+
+    Caffeine<K, Handle> builder =
+        Caffeine.newBuilder()
+            .initialCapacity(initialSize)
+            .executor(Runnable::run)
+            .removalListener(this)
+            .recordStats();
+    if (maxIdleTimeSec > 0) {
+      builder.expireAfterAccess(Duration.ofSeconds(maxIdleTimeSec));
+    }
+    if (maxRamBytes != Long.MAX_VALUE) {
+      builder.maximumWeight(maxRamBytes);
+      builder.weigher((k, h) -> (int) Math.min(Integer.MAX_VALUE, entryBytes(k, h)));
+    } else {
+      builder.maximumSize(maxSize);
+    }
+    if (async) {
+      asyncCache = builder.buildAsync();
+      cache = asyncCache.synchronous();
+    } else {
+      cache = builder.build();
+    }
+    hits = new LongAdder();
+    inserts = new LongAdder();
+    lookups = new LongAdder();
+    return persistence;
+  }
+
+  /** The memory of an entry, on heap and off heap. */
+  private long entryBytes(K key, Handle handle) {
+    return RamUsageEstimator.sizeOfObject(key, RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_USED)
+        + RamUsageEstimator.LINKED_HASHTABLE_RAM_BYTES_PER_ENTRY
+        + handle.ramBytesUsed()
+        + handle.offHeapBytes();
+  }
+
+  private void recordBytes(K key, Handle handle, int sign) {
+    ramBytes.add(sign * (entryBytes(key, handle) + (async ? RAM_BYTES_PER_FUTURE : 0)));
+    offHeapBytes.add(sign * handle.offHeapBytes());
+  }
+
+  @Override
+  public void onRemoval(K key, Handle handle, RemovalCause cause) {
+    if (handle != null) {
+      recordBytes(key, handle, -1);
+      handle.release();
+    }
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED + ramBytes.sum();
+  }
+
+  /** The memory used outside the Java heap by the cached values. */
+  public long offHeapBytesUsed() {
+    return offHeapBytes.sum();
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(K key) {
+    Handle handle = cache.getIfPresent(key);
+    // null if the entry was released since
+    return handle == null ? null : (V) handle.get();
+  }
+
+  @SuppressWarnings("unchecked")
+  private V computeAsync(K key, IOFunction<? super K, ? extends V> mappingFunction)
+      throws IOException {
+    CompletableFuture<Handle> future = new CompletableFuture<>();
+    CompletableFuture<Handle> result = asyncCache.asMap().putIfAbsent(key, future);
+    lookups.increment();
+    if (result != null) {
+      try {
+        // Another thread is already working on this computation, wait for them to finish
+        Handle handle = result.join();
+        Object value = handle.get();
+        if (value == null) {
+          // evicted and released meanwhile
+          return mappingFunction.apply(key);
+        }
+        hits.increment();
+        return (V) value;
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof CancellableCollector.QueryCancelledException) {
+          // see CaffeineCache; compute directly rather than waiting for yet another computation
+          return mappingFunction.apply(key);
+        }
+        throw e;
+      }
+    }
+    try {
+      // We reserved the slot, so we do the work
+      V value = mappingFunction.apply(key);
+      Handle handle = Handle.of(value);
+      future.complete(handle); // This will update the weight and expiration
+      recordBytes(key, handle, 1);
+      inserts.increment();
+      return value;
+    } catch (Error | RuntimeException | IOException e) {
+      future.completeExceptionally(e); // This will remove the future from the cache
+      throw e;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V computeIfAbsent(K key, IOFunction<? super K, ? extends V> mappingFunction)
+      throws IOException {
+    if (async) {
+      return computeAsync(key, mappingFunction);
+    }
+
+    // the computing thread gets the value itself rather than a copy of it
+    Object[] computed = new Object[1];
+    try {
+      Handle handle =
+          cache.get(
+              key,
+              k -> {
+                V value;
+                try {
+                  value = mappingFunction.apply(k);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+                if (value == null) {
+                  return null;
+                }
+                computed[0] = value;
+                Handle h = Handle.of(value);
+                recordBytes(key, h, 1);
+                inserts.increment();
+                return h;
+              });
+      if (computed[0] != null) {
+        return (V) computed[0];
+      }
+      Object value = handle == null ? null : handle.get();
+      if (handle != null && value == null) {
+        // evicted and released meanwhile
+        return mappingFunction.apply(key);
+      }
+      return (V) value;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V put(K key, V val) {
+    inserts.increment();
+    Handle handle = Handle.of(val);
+    // bytes of the replaced handle are released via #onRemoval
+    recordBytes(key, handle, 1);
+    Handle old = cache.asMap().put(key, handle);
+    // the replaced entry is already released, unless a view of it is still in use
+    return old == null ? null : (V) old.get();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V remove(K key) {
+    Handle old = cache.asMap().remove(key);
+    // the removed entry is already released, unless a view of it is still in use
+    return old == null ? null : (V) old.get();
+  }
+
+  @Override
+  public void clear() {
+    cache.invalidateAll();
+    ramBytes.reset();
+    offHeapBytes.reset();
+  }
+
+  @Override
+  public int size() {
+    return cache.asMap().size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    SolrCache.super.close();
+    cache.invalidateAll();
+    cache.cleanUp();
+    ramBytes.reset();
+    offHeapBytes.reset();
+  }
+
+  @Override
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public void setMaxSize(int maxSize) {
+    if (this.maxSize == maxSize || maxRamBytes != Long.MAX_VALUE) {
+      return;
+    }
+    cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maxSize));
+    this.maxSize = maxSize;
+    cache.cleanUp();
+  }
+
+  @Override
+  public int getMaxRamMB() {
+    return maxRamBytes != Long.MAX_VALUE ? (int) (maxRamBytes / 1024L / 1024L) : -1;
+  }
+
+  @Override
+  public void setMaxRamMB(int maxRamMB) {
+    // switching between a size and a ram limit would need a new cache
+    if (maxRamMB < 0 || maxRamBytes == Long.MAX_VALUE) {
+      return;
+    }
+    maxRamBytes = maxRamMB * 1024L * 1024L;
+    cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maxRamBytes));
+    cache.cleanUp();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void warm(SolrIndexSearcher searcher, SolrCache<K, V> old) {
+    if (regenerator == null) {
+      return;
+    }
+
+    long warmingStartTime = System.nanoTime();
+    Map<K, Handle> hottest = Collections.emptyMap();
+    OffHeapCache<K, V> other = (OffHeapCache<K, V>) old;
+
+    if (isAutowarmingOn()) {
+      int size = autowarm.getWarmCount(other.cache.asMap().size());
+      hottest =
+          other.cache.policy().eviction().map(p -> p.hottest(size)).orElse(Collections.emptyMap());
+    }
+
+    warmedKeys = regenerateEntries(searcher, this, old, hottest, handle -> (V) handle.get());
+
+    hits.reset();
+    inserts.reset();
+    lookups.reset();
+    CacheStats oldStats = other.cache.stats();
+    priorStats = oldStats.plus(other.priorStats);
+    priorHits = oldStats.hitCount() + other.hits.sum() + other.priorHits;
+    priorInserts = other.inserts.sum() + other.priorInserts;
+    priorLookups = oldStats.requestCount() + other.lookups.sum() + other.priorLookups;
+    warmupTime =
+        TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public boolean isRecursionSupported() {
+    return async;
+  }
+
+  //////////////////////// SolrInfoBean methods //////////////////////
+
+  @Override
+  public String getName() {
+    return OffHeapCache.class.getName();
+  }
+
+  @Override
+  public String getDescription() {
+    return description;
+  }
+
+  // for unit tests only
+  @VisibleForTesting
+  MetricsMap getMetricsMap() {
+    return cacheMap;
+  }
+
+  @Override
+  public SolrMetricsContext getSolrMetricsContext() {
+    return solrMetricsContext;
+  }
+
+  @Override
+  public String toString() {
+    return name() + (cacheMap != null ? cacheMap.getValue().toString() : "");
+  }
+
+  @Override
+  public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
+    solrMetricsContext = parentContext.getChildContext(this);
+    cacheMap =
+        new MetricsMap(
+            map -> {
+              if (cache != null) {
+                CacheStats stats = cache.stats();
+                long hitCount = stats.hitCount() + hits.sum();
+                long insertCount = inserts.sum();
+                long lookupCount = stats.requestCount() + lookups.sum();
+
+                map.put(LOOKUPS_PARAM, lookupCount);
+                map.put(HITS_PARAM, hitCount);
+                map.put(HIT_RATIO_PARAM, hitRate(hitCount, lookupCount));
+                map.put(INSERTS_PARAM, insertCount);
+                map.put(EVICTIONS_PARAM, stats.evictionCount());
+                map.put(SIZE_PARAM, cache.asMap().size());
+                map.put("warmupTime", warmupTime);
+                map.put("warmedKeys", warmedKeys);
+                map.put(RAM_BYTES_USED_PARAM, ramBytesUsed());
+                map.put(OFF_HEAP_BYTES_USED_PARAM, offHeapBytesUsed());
+                map.put(MAX_RAM_MB_PARAM, getMaxRamMB());
+
+                CacheStats cumulativeStats = priorStats.plus(stats);
+                long cumLookups = priorLookups + lookupCount;
+                long cumHits = priorHits + hitCount;
+                map.put("cumulative_lookups", cumLookups);
+                map.put("cumulative_hits", cumHits);
+                map.put("cumulative_hitratio", hitRate(cumHits, cumLookups));
+                map.put("cumulative_inserts", priorInserts + insertCount);
+                map.put("cumulative_evictions", cumulativeStats.evictionCount());
+              }
+            });
+    solrMetricsContext.gauge(cacheMap, true, scope, getCategory().toString());
+  }
+
+  private static double hitRate(long hitCount, long lookupCount) {
+    return lookupCount == 0 ? 1.0 : (double) hitCount / lookupCount;
+  }
+
+  /**
+   * The on-heap part of a cache entry: a direct buffer holding a serialized {@link DocSet} or
+   * {@link DocSlice}, or the value itself for other types.
+   *
+   * <p>The buffer is reference counted: the cache holds a reference until the entry is removed, and
+   * every {@link OffHeapDocSet} view of it holds one until the view is garbage collected, so that
+   * the buffer is only released once it is no longer read.
+   */
+  static final class Handle implements Accountable {
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(Handle.class);
+    // the DirectByteBuffer instance, its Cleaner and Deallocator
+    private static final long BUFFER_RAM_BYTES_USED =
+        3 * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + 8 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+    private static final byte SORTED_INTS = 0;
+    private static final byte BITS = 1;
+    private static final byte DOC_SLICE = 2;
+
+    // releases the reference of a view of a buffer once the view is unreachable
+    private static final Cleaner CLEANER =
+        Cleaner.create(new SolrNamedThreadFactory("offHeapCacheCleaner"));
+
+    private final ByteBuffer buffer;
+    private final Object value;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    private Handle(ByteBuffer buffer, Object value) {
+      this.buffer = buffer;
+      this.value = value;
+    }
+
+    /** Releases the reference of the cache, the buffer being released once no lookup reads it. */
+    void release() {
+      if (buffer != null) {
+        decRef();
+      }
+    }
+
+    private boolean tryIncRef() {
+      for (int count = refCount.get(); count > 0; count = refCount.get()) {
+        if (refCount.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void decRef() {
+      if (refCount.decrementAndGet() == 0) {
+        BufferCleaner.release(buffer);
+      }
+    }
+
+    static Handle of(Object value) {
+      if (value instanceof DocSet) {
+        return new Handle(encode((DocSet) value), null);
+      } else if (value != null && value.getClass() == DocSlice.class) {
+        return new Handle(encode((DocSlice) value), null);
+      }
+      return new Handle(null, value);
+    }
+
+    long offHeapBytes() {
+      return buffer == null ? 0 : buffer.capacity();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED
+          + (buffer == null
+              ? RamUsageEstimator.sizeOfObject(
+                  value, RamUsageEstimator.QUERY_DEFAULT_RAM_BYTES_USED)
+              : BUFFER_RAM_BYTES_USED);
+    }
+
+    /**
+     * Returns the value, as a view of the buffer if it was stored off heap, or null if the buffer
+     * was released since.
+     */
+    Object get() {
+      if (buffer == null) {
+        return value;
+      }
+      if (!tryIncRef()) {
+        return null;
+      }
+      try {
+        return decode();
+      } catch (Throwable t) {
+        decRef();
+        throw t;
+      }
+    }
+
+    /** Decodes the value, with a reference held; a view takes ownership of the reference. */
+    private Object decode() {
+      final ByteBuffer in = buffer.duplicate().rewind().order(ByteOrder.nativeOrder());
+      switch (in.get()) {
+        case SORTED_INTS:
+          {
+            final int size = in.getInt();
+            final IntBuffer docs = in.asIntBuffer().limit(size);
+            // every read goes through the view buffer, which keeps it reachable meanwhile
+            CLEANER.register(docs, this::decRef);
+            return OffHeapDocSet.ofInts(docs);
+          }
+        case BITS:
+          {
+            final int numBits = in.getInt();
+            final int size = in.getInt();
+            final LongBuffer words = in.asLongBuffer();
+            CLEANER.register(words, this::decRef);
+            return OffHeapDocSet.ofBits(words, numBits, size);
+          }
+        case DOC_SLICE:
+          {
+            final int offset = in.getInt();
+            final int len = in.getInt();
+            final long matches = in.getLong();
+            final TotalHits.Relation relation = TotalHits.Relation.values()[in.get()];
+            final float maxScore = in.getFloat();
+            final int[] docs = new int[in.getInt()];
+            final boolean hasScores = in.get() != 0;
+            in.asIntBuffer().get(docs);
+            float[] scores = null;
+            if (hasScores) {
+              scores = new float[docs.length];
+              in.position(in.position() + docs.length * Integer.BYTES);
+              in.asFloatBuffer().get(scores);
+            }
+            decRef();
+            return new DocSlice(offset, len, docs, scores, matches, maxScore, relation);
+          }
+        default:
+          throw new IllegalStateException("Unknown entry type");
+      }
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+      return ByteBuffer.allocateDirect(Math.toIntExact(bytes)).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer encode(DocSet set) {
+      final int size = set.size();
+      if (set instanceof SortedIntDocSet) {
+        return encodeInts(((SortedIntDocSet) set).getDocs(), size);
+      }
+      final int numBits =
+          set instanceof OffHeapDocSet ? ((OffHeapDocSet) set).length() : set.getBits().length();
+      final int numWords = FixedBitSet.bits2words(numBits);
+      if ((long) size * Integer.BYTES < (long) numWords * Long.BYTES) {
+        // typically a compressed RoaringDocSet, which we don't want to blow up
+        final int[] docs = new int[size];
+        final DocIterator iter = set.iterator();
+        for (int i = 0; i < size; i++) {
+          docs[i] = iter.nextDoc();
+        }
+        return encodeInts(docs, size);
+      }
+      final FixedBitSet bits = set.getFixedBitSet();
+      final ByteBuffer out = allocate(1 + 2 * Integer.BYTES + (long) numWords * Long.BYTES);
+      out.put(BITS).putInt(numBits).putInt(size);
+      out.asLongBuffer().put(bits.getBits(), 0, numWords);
+      return out;
+    }
+
+    private static ByteBuffer encodeInts(int[] docs, int size) {
+      final ByteBuffer out = allocate(1 + Integer.BYTES + (long) size * Integer.BYTES);
+      out.put(SORTED_INTS).putInt(size);
+      out.asIntBuffer().put(docs, 0, size);
+      return out;
+    }
+
+    private static ByteBuffer encode(DocSlice slice) {
+      final int[] docs = slice.getDocs();
+      final float[] scores = slice.getScores();
+      final int numDocs = docs == null ? 0 : docs.length;
+      final ByteBuffer out =
+          allocate(
+              1
+                  + 2 * Integer.BYTES
+                  + Long.BYTES
+                  + 1
+                  + Float.BYTES
+                  + Integer.BYTES
+                  + 1
+                  + (long) numDocs * (scores == null ? 1 : 2) * Integer.BYTES);
+      out.put(DOC_SLICE)
+          .putInt(slice.offset())
+          .putInt(slice.size())
+          .putLong(slice.matches())
+          .put((byte) slice.hitCountRelation().ordinal())
+          .putFloat(slice.maxScore())
+          .putInt(numDocs)
+          .put((byte) (scores == null ? 0 : 1));
+      if (numDocs > 0) {
+        out.asIntBuffer().put(docs);
+        if (scores != null) {
+          out.position(out.position() + numDocs * Integer.BYTES);
+          out.asFloatBuffer().put(scores);
+        }
+      }
+      return out;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+      return Collections.emptyList();
+    }
+  }
+}
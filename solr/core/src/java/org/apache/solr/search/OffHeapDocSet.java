@@ -0,0 +1,519 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A read-only {@link DocSet} view over a direct buffer, as stored by {@link OffHeapCache}: either
+ * the words of a bitset, like {@link BitDocSet}, or sorted doc ids, like {@link SortedIntDocSet}.
+ * Lookups and iteration read the buffer in place; only the results of set operations, and {@link
+ * #getFixedBitSet()}, are materialized on the heap.
+ *
+ * <p>The buffer must remain valid for as long as the view (or any iterator of it) is reachable;
+ * {@link OffHeapCache} ties the reference it holds on the entry to the reachability of the buffer.
+ */
+abstract class OffHeapDocSet extends DocSet {
+
+  static OffHeapDocSet ofBits(LongBuffer words, int numBits, int size) {
+    return new OfBits(words, numBits, size);
+  }
+
+  static OffHeapDocSet ofInts(IntBuffer docs) {
+    return new OfInts(docs);
+  }
+
+  /** One past the largest doc id this set may contain. */
+  abstract int length();
+
+  @Override
+  protected FixedBitSet getFixedBitSet() {
+    return getFixedBitSetClone();
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSetClone() {
+    final FixedBitSet bits = new FixedBitSet(length());
+    addAllTo(bits);
+    return bits;
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    FixedBitSet newbits = getFixedBitSetClone();
+    if (other instanceof BitDocSet) {
+      final FixedBitSet otherBits = ((BitDocSet) other).getBits();
+      newbits = FixedBitSet.ensureCapacity(newbits, otherBits.length());
+      newbits.or(otherBits);
+    } else {
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        newbits = FixedBitSet.ensureCapacity(newbits, doc);
+        newbits.set(doc);
+      }
+    }
+    return new BitDocSet(newbits);
+  }
+
+  @Override
+  public DocSetQuery makeQuery() {
+    return new DocSetQuery(this);
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{size=" + size() + '}';
+  }
+
+  static final class OfBits extends OffHeapDocSet {
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(OfBits.class)
+            + RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+            + 4 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+    private final LongBuffer words;
+    private final int numBits;
+    private final int numWords;
+    private final int size;
+
+    private OfBits(LongBuffer words, int numBits, int size) {
+      this.words = words;
+      this.numBits = numBits;
+      this.numWords = FixedBitSet.bits2words(numBits);
+      this.size = size;
+    }
+
+    @Override
+    int length() {
+      return numBits;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public boolean exists(int doc) {
+      return doc < numBits && (words.get(doc >> 6) & (1L << doc)) != 0;
+    }
+
+    /** Like {@link FixedBitSet#nextSetBit(int)}, index must be less than {@link #length()}. */
+    private int nextSetBit(int index) {
+      int i = index >> 6;
+      long word = words.get(i) >> index;
+      if (word != 0) {
+        return index + Long.numberOfTrailingZeros(word);
+      }
+      while (++i < numWords) {
+        word = words.get(i);
+        if (word != 0) {
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+      }
+      return DocIdSetIterator.NO_MORE_DOCS;
+    }
+
+    @Override
+    public DocIterator iterator() {
+      return new DocIterator() {
+        private int pos = numBits == 0 ? DocIdSetIterator.NO_MORE_DOCS : nextSetBit(0);
+
+        @Override
+        public boolean hasNext() {
+          return pos != DocIdSetIterator.NO_MORE_DOCS;
+        }
+
+        @Override
+        public Integer next() {
+          return nextDoc();
+        }
+
+        @Override
+        public int nextDoc() {
+          int old = pos;
+          pos = old + 1 >= numBits ? DocIdSetIterator.NO_MORE_DOCS : nextSetBit(old + 1);
+          return old;
+        }
+
+        @Override
+        public float score() {
+          return 0.0f;
+        }
+      };
+    }
+
+    @Override
+    public DocIdSetIterator iterator(LeafReaderContext context) {
+      if (size == 0) {
+        return null;
+      }
+      final int base;
+      final int max; // one past the max doc in this segment.
+      if (context.isTopLevel) {
+        base = 0;
+        max = numBits;
+      } else {
+        final int maxDoc = context.reader().maxDoc();
+        if (maxDoc < 1) {
+          return null;
+        }
+        base = context.docBase;
+        max = Math.min(base + maxDoc, numBits);
+        if (max <= base) {
+          return null;
+        }
+      }
+
+      return new DocIdSetIterator() {
+        int adjustedDoc = -1;
+
+        @Override
+        public int docID() {
+          return adjustedDoc;
+        }
+
+        @Override
+        public int nextDoc() {
+          return advance(adjustedDoc + 1);
+        }
+
+        @Override
+        public int advance(int target) {
+          int adjusted = target + base;
+          if (target == NO_MORE_DOCS || adjusted >= max) {
+            return adjustedDoc = NO_MORE_DOCS;
+          }
+          int pos = nextSetBit(adjusted);
+          return adjustedDoc = pos < max ? pos - base : NO_MORE_DOCS;
+        }
+
+        @Override
+        public long cost() {
+          // pro-rated for the segment, like BitDocSet
+          return (long) (size * ((max - base) / (float) numBits));
+        }
+      };
+    }
+
+    @Override
+    public Bits getBits() {
+      return new Bits() {
+        @Override
+        public boolean get(int index) {
+          return exists(index);
+        }
+
+        @Override
+        public int length() {
+          return numBits;
+        }
+      };
+    }
+
+    @Override
+    public void addAllTo(FixedBitSet target) {
+      final long[] targetWords = target.getBits();
+      final int n = Math.min(numWords, targetWords.length);
+      for (int i = 0; i < n; i++) {
+        targetWords[i] |= words.get(i);
+      }
+    }
+
+    @Override
+    public DocSet intersection(DocSet other) {
+      if (other instanceof SortedIntDocSet) {
+        // only probes our bits
+        return other.intersection(this);
+      }
+      final FixedBitSet newbits;
+      if (other instanceof BitDocSet) {
+        newbits = getFixedBitSetClone();
+        newbits.and(((BitDocSet) other).getBits());
+        return new BitDocSet(newbits);
+      }
+      newbits = new FixedBitSet(numBits);
+      int count = 0;
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        if (exists(doc)) {
+          newbits.set(doc);
+          count++;
+        }
+      }
+      return new BitDocSet(newbits, count);
+    }
+
+    @Override
+    public int intersectionSize(DocSet other) {
+      if (other instanceof BitDocSet) {
+        final long[] otherWords = ((BitDocSet) other).getBits().getBits();
+        final int n = Math.min(numWords, otherWords.length);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+          count += Long.bitCount(words.get(i) & otherWords[i]);
+        }
+        return count;
+      } else if (other instanceof SortedIntDocSet) {
+        return other.intersectionSize(this);
+      }
+      int count = 0;
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        if (exists(doc)) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    @Override
+    public boolean intersects(DocSet other) {
+      if (other instanceof BitDocSet) {
+        final long[] otherWords = ((BitDocSet) other).getBits().getBits();
+        final int n = Math.min(numWords, otherWords.length);
+        for (int i = 0; i < n; i++) {
+          if ((words.get(i) & otherWords[i]) != 0) {
+            return true;
+          }
+        }
+        return false;
+      } else if (other instanceof SortedIntDocSet) {
+        return other.intersects(this);
+      }
+      DocIterator iter = other.iterator();
+      while (iter.hasNext()) {
+        int doc = iter.nextDoc();
+        if (exists(doc)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public DocSet andNot(DocSet other) {
+      FixedBitSet newbits = getFixedBitSetClone();
+      BitDocSet.andNot(newbits, other);
+      return new BitDocSet(newbits);
+    }
+
+    @Override
+    public BitDocSet clone() {
+      return new BitDocSet(getFixedBitSetClone(), size);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED;
+    }
+  }
+
+  static final class OfInts extends OffHeapDocSet {
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(OfInts.class)
+            + RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+            + 4 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+    private final IntBuffer docs;
+    private final int size;
+
+    private OfInts(IntBuffer docs) {
+      this.docs = docs;
+      this.size = docs.limit();
+    }
+
+    @Override
+    int length() {
+      return size == 0 ? 0 : docs.get(size - 1) + 1;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    /** Returns the index of the first doc in [from, to) that is not less than target. */
+    private int lowerBound(int from, int to, int target) {
+      int low = from;
+      int high = to - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (docs.get(mid) < target) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+
+    @Override
+    public boolean exists(int doc) {
+      int idx = lowerBound(0, size, doc);
+      return idx < size && docs.get(idx) == doc;
+    }
+
+    @Override
+    public DocIterator iterator() {
+      return new DocIterator() {
+        int pos = 0;
+
+        @Override
+        public boolean hasNext() {
+          return pos < size;
+        }
+
+        @Override
+        public Integer next() {
+          return nextDoc();
+        }
+
+        @Override
+        public int nextDoc() {
+          return docs.get(pos++);
+        }
+
+        @Override
+        public float score() {
+          return 0.0f;
+        }
+      };
+    }
+
+    @Override
+    public DocIdSetIterator iterator(LeafReaderContext context) {
+      if (size == 0 || context.reader().maxDoc() < 1) {
+        return null;
+      }
+      final int base = context.isTopLevel ? 0 : context.docBase;
+      final int startIdx = context.isTopLevel ? 0 : lowerBound(0, size, base);
+      final int limitIdx =
+          context.isTopLevel ? size : lowerBound(startIdx, size, base + context.reader().maxDoc());
+      if (startIdx >= limitIdx) {
+        return null;
+      }
+
+      return new DocIdSetIterator() {
+        int idx = startIdx - 1;
+        int adjustedDoc = -1;
+
+        @Override
+        public int docID() {
+          return adjustedDoc;
+        }
+
+        @Override
+        public int nextDoc() {
+          return adjustedDoc = (++idx >= limitIdx) ? NO_MORE_DOCS : (docs.get(idx) - base);
+        }
+
+        @Override
+        public int advance(int target) {
+          if (++idx >= limitIdx || target == NO_MORE_DOCS) return adjustedDoc = NO_MORE_DOCS;
+          idx = lowerBound(idx, limitIdx, target + base);
+          return adjustedDoc = idx < limitIdx ? docs.get(idx) - base : NO_MORE_DOCS;
+        }
+
+        @Override
+        public long cost() {
+          return (long) limitIdx - startIdx;
+        }
+      };
+    }
+
+    @Override
+    public Bits getBits() {
+      return getFixedBitSet();
+    }
+
+    @Override
+    public void addAllTo(FixedBitSet target) {
+      for (int i = 0; i < size; i++) {
+        target.set(docs.get(i));
+      }
+    }
+
+    @Override
+    public DocSet intersection(DocSet other) {
+      final int[] arr = new int[size];
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        int doc = docs.get(i);
+        if (other.exists(doc)) arr[count++] = doc;
+      }
+      return new SortedIntDocSet(arr, count);
+    }
+
+    @Override
+    public int intersectionSize(DocSet other) {
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        if (other.exists(docs.get(i))) count++;
+      }
+      return count;
+    }
+
+    @Override
+    public boolean intersects(DocSet other) {
+      for (int i = 0; i < size; i++) {
+        if (other.exists(docs.get(i))) return true;
+      }
+      return false;
+    }
+
+    @Override
+    public DocSet andNot(DocSet other) {
+      final int[] arr = new int[size];
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        int doc = docs.get(i);
+        if (!other.exists(doc)) arr[count++] = doc;
+      }
+      return new SortedIntDocSet(arr, count);
+    }
+
+    @Override
+    public SortedIntDocSet clone() {
+      final int[] arr = new int[size];
+      docs.get(0, arr);
+      return new SortedIntDocSet(arr);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED;
+    }
+  }
+}
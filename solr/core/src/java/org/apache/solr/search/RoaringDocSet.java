@@ -0,0 +1,976 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A compressed {@link DocSet} in the style of Roaring bitmaps. The doc id space is split into
+ * blocks of 2<sup>16</sup> docs, and each non-empty block is stored in whichever container is
+ * smallest for its contents: a sorted array of the low 16 bits (sparse blocks), a bitmap (dense
+ * blocks) or a list of runs (clustered blocks). Good for medium density sets, which would
+ * otherwise need a full maxDoc sized {@link BitDocSet}.
+ *
+ * @see DocSetUtil#compress(BitDocSet)
+ * @lucene.experimental
+ */
+public class RoaringDocSet extends DocSet {
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(RoaringDocSet.class);
+
+  static final int BLOCK_SHIFT = 16;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+  static final int BLOCK_WORDS = BLOCK_SIZE >>> 6;
+  /** Above this cardinality a bitmap container is smaller than an array container. */
+  static final int MAX_ARRAY_SIZE = BLOCK_SIZE >>> 4;
+
+  private final int[] keys; // the block (doc >>> 16) of each container, ascending
+  private final Container[] containers;
+  private final int size;
+  private final int length; // the Bits#length(), typically maxDoc
+
+  private RoaringDocSet(int[] keys, Container[] containers, int size, int length) {
+    this.keys = keys;
+    this.containers = containers;
+    this.size = size;
+    this.length = length;
+  }
+
+  /** Creates a set containing the same docs as the bits, which has the given cardinality. */
+  public static RoaringDocSet fromBits(FixedBitSet bits, int size) {
+    final long[] words = bits.getBits();
+    final int numWords = FixedBitSet.bits2words(bits.length());
+    final int numBlocks = (numWords + BLOCK_WORDS - 1) / BLOCK_WORDS;
+    final Builder builder = new Builder(bits.length());
+    final long[] blockWords = new long[BLOCK_WORDS];
+    for (int key = 0; key < numBlocks; key++) {
+      final int from = key * BLOCK_WORDS;
+      final int len = Math.min(BLOCK_WORDS, numWords - from);
+      System.arraycopy(words, from, blockWords, 0, len);
+      Arrays.fill(blockWords, len, BLOCK_WORDS, 0L);
+      builder.addBlock(key, blockWords);
+    }
+    final RoaringDocSet set = builder.build();
+    assert size < 0 || set.size == size;
+    return set;
+  }
+
+  /** Creates a set containing the same docs as another set. */
+  public static RoaringDocSet fromDocSet(DocSet other, int length) {
+    if (other instanceof RoaringDocSet) {
+      return (RoaringDocSet) other;
+    } else if (other instanceof BitDocSet) {
+      return fromBits(((BitDocSet) other).getBits(), other.size());
+    }
+    final Builder builder = new Builder(length);
+    final DocIterator iter = other.iterator();
+    while (iter.hasNext()) {
+      builder.add(iter.nextDoc());
+    }
+    return builder.build();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean exists(int docid) {
+    final int idx = Arrays.binarySearch(keys, docid >>> BLOCK_SHIFT);
+    return idx >= 0 && containers[idx].contains(docid & 0xFFFF);
+  }
+
+  @Override
+  public DocIterator iterator() {
+    final RoaringIterator iter = new RoaringIterator();
+    return new DocIterator() {
+      private int next = iter.nextDoc();
+
+      @Override
+      public boolean hasNext() {
+        return next != DocIdSetIterator.NO_MORE_DOCS;
+      }
+
+      @Override
+      public Integer next() {
+        return nextDoc();
+      }
+
+      @Override
+      public int nextDoc() {
+        final int doc = next;
+        next = iter.nextDoc();
+        return doc;
+      }
+
+      @Override
+      public float score() {
+        return 0.0f;
+      }
+    };
+  }
+
+  @Override
+  public DocIdSetIterator iterator(LeafReaderContext context) {
+    if (size == 0) {
+      return null;
+    }
+    if (context.isTopLevel) {
+      return new RoaringIterator();
+    }
+
+    final int maxDoc = context.reader().maxDoc();
+    if (maxDoc < 1) {
+      // entirely empty segment
+      return null;
+    }
+
+    final int base = context.docBase;
+    final int max = base + maxDoc; // one past the max doc in this segment.
+    final RoaringIterator iter = new RoaringIterator();
+
+    return new DocIdSetIterator() {
+      int adjustedDoc = -1;
+
+      @Override
+      public int docID() {
+        return adjustedDoc;
+      }
+
+      @Override
+      public int nextDoc() {
+        return advance(adjustedDoc + 1);
+      }
+
+      @Override
+      public int advance(int target) {
+        if (target == NO_MORE_DOCS) return adjustedDoc = NO_MORE_DOCS;
+        final int doc = iter.advance(target + base);
+        return adjustedDoc = doc < max ? doc - base : NO_MORE_DOCS;
+      }
+
+      @Override
+      public long cost() {
+        return Math.min(size, maxDoc);
+      }
+    };
+  }
+
+  @Override
+  public DocSet intersection(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      return and((RoaringDocSet) other);
+    } else if (other instanceof BitDocSet) {
+      return andBits(((BitDocSet) other).getBits(), false);
+    }
+    // small sets are better at intersecting with us than vice versa
+    return other.intersection(this);
+  }
+
+  @Override
+  public int intersectionSize(DocSet other) {
+    if (other instanceof RoaringDocSet) {
+      final RoaringDocSet o = (RoaringDocSet) other;
+      int count = 0;
+      for (int i = 0, j = 0; i < keys.length && j < o.keys.length; ) {
+        if (keys[i] < o.keys[j]) {
+          i++;
+        } else if (keys[i] > o.keys[j]) {
+          j++;
+        } else {
+          count += containers[i++].andCardinality(o.containers[j++]);
+        }
+      }
+      return count;
+    } else if (other instanceof BitDocSet) {
+      final long[] otherWords = ((BitDocSet) other).getBits().getBits();
+      int count = 0;
+      for (int i = 0; i < keys.length; i++) {
+        count += containers[i].andCardinality(otherWords, keys[i] * BLOCK_WORDS);
+      }
+      return count;
+    }
+    return other.intersectionSize(this);
+  }
+
+  @Override
+  public boolean intersects(DocSet other) {
+    if (other instanceof RoaringDocSet || other instanceof BitDocSet) {
+      return intersectionSize(other) > 0;
+    }
+    return other.intersects(this);
+  }
+
+  @Override
+  public DocSet union(DocSet other) {
+    if (other instanceof BitDocSet) {
+      // the result is at least as dense as the bitset
+      final FixedBitSet newbits =
+          FixedBitSet.ensureCapacity(((BitDocSet) other).getBits().clone(), length);
+      addAllTo(newbits);
+      return new BitDocSet(newbits);
+    }
+    final RoaringDocSet o = fromDocSet(other, length);
+    final Builder builder = new Builder(Math.max(length, o.length));
+    final long[] words = new long[BLOCK_WORDS];
+    int i = 0, j = 0;
+    while (i < keys.length || j < o.keys.length) {
+      if (j == o.keys.length || (i < keys.length && keys[i] < o.keys[j])) {
+        builder.addContainer(keys[i], containers[i++]);
+      } else if (i == keys.length || keys[i] > o.keys[j]) {
+        builder.addContainer(o.keys[j], o.containers[j++]);
+      } else {
+        Arrays.fill(words, 0L);
+        containers[i].orInto(words, 0);
+        o.containers[j].orInto(words, 0);
+        builder.addBlock(keys[i], words);
+        i++;
+        j++;
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public DocSet andNot(DocSet other) {
+    if (other.size() == 0) {
+      return this;
+    }
+    if (other instanceof BitDocSet) {
+      return andBits(((BitDocSet) other).getBits(), true);
+    }
+    final RoaringDocSet o = fromDocSet(other, length);
+    final Builder builder = new Builder(length);
+    final long[] words = new long[BLOCK_WORDS];
+    for (int i = 0, j = 0; i < keys.length; i++) {
+      while (j < o.keys.length && o.keys[j] < keys[i]) {
+        j++;
+      }
+      if (j < o.keys.length && o.keys[j] == keys[i]) {
+        Arrays.fill(words, 0L);
+        containers[i].orInto(words, 0);
+        o.containers[j].andNotInto(words, 0);
+        builder.addBlock(keys[i], words);
+      } else {
+        builder.addContainer(keys[i], containers[i]);
+      }
+    }
+    return builder.build();
+  }
+
+  private RoaringDocSet and(RoaringDocSet o) {
+    final Builder builder = new Builder(Math.min(length, o.length));
+    final long[] words = new long[BLOCK_WORDS];
+    for (int i = 0, j = 0; i < keys.length && j < o.keys.length; ) {
+      if (keys[i] < o.keys[j]) {
+        i++;
+      } else if (keys[i] > o.keys[j]) {
+        j++;
+      } else {
+        final Container a = containers[i++];
+        final Container b = o.containers[j++];
+        if (a instanceof ArrayContainer) {
+          builder.addContainer(keys[i - 1], ((ArrayContainer) a).filter(b, true));
+        } else if (b instanceof ArrayContainer) {
+          builder.addContainer(keys[i - 1], ((ArrayContainer) b).filter(a, true));
+        } else {
+          Arrays.fill(words, 0L);
+          a.orInto(words, 0);
+          b.andInto(words, 0);
+          builder.addBlock(keys[i - 1], words);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /** Intersects with (or removes, if {@code negate}) the docs of the given bits. */
+  private RoaringDocSet andBits(FixedBitSet bits, boolean negate) {
+    final long[] otherWords = bits.getBits();
+    final Builder builder = new Builder(length);
+    final long[] words = new long[BLOCK_WORDS];
+    for (int i = 0; i < keys.length; i++) {
+      final Container c = containers[i];
+      final int offset = keys[i] * BLOCK_WORDS;
+      if (c instanceof ArrayContainer) {
+        builder.addContainer(
+            keys[i], ((ArrayContainer) c).filter(otherWords, offset, !negate));
+      } else {
+        Arrays.fill(words, 0L);
+        c.orInto(words, 0);
+        final int len = Math.max(0, Math.min(BLOCK_WORDS, otherWords.length - offset));
+        if (negate) {
+          for (int w = 0; w < len; w++) {
+            words[w] &= ~otherWords[offset + w];
+          }
+        } else {
+          for (int w = 0; w < len; w++) {
+            words[w] &= otherWords[offset + w];
+          }
+          Arrays.fill(words, len, BLOCK_WORDS, 0L);
+        }
+        builder.addBlock(keys[i], words);
+      }
+    }
+    return builder.build();
+  }
+
+  /** Clears the docs of this set from the given bits. */
+  void removeFrom(FixedBitSet target) {
+    final long[] words = target.getBits();
+    for (int i = 0; i < keys.length; i++) {
+      containers[i].andNotInto(words, keys[i] * BLOCK_WORDS);
+    }
+  }
+
+  @Override
+  public DocSetQuery makeQuery() {
+    return new DocSetQuery(this);
+  }
+
+  @Override
+  public void addAllTo(FixedBitSet target) {
+    final long[] words = target.getBits();
+    for (int i = 0; i < keys.length; i++) {
+      containers[i].orInto(words, keys[i] * BLOCK_WORDS);
+    }
+  }
+
+  @Override
+  public RoaringDocSet clone() {
+    // containers are immutable and can be shared
+    return new RoaringDocSet(keys.clone(), containers.clone(), size, length);
+  }
+
+  @Override
+  public Bits getBits() {
+    return new Bits() {
+      @Override
+      public boolean get(int index) {
+        return exists(index);
+      }
+
+      @Override
+      public int length() {
+        return length;
+      }
+    };
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSet() {
+    return getFixedBitSetClone();
+  }
+
+  @Override
+  protected FixedBitSet getFixedBitSetClone() {
+    final FixedBitSet bits = new FixedBitSet(length);
+    addAllTo(bits);
+    return bits;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    long bytes =
+        BASE_RAM_BYTES_USED
+            + RamUsageEstimator.sizeOf(keys)
+            + RamUsageEstimator.shallowSizeOf(containers);
+    for (Container container : containers) {
+      bytes += container.ramBytesUsed();
+    }
+    return bytes;
+  }
+
+  @Override
+  public Collection<Accountable> getChildResources() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String toString() {
+    return "RoaringDocSet{"
+        + "size="
+        + size
+        + ",containers="
+        + containers.length
+        + ",ramUsed="
+        + RamUsageEstimator.humanReadableUnits(ramBytesUsed())
+        + '}';
+  }
+
+  /** Iterates over all docs of the set, in order. */
+  private class RoaringIterator extends DocIdSetIterator {
+    private int block = 0;
+    private ContainerCursor cursor = containers.length == 0 ? null : containers[0].cursor();
+    private int doc = -1;
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+      return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+      if (target == NO_MORE_DOCS) {
+        return doc = NO_MORE_DOCS;
+      }
+      final int targetKey = target >>> BLOCK_SHIFT;
+      while (block < keys.length) {
+        if (keys[block] >= targetKey) {
+          final int low = keys[block] == targetKey ? target & 0xFFFF : 0;
+          final int value = cursor.advance(low);
+          if (value >= 0) {
+            return doc = (keys[block] << BLOCK_SHIFT) | value;
+          }
+        }
+        if (++block < keys.length) {
+          cursor = containers[block].cursor();
+        }
+      }
+      return doc = NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+      return size;
+    }
+  }
+
+  /** Builds a set from docs added in increasing order, or from whole blocks. */
+  static class Builder {
+    private final int length;
+    private int[] keys = new int[8];
+    private Container[] containers = new Container[8];
+    private int numContainers;
+    private int size;
+
+    // the block currently being filled by add(int)
+    private final long[] words = new long[BLOCK_WORDS];
+    private int currentKey = -1;
+
+    Builder(int length) {
+      this.length = length;
+    }
+
+    void add(int doc) {
+      final int key = doc >>> BLOCK_SHIFT;
+      if (key != currentKey) {
+        flush();
+        currentKey = key;
+      }
+      words[(doc & 0xFFFF) >>> 6] |= 1L << doc;
+    }
+
+    void addBlock(int key, long[] blockWords) {
+      flush();
+      addContainer(key, Container.fromWords(blockWords));
+    }
+
+    void addContainer(int key, Container container) {
+      if (container == null) {
+        return;
+      }
+      assert numContainers == 0 || keys[numContainers - 1] < key;
+      if (numContainers == keys.length) {
+        keys = ArrayUtil.grow(keys, numContainers + 1);
+        containers = ArrayUtil.growExact(containers, keys.length);
+      }
+      keys[numContainers] = key;
+      containers[numContainers++] = container;
+      size += container.cardinality();
+    }
+
+    private void flush() {
+      if (currentKey >= 0) {
+        addContainer(currentKey, Container.fromWords(words));
+        Arrays.fill(words, 0L);
+        currentKey = -1;
+      }
+    }
+
+    RoaringDocSet build() {
+      flush();
+      return new RoaringDocSet(
+          ArrayUtil.copyOfSubArray(keys, 0, numContainers),
+          ArrayUtil.copyOfSubArray(containers, 0, numContainers),
+          size,
+          length);
+    }
+  }
+
+  /** Iterates over the values of a container. */
+  abstract static class ContainerCursor {
+    /** Returns the first value &gt;= low (low is non-decreasing), or -1 if there is none. */
+    abstract int advance(int low);
+  }
+
+  /** The docs of one block, as 16 bit values. Immutable once built. */
+  abstract static class Container implements Accountable {
+
+    abstract int cardinality();
+
+    abstract boolean contains(int value);
+
+    abstract ContainerCursor cursor();
+
+    /** ORs the values into {@code words} starting at word {@code offset} */
+    abstract void orInto(long[] words, int offset);
+
+    /** Clears the values from {@code words} starting at word {@code offset} */
+    abstract void andNotInto(long[] words, int offset);
+
+    /** Clears all bits that are not in this container from a block's words */
+    void andInto(long[] words, int offset) {
+      final long[] mine = new long[BLOCK_WORDS];
+      orInto(mine, 0);
+      for (int i = 0; i < BLOCK_WORDS && offset + i < words.length; i++) {
+        words[offset + i] &= mine[i];
+      }
+    }
+
+    int andCardinality(Container other) {
+      if (other instanceof ArrayContainer) {
+        return other.andCardinality(this);
+      }
+      final long[] words = new long[BLOCK_WORDS];
+      orInto(words, 0);
+      other.andInto(words, 0);
+      return popCount(words);
+    }
+
+    /** Number of values also set in {@code words} starting at word {@code offset} */
+    int andCardinality(long[] words, int offset) {
+      final long[] mine = new long[BLOCK_WORDS];
+      orInto(mine, 0);
+      int count = 0;
+      for (int i = 0; i < BLOCK_WORDS && offset + i < words.length; i++) {
+        count += Long.bitCount(mine[i] & words[offset + i]);
+      }
+      return count;
+    }
+
+    /** Returns the smallest container holding the bits of the block, or null if empty. */
+    static Container fromWords(long[] words) {
+      int cardinality = 0;
+      int numRuns = 0;
+      long prev = 0L;
+      for (long word : words) {
+        cardinality += Long.bitCount(word);
+        // a run starts at every set bit whose preceding bit is clear
+        numRuns += Long.bitCount(word & ~((word << 1) | (prev >>> 63)));
+        prev = word;
+      }
+      if (cardinality == 0) {
+        return null;
+      }
+      final long runBytes = 4L * numRuns;
+      final long arrayBytes = cardinality <= MAX_ARRAY_SIZE ? 2L * cardinality : Long.MAX_VALUE;
+      final long bitmapBytes = 8L * BLOCK_WORDS;
+      if (runBytes < Math.min(arrayBytes, bitmapBytes)) {
+        return RunContainer.fromWords(words, numRuns, cardinality);
+      } else if (arrayBytes <= bitmapBytes) {
+        return ArrayContainer.fromWords(words, cardinality);
+      } else {
+        return new BitmapContainer(words.clone(), cardinality);
+      }
+    }
+
+    static int popCount(long[] words) {
+      int count = 0;
+      for (long word : words) {
+        count += Long.bitCount(word);
+      }
+      return count;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+      return Collections.emptyList();
+    }
+  }
+
+  /** Sparse blocks: the sorted values. */
+  static final class ArrayContainer extends Container {
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(ArrayContainer.class);
+
+    private final char[] values;
+
+    ArrayContainer(char[] values) {
+      this.values = values;
+    }
+
+    static ArrayContainer fromWords(long[] words, int cardinality) {
+      final char[] values = new char[cardinality];
+      int n = 0;
+      for (int i = 0; i < words.length; i++) {
+        long word = words[i];
+        while (word != 0) {
+          values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new ArrayContainer(values);
+    }
+
+    /** Keeps the values that are ({@code keep}) or are not contained by the other container */
+    Container filter(Container other, boolean keep) {
+      final char[] filtered = new char[values.length];
+      int n = 0;
+      for (char value : values) {
+        if (other.contains(value) == keep) {
+          filtered[n++] = value;
+        }
+      }
+      return n == 0 ? null : new ArrayContainer(ArrayUtil.copyOfSubArray(filtered, 0, n));
+    }
+
+    /** Keeps the values that are ({@code keep}) or are not set in the block's words */
+    Container filter(long[] words, int offset, boolean keep) {
+      final char[] filtered = new char[values.length];
+      int n = 0;
+      for (char value : values) {
+        final int word = offset + (value >>> 6);
+        final boolean set = word < words.length && (words[word] & (1L << value)) != 0;
+        if (set == keep) {
+          filtered[n++] = value;
+        }
+      }
+      return n == 0 ? null : new ArrayContainer(ArrayUtil.copyOfSubArray(filtered, 0, n));
+    }
+
+    @Override
+    int cardinality() {
+      return values.length;
+    }
+
+    @Override
+    boolean contains(int value) {
+      return Arrays.binarySearch(values, (char) value) >= 0;
+    }
+
+    @Override
+    ContainerCursor cursor() {
+      return new ContainerCursor() {
+        int idx = 0;
+
+        @Override
+        int advance(int low) {
+          while (idx < values.length && values[idx] < low) {
+            idx++;
+          }
+          return idx < values.length ? values[idx] : -1;
+        }
+      };
+    }
+
+    @Override
+    void orInto(long[] words, int offset) {
+      for (char value : values) {
+        final int word = offset + (value >>> 6);
+        if (word < words.length) {
+          words[word] |= 1L << value;
+        }
+      }
+    }
+
+    @Override
+    void andNotInto(long[] words, int offset) {
+      for (char value : values) {
+        final int word = offset + (value >>> 6);
+        if (word < words.length) {
+          words[word] &= ~(1L << value);
+        }
+      }
+    }
+
+    @Override
+    int andCardinality(Container other) {
+      int count = 0;
+      for (char value : values) {
+        if (other.contains(value)) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    @Override
+    int andCardinality(long[] words, int offset) {
+      int count = 0;
+      for (char value : values) {
+        final int word = offset + (value >>> 6);
+        if (word < words.length && (words[word] & (1L << value)) != 0) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(values);
+    }
+  }
+
+  /** Dense blocks: one bit per doc. */
+  static final class BitmapContainer extends Container {
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(BitmapContainer.class);
+
+    private final long[] words;
+    private final int cardinality;
+
+    BitmapContainer(long[] words, int cardinality) {
+      assert words.length == BLOCK_WORDS;
+      this.words = words;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int value) {
+      return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    ContainerCursor cursor() {
+      return new ContainerCursor() {
+        @Override
+        int advance(int low) {
+          if (low >= BLOCK_SIZE) {
+            return -1;
+          }
+          int i = low >>> 6;
+          long word = words[i] >>> low; // shifts by low & 63
+          if (word != 0) {
+            return low + Long.numberOfTrailingZeros(word);
+          }
+          while (++i < BLOCK_WORDS) {
+            if (words[i] != 0) {
+              return (i << 6) + Long.numberOfTrailingZeros(words[i]);
+            }
+          }
+          return -1;
+        }
+      };
+    }
+
+    @Override
+    void orInto(long[] target, int offset) {
+      final int len = Math.min(BLOCK_WORDS, target.length - offset);
+      for (int i = 0; i < len; i++) {
+        target[offset + i] |= words[i];
+      }
+    }
+
+    @Override
+    void andNotInto(long[] target, int offset) {
+      final int len = Math.min(BLOCK_WORDS, target.length - offset);
+      for (int i = 0; i < len; i++) {
+        target[offset + i] &= ~words[i];
+      }
+    }
+
+    @Override
+    void andInto(long[] target, int offset) {
+      final int len = Math.min(BLOCK_WORDS, target.length - offset);
+      for (int i = 0; i < len; i++) {
+        target[offset + i] &= words[i];
+      }
+    }
+
+    @Override
+    int andCardinality(long[] target, int offset) {
+      final int len = Math.min(BLOCK_WORDS, target.length - offset);
+      int count = 0;
+      for (int i = 0; i < len; i++) {
+        count += Long.bitCount(target[offset + i] & words[i]);
+      }
+      return count;
+    }
+
+    @Override
+    int andCardinality(Container other) {
+      if (other instanceof BitmapContainer) {
+        return andCardinality(((BitmapContainer) other).words, 0);
+      }
+      return other.andCardinality(words, 0);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(words);
+    }
+  }
+
+  /** Clustered blocks: ranges of consecutive docs. */
+  static final class RunContainer extends Container {
+    private static final long BASE_RAM_BYTES_USED =
+        RamUsageEstimator.shallowSizeOfInstance(RunContainer.class);
+
+    // run i covers the values [starts[i], starts[i] + lengths[i]], both inclusive
+    private final char[] starts;
+    private final char[] lengths;
+    private final int cardinality;
+
+    RunContainer(char[] starts, char[] lengths, int cardinality) {
+      this.starts = starts;
+      this.lengths = lengths;
+      this.cardinality = cardinality;
+    }
+
+    static RunContainer fromWords(long[] words, int numRuns, int cardinality) {
+      final char[] starts = new char[numRuns];
+      final char[] lengths = new char[numRuns];
+      int n = 0;
+      int value = nextSetBit(words, 0);
+      while (value >= 0) {
+        final int end = nextClearBit(words, value); // exclusive
+        starts[n] = (char) value;
+        lengths[n++] = (char) (end - value - 1);
+        value = end < BLOCK_SIZE ? nextSetBit(words, end) : -1;
+      }
+      assert n == numRuns;
+      return new RunContainer(starts, lengths, cardinality);
+    }
+
+    private static int nextSetBit(long[] words, int from) {
+      int i = from >>> 6;
+      long word = words[i] & (-1L << from);
+      while (true) {
+        if (word != 0) {
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        if (++i == words.length) {
+          return -1;
+        }
+        word = words[i];
+      }
+    }
+
+    private static int nextClearBit(long[] words, int from) {
+      int i = from >>> 6;
+      long word = ~words[i] & (-1L << from);
+      while (true) {
+        if (word != 0) {
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+        if (++i == words.length) {
+          return BLOCK_SIZE;
+        }
+        word = ~words[i];
+      }
+    }
+
+    /** Index of the last run starting at or before value, or -1 */
+    private int runIndex(int value) {
+      final int idx = Arrays.binarySearch(starts, (char) value);
+      return idx >= 0 ? idx : -idx - 2;
+    }
+
+    @Override
+    int cardinality() {
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int value) {
+      final int idx = runIndex(value);
+      return idx >= 0 && value <= starts[idx] + lengths[idx];
+    }
+
+    @Override
+    ContainerCursor cursor() {
+      return new ContainerCursor() {
+        int run = 0;
+
+        @Override
+        int advance(int low) {
+          while (run < starts.length) {
+            final int end = starts[run] + lengths[run]; // inclusive
+            if (low <= end) {
+              return Math.max(low, starts[run]);
+            }
+            run++;
+          }
+          return -1;
+        }
+      };
+    }
+
+    @Override
+    void orInto(long[] words, int offset) {
+      for (int i = 0; i < starts.length; i++) {
+        setRange(words, offset, starts[i], starts[i] + lengths[i] + 1, true);
+      }
+    }
+
+    @Override
+    void andNotInto(long[] words, int offset) {
+      for (int i = 0; i < starts.length; i++) {
+        setRange(words, offset, starts[i], starts[i] + lengths[i] + 1, false);
+      }
+    }
+
+    /** Sets or clears the bits [from, to) of the block starting at word offset */
+    private static void setRange(long[] words, int offset, int from, int to, boolean set) {
+      final int startWord = from >>> 6;
+      final int endWord = (to - 1) >>> 6;
+      for (int w = startWord; w <= endWord && offset + w < words.length; w++) {
+        long mask = -1L;
+        if (w == startWord) {
+          mask &= -1L << from;
+        }
+        if (w == endWord) {
+          mask &= -1L >>> -to;
+        }
+        if (set) {
+          words[offset + w] |= mask;
+        } else {
+          words[offset + w] &= ~mask;
+        }
+      }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return BASE_RAM_BYTES_USED
+          + RamUsageEstimator.sizeOf(starts)
+          + RamUsageEstimator.sizeOf(lengths);
+    }
+  }
+}
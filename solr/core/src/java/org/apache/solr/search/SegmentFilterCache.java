@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.Objects;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FieldExistsQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PointInSetQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Accountable;
+import org.apache.solr.core.SolrInfoBean;
+import org.apache.solr.metrics.MetricsMap;
+import org.apache.solr.metrics.SolrMetricProducer;
+import org.apache.solr.metrics.SolrMetricsContext;
+
+/**
+ * A per segment cache of filters, which belongs to the core rather than to a searcher. Its entries
+ * are keyed on the core cache key of each segment and hold the matching documents regardless of
+ * deletions, so they stay valid across commits. When a filter is missing from the {@code
+ * filterCache} of a new searcher, only the segments that are new since the entry was cached have
+ * to be searched, and the top level {@link DocSet} is assembled from the bits of the others.
+ * Entries are dropped when their segment is merged away.
+ *
+ * <p>This only holds for the filters whose matches in a segment depend on that segment alone, which
+ * isn't the case of a {@code {!graph}} or {@code {!join}} query for instance, which traverse the
+ * whole index. The filters are thus only cached when they are made of the term, point and doc
+ * values queries of Lucene, see {@link #isSegmentLocal(Query)}, and are searched as is otherwise.
+ *
+ * <p>Configured with {@code <segmentFilterCache size="..." maxRamMB="..."/>} in the {@code
+ * <query>} section of solrconfig.xml.
+ *
+ * @lucene.experimental
+ */
+public class SegmentFilterCache implements SolrMetricProducer, Accountable {
+
+  // The filters that reach this cache are the ones worth caching, as decided by the filterCache
+  private static final QueryCachingPolicy ALWAYS_CACHE =
+      new QueryCachingPolicy() {
+        @Override
+        public void onUse(Query query) {}
+
+        @Override
+        public boolean shouldCache(Query query) {
+          return true;
+        }
+      };
+
+  private final LRUQueryCache cache;
+  private final int maxSize;
+  private final long maxRamBytes;
+  private SolrMetricsContext solrMetricsContext;
+
+  public SegmentFilterCache(int maxSize, int maxRamMB) {
+    this.maxSize = maxSize;
+    this.maxRamBytes = maxRamMB * 1024L * 1024L;
+    this.cache = new LRUQueryCache(maxSize, maxRamBytes, ctx -> true, Float.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Wraps a filter so that searching it takes the bits of each segment from this cache, and caches
+   * the bits of the segments that miss.
+   */
+  public Query wrap(Query filter) {
+    return new SegmentCachedQuery(filter);
+  }
+
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  public long size() {
+    return cache.getCacheSize();
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return cache.ramBytesUsed();
+  }
+
+  @Override
+  public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
+    solrMetricsContext = parentContext.getChildContext(this);
+    MetricsMap metricsMap =
+        new MetricsMap(
+            map -> {
+              long hits = cache.getHitCount();
+              long lookups = cache.getTotalCount();
+              map.put(SolrCache.LOOKUPS_PARAM, lookups);
+              map.put(SolrCache.HITS_PARAM, hits);
+              map.put(SolrCache.HIT_RATIO_PARAM, lookups == 0 ? 1.0 : (double) hits / lookups);
+              map.put(SolrCache.INSERTS_PARAM, cache.getCacheCount());
+              map.put(SolrCache.EVICTIONS_PARAM, cache.getEvictionCount());
+              map.put(SolrCache.SIZE_PARAM, cache.getCacheSize());
+              map.put(SolrCache.MAX_SIZE_PARAM, maxSize);
+              map.put(SolrCache.RAM_BYTES_USED_PARAM, cache.ramBytesUsed());
+              map.put(SolrCache.MAX_RAM_MB_PARAM, maxRamBytes / 1024L / 1024L);
+            });
+    solrMetricsContext.gauge(metricsMap, true, scope, SolrInfoBean.Category.CACHE.toString());
+  }
+
+  @Override
+  public SolrMetricsContext getSolrMetricsContext() {
+    return solrMetricsContext;
+  }
+
+  @Override
+  public void close() throws IOException {
+    cache.clear();
+    SolrMetricProducer.super.close();
+  }
+
+  /**
+   * Whether the documents matching the given rewritten query in a segment only depend on that
+   * segment, so that its bits stay valid whatever the other segments of the index. Only the term,
+   * multi-term, point and doc values queries of Lucene, and the boolean combinations of them, are
+   * known to be. {@link Weight#isCacheable} isn't enough: it only tells whether the bits of a
+   * segment are valid for the current searcher, and is true for a {@code {!graph}} query.
+   */
+  static boolean isSegmentLocal(Query query) {
+    if (query instanceof TermQuery
+        || query instanceof TermInSetQuery
+        || query instanceof MultiTermQuery
+        || query instanceof PointRangeQuery
+        || query instanceof PointInSetQuery
+        || query instanceof FieldExistsQuery
+        || query instanceof MatchAllDocsQuery
+        || query instanceof MatchNoDocsQuery) {
+      return true;
+    } else if (query instanceof ConstantScoreQuery) {
+      return isSegmentLocal(((ConstantScoreQuery) query).getQuery());
+    } else if (query instanceof BoostQuery) {
+      return isSegmentLocal(((BoostQuery) query).getQuery());
+    } else if (query instanceof IndexOrDocValuesQuery) {
+      return isSegmentLocal(((IndexOrDocValuesQuery) query).getIndexQuery())
+          && isSegmentLocal(((IndexOrDocValuesQuery) query).getRandomAccessQuery());
+    } else if (query instanceof BooleanQuery) {
+      for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+        if (!isSegmentLocal(clause.getQuery())) {
+          return false;
+        }
+      }
+      return true;
+    } else if (query instanceof DisjunctionMaxQuery) {
+      for (Query disjunct : ((DisjunctionMaxQuery) query).getDisjuncts()) {
+        if (!isSegmentLocal(disjunct)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    // the point and doc values queries built by the fields of Lucene's document package, most of
+    // which aren't public
+    return query.getClass().getPackageName().equals(LongPoint.class.getPackageName());
+  }
+
+  /** Puts the weight of the wrapped filter behind the cache when scores aren't needed */
+  private class SegmentCachedQuery extends Query {
+    private final Query filter;
+
+    SegmentCachedQuery(Query filter) {
+      this.filter = filter;
+    }
+
+    @Override
+    public Query rewrite(IndexSearcher searcher) throws IOException {
+      Query rewritten = filter.rewrite(searcher);
+      return rewritten == filter ? this : new SegmentCachedQuery(rewritten);
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost)
+        throws IOException {
+      Weight weight = searcher.createWeight(filter, scoreMode, boost);
+      return scoreMode.needsScores() || !isSegmentLocal(filter)
+          ? weight
+          : cache.doCache(weight, ALWAYS_CACHE);
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+      filter.visit(visitor);
+    }
+
+    @Override
+    public String toString(String field) {
+      return "SegmentCached(" + filter.toString(field) + ")";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return sameClassAs(other) && filter.equals(((SegmentCachedQuery) other).filter);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(classHash(), filter);
+    }
+  }
+}
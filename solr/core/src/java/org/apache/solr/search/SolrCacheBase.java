@@ -18,16 +18,30 @@ package org.apache.solr.search;
 
 import static org.apache.solr.common.params.CommonParams.NAME;
 
+import java.lang.invoke.MethodHandles;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrInfoBean.Category;
 import org.apache.solr.search.SolrCache.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** Common base class of reusable functionality for SolrCaches */
 public abstract class SolrCacheBase {
 
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /** The number of entries that a thread regenerates at a time when warming concurrently */
+  static final int WARMING_CHUNK_SIZE = 64;
+
   protected CacheRegenerator regenerator;
 
   private State state;
@@ -117,6 +131,58 @@ public abstract class SolrCacheBase {
     return autowarm.isAutoWarmingOn();
   }
 
+  /**
+   * Regenerates the entries of an old cache, hottest first, into a new cache. The entries are split
+   * into chunks that are regenerated concurrently when the searcher is being warmed with a pool of
+   * threads. Regeneration stops early once the regenerator asks to, or when warming exceeds {@code
+   * maxWarmingTimeMs}.
+   *
+   * @param value maps the stored value of an old entry to the value passed to the regenerator
+   * @return the number of entries regenerated without an error
+   */
+  protected <K, V, E> long regenerateEntries(
+      SolrIndexSearcher searcher,
+      SolrCache<K, V> newCache,
+      SolrCache<K, V> oldCache,
+      Map<K, E> hottest,
+      Function<E, V> value) {
+    final List<Map.Entry<K, E>> entries = new ArrayList<>(hottest.entrySet());
+    final ExecutorService executor = searcher == null ? null : searcher.getWarmingExecutor();
+    final int chunkSize = executor == null ? entries.size() : WARMING_CHUNK_SIZE;
+    final AtomicBoolean stop = new AtomicBoolean();
+    final LongAdder regenerated = new LongAdder();
+    List<Runnable> chunks = new ArrayList<>();
+    for (int start = 0; start < entries.size(); start += chunkSize) {
+      final List<Map.Entry<K, E>> chunk =
+          entries.subList(start, Math.min(entries.size(), start + chunkSize));
+      chunks.add(
+          () -> {
+            for (Map.Entry<K, E> entry : chunk) {
+              if (stop.get()) {
+                return;
+              }
+              if (searcher != null && searcher.isWarmingTimeExceeded()) {
+                stop.set(true);
+                return;
+              }
+              try {
+                boolean continueRegen =
+                    regenerator.regenerateItem(
+                        searcher, newCache, oldCache, entry.getKey(), value.apply(entry.getValue()));
+                regenerated.increment();
+                if (!continueRegen) {
+                  stop.set(true);
+                }
+              } catch (Exception e) {
+                log.error("Error during auto-warming of key: {}", entry.getKey(), e);
+              }
+            }
+          });
+    }
+    SolrIndexSearcher.runConcurrently(chunks, executor);
+    return regenerated.sum();
+  }
+
   public void setState(State state) {
     this.state = state;
   }
@@ -16,10 +16,14 @@
  */
 package org.apache.solr.search;
 
+import org.apache.lucene.index.LeafReader;
+import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrInfoBean;
+import org.apache.solr.index.SlowCompositeReaderWrapper;
 import org.apache.solr.metrics.MetricsMap;
 import org.apache.solr.metrics.SolrMetricsContext;
 import org.apache.solr.uninverting.UninvertingReader;
+import org.apache.solr.util.RefCounted;
 
 /** A SolrInfoBean that provides introspection of the Solr FieldCache */
 public class SolrFieldCacheBean implements SolrInfoBean {
@@ -28,8 +32,21 @@ public class SolrFieldCacheBean implements SolrInfoBean {
   private boolean disableJmxEntryList =
       Boolean.getBoolean("disableSolrFieldCacheMBeanEntryListJmx");
 
+  private final SolrCore core;
   private SolrMetricsContext solrMetricsContext;
 
+  public SolrFieldCacheBean() {
+    this(null);
+  }
+
+  /**
+   * @param core if not null, the memory of the ordinal maps of its current searcher, which map the
+   *     ordinals of per segment uninverted fields to global ones, is reported too
+   */
+  public SolrFieldCacheBean(SolrCore core) {
+    this.core = core;
+  }
+
   @Override
   public String getName() {
     return this.getClass().getName();
@@ -62,6 +79,7 @@ public class SolrFieldCacheBean implements SolrInfoBean {
                 String[] entries = fieldCacheStats.info;
                 map.put("entries_count", entries.length);
                 map.put("total_size", fieldCacheStats.totalSize);
+                map.put("total_bytes", fieldCacheStats.totalBytes);
                 for (int i = 0; i < entries.length; i++) {
                   final String entry = entries[i];
                   map.put("entry#" + i, entry);
@@ -69,6 +87,21 @@ public class SolrFieldCacheBean implements SolrInfoBean {
               } else {
                 map.put("entries_count", UninvertingReader.getUninvertedStatsSize());
               }
+              if (core != null) {
+                RefCounted<SolrIndexSearcher> searcher = core.getRegisteredSearcher();
+                if (searcher != null) {
+                  try {
+                    LeafReader reader = searcher.get().getSlowAtomicReader();
+                    if (reader instanceof SlowCompositeReaderWrapper) {
+                      map.put(
+                          "ordinalMaps_bytes",
+                          ((SlowCompositeReaderWrapper) reader).getOrdinalMapsRamBytesUsed());
+                    }
+                  } finally {
+                    searcher.decref();
+                  }
+                }
+              }
             });
     solrMetricsContext.gauge(metricsMap, true, "fieldCache", Category.CACHE.toString(), scope);
   }
@@ -32,9 +32,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
@@ -114,6 +117,7 @@ import org.apache.solr.request.SolrRequestInfo;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.facet.FacetCacheKey;
 import org.apache.solr.search.facet.UnInvertedField;
 import org.apache.solr.search.stats.StatsCache;
 import org.apache.solr.search.stats.StatsSource;
@@ -157,17 +161,24 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   private final long openNanoTime = System.nanoTime();
   private Date registerTime;
   private long warmupTime = 0;
+  // only set while warming
+  private volatile ExecutorService warmingExecutor;
+  // the System.nanoTime() autowarming stops at, only meaningful if hasWarmingDeadline
+  private volatile long warmingDeadline;
+  private volatile boolean hasWarmingDeadline;
   private final DirectoryReader reader;
   private final boolean closeReader;
 
   private final int queryResultWindowSize;
   private final int queryResultMaxDocsCached;
   private final boolean useFilterForSortedQuery;
+  private final int maxDocsPerSegmentPartition;
 
   private final boolean cachingEnabled;
   private final SolrCache<Query, DocSet> filterCache;
   private final SolrCache<QueryResultKey, DocList> queryResultCache;
   private final SolrCache<String, UnInvertedField> fieldValueCache;
+  private final SolrCache<FacetCacheKey, Object> facetCache;
   private final LongAdder fullSortCount = new LongAdder();
   private final LongAdder skipSortCount = new LongAdder();
   private final LongAdder liveDocsNaiveCacheHitCount = new LongAdder();
@@ -418,6 +429,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     this.queryResultWindowSize = solrConfig.queryResultWindowSize;
     this.queryResultMaxDocsCached = solrConfig.queryResultMaxDocsCached;
     this.useFilterForSortedQuery = solrConfig.useFilterForSortedQuery;
+    this.maxDocsPerSegmentPartition = solrConfig.maxDocsPerSegmentPartition;
 
     this.docFetcher = new SolrDocumentFetcher(this, solrConfig, enableCache);
 
@@ -437,6 +449,9 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
               ? null
               : solrConfig.queryResultCacheConfig.newInstance();
       if (queryResultCache != null) clist.add(queryResultCache);
+      facetCache =
+          solrConfig.facetCacheConfig == null ? null : solrConfig.facetCacheConfig.newInstance();
+      if (facetCache != null) clist.add(facetCache);
       SolrCache<Integer, Document> documentCache = docFetcher.getDocumentCache();
       if (documentCache != null) clist.add(documentCache);
 
@@ -458,6 +473,7 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       this.filterCache = null;
       this.queryResultCache = null;
       this.fieldValueCache = null;
+      this.facetCache = null;
       this.cacheMap = NO_GENERIC_CACHES;
       this.cacheList = NO_CACHES;
     }
@@ -532,6 +548,14 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return cachingEnabled;
   }
 
+  /**
+   * Segments with more documents than this are split into doc id ranges that are searched
+   * concurrently by multithreaded searches; 0 disables splitting.
+   */
+  int getMaxDocsPerSegmentPartition() {
+    return maxDocsPerSegmentPartition;
+  }
+
   public String getPath() {
     return path;
   }
@@ -583,6 +607,14 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     // register self
     infoRegistry.put(STATISTICS_KEY, this);
     infoRegistry.put(name, this);
+    // before the caches are live, as they may be rebuilt with a RAM limit
+    final CacheRamBudgetManager cacheRamBudgetManager =
+        core.getCoreContainer().getCacheRamBudgetManager();
+    if (cacheRamBudgetManager != null) {
+      for (SolrCache<?, ?> cache : cacheList) {
+        cacheRamBudgetManager.register(core.getName(), cache);
+      }
+    }
     for (SolrCache<?, ?> cache : cacheList) {
       cache.setState(SolrCache.State.LIVE);
       infoRegistry.put(cache.name(), cache);
@@ -634,7 +666,12 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
       core.getDeletionPolicy().releaseCommitPoint(cpg);
     }
 
+    final CacheRamBudgetManager cacheRamBudgetManager =
+        core.getCoreContainer().getCacheRamBudgetManager();
     for (SolrCache<?, ?> cache : cacheList) {
+      if (cacheRamBudgetManager != null) {
+        cacheRamBudgetManager.unregister(core.getName(), cache);
+      }
       try {
         cache.close();
       } catch (Exception e) {
@@ -673,6 +710,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
     return filterCache;
   }
 
+  /** The cache of JSON facet responses, or null if there is none configured */
+  public SolrCache<FacetCacheKey, Object> getFacetCache() {
+    return facetCache;
+  }
+
   //
   // Set default regenerators on filter and query caches if they don't have any
   //
@@ -715,6 +757,11 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
           });
     }
 
+    if (solrConfig.facetCacheConfig != null
+        && solrConfig.facetCacheConfig.getRegenerator() == null) {
+      solrConfig.facetCacheConfig.setRegenerator(new FacetCacheKey.Regenerator());
+    }
+
     if (solrConfig.queryResultCacheConfig != null
         && solrConfig.queryResultCacheConfig.getRegenerator() == null) {
       final int queryResultWindowSize = solrConfig.queryResultWindowSize;
@@ -2476,33 +2523,156 @@ public class SolrIndexSearcher extends IndexSearcher implements Closeable, SolrI
   public void warm(SolrIndexSearcher old) {
     // Make sure this is first! filters can help queryResults execute!
     long warmingStartTime = System.nanoTime();
-    // warm the caches in order...
+    if (core != null) {
+      int maxWarmingTimeMs = core.getSolrConfig().maxWarmingTimeMs;
+      if (maxWarmingTimeMs >= 0) {
+        warmingDeadline = warmingStartTime + TimeUnit.MILLISECONDS.toNanos(maxWarmingTimeMs);
+        hasWarmingDeadline = true;
+      }
+      warmingExecutor = core.getWarmingExecutor();
+    }
+    try {
+      if (warmingExecutor == null) {
+        // warm the caches in order...
+        for (int i = 0; i < cacheList.length; i++) {
+          warmCache(old, i);
+        }
+      } else {
+        // the filterCache goes first, the others can then be warmed concurrently
+        List<Runnable> tasks = new ArrayList<>(cacheList.length);
+        for (int i = 0; i < cacheList.length; i++) {
+          if (cacheList[i] == filterCache) {
+            warmCache(old, i);
+          } else {
+            final int cacheIndex = i;
+            tasks.add(() -> warmCache(old, cacheIndex));
+          }
+        }
+        runConcurrently(tasks, warmingExecutor);
+      }
+    } finally {
+      warmingExecutor = null;
+    }
+    warmupTime =
+        TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+    if (isWarmingTimeExceeded()) {
+      log.warn(
+          "Autowarming of {} stopped after exceeding maxWarmingTimeMs, took {} ms",
+          this,
+          warmupTime);
+    }
+  }
+
+  private void warmCache(SolrIndexSearcher old, int i) {
+    if (log.isDebugEnabled()) {
+      log.debug("autowarming [{}] from [{}]\n\t{}", this, old, old.cacheList[i]);
+    }
+
     ModifiableSolrParams params = new ModifiableSolrParams();
     params.add("warming", "true");
-    for (int i = 0; i < cacheList.length; i++) {
-      if (log.isDebugEnabled()) {
-        log.debug("autowarming [{}] from [{}]\n\t{}", this, old, old.cacheList[i]);
+    final SolrQueryRequest req = SolrQueryRequest.wrapSearcher(SolrIndexSearcher.this, params);
+    final SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      cacheList[i].warm(this, old.cacheList[i]);
+    } finally {
+      try {
+        req.close();
+      } finally {
+        SolrRequestInfo.clearRequestInfo();
       }
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("autowarming result for [{}]\n\t{}", this, cacheList[i]);
+    }
+  }
+
+  /**
+   * The pool that caches may use to warm their entries concurrently while this searcher is being
+   * warmed, or null if warming is single threaded.
+   */
+  ExecutorService getWarmingExecutor() {
+    return warmingExecutor;
+  }
+
+  /**
+   * Whether autowarming has taken longer than {@code maxWarmingTimeMs}, in which case caches stop
+   * regenerating entries, so that the searcher can be registered.
+   */
+  boolean isWarmingTimeExceeded() {
+    return hasWarmingDeadline && System.nanoTime() - warmingDeadline > 0;
+  }
 
-      final SolrQueryRequest req = SolrQueryRequest.wrapSearcher(SolrIndexSearcher.this, params);
-      final SolrQueryResponse rsp = new SolrQueryResponse();
-      SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+  /**
+   * Runs the tasks on the executor and waits for them to complete. The calling thread runs any task
+   * that no pool thread picked up yet, so this can't deadlock when called from the executor itself.
+   * The pool threads run the tasks with the {@link SolrRequestInfo} of the calling thread, which
+   * queries such as cross-core joins and the query limits rely on. Exceptions thrown by the tasks
+   * are logged. If the calling thread is interrupted, the tasks not started yet are skipped, and the
+   * method still returns only once the running ones are done.
+   */
+  static void runConcurrently(List<Runnable> tasks, ExecutorService executor) {
+    final int n = tasks.size();
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(n);
+    Runnable worker =
+        () -> {
+          for (int i = next.getAndIncrement(); i < n; i = next.getAndIncrement()) {
+            try {
+              tasks.get(i).run();
+            } catch (Exception e) {
+              log.error("Error running warming task", e);
+            } finally {
+              done.countDown();
+            }
+          }
+        };
+    if (executor != null) {
+      final SolrRequestInfo requestInfo = SolrRequestInfo.getRequestInfo();
+      Runnable pooledWorker =
+          requestInfo == null
+              ? worker
+              : () -> {
+                // a request info of its own, so that its close hooks run once the worker is done
+                SolrRequestInfo info =
+                    new SolrRequestInfo(requestInfo.getReq(), requestInfo.getRsp());
+                info.setResponseBuilder(requestInfo.getResponseBuilder());
+                SolrRequestInfo.setRequestInfo(info);
+                try {
+                  worker.run();
+                } finally {
+                  SolrRequestInfo.clearRequestInfo();
+                }
+              };
       try {
-        cacheList[i].warm(this, old.cacheList[i]);
-      } finally {
-        try {
-          req.close();
-        } finally {
-          SolrRequestInfo.clearRequestInfo();
+        for (int i = 1; i < n; i++) {
+          executor.execute(pooledWorker);
         }
+      } catch (RejectedExecutionException e) {
+        // shutting down, the calling thread does the rest
       }
-
-      if (log.isDebugEnabled()) {
-        log.debug("autowarming result for [{}]\n\t{}", this, cacheList[i]);
+    }
+    worker.run();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        done.await();
+        break;
+      } catch (InterruptedException e) {
+        if (!interrupted) {
+          interrupted = true;
+          // no task is started anymore, but the running ones are waited for, so that nothing is
+          // still warming the new searcher once this returns
+          for (int i = next.getAndSet(n); i < n; i++) {
+            done.countDown();
+          }
+        }
       }
     }
-    warmupTime =
-        TimeUnit.MILLISECONDS.convert(System.nanoTime() - warmingStartTime, TimeUnit.NANOSECONDS);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
   }
 
   /** return the named generic cache */
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.ShardParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.search.CacheRegenerator;
+import org.apache.solr.search.DocSet;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+
+/**
+ * A key of the {@code facetCache} of a searcher. The facets of a request only depend on the docs
+ * matching its query and filters, on its facet commands, and for a shard request on the
+ * refinement info sent with it. The request params are part of the key as well, as the facet
+ * commands may refer to them, except for the ones that are known not to change the facets.
+ */
+public final class FacetCacheKey {
+  /** Request params that don't change the facets of a request */
+  private static final Set<String> IGNORED_PARAMS =
+      Set.of(
+          CommonParams.START,
+          CommonParams.ROWS,
+          CommonParams.FL,
+          CommonParams.WT,
+          CommonParams.VERSION,
+          CommonParams.NOW,
+          CommonParams.OMIT_HEADER,
+          CommonParams.TIME_ALLOWED,
+          CommonParams.REQUEST_ID,
+          ShardParams.IDS,
+          ShardParams.SHARD_URL,
+          ShardParams.SHARDS_PURPOSE);
+
+  final Query query;
+  final List<Query> filters;
+  final Map<String, Object> facetCommands;
+  final Map<String, Object> facetInfo; // null unless this is a shard request
+  final boolean isShard;
+  final Map<String, List<String>> params;
+  private final int hc;
+
+  FacetCacheKey(
+      Query query,
+      List<Query> filters,
+      Map<String, Object> facetCommands,
+      Map<String, Object> facetInfo,
+      boolean isShard,
+      SolrParams params) {
+    this.query = query;
+    this.filters = filters == null ? List.of() : List.copyOf(filters);
+    this.facetCommands = facetCommands;
+    this.facetInfo = facetInfo;
+    this.isShard = isShard;
+    this.params = new TreeMap<>();
+    for (Iterator<String> it = params.getParameterNamesIterator(); it.hasNext(); ) {
+      String name = it.next();
+      if (!IGNORED_PARAMS.contains(name)) {
+        this.params.put(name, Arrays.asList(params.getParams(name)));
+      }
+    }
+    this.hc =
+        Objects.hash(
+            this.query, this.filters, this.facetCommands, this.facetInfo, isShard, this.params);
+  }
+
+  /**
+   * Whether the facets of the given commands can be cached: not when they use the time of the
+   * request in date math, as their results then change without any commit. The commands may refer
+   * to request params, with {@code {param:...}} filters or {@code $} local params, so the values of
+   * the params of the key are checked too.
+   */
+  static boolean isCacheable(Map<String, Object> facetCommands, SolrParams params) {
+    if (facetCommands.toString().contains(CommonParams.NOW)) {
+      return false;
+    }
+    for (Iterator<String> it = params.getParameterNamesIterator(); it.hasNext(); ) {
+      String name = it.next();
+      if (IGNORED_PARAMS.contains(name)) {
+        continue;
+      }
+      for (String value : params.getParams(name)) {
+        if (value != null && value.contains(CommonParams.NOW)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return hc;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!(o instanceof FacetCacheKey other)) return false;
+    return hc == other.hc
+        && isShard == other.isShard
+        && Objects.equals(query, other.query)
+        && filters.equals(other.filters)
+        && facetCommands.equals(other.facetCommands)
+        && Objects.equals(facetInfo, other.facetInfo)
+        && params.equals(other.params);
+  }
+
+  @Override
+  public String toString() {
+    return "FacetCacheKey(q=" + query + ",fq=" + filters + ",facet=" + facetCommands + ")";
+  }
+
+  /** Computes the facets of this key on the given searcher */
+  Object computeFacets(SolrIndexSearcher searcher) throws IOException {
+    ModifiableSolrParams reqParams = new ModifiableSolrParams();
+    for (Map.Entry<String, List<String>> param : params.entrySet()) {
+      reqParams.set(param.getKey(), param.getValue().toArray(new String[0]));
+    }
+    SolrQueryRequest req = SolrQueryRequest.wrapSearcher(searcher, reqParams);
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, new SolrQueryResponse()));
+    try {
+      List<Query> queries = new ArrayList<>(filters.size() + 1);
+      if (query != null) {
+        queries.add(query);
+      }
+      queries.addAll(filters);
+      DocSet base = searcher.getDocSet(queries);
+      FacetRequest facetRequest = FacetRequest.parse(req, facetCommands);
+      return facetRequest.process(FacetModule.newContext(req, base, true, isShard, facetInfo));
+    } finally {
+      try {
+        req.close();
+      } finally {
+        SolrRequestInfo.clearRequestInfo();
+      }
+    }
+  }
+
+  /** Autowarms a facetCache by computing the facets of the keys of the old cache */
+  public static class Regenerator implements CacheRegenerator {
+    @Override
+    public <K, V> boolean regenerateItem(
+        SolrIndexSearcher newSearcher,
+        SolrCache<K, V> newCache,
+        SolrCache<K, V> oldCache,
+        K oldKey,
+        V oldVal)
+        throws IOException {
+      @SuppressWarnings("unchecked")
+      V facets = (V) ((FacetCacheKey) oldKey).computeFacets(newSearcher);
+      if (facets != null) {
+        newCache.put(oldKey, facets);
+      }
+      return true;
+    }
+  }
+}
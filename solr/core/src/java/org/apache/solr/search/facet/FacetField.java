@@ -20,11 +20,22 @@ import java.util.HashMap;
 import java.util.Map;
 import org.apache.lucene.index.DocValuesType;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.EnvUtils;
 import org.apache.solr.schema.FieldType;
 import org.apache.solr.schema.SchemaField;
 
 public class FacetField extends FacetRequestSorted {
   public static final int DEFAULT_FACET_LIMIT = 10;
+
+  /**
+   * If true, the uif method uninverts multi-valued fields without docValues per segment rather than
+   * for the whole index. The segments are uninverted by the {@link
+   * org.apache.solr.uninverting.UninvertingReader}, cached on their core key, and their ordinals are
+   * mapped to global ones through an {@link org.apache.lucene.index.OrdinalMap}. After a commit only
+   * the new segments are uninverted, instead of the whole field. Non-final for tests to vary.
+   */
+  static boolean UIF_PER_SEGMENT = EnvUtils.getPropertyAsBool("solr.facet.uif.perSegment", false);
+
   String field;
   boolean missing;
   // show cumulative stats across all buckets (this can be different than non-bucketed stats across
@@ -39,6 +50,9 @@ public class FacetField extends FacetRequestSorted {
   // only.
   Boolean perSeg;
 
+  // the number of slots of the sketch of method:approx, 0 means "default"
+  int sketchSize;
+
   {
     // defaults for FacetRequestSorted
     mincount = 1;
@@ -52,6 +66,7 @@ public class FacetField extends FacetRequestSorted {
     ENUM, // TermsEnum then intersect DocSet (stream-able)
     STREAM, // presently equivalent to ENUM
     SMART,
+    APPROX, // DocValues, count the top terms into a fixed size sketch
     ;
 
     public static FacetMethod fromString(String method) {
@@ -69,6 +84,8 @@ public class FacetField extends FacetRequestSorted {
           return STREAM; // TODO replace with enum?
         case "smart":
           return SMART;
+        case "approx":
+          return APPROX;
         default:
           throw new SolrException(
               SolrException.ErrorCode.BAD_REQUEST, "Unknown FacetField method " + method);
@@ -87,7 +104,11 @@ public class FacetField extends FacetRequestSorted {
     if (fcontext.facetInfo != null) {
       // refinement... we will end up either skipping the entire facet, or doing calculating only
       // specific facet buckets
-      if (multiToken && !sf.hasDocValues() && method != FacetMethod.DV && sf.isUninvertible()) {
+      if (multiToken
+          && !sf.hasDocValues()
+          && method != FacetMethod.DV
+          && sf.isUninvertible()
+          && !uninvertPerSegment(ft)) {
         // Match the access method from the first phase.
         // It won't always matter, but does currently for an all-values bucket
         return new FacetFieldProcessorByArrayUIF(fcontext, this, sf);
@@ -135,6 +156,13 @@ public class FacetField extends FacetRequestSorted {
       return new FacetFieldProcessorByEnumTermsStream(fcontext, this, sf);
     }
 
+    if (method == FacetMethod.APPROX
+        && !isNumber
+        && (sf.hasDocValues() || sf.isUninvertible())
+        && isApproximate()) {
+      return new FacetFieldProcessorBySketch(fcontext, this, sf);
+    }
+
     // TODO if method=UIF and not single-valued numerics then simply choose that now? TODO add
     // FieldType.getDocValuesType()
 
@@ -159,8 +187,11 @@ public class FacetField extends FacetRequestSorted {
       return new FacetFieldProcessorByHashDV(fcontext, this, sf);
     }
 
-    if (sf.hasDocValues() || method == FacetMethod.DV || !sf.isUninvertible()) {
-      // single and multi-valued string docValues
+    if (sf.hasDocValues()
+        || method == FacetMethod.DV
+        || !sf.isUninvertible()
+        || uninvertPerSegment(ft)) {
+      // single and multi-valued string docValues, or uninverted per segment
       return new FacetFieldProcessorByArrayDV(fcontext, this, sf);
     }
 
@@ -168,11 +199,36 @@ public class FacetField extends FacetRequestSorted {
     return new FacetFieldProcessorByArrayUIF(fcontext, this, sf);
   }
 
+  // numeric terms are left to the top level UnInvertedField, which skips their lower precisions
+  private static boolean uninvertPerSegment(FieldType ft) {
+    return UIF_PER_SEGMENT && ft.getNumberType() == null;
+  }
+
   private static DocValuesType dvType(FacetContext fcontext, String field) {
     var fieldInfo = fcontext.searcher.getFieldInfos().fieldInfo(field);
     return fieldInfo == null ? null : fieldInfo.getDocValuesType();
   }
 
+  /**
+   * Whether {@code method:approx} applies to this request, which is the case for the top buckets by
+   * count of string fields. Other requests fall back to an exact method.
+   */
+  boolean isApproximate() {
+    return method == FacetMethod.APPROX
+        && FacetSort.COUNT_DESC.equals(sort)
+        && prelim_sort == null
+        && limit > 0
+        && mincount > 0
+        && prefix == null
+        && !(allBuckets || numBuckets);
+  }
+
+  @Override
+  public RefineMethod getRefineMethod() {
+    // the counts of approximate buckets are upper bounds, which refining wouldn't make exact
+    return isApproximate() ? RefineMethod.NONE : super.getRefineMethod();
+  }
+
   @Override
   public FacetMerger createFacetMerger(Object prototype) {
     return new FacetFieldMerger(this);
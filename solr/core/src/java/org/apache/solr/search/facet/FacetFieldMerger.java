@@ -37,6 +37,10 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
   // the number of buckets in the bucket lists returned from all of the shards
   int numReturnedBuckets;
 
+  // for method:approx, the bound each shard returned for the counts of the terms it didn't return
+  long[] shardMaxErrors;
+  boolean maxErrorsApplied;
+
   public FacetFieldMerger(FacetField freq) {
     super(freq);
   }
@@ -77,6 +81,14 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
     numReturnedBuckets += bucketList.size();
     mergeBucketList(bucketList, mcontext);
 
+    Object maxError = facetResult.get("maxError");
+    if (maxError != null) {
+      if (shardMaxErrors == null) {
+        shardMaxErrors = new long[mcontext.numShards];
+      }
+      shardMaxErrors[mcontext.shardNum] = ((Number) maxError).longValue();
+    }
+
     if (freq.numBuckets) {
       Object nb = facetResult.get("numBuckets");
       if (nb != null) {
@@ -96,6 +108,10 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
       result.add("numBuckets", ((Number) numBuckets.getMergedResult()).longValue());
     }
 
+    if (shardMaxErrors != null) {
+      result.add("maxError", applyMaxErrors());
+    }
+
     sortBuckets(freq.sort);
 
     long first = freq.offset;
@@ -111,7 +127,7 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
 
     // TODO: change effective offsets + limits at shards...
 
-    boolean refine = freq.refine != null && freq.refine != FacetRequest.RefineMethod.NONE;
+    boolean refine = freq.doRefine();
 
     int off = (int) freq.offset;
     int lim = freq.limit >= 0 ? (int) freq.limit : Integer.MAX_VALUE;
@@ -146,6 +162,28 @@ public class FacetFieldMerger extends FacetRequestSortedMerger<FacetField> {
     return result;
   }
 
+  /**
+   * Counts the terms a shard didn't return with the bound it returned for them, so that the counts
+   * of approximate buckets stay upper bounds. Returns the bound for the merged counts.
+   */
+  private long applyMaxErrors() {
+    long maxError = 0;
+    for (long shardMaxError : shardMaxErrors) {
+      maxError += shardMaxError;
+    }
+    if (!maxErrorsApplied) {
+      maxErrorsApplied = true;
+      for (FacetBucket bucket : buckets.values()) {
+        for (int shard = 0; shard < shardMaxErrors.length; shard++) {
+          if (!mcontext.getShardFlag(bucket.bucketNumber, shard)) {
+            bucket.count += shardMaxErrors[shard];
+          }
+        }
+      }
+    }
+    return maxError;
+  }
+
   @Override
   public void finish(Context mcontext) {
     // TODO: check refine of subs?
@@ -17,8 +17,11 @@
 package org.apache.solr.search.facet;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiDocValues;
@@ -30,7 +33,9 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.UnicodeUtil;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.EnvUtils;
 import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.facet.SlotAcc.CountSlotAcc;
 import org.apache.solr.search.facet.SlotAcc.SweepCountAccStruct;
 import org.apache.solr.search.facet.SlotAcc.SweepingCountSlotAcc;
@@ -42,6 +47,19 @@ import org.apache.solr.uninverting.FieldCacheImpl;
 class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
   static boolean unwrap_singleValued_multiDv = true; // only set to false for test coverage
 
+  /**
+   * Whether facets that only count may count the segments of their domain concurrently when the
+   * searcher has an executor (i.e. {@code indexSearcherExecutorThreads} is configured in solr.xml).
+   */
+  static boolean PARALLEL_COUNTS = EnvUtils.getPropertyAsBool("solr.facet.multiThreaded", true);
+
+  /** Domains smaller than this are counted by the requesting thread alone */
+  static int PARALLEL_COUNTS_MIN_DOMAIN =
+      EnvUtils.getPropertyAsInteger("solr.facet.multiThreaded.minDomainSize", 100000);
+
+  /** The number of segments counted concurrently so far, for tests */
+  static final LongAdder PARALLEL_COUNTED_SEGMENTS = new LongAdder();
+
   boolean multiValuedField;
   SortedSetDocValues si; // only used for term lookups (for both single and multi-valued)
   OrdinalMap ordinalMap = null; // maps per-segment ords to global ords
@@ -130,8 +148,18 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
     if (freq.perSeg != null)
       accumSeg = canDoPerSeg && freq.perSeg; // internal - override perSeg heuristic
 
-    final int maxSize = others.size() + 1; // others + base
     final List<LeafReaderContext> leaves = fcontext.searcher.getIndexReader().leaves();
+    if (canDoPerSeg
+        && others.isEmpty()
+        && PARALLEL_COUNTS
+        && domainSize >= PARALLEL_COUNTS_MIN_DOMAIN
+        && leaves.size() > 1
+        && fcontext.searcher.getExecutor() != null) {
+      collectCountsConcurrently(leaves, base);
+      return;
+    }
+
+    final int maxSize = others.size() + 1; // others + base
     final DocIdSetIterator[] subIterators = new DocIdSetIterator[maxSize];
     final CountSlotAcc[] activeCountAccs = new CountSlotAcc[maxSize];
 
@@ -210,6 +238,90 @@ class FacetFieldProcessorByArrayDV extends FacetFieldProcessorByArray {
     return si.lookupOrd(ord);
   }
 
+  /**
+   * Counts each segment into an array of its own ords on the executor of the searcher, and adds
+   * the counts to the global slots through the {@link OrdinalMap} once a segment is done. Only
+   * valid when counting the full range of a single domain, i.e. sorting by count or index. The
+   * stats of the returned buckets are computed afterwards either way.
+   */
+  private void collectCountsConcurrently(List<LeafReaderContext> leaves, SweepCountAccStruct base)
+      throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>(leaves.size());
+    for (LeafReaderContext subCtx : leaves) {
+      tasks.add(
+          () -> {
+            countSegment(subCtx, base.docSet, base.countAcc);
+            PARALLEL_COUNTED_SEGMENTS.increment();
+            return null;
+          });
+    }
+    fcontext.searcher.getTaskExecutor().invokeAll(tasks);
+  }
+
+  private void countSegment(LeafReaderContext subCtx, DocSet docs, CountSlotAcc countAcc)
+      throws IOException {
+    final DocIdSetIterator disi = docs.iterator(subCtx);
+    if (disi == null) {
+      return;
+    }
+    SortedDocValues singleDv;
+    SortedSetDocValues multiDv = null;
+    if (multiValuedField) {
+      multiDv = subCtx.reader().getSortedSetDocValues(sf.getName());
+      if (multiDv == null || multiDv.getValueCount() < 1) {
+        return;
+      }
+      singleDv = unwrap_singleValued_multiDv ? DocValues.unwrapSingleton(multiDv) : null;
+    } else {
+      singleDv = subCtx.reader().getSortedDocValues(sf.getName());
+      if (singleDv == null || singleDv.getValueCount() < 1) {
+        return;
+      }
+    }
+
+    // calculate segment-local counts, without any shared state
+    final int[] counts;
+    int doc;
+    if (singleDv instanceof FieldCacheImpl.SortedDocValuesImpl.Iter fc) {
+      counts = new int[singleDv.getValueCount()];
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        final int segOrd = fc.getOrd(doc);
+        if (segOrd >= 0) {
+          counts[segOrd]++;
+        }
+      }
+    } else if (singleDv != null) {
+      counts = new int[singleDv.getValueCount()];
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (singleDv.advanceExact(doc)) {
+          counts[singleDv.ordValue()]++;
+        }
+      }
+    } else {
+      counts = new int[(int) multiDv.getValueCount()];
+      while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+        if (multiDv.advanceExact(doc)) {
+          for (; ; ) {
+            int segOrd = (int) multiDv.nextOrd();
+            if (segOrd < 0) break;
+            counts[segOrd]++;
+          }
+        }
+      }
+    }
+
+    // convert segment-local counts to global counts
+    final LongValues toGlobal = ordinalMap == null ? null : ordinalMap.getGlobalOrds(subCtx.ord);
+    synchronized (countAcc) {
+      for (int segOrd = 0; segOrd < counts.length; segOrd++) {
+        final int inc = counts[segOrd];
+        if (inc > 0) {
+          countAcc.incrementCount(toGlobal == null ? segOrd : (int) toGlobal.get(segOrd), inc);
+        }
+      }
+    }
+  }
+
   private void collectPerSeg(SortedDocValues singleDv, SweepDISI disi, LongValues toGlobal)
       throws IOException {
     int segMax = singleDv.getValueCount();
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntFunction;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.OrdinalMap;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.facet.SlotAcc.SlotContext;
+
+/**
+ * Counts the terms of a string field into a space saving sketch (Metwally et al.) with a fixed
+ * number of slots, so that the memory used by a request doesn't grow with the number of unique
+ * terms. Used for {@code method:approx} terms facets sorted by {@code count desc}.
+ *
+ * <p>Each returned count is an upper bound of the real count, which it exceeds by at most the
+ * {@code maxError} of the facet. Shards return the same bound for the terms they didn't return,
+ * which {@link FacetFieldMerger} adds to the buckets that a shard is missing.
+ */
+class FacetFieldProcessorBySketch extends FacetFieldProcessor {
+  static final int DEFAULT_SKETCH_SIZE = 1024;
+  static final int MAX_SKETCH_SIZE = 1 << 20;
+
+  /** The top terms by count, kept in a fixed number of slots */
+  static class SpaceSaving {
+    final long[] keys;
+    final long[] counts;
+    // slots ordered as a min heap on their counts, and the position of each slot in it
+    private final int[] heap;
+    private final int[] heapPos;
+    private final LongIntHashMap slotsByKey;
+    private int size;
+
+    SpaceSaving(int capacity) {
+      keys = new long[capacity];
+      counts = new long[capacity];
+      heap = new int[capacity];
+      heapPos = new int[capacity];
+      slotsByKey = new LongIntHashMap(capacity);
+    }
+
+    int size() {
+      return size;
+    }
+
+    void add(long key) {
+      int slot = slotsByKey.getOrDefault(key, -1);
+      if (slot >= 0) {
+        counts[slot]++;
+        siftDown(heapPos[slot]);
+      } else if (size < keys.length) {
+        slot = size++;
+        keys[slot] = key;
+        counts[slot] = 1;
+        slotsByKey.put(key, slot);
+        heap[slot] = slot;
+        heapPos[slot] = slot;
+        siftUp(slot);
+      } else {
+        // the new key takes over the slot with the smallest count, which it may have had as well
+        slot = heap[0];
+        slotsByKey.remove(keys[slot]);
+        keys[slot] = key;
+        counts[slot]++;
+        slotsByKey.put(key, slot);
+        siftDown(0);
+      }
+    }
+
+    /**
+     * The most that a count may exceed the real one by, and that a term that isn't in the sketch
+     * may have: the smallest count once all slots are taken.
+     */
+    long maxError() {
+      return size < keys.length ? 0 : counts[heap[0]];
+    }
+
+    private void siftUp(int pos) {
+      final int slot = heap[pos];
+      while (pos > 0) {
+        int parent = (pos - 1) >>> 1;
+        if (counts[heap[parent]] <= counts[slot]) {
+          break;
+        }
+        move(heap[parent], pos);
+        pos = parent;
+      }
+      move(slot, pos);
+    }
+
+    private void siftDown(int pos) {
+      final int slot = heap[pos];
+      for (; ; ) {
+        int child = (pos << 1) + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+          child++;
+        }
+        if (counts[slot] <= counts[heap[child]]) {
+          break;
+        }
+        move(heap[child], pos);
+        pos = child;
+      }
+      move(slot, pos);
+    }
+
+    private void move(int slot, int pos) {
+      heap[pos] = slot;
+      heapPos[slot] = pos;
+    }
+  }
+
+  boolean multiValuedField;
+  SortedSetDocValues si; // only used for term lookups (for both single and multi-valued)
+  OrdinalMap ordinalMap = null; // maps per-segment ords to global ords
+  SpaceSaving sketch;
+
+  FacetFieldProcessorBySketch(FacetContext fcontext, FacetField freq, SchemaField sf) {
+    super(fcontext, freq, sf);
+    multiValuedField = sf.multiValued() || sf.getType().multiValuedFieldCache();
+  }
+
+  /** The number of slots of the sketch for a request */
+  static int sketchSize(FacetField freq) {
+    if (freq.sketchSize > 0) {
+      return Math.min(freq.sketchSize, MAX_SKETCH_SIZE);
+    }
+    long topN = freq.offset + freq.limit;
+    return (int) Math.min(Math.max(DEFAULT_SKETCH_SIZE, topN * 8), MAX_SKETCH_SIZE);
+  }
+
+  @Override
+  public void process() throws IOException {
+    super.process();
+    response = calcFacets();
+    sketch = null; // gc
+  }
+
+  @SuppressWarnings({"rawtypes"})
+  private SimpleOrderedMap<Object> calcFacets() throws IOException {
+    if (multiValuedField) {
+      si = FieldUtil.getSortedSetDocValues(fcontext.qcontext, sf, null);
+      if (si instanceof MultiDocValues.MultiSortedSetDocValues) {
+        ordinalMap = ((MultiDocValues.MultiSortedSetDocValues) si).mapping;
+      }
+    } else {
+      SortedDocValues single = FieldUtil.getSortedDocValues(fcontext.qcontext, sf, null);
+      si = DocValues.singleton(single);
+      if (single instanceof MultiDocValues.MultiSortedDocValues) {
+        ordinalMap = ((MultiDocValues.MultiSortedDocValues) single).mapping;
+      }
+    }
+    // no point in more slots than terms
+    sketch = new SpaceSaving((int) Math.max(1, Math.min(sketchSize(freq), si.getValueCount())));
+
+    createCollectAcc();
+    assert collectAcc == null && allBucketsAcc == null; // all stats are deferred
+
+    collectDocs();
+
+    SimpleOrderedMap<Object> res =
+        super.findTopSlots(
+            sketch.size(),
+            sketch.size(),
+            slotNum -> { // getBucketValFromSlotNum
+              try {
+                return (Comparable) sf.getType().toObject(sf, lookupOrd(sketch.keys[slotNum]));
+              } catch (IOException e) {
+                throw new RuntimeException(e);
+              }
+            },
+            Object::toString);
+
+    long maxError = sketch.maxError();
+    @SuppressWarnings("unchecked")
+    List<SimpleOrderedMap<?>> buckets = (List<SimpleOrderedMap<?>>) res.get("buckets");
+    if (fcontext.isShard() && buckets.size() < sketch.size()) {
+      // the terms this shard didn't return have at most the count of the last one it did
+      if (!buckets.isEmpty()) {
+        Number lastCount = (Number) buckets.get(buckets.size() - 1).get("count");
+        maxError = Math.max(maxError, lastCount.longValue());
+      }
+    }
+    res.add("maxError", maxError);
+    return res;
+  }
+
+  private BytesRef lookupOrd(long globalOrd) throws IOException {
+    return si.lookupOrd(globalOrd);
+  }
+
+  private void createCollectAcc() throws IOException {
+    indexOrderAcc =
+        new SlotAcc(fcontext) {
+          @Override
+          public void collect(int doc, int slot, IntFunction<SlotContext> slotContext) {}
+
+          @Override
+          public int compare(int slotA, int slotB) {
+            return Long.compare(sketch.keys[slotA], sketch.keys[slotB]);
+          }
+
+          @Override
+          public Object getValue(int slotNum) {
+            return null;
+          }
+
+          @Override
+          public void reset() {}
+
+          @Override
+          public void resize(Resizer resizer) {}
+        };
+
+    countAcc =
+        new SlotAcc.CountSlotAcc(fcontext) {
+          @Override
+          public void incrementCount(int slot, long count) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public long getCount(int slot) {
+            return sketch.counts[slot];
+          }
+
+          @Override
+          public Object getValue(int slotNum) {
+            return getCount(slotNum);
+          }
+
+          @Override
+          public void reset() {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public void collect(int doc, int slot, IntFunction<SlotContext> slotContext) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public int compare(int slotA, int slotB) {
+            return Long.compare(sketch.counts[slotA], sketch.counts[slotB]);
+          }
+
+          @Override
+          public void resize(Resizer resizer) {
+            throw new UnsupportedOperationException();
+          }
+        };
+
+    // we set the countAcc & indexAcc first so generic ones won't be created for us.
+    super.createCollectAcc(fcontext.base.size(), sketch.keys.length);
+  }
+
+  private void collectDocs() throws IOException {
+    final List<LeafReaderContext> leaves = fcontext.searcher.getIndexReader().leaves();
+    for (int subIdx = 0; subIdx < leaves.size(); subIdx++) {
+      LeafReaderContext subCtx = leaves.get(subIdx);
+      DocIdSetIterator disi = fcontext.base.iterator(subCtx);
+      if (disi == null) {
+        continue;
+      }
+      LongValues toGlobal =
+          ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(subIdx);
+
+      int doc;
+      if (multiValuedField) {
+        SortedSetDocValues multiDv = subCtx.reader().getSortedSetDocValues(sf.getName());
+        if (multiDv == null) {
+          continue;
+        }
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          if (multiDv.advanceExact(doc)) {
+            for (; ; ) {
+              long segOrd = multiDv.nextOrd();
+              if (segOrd < 0) break;
+              sketch.add(toGlobal.get(segOrd));
+            }
+          }
+        }
+      } else {
+        SortedDocValues singleDv = subCtx.reader().getSortedDocValues(sf.getName());
+        if (singleDv == null) {
+          continue;
+        }
+        while ((doc = disi.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+          if (singleDv.advanceExact(doc)) {
+            sketch.add(toGlobal.get(singleDv.ordValue()));
+          }
+        }
+      }
+    }
+  }
+}
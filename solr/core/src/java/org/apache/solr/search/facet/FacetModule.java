@@ -20,8 +20,10 @@ import static org.apache.solr.common.util.Utils.fromJSONString;
 import static org.apache.solr.response.SolrQueryResponse.haveCompleteResults;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import org.apache.solr.client.solrj.SolrResponse;
@@ -32,13 +34,17 @@ import org.apache.solr.common.params.ModifiableSolrParams;
 import org.apache.solr.common.params.ShardParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.CollectionUtil;
+import org.apache.solr.common.util.EnvUtils;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.handler.component.ResponseBuilder;
 import org.apache.solr.handler.component.SearchComponent;
 import org.apache.solr.handler.component.ShardRequest;
 import org.apache.solr.handler.component.ShardResponse;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.DocSet;
 import org.apache.solr.search.QueryContext;
+import org.apache.solr.search.SolrCache;
 import org.noggit.CharArr;
 import org.noggit.JSONWriter;
 
@@ -57,6 +63,16 @@ public class FacetModule extends SearchComponent {
   private static final String FACET_INFO = "_facet_";
   private static final String FACET_REFINE = "refine";
 
+  /**
+   * The max number of buckets to refine per shard request, or 0 to refine all the buckets of a
+   * shard in a single request, along with the request for the stored fields of the top docs.
+   */
+  static int REFINE_BATCH_SIZE = EnvUtils.getPropertyAsInteger("solr.facet.refine.batchSize", 0);
+
+  /** The max number of batches of buckets pending refinement per shard */
+  static int REFINE_MAX_PENDING_BATCHES =
+      EnvUtils.getPropertyAsInteger("solr.facet.refine.maxPendingBatches", 2);
+
   public FacetComponentState getFacetComponentState(ResponseBuilder rb) {
     // TODO: put a map on ResponseBuilder?
     // rb.componentInfo.get(FacetComponentState.class);
@@ -119,7 +135,6 @@ public class FacetModule extends SearchComponent {
   }
 
   @Override
-  @SuppressWarnings({"unchecked"})
   public void process(ResponseBuilder rb) throws IOException {
     // if this is null, faceting is not enabled
     FacetComponentState facetState = getFacetComponentState(rb);
@@ -128,18 +143,67 @@ public class FacetModule extends SearchComponent {
     boolean cache = rb.req.getParams().getBool(CommonParams.CACHE, true);
     boolean isShard = rb.req.getParams().getBool(ShardParams.IS_SHARD, false);
 
+    SolrCache<FacetCacheKey, Object> facetCache = rb.req.getSearcher().getFacetCache();
+    FacetCacheKey cacheKey = null;
+    if (facetCache != null
+        && cache
+        && !rb.isDebug()
+        && FacetCacheKey.isCacheable(facetState.facetCommands, rb.req.getParams())) {
+      cacheKey =
+          new FacetCacheKey(
+              rb.getQuery(),
+              rb.getFilters(),
+              facetState.facetCommands,
+              facetState.facetInfo,
+              isShard,
+              rb.req.getParams());
+      Object cached = facetCache.get(cacheKey);
+      if (cached != null) {
+        rb.rsp.add("facets", cached);
+        return;
+      }
+    }
+
+    FacetContext fcontext =
+        newContext(rb.req, rb.getResults().docSet, cache, isShard, facetState.facetInfo);
+    if (rb.isDebug()) {
+      FacetDebugInfo fdebug = new FacetDebugInfo();
+      fcontext.setDebugInfo(fdebug);
+      rb.req.getContext().put("FacetDebugInfo", fdebug);
+    }
+
+    Object results = facetState.facetRequest.process(fcontext);
+    if (cacheKey != null && results != null && haveCompleteResults(rb.rsp.getResponseHeader())) {
+      facetCache.put(cacheKey, results);
+    }
+    // ExitableDirectory timeout causes absent "facets"
+    rb.rsp.add("facets", results);
+  }
+
+  /**
+   * Creates the context to compute the facets of a request on the given domain
+   *
+   * @param facetInfo the out-of-band facet info of a shard request, may be null
+   */
+  @SuppressWarnings({"unchecked"})
+  static FacetContext newContext(
+      SolrQueryRequest req,
+      DocSet base,
+      boolean cache,
+      boolean isShard,
+      Map<String, Object> facetInfo) {
     FacetContext fcontext = new FacetContext();
-    fcontext.base = rb.getResults().docSet;
-    fcontext.req = rb.req;
-    fcontext.searcher = rb.req.getSearcher();
+    fcontext.base = base;
+    fcontext.req = req;
+    fcontext.searcher = req.getSearcher();
     fcontext.qcontext = QueryContext.newContext(fcontext.searcher);
     fcontext.cache = cache;
     if (isShard) {
       fcontext.flags |= FacetContext.IS_SHARD;
       fcontext.facetInfo =
-          facetState.facetInfo.isEmpty()
+          facetInfo == null || facetInfo.isEmpty()
               ? null
-              : (Map<String, Object>) facetState.facetInfo.get(FACET_REFINE);
+              : (Map<String, Object>) facetInfo.get(FACET_REFINE);
       if (fcontext.facetInfo != null) {
         fcontext.flags |= FacetContext.IS_REFINEMENT;
         fcontext.flags |=
@@ -147,15 +211,7 @@ public class FacetModule extends SearchComponent {
                 .SKIP_FACET; // the root bucket should have been received from all shards previously
       }
     }
-    if (rb.isDebug()) {
-      FacetDebugInfo fdebug = new FacetDebugInfo();
-      fcontext.setDebugInfo(fdebug);
-      rb.req.getContext().put("FacetDebugInfo", fdebug);
-    }
-
-    Object results = facetState.facetRequest.process(fcontext);
-    // ExitableDirectory timeout causes absent "facets"
-    rb.rsp.add("facets", results);
+    return fcontext;
   }
 
   private void clearFaceting(List<ShardRequest> outgoing) {
@@ -184,6 +240,12 @@ public class FacetModule extends SearchComponent {
       return ResponseBuilder.STAGE_DONE;
     }
 
+    if (REFINE_BATCH_SIZE > 0) {
+      clearFaceting(rb.outgoing);
+      refineInBatches(rb, facetState);
+      return ResponseBuilder.STAGE_DONE;
+    }
+
     // Overlap facet refinement requests (those shards that we need a count
     // for particular facet values from), where possible, with
     // the requests to get fields (because we know that is the
@@ -223,40 +285,12 @@ public class FacetModule extends SearchComponent {
         // we didn't find any other suitable requests going out to that shard,
         // so create one ourselves.
         newRequest = true;
-        shardsRefineRequest = new ShardRequest();
-        shardsRefineRequest.shards = new String[] {shard};
-        shardsRefineRequest.params = new ModifiableSolrParams(rb.req.getParams());
-        // don't request any documents
-        shardsRefineRequest.params.remove(CommonParams.START);
-        shardsRefineRequest.params.set(CommonParams.ROWS, "0");
-        shardsRefineRequest.params.set(FacetParams.FACET, false);
+        shardsRefineRequest = newRefinementRequest(rb, shard);
       }
 
       shardsRefineRequest.purpose |= PURPOSE_REFINE_JSON_FACETS;
 
-      Map<String, Object> finfo = CollectionUtil.newHashMap(1);
-      finfo.put(FACET_REFINE, refinement);
-
-      // String finfoStr = JSONUtil.toJSON(finfo, -1);  // this doesn't handle formatting of Date
-      // objects the way we want
-      CharArr out = new CharArr();
-      JSONWriter jsonWriter =
-          new JSONWriter(out, -1) {
-            @Override
-            public void handleUnknownClass(Object o) {
-              // handle date formatting correctly
-              if (o instanceof Date) {
-                String s = ((Date) o).toInstant().toString();
-                writeString(s);
-                return;
-              }
-              super.handleUnknownClass(o);
-            }
-          };
-      jsonWriter.write(finfo);
-      String finfoStr = out.toString();
-      // System.err.println("##################### REFINE=" + finfoStr);
-      shardsRefineRequest.params.add(FACET_INFO, finfoStr);
+      shardsRefineRequest.params.add(FACET_INFO, toFacetInfo(refinement));
 
       if (newRequest) {
         rb.addRequest(this, shardsRefineRequest);
@@ -267,6 +301,79 @@ public class FacetModule extends SearchComponent {
     return ResponseBuilder.STAGE_DONE;
   }
 
+  /**
+   * Sends the refinement of each shard in batches of {@link #REFINE_BATCH_SIZE} buckets, in
+   * requests of their own. At most {@link #REFINE_MAX_PENDING_BATCHES} batches are pending per
+   * shard: the next batch is only sent once a response was merged, which bounds the size of the
+   * responses held by the coordinator at any time, while the batches of independent facets are
+   * still refined concurrently.
+   */
+  private void refineInBatches(ResponseBuilder rb, FacetComponentState facetState) {
+    facetState.pendingRefinements = CollectionUtil.newHashMap(rb.shards.length);
+    for (String shard : rb.shards) {
+      facetState.mcontext.setShard(shard);
+      Map<String, Object> refinement = facetState.merger.getRefinement(facetState.mcontext);
+      if (refinement == null) continue;
+
+      Deque<Map<String, Object>> batches =
+          new ArrayDeque<>(
+              RefinementBatches.split(facetState.facetRequest, refinement, REFINE_BATCH_SIZE));
+      facetState.pendingRefinements.put(shard, batches);
+      for (int i = Math.max(1, REFINE_MAX_PENDING_BATCHES); i > 0; i--) {
+        sendNextRefinement(rb, facetState, shard);
+      }
+    }
+  }
+
+  private void sendNextRefinement(
+      ResponseBuilder rb, FacetComponentState facetState, String shard) {
+    Deque<Map<String, Object>> batches = facetState.pendingRefinements.get(shard);
+    Map<String, Object> refinement = batches == null ? null : batches.poll();
+    if (refinement == null) return;
+
+    ShardRequest shardsRefineRequest = newRefinementRequest(rb, shard);
+    shardsRefineRequest.purpose |= PURPOSE_REFINE_JSON_FACETS;
+    shardsRefineRequest.params.add(FACET_INFO, toFacetInfo(refinement));
+    rb.addRequest(this, shardsRefineRequest);
+  }
+
+  private static ShardRequest newRefinementRequest(ResponseBuilder rb, String shard) {
+    ShardRequest shardsRefineRequest = new ShardRequest();
+    shardsRefineRequest.shards = new String[] {shard};
+    shardsRefineRequest.params = new ModifiableSolrParams(rb.req.getParams());
+    // don't request any documents
+    shardsRefineRequest.params.remove(CommonParams.START);
+    shardsRefineRequest.params.set(CommonParams.ROWS, "0");
+    shardsRefineRequest.params.set(FacetParams.FACET, false);
+    return shardsRefineRequest;
+  }
+
+  /** Returns the {@link #FACET_INFO} param of a request to refine the given buckets */
+  private static String toFacetInfo(Map<String, Object> refinement) {
+    Map<String, Object> finfo = CollectionUtil.newHashMap(1);
+    finfo.put(FACET_REFINE, refinement);
+
+    // String finfoStr = JSONUtil.toJSON(finfo, -1);  // this doesn't handle formatting of Date
+    // objects the way we want
+    CharArr out = new CharArr();
+    JSONWriter jsonWriter =
+        new JSONWriter(out, -1) {
+          @Override
+          public void handleUnknownClass(Object o) {
+            // handle date formatting correctly
+            if (o instanceof Date) {
+              String s = ((Date) o).toInstant().toString();
+              writeString(s);
+              return;
+            }
+            super.handleUnknownClass(o);
+          }
+        };
+    jsonWriter.write(finfo);
+    // System.err.println("##################### REFINE=" + out);
+    return out.toString();
+  }
+
   @Override
   public void modifyRequest(ResponseBuilder rb, SearchComponent who, ShardRequest sreq) {
     FacetComponentState facetState = getFacetComponentState(rb);
@@ -316,6 +423,11 @@ public class FacetModule extends SearchComponent {
         facetState.mcontext.root = facet;
         facetState.mcontext.setShard(shardRsp.getShard()); // TODO: roll newShard into setShard?
         facetState.merger.merge(facet, facetState.mcontext);
+        if (facetState.pendingRefinements != null) {
+          // the buckets were merged, no need to hold on to them until the request is done
+          top.remove("facets");
+          sendNextRefinement(rb, facetState, shardRsp.getShard());
+        }
         return;
       }
 
@@ -365,6 +477,8 @@ public class FacetModule extends SearchComponent {
     //
     FacetMerger merger;
     FacetMerger.Context mcontext;
+    // the batches of buckets left to refine per shard, only used when refining in batches
+    Map<String, Deque<Map<String, Object>>> pendingRefinements;
   }
 
   // base class for facet functions that can be used in a sort
@@ -21,15 +21,22 @@ import static org.apache.solr.search.facet.FacetContext.SKIP_FACET;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.util.NumericUtils;
 import org.apache.solr.common.EnumFieldValue;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.util.EnvUtils;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.apache.solr.schema.AbstractEnumField;
 import org.apache.solr.schema.AbstractEnumField.EnumMapping;
@@ -52,6 +59,16 @@ class FacetRangeProcessor extends FacetProcessor<FacetRange> {
   // TODO: ...it might make sense to have seperate classes w/a common base?
   // TODO: let FacetRange.createFacetProcessor decide which one to instantiate?
 
+  /**
+   * Whether the buckets of gap based ranges over a single valued numeric field with docValues are
+   * collected in a single pass over the domain, instead of intersecting it with a range query per
+   * bucket. Not used when there are sub-facets, as they need the docs of each bucket.
+   */
+  static boolean SINGLE_PASS = EnvUtils.getPropertyAsBool("solr.facet.range.singlePass", true);
+
+  /** The number of docs whose values are read before they are assigned to buckets */
+  private static final int BLOCK_SIZE = 1024;
+
   final SchemaField sf;
   final Calc calc;
   final EnumSet<FacetParams.FacetRangeInclude> include;
@@ -526,12 +543,16 @@ class FacetRangeProcessor extends FacetProcessor<FacetRange> {
 
     createAccs(fcontext.base.size(), slotCount);
 
-    for (int idx = 0; idx < rangeList.size(); idx++) {
-      rangeStats(rangeList.get(idx), idx, hasSubFacets);
-    }
+    if (!hasSubFacets && canCollectInSinglePass()) {
+      collectInSinglePass();
+    } else {
+      for (int idx = 0; idx < rangeList.size(); idx++) {
+        rangeStats(rangeList.get(idx), idx, hasSubFacets);
+      }
 
-    for (int idx = 0; idx < otherList.size(); idx++) {
-      rangeStats(otherList.get(idx), rangeList.size() + idx, hasSubFacets);
+      for (int idx = 0; idx < otherList.size(); idx++) {
+        rangeStats(otherList.get(idx), rangeList.size() + idx, hasSubFacets);
+      }
     }
 
     final SimpleOrderedMap res = new SimpleOrderedMap<>();
@@ -567,29 +588,30 @@ class FacetRangeProcessor extends FacetProcessor<FacetRange> {
   private Query[] filters;
   private DocSet[] intersections;
 
-  private void rangeStats(Range range, int slot, boolean hasSubFacets) throws IOException {
-    final Query rangeQ;
-    {
-      final Query rangeQuery =
-          sf.getType()
-              .getRangeQuery(
-                  null,
-                  sf,
-                  range.low == null ? null : calc.formatValue(range.low),
-                  range.high == null ? null : calc.formatValue(range.high),
-                  range.includeLower,
-                  range.includeUpper);
-      if (fcontext.cache) {
-        rangeQ = rangeQuery;
-      } else if (rangeQuery instanceof ExtendedQuery) {
-        ((ExtendedQuery) rangeQuery).setCache(false);
-        rangeQ = rangeQuery;
-      } else {
-        final WrappedQuery wrappedQuery = new WrappedQuery(rangeQuery);
-        wrappedQuery.setCache(false);
-        rangeQ = wrappedQuery;
-      }
+  private Query rangeQuery(Range range) {
+    final Query rangeQuery =
+        sf.getType()
+            .getRangeQuery(
+                null,
+                sf,
+                range.low == null ? null : calc.formatValue(range.low),
+                range.high == null ? null : calc.formatValue(range.high),
+                range.includeLower,
+                range.includeUpper);
+    if (fcontext.cache) {
+      return rangeQuery;
+    } else if (rangeQuery instanceof ExtendedQuery) {
+      ((ExtendedQuery) rangeQuery).setCache(false);
+      return rangeQuery;
+    } else {
+      final WrappedQuery wrappedQuery = new WrappedQuery(rangeQuery);
+      wrappedQuery.setCache(false);
+      return wrappedQuery;
     }
+  }
+
+  private void rangeStats(Range range, int slot, boolean hasSubFacets) throws IOException {
+    final Query rangeQ = rangeQuery(range);
     // TODO: specialize count only
     DocSet intersection = fcontext.searcher.getDocSet(rangeQ, fcontext.base);
     if (hasSubFacets) {
@@ -608,6 +630,148 @@ class FacetRangeProcessor extends FacetProcessor<FacetRange> {
     countAcc.incrementCount(slot, num); // TODO: roll this into collect()
   }
 
+  private boolean canCollectInSinglePass() {
+    final FieldType ft = sf.getType();
+    return SINGLE_PASS
+        && ranges == null // explicit ranges may overlap
+        && !freq.processEmpty
+        && sf.hasDocValues()
+        && !sf.multiValued()
+        && !ft.multiValuedFieldCache()
+        && (ft instanceof TrieField || ft.isPointField())
+        && !(ft instanceof AbstractEnumField)
+        && ft.getNumberType() != null;
+  }
+
+  /** The value of a range bound, ordered like the doc values read by {@link #toSortable} */
+  @SuppressWarnings({"rawtypes"})
+  private long sortableBound(Comparable value) {
+    switch (sf.getType().getNumberType()) {
+      case FLOAT:
+        return NumericUtils.floatToSortableInt((Float) value);
+      case DOUBLE:
+        return NumericUtils.doubleToSortableLong((Double) value);
+      case DATE:
+        return ((Date) value).getTime();
+      default:
+        return ((Number) value).longValue();
+    }
+  }
+
+  /**
+   * Turns the values of a block of single valued docValues, which hold the raw bits of floats and
+   * doubles, into values that are ordered like the numbers.
+   */
+  private void toSortable(long[] values, int count) {
+    switch (sf.getType().getNumberType()) {
+      case FLOAT:
+        for (int i = 0; i < count; i++) {
+          values[i] = NumericUtils.sortableFloatBits((int) values[i]);
+        }
+        break;
+      case DOUBLE:
+        for (int i = 0; i < count; i++) {
+          values[i] = NumericUtils.sortableDoubleBits(values[i]);
+        }
+        break;
+      default:
+        // ints, longs and dates are already ordered
+    }
+  }
+
+  /**
+   * Collects all buckets in one pass over the docValues of the domain: the values are read a block
+   * at a time, and each value is assigned to its gap with a binary search over the lower bounds.
+   */
+  private void collectInSinglePass() throws IOException {
+    final int numRanges = rangeList.size();
+    final int numSlots = numRanges + otherList.size();
+    final long[] lows = new long[numSlots];
+    final long[] highs = new long[numSlots];
+    final boolean[] includeLower = new boolean[numSlots];
+    final boolean[] includeUpper = new boolean[numSlots];
+    for (int slot = 0; slot < numSlots; slot++) {
+      Range range = slot < numRanges ? rangeList.get(slot) : otherList.get(slot - numRanges);
+      // an open end includes all values
+      lows[slot] = range.low == null ? Long.MIN_VALUE : sortableBound(range.low);
+      includeLower[slot] = range.low == null || range.includeLower;
+      highs[slot] = range.high == null ? Long.MAX_VALUE : sortableBound(range.high);
+      includeUpper[slot] = range.high == null || range.includeUpper;
+    }
+    // the gaps are contiguous, so the lower bounds of the first numRanges slots are sorted
+    final long[] gapLows = Arrays.copyOf(lows, numRanges);
+
+    final Query[] slotQueries = new Query[numSlots];
+    final IntFunction<SlotAcc.SlotContext> slotContext =
+        slot -> {
+          if (slotQueries[slot] == null) {
+            Range range = slot < numRanges ? rangeList.get(slot) : otherList.get(slot - numRanges);
+            slotQueries[slot] = rangeQuery(range);
+          }
+          return new SlotAcc.SlotContext(slotQueries[slot]);
+        };
+
+    final long[] counts = new long[numSlots];
+    final int[] docs = new int[BLOCK_SIZE];
+    final long[] values = new long[BLOCK_SIZE];
+    final boolean collectStats = accs.length > 0;
+    for (LeafReaderContext ctx : fcontext.searcher.getIndexReader().leaves()) {
+      DocIdSetIterator disi = fcontext.base.iterator(ctx);
+      if (disi == null) {
+        continue;
+      }
+      NumericDocValues dv = DocValues.getNumeric(ctx.reader(), sf.getName());
+      if (collectStats) {
+        setNextReader(ctx);
+      }
+      int doc = disi.nextDoc();
+      while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+        int count = 0;
+        for (; count < BLOCK_SIZE && doc != DocIdSetIterator.NO_MORE_DOCS; doc = disi.nextDoc()) {
+          if (dv.advanceExact(doc)) {
+            docs[count] = doc;
+            values[count++] = dv.longValue();
+          }
+        }
+        toSortable(values, count);
+
+        for (int i = 0; i < count; i++) {
+          final long value = values[i];
+          // the last gap starting at or before the value, and the one before it as the value may
+          // be the upper bound of that one as well
+          int idx = Arrays.binarySearch(gapLows, value);
+          idx = idx >= 0 ? idx : -idx - 2;
+          for (int slot = Math.max(idx - 1, 0); slot <= idx; slot++) {
+            if (inRange(value, lows[slot], includeLower[slot], highs[slot], includeUpper[slot])) {
+              counts[slot]++;
+              if (collectStats) {
+                collect(docs[i], slot, slotContext);
+              }
+            }
+          }
+          for (int slot = numRanges; slot < numSlots; slot++) {
+            if (inRange(value, lows[slot], includeLower[slot], highs[slot], includeUpper[slot])) {
+              counts[slot]++;
+              if (collectStats) {
+                collect(docs[i], slot, slotContext);
+              }
+            }
+          }
+        }
+      }
+    }
+
+    for (int slot = 0; slot < numSlots; slot++) {
+      countAcc.incrementCount(slot, counts[slot]);
+    }
+  }
+
+  private static boolean inRange(
+      long value, long low, boolean includeLower, long high, boolean includeUpper) {
+    return (value > low || (includeLower && value == low))
+        && (value < high || (includeUpper && value == high));
+  }
+
   @SuppressWarnings({"unchecked", "rawtypes"})
   private void doSubs(SimpleOrderedMap bucket, int slot) throws IOException {
     // handle sub-facets for this bucket
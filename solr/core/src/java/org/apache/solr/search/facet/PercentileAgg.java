@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.IntFunction;
 import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
@@ -33,20 +34,59 @@ import org.apache.lucene.queries.function.ValueSource;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.schema.SchemaField;
 import org.apache.solr.search.FunctionQParser;
+import org.apache.solr.search.QParser;
 import org.apache.solr.search.SyntaxError;
 import org.apache.solr.search.ValueSourceParser;
 import org.apache.solr.search.function.FieldNameValueSource;
 
 public class PercentileAgg extends SimpleAggValueSource {
+  /** Local param selecting the digest the percentiles are computed with */
+  public static final String SKETCH = "sketch";
+
+  /** The default digest, a t-digest */
+  public static final String TDIGEST = "tdigest";
+
+  /** A {@link QuantileSketch}, with a relative accuracy given by {@link #ACCURACY} */
+  public static final String DDSKETCH = "ddsketch";
+
+  /** Local param with the relative accuracy of a {@link #DDSKETCH} */
+  public static final String ACCURACY = "accuracy";
+
   List<Double> percentiles;
+  String sketch = TDIGEST;
+  double accuracy = QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
 
   public PercentileAgg(ValueSource vs, List<Double> percentiles) {
     super("percentile", vs);
     this.percentiles = percentiles;
   }
 
+  public void setOpts(QParser parser) {
+    SolrParams opts = parser.getLocalParams();
+    if (opts == null) {
+      return;
+    }
+    sketch = opts.get(SKETCH, TDIGEST);
+    if (!TDIGEST.equals(sketch) && !DDSKETCH.equals(sketch)) {
+      throw new SolrException(
+          SolrException.ErrorCode.BAD_REQUEST,
+          "Unknown " + SKETCH + " for " + name() + ": " + sketch);
+    }
+    accuracy = opts.getDouble(ACCURACY, QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    if (!(accuracy > 0 && accuracy < 1)) {
+      throw new SolrException(
+          SolrException.ErrorCode.BAD_REQUEST,
+          ACCURACY + " of " + name() + " must be between 0 and 1, got " + accuracy);
+    }
+  }
+
+  Digests newDigests(int numSlots) {
+    return DDSKETCH.equals(sketch) ? new Sketches(numSlots, accuracy) : new TDigests(numSlots);
+  }
+
   @Override
   public SlotAcc createSlotAcc(FacetContext fcontext, long numDocs, int numSlots)
       throws IOException {
@@ -87,12 +127,15 @@ public class PercentileAgg extends SimpleAggValueSource {
   @Override
   public boolean equals(Object o) {
     if (!(o instanceof PercentileAgg other)) return false;
-    return this.arg.equals(other.arg) && this.percentiles.equals(other.percentiles);
+    return this.arg.equals(other.arg)
+        && this.percentiles.equals(other.percentiles)
+        && this.sketch.equals(other.sketch)
+        && this.accuracy == other.accuracy;
   }
 
   @Override
   public int hashCode() {
-    return super.hashCode() * 31 + percentiles.hashCode();
+    return super.hashCode() * 31 + Objects.hash(percentiles, sketch, accuracy);
   }
 
   public static class Parser extends ValueSourceParser {
@@ -113,72 +156,212 @@ public class PercentileAgg extends SimpleAggValueSource {
             "expected percentile(valsource,percent1[,percent2]*)  EXAMPLE:percentile(myfield,50)");
       }
 
-      return new PercentileAgg(vs, percentiles);
+      PercentileAgg agg = new PercentileAgg(vs, percentiles);
+      agg.setOpts(fp);
+      return agg;
     }
   }
 
-  protected Object getValueFromDigest(AVLTreeDigest digest) {
-    if (digest == null) {
+  protected Object getValueFromDigest(Digests digests, int slot) {
+    if (!digests.exists(slot)) {
       return null;
     }
 
     if (percentiles.size() == 1) {
-      return digest.quantile(percentiles.get(0) * 0.01);
+      return digests.quantile(slot, percentiles.get(0) * 0.01);
     }
 
     List<Double> lst = new ArrayList<>(percentiles.size());
     for (Double percentile : percentiles) {
-      double val = digest.quantile(percentile * 0.01);
+      double val = digests.quantile(slot, percentile * 0.01);
       lst.add(val);
     }
     return lst;
   }
 
+  /** The digests of the slots of an accumulator, in which the values of a slot are added */
+  abstract static class Digests {
+    abstract boolean exists(int slot);
+
+    abstract void add(int slot, double val);
+
+    abstract double quantile(int slot, double q);
+
+    /** Returns the serialized digest of a slot, or null if it has no values */
+    abstract byte[] toBytes(int slot);
+
+    /** Merges a digest serialized by {@link #toBytes} into a slot */
+    abstract void merge(int slot, byte[] bytes);
+
+    abstract int size();
+
+    abstract void reset();
+
+    abstract void resize(SlotAcc.Resizer resizer);
+
+    /** The given quantile of all slots, for sorting */
+    double[] sortValues(double q) {
+      double[] sortvals = new double[size()];
+      for (int i = 0; i < sortvals.length; i++) {
+        sortvals[i] = exists(i) ? quantile(i, q) : Double.NEGATIVE_INFINITY;
+      }
+      return sortvals;
+    }
+  }
+
+  static class TDigests extends Digests {
+    private AVLTreeDigest[] digests;
+    private ByteBuffer buf;
+
+    TDigests(int numSlots) {
+      digests = new AVLTreeDigest[numSlots];
+    }
+
+    @Override
+    boolean exists(int slot) {
+      return digests[slot] != null;
+    }
+
+    @Override
+    void add(int slot, double val) {
+      AVLTreeDigest digest = digests[slot];
+      if (digest == null) {
+        digests[slot] = digest = new AVLTreeDigest(100); // TODO: make compression configurable
+      }
+      digest.add(val);
+    }
+
+    @Override
+    double quantile(int slot, double q) {
+      return digests[slot].quantile(q);
+    }
+
+    @Override
+    byte[] toBytes(int slot) {
+      AVLTreeDigest digest = digests[slot];
+      if (digest == null) return null; // no values for this slot
+
+      digest.compress();
+      int sz = digest.byteSize();
+      if (buf == null || buf.capacity() < sz) {
+        buf = ByteBuffer.allocate(sz + (sz >> 1)); // oversize by 50%
+      } else {
+        buf.clear();
+      }
+      digest.asSmallBytes(buf);
+      return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    @Override
+    void merge(int slot, byte[] bytes) {
+      AVLTreeDigest subDigest = AVLTreeDigest.fromBytes(ByteBuffer.wrap(bytes));
+      if (digests[slot] == null) {
+        digests[slot] = subDigest;
+      } else {
+        digests[slot].add(subDigest);
+      }
+    }
+
+    @Override
+    int size() {
+      return digests.length;
+    }
+
+    @Override
+    void reset() {
+      digests = new AVLTreeDigest[digests.length];
+    }
+
+    @Override
+    void resize(SlotAcc.Resizer resizer) {
+      digests = resizer.resize(digests, null);
+    }
+  }
+
+  static class Sketches extends Digests {
+    private final double accuracy;
+    private QuantileSketch[] sketches;
+
+    Sketches(int numSlots, double accuracy) {
+      this.accuracy = accuracy;
+      sketches = new QuantileSketch[numSlots];
+    }
+
+    @Override
+    boolean exists(int slot) {
+      return sketches[slot] != null;
+    }
+
+    @Override
+    void add(int slot, double val) {
+      QuantileSketch sketch = sketches[slot];
+      if (sketch == null) {
+        sketches[slot] = sketch = new QuantileSketch(accuracy);
+      }
+      sketch.add(val);
+    }
+
+    @Override
+    double quantile(int slot, double q) {
+      return sketches[slot].quantile(q);
+    }
+
+    @Override
+    byte[] toBytes(int slot) {
+      QuantileSketch sketch = sketches[slot];
+      return sketch == null ? null : sketch.toBytes();
+    }
+
+    @Override
+    void merge(int slot, byte[] bytes) {
+      QuantileSketch subSketch = QuantileSketch.fromBytes(bytes);
+      if (sketches[slot] == null) {
+        sketches[slot] = subSketch;
+      } else {
+        sketches[slot].merge(subSketch);
+      }
+    }
+
+    @Override
+    int size() {
+      return sketches.length;
+    }
+
+    @Override
+    void reset() {
+      sketches = new QuantileSketch[sketches.length];
+    }
+
+    @Override
+    void resize(SlotAcc.Resizer resizer) {
+      sketches = resizer.resize(sketches, null);
+    }
+  }
+
   class Acc extends SlotAcc.FuncSlotAcc {
-    protected AVLTreeDigest[] digests;
-    protected ByteBuffer buf;
+    protected Digests digests;
     protected double[] sortvals;
 
     public Acc(ValueSource values, FacetContext fcontext, int numSlots) {
       super(values, fcontext, numSlots);
-      digests = new AVLTreeDigest[numSlots];
+      digests = newDigests(numSlots);
     }
 
     @Override
     public void collect(int doc, int slotNum, IntFunction<SlotContext> slotContext)
         throws IOException {
       if (!values.exists(doc)) return;
-      double val = values.doubleVal(doc);
-
-      AVLTreeDigest digest = digests[slotNum];
-      if (digest == null) {
-        digests[slotNum] = digest = new AVLTreeDigest(100); // TODO: make compression configurable
-      }
-
-      digest.add(val);
+      digests.add(slotNum, values.doubleVal(doc));
     }
 
     @Override
     public int compare(int slotA, int slotB) {
       if (sortvals == null) {
-        fillSortVals();
+        sortvals = digests.sortValues(percentiles.get(0) * 0.01);
       }
       return Double.compare(sortvals[slotA], sortvals[slotB]);
     }
 
-    private void fillSortVals() {
-      sortvals = new double[digests.length];
-      double sortp = percentiles.get(0) * 0.01;
-      for (int i = 0; i < digests.length; i++) {
-        AVLTreeDigest digest = digests[i];
-        if (digest == null) {
-          sortvals[i] = Double.NEGATIVE_INFINITY;
-        } else {
-          sortvals[i] = digest.quantile(sortp);
-        }
-      }
-    }
-
     @Override
     public Object getValue(int slotNum) throws IOException {
       if (fcontext.isShard()) {
@@ -186,71 +369,45 @@ public class PercentileAgg extends SimpleAggValueSource {
       }
       if (sortvals != null && percentiles.size() == 1) {
         // we've already calculated everything we need
-        return digests[slotNum] != null ? sortvals[slotNum] : null;
+        return digests.exists(slotNum) ? sortvals[slotNum] : null;
       }
-      return getValueFromDigest(digests[slotNum]);
+      return getValueFromDigest(digests, slotNum);
     }
 
     public Object getShardValue(int slot) throws IOException {
-      AVLTreeDigest digest = digests[slot];
-      if (digest == null) return null; // no values for this slot
-
-      digest.compress();
-      int sz = digest.byteSize();
-      if (buf == null || buf.capacity() < sz) {
-        buf = ByteBuffer.allocate(sz + (sz >> 1)); // oversize by 50%
-      } else {
-        buf.clear();
-      }
-      digest.asSmallBytes(buf);
-      byte[] arr = Arrays.copyOf(buf.array(), buf.position());
-      return arr;
+      return digests.toBytes(slot);
     }
 
     @Override
     public void reset() {
-      digests = new AVLTreeDigest[digests.length];
+      digests.reset();
       sortvals = null;
     }
 
     @Override
     public void resize(Resizer resizer) {
-      digests = resizer.resize(digests, null);
+      digests.resize(resizer);
     }
   }
 
   abstract class BasePercentileDVAcc extends DocValuesAcc {
-    AVLTreeDigest[] digests;
-    protected ByteBuffer buf;
+    Digests digests;
     double[] sortvals;
 
     public BasePercentileDVAcc(FacetContext fcontext, SchemaField sf, int numSlots)
         throws IOException {
       super(fcontext, sf);
-      digests = new AVLTreeDigest[numSlots];
+      digests = newDigests(numSlots);
     }
 
     @Override
     public int compare(int slotA, int slotB) {
       if (sortvals == null) {
-        fillSortVals();
+        sortvals = digests.sortValues(percentiles.get(0) * 0.01);
       }
       return Double.compare(sortvals[slotA], sortvals[slotB]);
     }
 
-    private void fillSortVals() {
-      sortvals = new double[digests.length];
-      double sortp = percentiles.get(0) * 0.01;
-      for (int i = 0; i < digests.length; i++) {
-        AVLTreeDigest digest = digests[i];
-        if (digest == null) {
-          sortvals[i] = Double.NEGATIVE_INFINITY;
-        } else {
-          sortvals[i] = digest.quantile(sortp);
-        }
-      }
-    }
-
     @Override
     public Object getValue(int slotNum) throws IOException {
       if (fcontext.isShard()) {
@@ -258,36 +415,24 @@ public class PercentileAgg extends SimpleAggValueSource {
       }
       if (sortvals != null && percentiles.size() == 1) {
         // we've already calculated everything we need
-        return digests[slotNum] != null ? sortvals[slotNum] : null;
+        return digests.exists(slotNum) ? sortvals[slotNum] : null;
       }
-      return getValueFromDigest(digests[slotNum]);
+      return getValueFromDigest(digests, slotNum);
     }
 
     public Object getShardValue(int slot) throws IOException {
-      AVLTreeDigest digest = digests[slot];
-      if (digest == null) return null; // no values for this slot
-
-      digest.compress();
-      int sz = digest.byteSize();
-      if (buf == null || buf.capacity() < sz) {
-        buf = ByteBuffer.allocate(sz + (sz >> 1)); // oversize by 50%
-      } else {
-        buf.clear();
-      }
-      digest.asSmallBytes(buf);
-      byte[] arr = Arrays.copyOf(buf.array(), buf.position());
-      return arr;
+      return digests.toBytes(slot);
     }
 
     @Override
     public void reset() {
-      digests = new AVLTreeDigest[digests.length];
+      digests.reset();
       sortvals = null;
     }
 
     @Override
     public void resize(Resizer resizer) {
-      digests = resizer.resize(digests, null);
+      digests.resize(resizer);
     }
   }
 
@@ -301,13 +446,9 @@ public class PercentileAgg extends SimpleAggValueSource {
 
     @Override
     protected void collectValues(int doc, int slot) throws IOException {
-      AVLTreeDigest digest = digests[slot];
-      if (digest == null) {
-        digests[slot] = digest = new AVLTreeDigest(100);
-      }
       for (int i = 0, count = values.docValueCount(); i < count; i++) {
         double val = getDouble(values.nextValue());
-        digest.add(val);
+        digests.add(slot, val);
       }
     }
 
@@ -350,16 +491,12 @@ public class PercentileAgg extends SimpleAggValueSource {
 
     @Override
     protected void collectValues(int doc, int slot) throws IOException {
-      AVLTreeDigest digest = digests[slot];
-      if (digest == null) {
-        digests[slot] = digest = new AVLTreeDigest(100);
-      }
       long ord;
       while ((ord = values.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
         BytesRef term = values.lookupOrd(ord);
         Object obj = sf.getType().toObject(sf, term);
         double val = obj instanceof Date ? ((Date) obj).getTime() : ((Number) obj).doubleValue();
-        digest.add(val);
+        digests.add(slot, val);
       }
     }
 
@@ -376,15 +513,14 @@ public class PercentileAgg extends SimpleAggValueSource {
   }
 
   class PercentileUnInvertedFieldAcc extends UnInvertedFieldAcc {
-    protected AVLTreeDigest[] digests;
-    protected ByteBuffer buf;
+    protected Digests digests;
     protected double[] sortvals;
     private int currentSlot;
 
     public PercentileUnInvertedFieldAcc(FacetContext fcontext, SchemaField sf, int numSlots)
         throws IOException {
       super(fcontext, sf, numSlots);
-      digests = new AVLTreeDigest[numSlots];
+      digests = newDigests(numSlots);
     }
 
     @Override
@@ -398,24 +534,11 @@ public class PercentileAgg extends SimpleAggValueSource {
     @Override
     public int compare(int slotA, int slotB) {
       if (sortvals == null) {
-        fillSortVals();
+        sortvals = digests.sortValues(percentiles.get(0) * 0.01);
       }
       return Double.compare(sortvals[slotA], sortvals[slotB]);
     }
 
-    private void fillSortVals() {
-      sortvals = new double[digests.length];
-      double sortp = percentiles.get(0) * 0.01;
-      for (int i = 0; i < digests.length; i++) {
-        AVLTreeDigest digest = digests[i];
-        if (digest == null) {
-          sortvals[i] = Double.NEGATIVE_INFINITY;
-        } else {
-          sortvals[i] = digest.quantile(sortp);
-        }
-      }
-    }
-
     @Override
     public Object getValue(int slotNum) throws IOException {
       if (fcontext.isShard()) {
@@ -423,49 +546,33 @@ public class PercentileAgg extends SimpleAggValueSource {
       }
       if (sortvals != null && percentiles.size() == 1) {
         // we've already calculated everything we need
-        return digests[slotNum] != null ? sortvals[slotNum] : null;
+        return digests.exists(slotNum) ? sortvals[slotNum] : null;
       }
-      return getValueFromDigest(digests[slotNum]);
+      return getValueFromDigest(digests, slotNum);
     }
 
     public Object getShardValue(int slot) throws IOException {
-      AVLTreeDigest digest = digests[slot];
-      if (digest == null) return null;
-
-      digest.compress();
-      int sz = digest.byteSize();
-      if (buf == null || buf.capacity() < sz) {
-        buf = ByteBuffer.allocate(sz + (sz >> 1)); // oversize by 50%
-      } else {
-        buf.clear();
-      }
-      digest.asSmallBytes(buf);
-      byte[] arr = Arrays.copyOf(buf.array(), buf.position());
-      return arr;
+      return digests.toBytes(slot);
     }
 
     @Override
     public void reset() {
-      digests = new AVLTreeDigest[digests.length];
+      digests.reset();
       sortvals = null;
     }
 
     @Override
     public void resize(Resizer resizer) {
-      digests = resizer.resize(digests, null);
+      digests.resize(resizer);
     }
 
     @Override
     public void call(int ord) {
-      AVLTreeDigest digest = digests[currentSlot];
-      if (digest == null) {
-        digests[currentSlot] = digest = new AVLTreeDigest(100);
-      }
       try {
         BytesRef term = docToTerm.lookupOrd(ord);
         Object obj = sf.getType().toObject(sf, term);
         double val = obj instanceof Date ? ((Date) obj).getTime() : ((Number) obj).doubleValue();
-        digest.add(val);
+        digests.add(currentSlot, val);
       } catch (IOException e) {
         throw new UncheckedIOException(e);
       }
@@ -473,25 +580,20 @@ public class PercentileAgg extends SimpleAggValueSource {
   }
 
   class Merger extends FacetModule.FacetSortableMerger {
-    protected AVLTreeDigest digest;
+    protected Digests digest = newDigests(1);
     protected Double sortVal;
 
     @Override
     public void merge(Object facetResult, Context mcontext) {
       byte[] arr = (byte[]) facetResult;
       if (arr == null) return; // an explicit null can mean no values in the field
-      AVLTreeDigest subDigest = AVLTreeDigest.fromBytes(ByteBuffer.wrap(arr));
-      if (digest == null) {
-        digest = subDigest;
-      } else {
-        digest.add(subDigest);
-      }
+      digest.merge(0, arr);
     }
 
     @Override
     public Object getMergedResult() {
-      if (percentiles.size() == 1 && digest != null) return getSortVal();
-      return getValueFromDigest(digest);
+      if (percentiles.size() == 1 && digest.exists(0)) return getSortVal();
+      return getValueFromDigest(digest, 0);
     }
 
     @Override
@@ -503,7 +605,9 @@ public class PercentileAgg extends SimpleAggValueSource {
     private Double getSortVal() {
       if (sortVal == null) {
         sortVal =
-            digest == null ? Double.NEGATIVE_INFINITY : digest.quantile(percentiles.get(0) * 0.01);
+            digest.exists(0)
+                ? digest.quantile(0, percentiles.get(0) * 0.01)
+                : Double.NEGATIVE_INFINITY;
       }
       return sortVal;
     }
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.apache.solr.common.SolrException;
+
+/**
+ * A mergeable quantile sketch with a relative accuracy guarantee, in the manner of DDSketch
+ * (Masson et al.). Values are counted in buckets whose bounds grow logarithmically, so that every
+ * quantile is returned within {@code relativeAccuracy} of a value at that rank. The buckets are
+ * kept in primitive arrays, and sketches of the same accuracy merge without any loss by adding up
+ * their bucket counts.
+ *
+ * <p>At most {@link #MAX_BUCKETS} buckets are kept for each sign. When the values span more than
+ * that, the buckets of the smallest magnitudes are collapsed into one, which only affects the
+ * accuracy of the quantiles that fall into it.
+ */
+final class QuantileSketch {
+  static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+  static final int MAX_BUCKETS = 2048;
+
+  private static final byte FORMAT_VERSION = 1;
+  // values of a smaller magnitude are counted as zero
+  private static final double MIN_INDEXABLE_VALUE = Double.MIN_NORMAL;
+
+  private final double relativeAccuracy;
+  private final double gamma;
+  private final double logGamma;
+  private final Store positive = new Store();
+  private final Store negative = new Store(); // indexed by the magnitude of the values
+  private long zeroCount;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  QuantileSketch(double relativeAccuracy) {
+    if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+      throw new IllegalArgumentException(
+          "relative accuracy must be between 0 and 1, got " + relativeAccuracy);
+    }
+    this.relativeAccuracy = relativeAccuracy;
+    this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    this.logGamma = Math.log(gamma);
+  }
+
+  double relativeAccuracy() {
+    return relativeAccuracy;
+  }
+
+  long count() {
+    return negative.total + zeroCount + positive.total;
+  }
+
+  void add(double value) {
+    if (value > MIN_INDEXABLE_VALUE) {
+      positive.add(index(value), 1);
+    } else if (value < -MIN_INDEXABLE_VALUE) {
+      negative.add(index(-value), 1);
+    } else if (value == value) {
+      zeroCount++;
+    } else {
+      return; // NaN
+    }
+    if (value < min) min = value;
+    if (value > max) max = value;
+  }
+
+  void merge(QuantileSketch other) {
+    if (other.relativeAccuracy != relativeAccuracy) {
+      throw new IllegalArgumentException(
+          "can't merge sketches of relative accuracy "
+              + relativeAccuracy
+              + " and "
+              + other.relativeAccuracy);
+    }
+    positive.merge(other.positive);
+    negative.merge(other.negative);
+    zeroCount += other.zeroCount;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  /**
+   * Returns the value at the given quantile (between 0 and 1), or NaN if the sketch has no
+   * values.
+   */
+  double quantile(double q) {
+    long count = count();
+    if (count == 0) {
+      return Double.NaN;
+    }
+    if (q <= 0) {
+      return min;
+    }
+    if (q >= 1) {
+      return max;
+    }
+    long rank = (long) (q * (count - 1));
+    double value;
+    if (rank < negative.total) {
+      // the negative values come first, from the largest magnitude down
+      value = -value(negative.indexOfRank(negative.total - 1 - rank));
+    } else if (rank < negative.total + zeroCount) {
+      value = 0;
+    } else {
+      value = value(positive.indexOfRank(rank - negative.total - zeroCount));
+    }
+    return Math.max(min, Math.min(max, value));
+  }
+
+  private int index(double magnitude) {
+    return (int) Math.ceil(Math.log(magnitude) / logGamma);
+  }
+
+  /** The value of a bucket, within the relative accuracy of all magnitudes it counts */
+  private double value(int index) {
+    return 2 * Math.pow(gamma, index) / (gamma + 1);
+  }
+
+  /**
+   * Serializes the sketch for a shard response: the bucket counts are written as variable length
+   * longs, so that the buckets in between the ones with values take up a single byte.
+   */
+  byte[] toBytes() {
+    ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+    try {
+      out.writeByte(FORMAT_VERSION);
+      out.writeLong(Double.doubleToLongBits(relativeAccuracy));
+      out.writeLong(Double.doubleToLongBits(min));
+      out.writeLong(Double.doubleToLongBits(max));
+      out.writeVLong(zeroCount);
+      positive.write(out);
+      negative.write(out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // can't happen when writing to memory
+    }
+    return out.toArrayCopy();
+  }
+
+  static QuantileSketch fromBytes(byte[] bytes) {
+    ByteArrayDataInput in = new ByteArrayDataInput(bytes);
+    byte version = in.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new SolrException(
+          SolrException.ErrorCode.SERVER_ERROR,
+          "Unsupported quantile sketch format version: " + version);
+    }
+    QuantileSketch sketch = new QuantileSketch(Double.longBitsToDouble(in.readLong()));
+    sketch.min = Double.longBitsToDouble(in.readLong());
+    sketch.max = Double.longBitsToDouble(in.readLong());
+    sketch.zeroCount = in.readVLong();
+    try {
+      sketch.positive.read(in);
+      sketch.negative.read(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // can't happen when reading from memory
+    }
+    return sketch;
+  }
+
+  /** The counts of a contiguous range of bucket indexes, grown as needed */
+  private static final class Store {
+    private static final long[] EMPTY = new long[0];
+
+    long[] counts = EMPTY; // counts[i] is the count of bucket offset + i
+    int offset;
+    long total;
+
+    void add(int index, long count) {
+      if (counts.length == 0) {
+        counts = new long[16];
+        offset = index - 8;
+      } else if (index < offset || index >= offset + counts.length) {
+        index = grow(index);
+      }
+      counts[index - offset] += count;
+      total += count;
+    }
+
+    /**
+     * Makes room for the given index, collapsing the lowest buckets if the range would exceed
+     * {@link #MAX_BUCKETS}, and returns the index to count the value in.
+     */
+    private int grow(int index) {
+      int lo = Math.min(index, offset + firstNonZero());
+      int hi = Math.max(index, offset + lastNonZero());
+      if (hi - lo + 1 > MAX_BUCKETS) {
+        lo = hi - MAX_BUCKETS + 1;
+      }
+      int span = hi - lo + 1;
+      int newLength = Math.min(MAX_BUCKETS, Math.max(counts.length * 2, span));
+      int newOffset = lo - (newLength - span) / 2;
+      long[] newCounts = new long[newLength];
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] != 0) {
+          newCounts[Math.max(offset + i, lo) - newOffset] += counts[i];
+        }
+      }
+      counts = newCounts;
+      offset = newOffset;
+      return Math.max(index, lo);
+    }
+
+    private int firstNonZero() {
+      int i = 0;
+      while (i < counts.length - 1 && counts[i] == 0) i++;
+      return i;
+    }
+
+    private int lastNonZero() {
+      int i = counts.length - 1;
+      while (i > 0 && counts[i] == 0) i--;
+      return i;
+    }
+
+    void merge(Store other) {
+      for (int i = 0; i < other.counts.length; i++) {
+        if (other.counts[i] != 0) {
+          add(other.offset + i, other.counts[i]);
+        }
+      }
+    }
+
+    /** The index of the bucket holding the value of the given rank, counted from 0 */
+    int indexOfRank(long rank) {
+      long n = 0;
+      for (int i = 0; i < counts.length; i++) {
+        n += counts[i];
+        if (n > rank) {
+          return offset + i;
+        }
+      }
+      return offset + lastNonZero();
+    }
+
+    void write(ByteBuffersDataOutput out) throws IOException {
+      if (total == 0) {
+        out.writeVInt(0);
+        return;
+      }
+      int first = firstNonZero();
+      int last = lastNonZero();
+      out.writeVInt(last - first + 1);
+      out.writeZInt(offset + first);
+      for (int i = first; i <= last; i++) {
+        out.writeVLong(counts[i]);
+      }
+    }
+
+    void read(ByteArrayDataInput in) throws IOException {
+      int length = in.readVInt();
+      if (length == 0) {
+        return;
+      }
+      offset = in.readZInt();
+      counts = new long[length];
+      for (int i = 0; i < length; i++) {
+        counts[i] = in.readVLong();
+        total += counts[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Splits the refinement of a shard into batches of a bounded number of buckets, so that they can
+ * be sent to the shard in separate requests.
+ *
+ * <p>A refinement only ever asks a shard for the buckets it did not return yet ({@code _l} and
+ * {@code _p}), or recurses into the buckets it did return ({@code _s}) and into the buckets of
+ * the facets below the root, whose stats are skipped. So the batches are built by splitting the
+ * lists of buckets to refine, while keeping the path to them: a bucket to refine is sent in
+ * exactly one batch, which keeps its count from being merged twice, and the buckets that are only
+ * recursed into may be sent in several batches as nothing is merged for them but their
+ * sub-facets. A partial bucket is never split, as all of its sub-facets are computed on the
+ * shard.
+ */
+final class RefinementBatches {
+  private static final String LEAVES = "_l";
+  private static final String PARTIAL = "_p";
+  private static final String SKIP = "_s";
+
+  private final int batchSize;
+  private final List<Map<String, Object>> batches = new ArrayList<>();
+  // the path to the current refinement: facet names, and the values of skipped buckets
+  private final List<Object> path = new ArrayList<>();
+  private Map<String, Object> batch;
+  private int size;
+
+  private RefinementBatches(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Returns the refinement of a shard split into batches of about {@code batchSize} buckets
+   *
+   * @param freq the root facet request
+   * @param refinement the refinement of the root bucket, as returned by {@link
+   *     FacetMerger#getRefinement}
+   */
+  static List<Map<String, Object>> split(
+      FacetRequest freq, Map<String, Object> refinement, int batchSize) {
+    RefinementBatches batches = new RefinementBatches(batchSize);
+    batches.splitBucket(freq, refinement);
+    return batches.batches;
+  }
+
+  /** Splits the refinement of a bucket: the refinements of its sub-facets */
+  @SuppressWarnings("unchecked")
+  private void splitBucket(FacetRequest freq, Map<String, Object> refinement) {
+    for (Map.Entry<String, Object> sub : refinement.entrySet()) {
+      path.add(sub.getKey());
+      splitFacet(freq.getSubFacets().get(sub.getKey()), (Map<String, Object>) sub.getValue());
+      path.remove(path.size() - 1);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void splitFacet(FacetRequest freq, Map<String, Object> refinement) {
+    if (freq instanceof FacetQuery) {
+      splitBucket(freq, refinement);
+      return;
+    }
+    if (!(freq instanceof FacetRequestSorted)) {
+      add(null, refinement, Math.max(1, count(refinement)));
+      return;
+    }
+    for (Map.Entry<String, Object> entry : refinement.entrySet()) {
+      switch (entry.getKey()) {
+        case LEAVES:
+          for (Object bucketVal : (List<Object>) entry.getValue()) {
+            add(LEAVES, bucketVal, 1);
+          }
+          break;
+        case PARTIAL:
+          for (List<Object> bucket : (List<List<Object>>) entry.getValue()) {
+            add(PARTIAL, bucket, 1 + count(bucket.get(1)));
+          }
+          break;
+        case SKIP:
+          for (List<Object> bucket : (List<List<Object>>) entry.getValue()) {
+            path.add(new SkippedBucket(bucket.get(0)));
+            splitBucket(freq, (Map<String, Object>) bucket.get(1));
+            path.remove(path.size() - 1);
+          }
+          break;
+        default: // the special buckets, such as "missing" or "before"
+          path.add(entry.getKey());
+          splitBucket(freq, (Map<String, Object>) entry.getValue());
+          path.remove(path.size() - 1);
+      }
+    }
+  }
+
+  /**
+   * Adds a refinement at the current path of the current batch, in the list of the given name, or
+   * as the value of the last facet name of the path if the name is null.
+   */
+  @SuppressWarnings("unchecked")
+  private void add(String listName, Object refinement, int weight) {
+    if (batch == null || (size > 0 && size + weight > batchSize)) {
+      batch = new LinkedHashMap<>();
+      batches.add(batch);
+      size = 0;
+    }
+    size += weight;
+
+    Map<String, Object> map = batch;
+    int depth = listName == null ? path.size() - 1 : path.size();
+    for (int i = 0; i < depth; i++) {
+      map = child(map, path.get(i));
+    }
+    if (listName == null) {
+      map.put((String) path.get(depth), refinement);
+    } else {
+      ((List<Object>) map.computeIfAbsent(listName, k -> new ArrayList<>())).add(refinement);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> child(Map<String, Object> map, Object step) {
+    if (step instanceof SkippedBucket skipped) {
+      List<List<Object>> buckets =
+          (List<List<Object>>) map.computeIfAbsent(SKIP, k -> new ArrayList<>());
+      // the refinements below a skipped bucket are added one after the other
+      if (!buckets.isEmpty()) {
+        List<Object> last = buckets.get(buckets.size() - 1);
+        if (Objects.equals(last.get(0), skipped.bucketVal)) {
+          return (Map<String, Object>) last.get(1);
+        }
+      }
+      Map<String, Object> refinement = new LinkedHashMap<>();
+      buckets.add(Arrays.asList(skipped.bucketVal, refinement));
+      return refinement;
+    }
+    return (Map<String, Object>) map.computeIfAbsent((String) step, k -> new LinkedHashMap<>());
+  }
+
+  /** The number of buckets to refine in the given refinement */
+  @SuppressWarnings("unchecked")
+  static int count(Object refinement) {
+    if (!(refinement instanceof Map)) {
+      return 0;
+    }
+    int count = 0;
+    for (Map.Entry<String, Object> entry : ((Map<String, Object>) refinement).entrySet()) {
+      switch (entry.getKey()) {
+        case LEAVES:
+          count += ((List<Object>) entry.getValue()).size();
+          break;
+        case PARTIAL:
+        case SKIP:
+          for (List<Object> bucket : (List<List<Object>>) entry.getValue()) {
+            count += 1 + count(bucket.get(1));
+          }
+          break;
+        default:
+          count += count(entry.getValue());
+      }
+    }
+    return count;
+  }
+
+  private record SkippedBucket(Object bucketVal) {}
+}
@@ -466,7 +466,7 @@ public class UninvertingReader extends FilterLeafReader {
       totalBytesUsed += entries[i].getValue().ramBytesUsed();
     }
     String totalSize = RamUsageEstimator.humanReadableUnits(totalBytesUsed);
-    return new FieldCacheStats(totalSize, info);
+    return new FieldCacheStats(totalSize, totalBytesUsed, info);
   }
 
   public static int getUninvertedStatsSize() {
@@ -480,10 +480,12 @@ public class UninvertingReader extends FilterLeafReader {
    */
   public static class FieldCacheStats {
     public String totalSize;
+    public long totalBytes;
     public String[] info;
 
-    public FieldCacheStats(String totalSize, String[] info) {
+    public FieldCacheStats(String totalSize, long totalBytes, String[] info) {
       this.totalSize = totalSize;
+      this.totalBytes = totalBytes;
       this.info = info;
     }
   }
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.update.UpdateLog.LogPtr;
+
+/**
+ * A map of indexed id to {@link LogPtr} that does not allocate any objects per entry. Ids are
+ * stored in a {@link BytesRefHash} (an open addressing table verifying collisions against the
+ * stored id bytes), and the pointer and version of each entry live in primitive arrays indexed by
+ * the id's ord. {@link LogPtr} instances are only materialized when an entry is read.
+ *
+ * <p>This is not thread-safe; {@link UpdateLog} guards all access to its maps.
+ *
+ * @see UpdateLog#VERSION_MAP_COMPACT
+ */
+class CompactLogPtrMap extends AbstractMap<BytesRef, LogPtr> implements Accountable {
+  private static final long BASE_RAM_BYTES_USED =
+      RamUsageEstimator.shallowSizeOfInstance(CompactLogPtrMap.class);
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final BytesRefHash ids = new BytesRefHash();
+  private long[] pointers = new long[INITIAL_CAPACITY];
+  private long[] versions = new long[INITIAL_CAPACITY];
+  private long[] previousPointers = new long[INITIAL_CAPACITY];
+
+  @Override
+  public LogPtr get(Object key) {
+    if (!(key instanceof BytesRef)) {
+      return null;
+    }
+    int ord = ids.find((BytesRef) key);
+    return ord < 0 ? null : logPtr(ord);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof BytesRef && ids.find((BytesRef) key) >= 0;
+  }
+
+  @Override
+  public LogPtr put(BytesRef key, LogPtr value) {
+    Objects.requireNonNull(value);
+    int ord = ids.add(key);
+    LogPtr previous = null;
+    if (ord < 0) {
+      // existing id; the key bytes are already stored
+      ord = -ord - 1;
+      previous = logPtr(ord);
+    } else if (ord >= pointers.length) {
+      int newLength = ArrayUtil.oversize(ord + 1, Long.BYTES);
+      pointers = ArrayUtil.growExact(pointers, newLength);
+      versions = ArrayUtil.growExact(versions, newLength);
+      previousPointers = ArrayUtil.growExact(previousPointers, newLength);
+    }
+    pointers[ord] = value.pointer;
+    versions[ord] = value.version;
+    previousPointers[ord] = value.previousPointer;
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return ids.size() == 0;
+  }
+
+  /** Removes all entries. The primitive arrays are retained for reuse. */
+  @Override
+  public void clear() {
+    ids.clear();
+  }
+
+  @Override
+  public Set<Entry<BytesRef, LogPtr>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<BytesRef, LogPtr>> iterator() {
+        return new Iterator<>() {
+          private final int size = ids.size();
+          private int ord = 0;
+
+          @Override
+          public boolean hasNext() {
+            return ord < size;
+          }
+
+          @Override
+          public Entry<BytesRef, LogPtr> next() {
+            if (ord >= size) {
+              throw new NoSuchElementException();
+            }
+            BytesRef id = BytesRef.deepCopyOf(ids.get(ord, new BytesRef()));
+            Entry<BytesRef, LogPtr> entry = new SimpleImmutableEntry<>(id, logPtr(ord));
+            ord++;
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return ids.size();
+      }
+    };
+  }
+
+  private LogPtr logPtr(int ord) {
+    return new LogPtr(pointers[ord], versions[ord], previousPointers[ord]);
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED
+        + ids.ramBytesUsed()
+        + RamUsageEstimator.sizeOf(pointers)
+        + RamUsageEstimator.sizeOf(versions)
+        + RamUsageEstimator.sizeOf(previousPointers);
+  }
+
+  @Override
+  public String toString() {
+    return "CompactLogPtrMap(size=" + size() + ")";
+  }
+}
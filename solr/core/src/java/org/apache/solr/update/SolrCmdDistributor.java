@@ -351,6 +351,8 @@ public class SolrCmdDistributor implements Closeable {
                 doRequest(req);
                 return null;
               }));
+    } else if (clients.isAsync()) {
+      clients.requestAsync(req);
     } else {
       doRequest(req);
     }
@@ -432,11 +434,17 @@ public class SolrCmdDistributor implements Closeable {
     // aggregator node.
     public void trackRequestResult(
         org.eclipse.jetty.client.api.Response resp, InputStream respBody, boolean success) {
+      trackRequestResult(getRfFromResponse(respBody), success);
+    }
 
-      // Returning Integer.MAX_VALUE here means there was no "rf" on the response, therefore we just
-      // need to increment our achieved rf if we are a leader, i.e. have a leaderTracker.
-      int rfFromResp = getRfFromResponse(respBody);
+    /** Same as above, for a response that has already been parsed, e.g. by an async request. */
+    public void trackRequestResult(NamedList<Object> rsp, boolean success) {
+      trackRequestResult(getRfFromResponse(rsp), success);
+    }
 
+    private void trackRequestResult(int rfFromResp, boolean success) {
+      // Integer.MAX_VALUE here means there was no "rf" on the response, therefore we just
+      // need to increment our achieved rf if we are a leader, i.e. have a leaderTracker.
       if (leaderTracker != null && rfFromResp == Integer.MAX_VALUE) {
         leaderTracker.trackRequestResult(node, success);
       }
@@ -450,16 +458,7 @@ public class SolrCmdDistributor implements Closeable {
       if (inputStream != null) {
         try {
           JavaBinResponseParser brp = new JavaBinResponseParser();
-          NamedList<Object> nl = brp.processResponse(inputStream, null);
-          Object hdr = nl.get("responseHeader");
-          if (hdr != null && hdr instanceof NamedList) {
-            @SuppressWarnings({"unchecked"})
-            NamedList<Object> hdrList = (NamedList<Object>) hdr;
-            Object rfObj = hdrList.get(UpdateRequest.REPFACT);
-            if (rfObj != null && rfObj instanceof Integer) {
-              return (Integer) rfObj;
-            }
-          }
+          return getRfFromResponse(brp.processResponse(inputStream, null));
         } catch (Exception e) {
           log.warn(
               "Failed to parse response from {} during replication factor accounting", node, e);
@@ -467,6 +466,21 @@ public class SolrCmdDistributor implements Closeable {
       }
       return Integer.MAX_VALUE;
     }
+
+    private int getRfFromResponse(NamedList<Object> nl) {
+      if (nl != null) {
+        Object hdr = nl.get("responseHeader");
+        if (hdr != null && hdr instanceof NamedList) {
+          @SuppressWarnings({"unchecked"})
+          NamedList<Object> hdrList = (NamedList<Object>) hdr;
+          Object rfObj = hdrList.get(UpdateRequest.REPFACT);
+          if (rfObj != null && rfObj instanceof Integer) {
+            return (Integer) rfObj;
+          }
+        }
+      }
+      return Integer.MAX_VALUE;
+    }
   }
 
   public static Diagnostics.Callable
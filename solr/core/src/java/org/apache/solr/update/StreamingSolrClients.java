@@ -16,20 +16,36 @@
  */
 package org.apache.solr.update;
 
+import com.codahale.metrics.Timer;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.ConcurrentUpdateHttp2SolrClient;
 import org.apache.solr.client.solrj.impl.Http2SolrClient;
+import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
+import org.apache.solr.client.solrj.request.JavaBinUpdateRequestCodec;
+import org.apache.solr.client.solrj.request.RequestWriter;
+import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.StrUtils;
 import org.apache.solr.update.SolrCmdDistributor.SolrError;
 import org.eclipse.jetty.client.api.Response;
@@ -43,6 +59,13 @@ public class StreamingSolrClients {
   // should be less than solr.jetty.http.idleTimeout
   private final int pollQueueTimeMillis =
       Integer.getInteger("solr.cloud.client.pollQueueTime", 10000);
+  // when enabled, updates are queued per replica and streamed in batches with
+  // Http2SolrClient#requestAsync instead of through a ConcurrentUpdateHttp2SolrClient per replica
+  private final boolean async = Boolean.getBoolean("solr.cloud.replication.async");
+  // max number of updates per replica that are queued or sent but not yet acknowledged; indexing
+  // threads only block once that many are outstanding
+  private final int asyncMaxInFlight =
+      Math.max(1, Integer.getInteger("solr.cloud.replication.async.maxInFlight", 100));
 
   private Http2SolrClient httpClient;
 
@@ -51,7 +74,11 @@ public class StreamingSolrClients {
 
   private ExecutorService updateExecutor;
 
+  private final UpdateShardHandler updateShardHandler;
+  private final Map<String, AsyncReplica> asyncReplicas = new ConcurrentHashMap<>();
+
   public StreamingSolrClients(UpdateShardHandler updateShardHandler) {
+    this.updateShardHandler = updateShardHandler;
     this.updateExecutor = updateShardHandler.getUpdateExecutor();
     this.httpClient = updateShardHandler.getUpdateOnlyHttpClient();
   }
@@ -91,16 +118,90 @@ public class StreamingSolrClients {
     return client;
   }
 
+  /**
+   * @return true if updates should be sent with {@link #requestAsync} rather than through {@link
+   *     #getSolrClient}
+   */
+  public boolean isAsync() {
+    return async;
+  }
+
+  /**
+   * Queues the request for its replica without waiting for the response. Each replica has at most
+   * one batch in flight, which carries all the updates queued for it since the previous batch was
+   * sent, so the updates of a replica are applied in order. The calling thread only blocks once
+   * {@code solr.cloud.replication.async.maxInFlight} updates (100 by default) are queued or
+   * unacknowledged for the replica. Responses are handled the same way {@link
+   * ErrorReportingConcurrentUpdateSolrClient} handles them: errors are collected for {@link
+   * SolrCmdDistributor} to retry or report, and successes count towards the achieved replication
+   * factor.
+   */
+  public void requestAsync(final SolrCmdDistributor.Req req) {
+    final AsyncReplica replica =
+        asyncReplicas.computeIfAbsent(
+            getFullUrl(req.node.getUrl()), url -> new AsyncReplica(req.node, url));
+    try {
+      replica.window.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      handleAsyncError(req, e);
+      return;
+    }
+    updateShardHandler.getAsyncUpdatesInFlight().incrementAndGet();
+    if (replica.enqueue(req)) {
+      replica.sendNext();
+    }
+  }
+
+  /**
+   * Sends the given batch to the replica. The request streams the update requests of the batch one
+   * after the other, the same way {@link ConcurrentUpdateHttp2SolrClient} streams its queue.
+   */
+  protected CompletableFuture<NamedList<Object>> sendAsync(
+      SolrCmdDistributor.Node node, List<SolrCmdDistributor.Req> batch) {
+    final SolrRequest<?> request =
+        batch.size() == 1 ? batch.get(0).uReq : new StreamingUpdateRequest(batch);
+    try {
+      return httpClient.requestWithBaseUrl(
+          node.getBaseUrl(), c -> c.requestAsync(request, node.getCoreName()));
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private void handleAsyncError(SolrCmdDistributor.Req req, Throwable ex) {
+    log.error("Error when calling {} to {}", req, req.node.getUrl(), ex);
+    SolrError error = new SolrError();
+    error.e = ex instanceof Exception ? (Exception) ex : new SolrServerException(ex);
+    if (ex instanceof SolrException) {
+      error.statusCode = ((SolrException) ex).code();
+    }
+    error.req = req;
+    errors.add(error);
+    if (!req.shouldRetry(error)) {
+      // only track the error if we are not retrying the request
+      req.trackRequestResult(null, false);
+    }
+  }
+
   public synchronized void blockUntilFinished() throws IOException {
     for (ConcurrentUpdateHttp2SolrClient client : solrClients.values()) {
       client.blockUntilFinished();
     }
+    for (AsyncReplica replica : asyncReplicas.values()) {
+      replica.blockUntilFinished();
+    }
   }
 
   public synchronized void shutdown() {
     for (ConcurrentUpdateHttp2SolrClient client : solrClients.values()) {
       client.close();
     }
+    for (String url : asyncReplicas.keySet()) {
+      if (asyncReplicas.remove(url) != null) {
+        updateShardHandler.releaseAsyncUpdateAckTimer(url);
+      }
+    }
   }
 
   private String getFullUrl(String url) {
@@ -120,6 +221,125 @@ public class StreamingSolrClients {
   public ExecutorService getUpdateExecutor() {
     return updateExecutor;
   }
+
+  /** The queue of asynchronous updates to one replica. */
+  private class AsyncReplica {
+    final SolrCmdDistributor.Node node;
+    final String url;
+    final Semaphore window = new Semaphore(asyncMaxInFlight);
+    final Timer ackTimer;
+    // guarded by this
+    final ArrayDeque<SolrCmdDistributor.Req> queue = new ArrayDeque<>();
+    boolean sending;
+
+    AsyncReplica(SolrCmdDistributor.Node node, String url) {
+      this.node = node;
+      this.url = url;
+      this.ackTimer = updateShardHandler.acquireAsyncUpdateAckTimer(url);
+    }
+
+    /**
+     * @return true if no batch is in flight, in which case the caller must call {@link #sendNext}
+     */
+    synchronized boolean enqueue(SolrCmdDistributor.Req req) {
+      queue.add(req);
+      if (sending) {
+        return false;
+      }
+      sending = true;
+      return true;
+    }
+
+    /** Sends what is queued as one batch, or marks the replica idle if nothing is. */
+    void sendNext() {
+      final List<SolrCmdDistributor.Req> batch = new ArrayList<>();
+      synchronized (this) {
+        // a batch shares the params of its requests, so it ends before one with different params
+        SolrCmdDistributor.Req next = queue.peek();
+        while (next != null
+            && (batch.isEmpty() || batch.get(0).uReq.getParams().equals(next.uReq.getParams()))) {
+          batch.add(queue.poll());
+          next = queue.peek();
+        }
+        if (batch.isEmpty()) {
+          sending = false;
+          notifyAll();
+          return;
+        }
+      }
+
+      final long startNanos = System.nanoTime();
+      sendAsync(node, batch)
+          .whenComplete(
+              (rsp, t) -> {
+                if (ackTimer != null) {
+                  ackTimer.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                }
+                for (SolrCmdDistributor.Req req : batch) {
+                  try {
+                    if (t == null) {
+                      req.trackRequestResult(rsp, true);
+                    } else {
+                      handleAsyncError(req, t instanceof CompletionException ? t.getCause() : t);
+                    }
+                  } finally {
+                    updateShardHandler.getAsyncUpdatesInFlight().decrementAndGet();
+                    window.release();
+                  }
+                }
+                // don't write the next batch on the thread completing the response
+                try {
+                  updateExecutor.execute(this::sendNext);
+                } catch (RejectedExecutionException e) {
+                  sendNext();
+                }
+              });
+    }
+
+    synchronized void blockUntilFinished() {
+      boolean interrupted = false;
+      while (sending) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Streams the update requests of a batch one after the other in a single request. */
+  private static class StreamingUpdateRequest extends AbstractUpdateRequest {
+    private final List<SolrCmdDistributor.Req> batch;
+
+    StreamingUpdateRequest(List<SolrCmdDistributor.Req> batch) {
+      super(METHOD.POST, "/update");
+      this.batch = batch;
+      UpdateRequest first = batch.get(0).uReq;
+      setParams(first.getParams());
+      setUserPrincipal(first.getUserPrincipal());
+    }
+
+    @Override
+    public RequestWriter.ContentWriter getContentWriter(String expectedType) {
+      return new RequestWriter.ContentWriter() {
+        @Override
+        public void write(OutputStream os) throws IOException {
+          for (SolrCmdDistributor.Req req : batch) {
+            new JavaBinUpdateRequestCodec().marshal(req.uReq, os);
+          }
+        }
+
+        @Override
+        public String getContentType() {
+          return CommonParams.JAVABIN_MIME;
+        }
+      };
+    }
+  }
 }
 
 class ErrorReportingConcurrentUpdateSolrClient extends ConcurrentUpdateHttp2SolrClient {
@@ -22,12 +22,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -36,6 +39,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
 import org.apache.lucene.util.BytesRef;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrException.ErrorCode;
@@ -46,6 +52,7 @@ import org.apache.solr.common.util.FastInputStream;
 import org.apache.solr.common.util.FastOutputStream;
 import org.apache.solr.common.util.JavaBinCodec;
 import org.apache.solr.common.util.ObjectReleaseTracker;
+import org.apache.solr.util.BufferCleaner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -84,6 +91,14 @@ public class TransactionLog implements Closeable {
   // future, recovery)
   protected volatile boolean deleteOnClose = true;
 
+  // group commit (SyncLevel.GROUP_FSYNC) state; guarded by syncLock, never held while holding "this"
+  private final Object syncLock = new Object();
+  private long syncedPosition;
+  private boolean syncInProgress;
+
+  // called with the synced position after each successful group sync, before waiters are released
+  static volatile LongConsumer testing_groupSyncHook;
+
   protected AtomicInteger refcount = new AtomicInteger(1);
   protected Map<String, Integer> globalStringMap = new HashMap<>();
   protected List<String> globalStringList = new ArrayList<>();
@@ -612,6 +627,11 @@ public class TransactionLog implements Closeable {
   public void finish(UpdateLog.SyncLevel syncLevel) {
     if (syncLevel == UpdateLog.SyncLevel.NONE) return;
     try {
+      if (syncLevel == UpdateLog.SyncLevel.GROUP_FSYNC) {
+        groupSync();
+        return;
+      }
+
       synchronized (this) {
         fos.flush();
       }
@@ -628,6 +648,61 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * Waits until everything written to this log so far is durable, sharing a single {@link
+   * FileChannel#force(boolean)} among all concurrent callers. The first caller to find no sync in
+   * progress becomes the syncer for everything appended up to that point, while the others wait
+   * and are released as soon as a sync covering their records completes.
+   */
+  private void groupSync() throws IOException {
+    long target;
+    synchronized (this) {
+      fos.flush();
+      target = fos.size();
+    }
+
+    synchronized (syncLock) {
+      while (syncedPosition < target && syncInProgress) {
+        try {
+          syncLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SolrException(
+              ErrorCode.SERVER_ERROR, "Interrupted while waiting for tlog sync", e);
+        }
+      }
+      if (syncedPosition >= target) {
+        return; // another caller's sync covered our records
+      }
+      syncInProgress = true;
+    }
+
+    boolean success = false;
+    long position = target;
+    try {
+      // include anything appended while we were waiting so that it joins this sync
+      synchronized (this) {
+        fos.flush();
+        position = fos.size();
+      }
+      // Since fsync is outside of synchronized block, we can end up with a partial
+      // last record on power failure (which is OK, see finish()).
+      channel.force(true);
+      success = true;
+      LongConsumer hook = testing_groupSyncHook;
+      if (hook != null) hook.accept(position);
+    } finally {
+      synchronized (syncLock) {
+        syncInProgress = false;
+        if (success && position > syncedPosition) {
+          syncedPosition = position;
+        }
+        // on failure, waiters will retry the sync themselves
+        syncLock.notifyAll();
+      }
+    }
+  }
+
   @Override
   public void close() {
     try {
@@ -639,6 +714,10 @@ public class TransactionLog implements Closeable {
         fos.flush();
         fos.close();
       }
+      // no reader is left, and the file can't be deleted on some platforms while mapped
+      if (channelInputStreamOpener != null) {
+        channelInputStreamOpener.close();
+      }
 
       if (deleteOnClose) {
         try {
@@ -686,6 +765,66 @@ public class TransactionLog implements Closeable {
     return fos.size();
   }
 
+  /** Receives the headers of log records, see {@link #scanRecordHeaders(long, RecordVisitor)}. */
+  @FunctionalInterface
+  public interface RecordVisitor {
+    /**
+     * @param position the position of the record in the log, as accepted by {@link #lookup(long)}
+     * @param flags the operation and flags of the record
+     * @param version the version of the record
+     * @return false to stop the scan
+     */
+    boolean visit(long position, int flags, long version) throws IOException;
+  }
+
+  /**
+   * Visits the position, flags and version of every record at or after {@code startingPos}, newest
+   * first. Records are located using the length written after each one, and only the first few
+   * bytes of each record are decoded, so documents are never read. The full record can be decoded
+   * lazily with {@link #lookup(long)} if needed.
+   */
+  public void scanRecordHeaders(long startingPos, RecordVisitor visitor) throws IOException {
+    long recordEnd;
+    synchronized (this) {
+      fos.flush();
+      recordEnd = fos.size();
+    }
+
+    ChannelFastInputStream is = channelInputStreamOpener.open(channel, 0);
+    try (LogCodec codec = new LogCodec(resolver)) {
+      while (recordEnd >= 4) {
+        // position the buffer so that this record ends at the end of it; for small records the
+        // following (older) records will be in the buffer too
+        long bufferPos = is.getBufferPos();
+        if (recordEnd - 4 < bufferPos || recordEnd > bufferPos + is.getEndInBuffer()) {
+          is.seek(Math.max(0, recordEnd - is.getBufferSize()));
+          is.peek();
+        }
+        is.seek(recordEnd - 4);
+        long recordStart = recordEnd - 4 - is.readInt();
+        if (recordStart <= 0 || recordStart < startingPos) {
+          break; // the log header, or before where we were asked to start
+        }
+
+        is.seek(recordStart);
+        byte tag = is.readByte();
+        if ((tag >>> 5) != (JavaBinCodec.ARR >>> 5)) {
+          throw new IOException("Expected a log record at position " + recordStart + " of " + this);
+        }
+        if ((tag & 0x1f) == 0x1f) {
+          JavaBinCodec.readVInt(is); // rest of the array size
+        }
+        int flags = (Integer) codec.readVal(is);
+        long version = (Long) codec.readVal(is);
+
+        if (!visitor.visit(recordStart, flags, version)) {
+          break;
+        }
+        recordEnd = recordStart;
+      }
+    }
+  }
+
   /**
    * Returns a reader that can be used while a log is still in use. Currently only *one* LogReader
    * may be outstanding, and that log may only be used from a single thread.
@@ -804,27 +943,33 @@ public class TransactionLog implements Closeable {
     public Object next() throws IOException, InterruptedException {
       if (versionToPos == null) {
         versionToPos = new TreeMap<>();
-        Object o;
-        long pos = startingPos;
-
-        long lastVersion = Long.MIN_VALUE;
-        while ((o = super.next()) != null) {
-          List<?> entry = (List<?>) o;
-          long version = (Long) entry.get(UpdateLog.VERSION_IDX);
-          version = Math.abs(version);
-          versionToPos.put(version, pos);
-          pos = currentPos();
-
-          if (version < lastVersion) inOrder = false;
-          lastVersion = version;
+        // only the record headers are decoded here; documents are read once, in sorted order
+        scanRecordHeaders(
+            startingPos,
+            (pos, flags, version) -> {
+              // newest first, so keep the last record written with a given version
+              versionToPos.putIfAbsent(Math.abs(version), pos);
+              return true;
+            });
+
+        long lastPos = Long.MIN_VALUE;
+        for (long pos : versionToPos.values()) {
+          if (pos < lastPos) {
+            inOrder = false;
+            break;
+          }
+          lastPos = pos;
         }
-        fis.seek(startingPos);
       }
 
       if (inOrder) {
         return super.next();
       } else {
-        if (iterator == null) iterator = versionToPos.values().iterator();
+        if (iterator == null) {
+          iterator = versionToPos.values().iterator();
+          // record positions are past the log header, which we need to read ourselves
+          if (currentPos() == 0) readHeader(fis);
+        }
         if (!iterator.hasNext()) return null;
         long pos = iterator.next();
         if (pos != currentPos()) fis.seek(pos);
@@ -1021,6 +1166,167 @@ public class TransactionLog implements Closeable {
     }
   }
 
+  /**
+   * A {@link ChannelFastInputStream} reading from memory-mapped regions of the log file rather than
+   * issuing a positional read on the channel for every buffer refill.
+   *
+   * @see MappedChannelInputStreamOpener
+   */
+  public static class MappedChannelFastInputStream extends ChannelFastInputStream {
+    private final MappedChannelInputStreamOpener regions;
+
+    MappedChannelFastInputStream(
+        FileChannel ch, long chPosition, MappedChannelInputStreamOpener regions) {
+      super(ch, chPosition);
+      this.regions = regions;
+    }
+
+    @Override
+    public int readWrappedStream(byte[] target, int offset, int len) throws IOException {
+      return regions.read(ch, readFromStream, target, offset, len);
+    }
+  }
+
+  /**
+   * Opens {@link MappedChannelFastInputStream}s that share the mapped regions of one log file. The
+   * file is mapped in fixed size regions as it is read. Since a log may still be growing, the last
+   * region only covers the file as it was when mapped; reads past it fall back to the channel until
+   * the file has grown enough to be worth re-mapping.
+   *
+   * <p>The regions are unmapped when the log is closed, rather than once garbage collected, with
+   * the same hack as Lucene's {@code MMapDirectory}. Regions replaced by a larger mapping of the
+   * tail are kept mapped until then. Readers look regions up in an array that is replaced as a
+   * whole whenever a region is mapped, and copy from them with absolute reads, so that they don't
+   * block each other. They share a read lock that closing takes exclusively, so that a log being
+   * force closed can't unmap a region that is still read.
+   */
+  static class MappedChannelInputStreamOpener implements ChannelInputStreamOpener {
+    // a MappedByteBuffer can address at most 2GB
+    private static final int DEFAULT_REGION_SHIFT = 30;
+    private static final long REMAP_GROWTH = 8L << 20;
+
+    private final int regionShift;
+    private final long regionMask;
+    // replaced as a whole whenever a region is mapped, so that readers can look it up lock free
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    // the earlier, smaller mappings of the tail of the log; guarded by this
+    private final List<MappedByteBuffer> replaced = new ArrayList<>();
+    // shared by reads, exclusive to close
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed; // guarded by closeLock
+
+    MappedChannelInputStreamOpener() {
+      this(DEFAULT_REGION_SHIFT);
+    }
+
+    /** Visible for testing with small regions. */
+    MappedChannelInputStreamOpener(int regionShift) {
+      assert regionShift > 0 && regionShift <= DEFAULT_REGION_SHIFT;
+      this.regionShift = regionShift;
+      this.regionMask = (1L << regionShift) - 1;
+    }
+
+    @Override
+    public ChannelFastInputStream open(FileChannel channel, long position) {
+      return new MappedChannelFastInputStream(channel, position, this);
+    }
+
+    int read(FileChannel channel, long position, byte[] target, int offset, int len)
+        throws IOException {
+      final Lock readLock = closeLock.readLock();
+      readLock.lock();
+      try {
+        if (closed) {
+          throw new ClosedChannelException();
+        }
+        int regionOffset = (int) (position & regionMask);
+        ByteBuffer region = getRegion(channel, position);
+        if (region == null || regionOffset >= region.limit()) {
+          return channel.read(ByteBuffer.wrap(target, offset, len), position);
+        }
+        int n = Math.min(len, region.limit() - regionOffset);
+        region.get(regionOffset, target, offset, n);
+        return n;
+      } finally {
+        readLock.unlock();
+      }
+    }
+
+    private ByteBuffer getRegion(FileChannel channel, long position) throws IOException {
+      int index = (int) (position >>> regionShift);
+      long regionStart = (long) index << regionShift;
+      MappedByteBuffer[] current = regions;
+      MappedByteBuffer region = index < current.length ? current[index] : null;
+      if (region != null && region.limit() > position - regionStart) {
+        return region;
+      }
+
+      long size = channel.size();
+      if (position >= size) {
+        return region;
+      }
+      int mappedLength = region == null ? 0 : region.limit();
+      long length = Math.min(1L << regionShift, size - regionStart);
+      if (region != null && length < (1L << regionShift) && length - mappedLength < REMAP_GROWTH) {
+        // the tail of a growing log; not worth a new mapping yet
+        return region;
+      }
+      return mapRegion(channel, index, length);
+    }
+
+    private synchronized MappedByteBuffer mapRegion(FileChannel channel, int index, long length)
+        throws IOException {
+      MappedByteBuffer[] current = regions;
+      MappedByteBuffer region = index < current.length ? current[index] : null;
+      if (region != null && region.limit() >= length) {
+        // mapped by a concurrent reader meanwhile
+        return region;
+      }
+      if (region != null) {
+        replaced.add(region);
+      }
+      // only map what already exists; mapping past the end would grow the file
+      region = channel.map(FileChannel.MapMode.READ_ONLY, (long) index << regionShift, length);
+      MappedByteBuffer[] extended = Arrays.copyOf(current, Math.max(current.length, index + 1));
+      extended[index] = region;
+      regions = extended;
+      return region;
+    }
+
+    /** The number of regions currently mapped. Visible for testing. */
+    synchronized int mappedRegionCount() {
+      int count = replaced.size();
+      for (MappedByteBuffer region : regions) {
+        if (region != null) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    @Override
+    public void close() {
+      final Lock writeLock = closeLock.writeLock();
+      // waits for the reads in progress, which may be mapping regions
+      writeLock.lock();
+      try {
+        closed = true;
+        for (MappedByteBuffer region : regions) {
+          BufferCleaner.release(region);
+        }
+        synchronized (this) {
+          for (MappedByteBuffer region : replaced) {
+            BufferCleaner.release(region);
+          }
+          replaced.clear();
+        }
+        regions = new MappedByteBuffer[0];
+      } finally {
+        writeLock.unlock();
+      }
+    }
+  }
+
   /** Opens {@link OutputStream} from {@link FileChannel}. */
   protected interface OutputStreamOpener {
 
@@ -1043,5 +1349,8 @@ public class TransactionLog implements Closeable {
      *     FileChannel}.
      */
     ChannelFastInputStream open(FileChannel channel, long position) throws IOException;
+
+    /** Releases the resources of the streams, once the log is closed and none is read anymore. */
+    default void close() {}
   }
 }
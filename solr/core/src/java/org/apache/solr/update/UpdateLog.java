@@ -114,7 +114,12 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   public enum SyncLevel {
     NONE,
     FLUSH,
-    FSYNC;
+    FSYNC,
+    /**
+     * Same durability as {@link #FSYNC}, but concurrent requests share a single fsync of the
+     * transaction log (group commit) instead of each performing their own.
+     */
+    GROUP_FSYNC;
 
     public static SyncLevel getSyncLevel(String level) {
       if (level == null) {
@@ -147,6 +152,15 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     }
   }
 
+  /** Value of the {@code versionMap} init arg selecting a {@link HashMap} per commit (default). */
+  public static final String VERSION_MAP_HASH = "hash";
+
+  /**
+   * Value of the {@code versionMap} init arg selecting a map that keeps ids and log pointers in a
+   * few primitive arrays rather than allocating objects per update.
+   */
+  public static final String VERSION_MAP_COMPACT = "compact";
+
   public static final int ADD = 0x01;
   public static final int DELETE = 0x02;
   public static final int DELETE_BY_QUERY = 0x03;
@@ -211,6 +225,8 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
   protected Deque<TransactionLog> newestLogsOnStartup = new ArrayDeque<>();
   protected int numOldRecords; // number of records in the recent logs
 
+  protected boolean compactVersionMap;
+  protected boolean mmapReads;
   protected Map<BytesRef, LogPtr> map = new HashMap<>();
   protected Map<BytesRef, LogPtr> prevMap; // used while committing/reopening is happening
   protected Map<BytesRef, LogPtr> prevMap2; // used while committing/reopening is happening
@@ -379,6 +395,21 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     dataDir = (String) info.initArgs.get("dir");
     defaultSyncLevel = SyncLevel.getSyncLevel((String) info.initArgs.get("syncLevel"));
 
+    String versionMap = (String) info.initArgs.get("versionMap");
+    if (versionMap == null || VERSION_MAP_HASH.equals(versionMap)) {
+      compactVersionMap = false;
+    } else if (VERSION_MAP_COMPACT.equals(versionMap)) {
+      compactVersionMap = true;
+    } else {
+      throw new SolrException(
+          ErrorCode.SERVER_ERROR,
+          "Unknown versionMap: " + versionMap + ", expected one of [hash, compact]");
+    }
+    map = newVersionMap();
+
+    Object mmapReadsArg = info.initArgs.get("mmapReads");
+    mmapReads = mmapReadsArg != null && Boolean.parseBoolean(mmapReadsArg.toString());
+
     numRecordsToKeep = objToInt(info.initArgs.get("numRecordsToKeep"), 100);
     maxNumLogsToKeep = objToInt(info.initArgs.get("maxNumLogsToKeep"), 10);
     if (info.initArgs.get("numVersionBuckets") != null) {
@@ -396,11 +427,13 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     updateLocks = new UpdateLocks(timeoutMs);
 
     log.info(
-        "Initializing UpdateLog: dataDir={} defaultSyncLevel={} numRecordsToKeep={} maxNumLogsToKeep={}",
+        "Initializing UpdateLog: dataDir={} defaultSyncLevel={} numRecordsToKeep={} maxNumLogsToKeep={} versionMap={} mmapReads={}",
         dataDir,
         defaultSyncLevel,
         numRecordsToKeep,
-        maxNumLogsToKeep);
+        maxNumLogsToKeep,
+        compactVersionMap ? VERSION_MAP_COMPACT : VERSION_MAP_HASH,
+        mmapReads);
   }
 
   private final AtomicBoolean initialized = new AtomicBoolean();
@@ -655,6 +688,27 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     solrMetricsContext.gauge(() -> getTotalLogsSize(), true, "bytes", scope, "replay", "remaining");
     applyingBufferedOpsMeter = solrMetricsContext.meter("ops", scope, "applyingBuffered");
     replayOpsMeter = solrMetricsContext.meter("ops", scope, "replay");
+    solrMetricsContext.gauge(
+        () -> {
+          LogReplayer replayer = activeReplayer;
+          return replayer == null ? 0 : replayer.pendingTasks.get();
+        },
+        true,
+        "ops",
+        scope,
+        "replay",
+        "pending");
+    solrMetricsContext.gauge(
+        () -> {
+          LogReplayer replayer = activeReplayer;
+          return replayer == null ? 0L : replayer.getRemainingBytes();
+        },
+        true,
+        "bytes",
+        scope,
+        "replay",
+        "currentLog",
+        "remaining");
     copyOverOldUpdatesMeter = solrMetricsContext.meter("ops", scope, "copyOverOldUpdates");
     solrMetricsContext.gauge(() -> state.getValue(), true, "state", scope);
   }
@@ -670,6 +724,14 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
    */
   public TransactionLog newTransactionLog(
       Path tlogFile, Collection<String> globalStrings, boolean openExisting) {
+    if (mmapReads) {
+      return new TransactionLog(
+          tlogFile,
+          globalStrings,
+          openExisting,
+          TransactionLog.OUTPUT_STREAM_OPENER,
+          new TransactionLog.MappedChannelInputStreamOpener());
+    }
     return new TransactionLog(tlogFile, globalStrings, openExisting);
   }
 
@@ -985,7 +1047,15 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     prevMap = map;
     prevMapLog = tlog;
 
-    map = new HashMap<>();
+    map = newVersionMap();
+  }
+
+  /**
+   * Creates the map from indexed id to {@link LogPtr} used for updates between commits, as
+   * selected by the {@code versionMap} init arg.
+   */
+  protected Map<BytesRef, LogPtr> newVersionMap() {
+    return compactVersionMap ? new CompactLogPtrMap() : new HashMap<>();
   }
 
   private void clearOldMaps() {
@@ -1064,7 +1134,7 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
       // any added documents will make it into this commit or not.
       // But we do know that any updates already added will definitely
       // show up in the latest reader after the commit succeeds.
-      map = new HashMap<>();
+      map = newVersionMap();
 
       if (debug) {
         log.debug(
@@ -2000,6 +2070,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
 
   protected RecoveryInfo recoveryInfo;
 
+  // the log replay in progress, if any (used for metrics)
+  private volatile LogReplayer activeReplayer;
+
   class LogReplayer implements Runnable {
     private final SolrParams BASE_REPLAY_PARAMS =
         new MapSolrParams(
@@ -2012,7 +2085,9 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     private Logger loglog = log; // set to something different?
 
     Deque<TransactionLog> translogs;
-    TransactionLog.LogReader tlogReader;
+    volatile TransactionLog.LogReader tlogReader;
+    // updates handed to the replay executor that have not completed yet
+    final AtomicInteger pendingTasks = new AtomicInteger(0);
     boolean activeLog;
     // state where we lock out other updates and finish those updates that snuck in before we locked
     boolean finishing = false;
@@ -2033,8 +2108,22 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
     private SolrQueryRequest req;
     private SolrQueryResponse rsp;
 
+    /** Best effort number of bytes of the log currently being replayed that are yet to be read. */
+    long getRemainingBytes() {
+      TransactionLog.LogReader reader = tlogReader;
+      if (reader == null) {
+        return 0;
+      }
+      try {
+        return Math.max(0, reader.currentSize() - reader.currentPos());
+      } catch (IOException e) {
+        return 0;
+      }
+    }
+
     @Override
     public void run() {
+      activeReplayer = this;
       req = new LocalSolrQueryRequest(uhandler.core, BASE_REPLAY_PARAMS);
       rsp = new SolrQueryResponse();
       // setting request info will help logging
@@ -2070,6 +2159,10 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
           log.error("ERROR: didn't get to recover from tlog {}", translog);
           translog.decref();
         }
+        // even after an Error, so that the replay gauges don't report a stale replayer
+        if (activeReplayer == this) {
+          activeReplayer = null;
+        }
       }
 
       loglog.warn("Log replay finished. recoveryInfo={}", recoveryInfo);
@@ -2118,7 +2211,6 @@ public class UpdateLog implements PluginInfoInitialized, SolrMetricProducer {
 
         OrderedExecutor<BytesRef> executor =
             inSortedOrder ? null : req.getCoreContainer().getReplayUpdatesExecutor();
-        AtomicInteger pendingTasks = new AtomicInteger(0);
         AtomicReference<SolrException> exceptionOnExecuteUpdate = new AtomicReference<>();
 
         long commitVersion = 0;
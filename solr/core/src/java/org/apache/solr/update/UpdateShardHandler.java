@@ -18,13 +18,17 @@ package org.apache.solr.update;
 
 import static org.apache.solr.util.stats.InstrumentedHttpRequestExecutor.KNOWN_METRIC_NAME_STRATEGIES;
 
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
@@ -87,6 +91,13 @@ public class UpdateShardHandler implements SolrInfoBean {
 
   private SolrMetricsContext solrMetricsContext;
 
+  /** Number of asynchronously distributed updates awaiting a response, across all cores. */
+  private final AtomicInteger asyncUpdatesInFlight = new AtomicInteger();
+  private String metricsScope;
+  // per replica ack latency timers, removed once no StreamingSolrClients sends to the replica
+  // anymore so that the metric names don't grow with every replica ever replicated to
+  private final Map<String, AckTimer> asyncUpdateAckTimers = new HashMap<>();
+
   private int socketTimeout = HttpClientUtil.DEFAULT_SO_TIMEOUT;
   private int connectionTimeout = HttpClientUtil.DEFAULT_CONNECT_TIMEOUT;
 
@@ -205,6 +216,7 @@ public class UpdateShardHandler implements SolrInfoBean {
   public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
     solrMetricsContext = parentContext.getChildContext(this);
     String expandedScope = SolrMetricManager.mkName(scope, getCategory().name());
+    metricsScope = expandedScope;
     trackHttpSolrMetrics.initializeMetrics(solrMetricsContext, expandedScope);
     defaultConnectionManager.initializeMetrics(solrMetricsContext, expandedScope);
     updateExecutor =
@@ -219,6 +231,57 @@ public class UpdateShardHandler implements SolrInfoBean {
             this,
             solrMetricsContext.getMetricRegistry(),
             SolrMetricManager.mkName("recoveryExecutor", expandedScope, "threadPool"));
+    solrMetricsContext.gauge(
+        asyncUpdatesInFlight::get, true, "inFlight", expandedScope, "asyncUpdates");
+  }
+
+  /**
+   * Returns the counter of asynchronously distributed updates that have been sent but not yet
+   * acknowledged. Exposed as the {@code asyncUpdates.inFlight} gauge.
+   */
+  public AtomicInteger getAsyncUpdatesInFlight() {
+    return asyncUpdatesInFlight;
+  }
+
+  /**
+   * Returns the timer tracking the time between sending a batch of asynchronous updates to the
+   * replica at {@code replicaUrl} and receiving its acknowledgement, or null if metrics have not
+   * been initialized. Exposed as the {@code asyncUpdates.<replicaUrl>.ackLatency} timer. Every call
+   * must be paired with a call to {@link #releaseAsyncUpdateAckTimer(String)}; the timer is removed
+   * once the last user has released it.
+   */
+  public synchronized Timer acquireAsyncUpdateAckTimer(String replicaUrl) {
+    if (solrMetricsContext == null) {
+      return null;
+    }
+    AckTimer ackTimer =
+        asyncUpdateAckTimers.computeIfAbsent(
+            replicaUrl,
+            k -> new AckTimer(solrMetricsContext.timer(asyncUpdateAckTimerName(k))));
+    ackTimer.users++;
+    return ackTimer.timer;
+  }
+
+  /** Releases a timer obtained from {@link #acquireAsyncUpdateAckTimer(String)}. */
+  public synchronized void releaseAsyncUpdateAckTimer(String replicaUrl) {
+    AckTimer ackTimer = asyncUpdateAckTimers.get(replicaUrl);
+    if (ackTimer != null && --ackTimer.users == 0) {
+      asyncUpdateAckTimers.remove(replicaUrl);
+      solrMetricsContext.getMetricRegistry().remove(asyncUpdateAckTimerName(replicaUrl));
+    }
+  }
+
+  private String asyncUpdateAckTimerName(String replicaUrl) {
+    return SolrMetricManager.mkName("ackLatency", metricsScope, "asyncUpdates", replicaUrl);
+  }
+
+  private static class AckTimer {
+    final Timer timer;
+    int users;
+
+    AckTimer(Timer timer) {
+      this.timer = timer;
+    }
   }
 
   @Override
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import org.apache.solr.common.util.SuppressForbidden;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Releases the memory of direct and memory-mapped {@link ByteBuffer}s as soon as they are no
+ * longer needed, rather than once they have been garbage collected. This is the hack Lucene's
+ * {@code MMapDirectory} uses to unmap its buffers, which it doesn't expose: {@code
+ * sun.misc.Unsafe#invokeCleaner}.
+ *
+ * <p>A buffer must never be accessed again once released, not even through a duplicate or a slice
+ * of it, as this would crash the JVM. Callers must make sure that no other thread still reads it.
+ *
+ * @lucene.internal
+ */
+public final class BufferCleaner {
+  private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final MethodHandle CLEANER = lookupCleaner();
+
+  /** Whether buffers are released by {@link #release(ByteBuffer)}, or left to the GC otherwise. */
+  public static final boolean SUPPORTED = CLEANER != null;
+
+  private BufferCleaner() {}
+
+  @SuppressForbidden(reason = "Needs access to sun.misc.Unsafe to release buffers, like Lucene")
+  private static MethodHandle lookupCleaner() {
+    try {
+      final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      final MethodHandle invokeCleaner =
+          MethodHandles.lookup()
+              .findVirtual(
+                  unsafeClass,
+                  "invokeCleaner",
+                  MethodType.methodType(void.class, ByteBuffer.class));
+      final Field f = unsafeClass.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      return invokeCleaner.bindTo(f.get(null));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn(
+          "Buffers can't be released explicitly, their memory is only released by the GC: {}",
+          e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Releases the memory of a direct buffer, which must have been allocated or mapped as is, not be
+   * a duplicate or a slice. Does nothing for heap buffers, or if not {@link #SUPPORTED}.
+   */
+  public static void release(ByteBuffer buffer) {
+    if (CLEANER == null || buffer == null || !buffer.isDirect()) {
+      return;
+    }
+    try {
+      CLEANER.invokeExact(buffer);
+    } catch (Throwable t) {
+      log.warn("Failed to release a buffer, its memory will be released by the GC", t);
+    }
+  }
+}
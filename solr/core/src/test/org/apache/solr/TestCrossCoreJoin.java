@@ -41,6 +41,9 @@ public class TestCrossCoreJoin extends SolrTestCaseJ4 {
   public static void beforeTests() throws Exception {
     System.setProperty("enable.update.log", "false"); // schema12 doesn't support _version_
     System.setProperty("solr.filterCache.async", "true");
+    // warm the filterCache entries on a pool
+    System.setProperty("solr.warmingThreads", "4");
+    System.setProperty("solr.filterCache.autowarmCount", "512");
     //    initCore("solrconfig.xml","schema12.xml");
 
     // File testHome = createTempDir().toFile();
@@ -208,6 +211,23 @@ public class TestCrossCoreJoin extends SolrTestCaseJ4 {
         "/response=={'numFound':1,'start':0,'numFoundExact':true,'docs':[{'id':'1'}]}");
   }
 
+  @Test
+  public void testJoinFilterWarming() throws Exception {
+    // more joins than the entries regenerated in a chunk, so that pool threads warm some of them
+    final int joins = 200;
+    for (int i = 0; i < joins; i++) {
+      String from = "id:(" + (10 + i % 4) + " OR " + (1000 + i) + ")";
+      String join = "{!join from=dept_id_s to=dept_s fromIndex=fromCore}" + from;
+      assertJQ(req("q", "*:*", "fq", join, "fl", "id"));
+    }
+    // opens a new searcher, a document without any department doesn't change the other tests
+    assertU(adoc("id", "100"));
+    assertU(commit());
+    // entries failing to regenerate aren't put into the new filterCache
+    int warmed = h.getCore().withSearcher(searcher -> searcher.getFilterCache().size());
+    assertTrue("warmed " + warmed + " filters", warmed >= joins);
+  }
+
   @Test
   public void testCoresAreDifferent() throws Exception {
     assertQEx("schema12.xml" + " has no \"cat\" field", req("cat:*"), ErrorCode.BAD_REQUEST);
@@ -245,5 +265,7 @@ public class TestCrossCoreJoin extends SolrTestCaseJ4 {
   @AfterClass
   public static void nukeAll() {
     fromCore = null;
+    System.clearProperty("solr.warmingThreads");
+    System.clearProperty("solr.filterCache.autowarmCount");
   }
 }
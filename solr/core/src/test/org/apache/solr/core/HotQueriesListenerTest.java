@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.core;
+
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.EventParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class HotQueriesListenerTest extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  private static void record(HotQueriesListener listener, String... params) {
+    try (SolrQueryRequest req = req(params)) {
+      listener.record(req);
+    }
+  }
+
+  @Test
+  public void testSnapshotAndReplay() throws Exception {
+    assertU(adoc("id", "42"));
+    assertU(commit());
+
+    SolrCore core = h.getCore();
+    HotQueriesListener listener = new HotQueriesListener(core);
+    NamedList<Object> args = new NamedList<>();
+    args.add("maxQueries", 2);
+    listener.init(args);
+
+    for (int i = 0; i < 3; i++) {
+      record(listener, "qt", "/select", "q", "*:*", "fq", "id:42", "rows", "5");
+      record(listener, "qt", "/select", "q", "id:42", "sort", "id asc");
+    }
+    // neither warming requests nor requests without a query are recorded
+    record(listener, "qt", "/select", "q", "*:*", EventParams.EVENT, EventParams.FIRST_SEARCHER);
+    record(listener, "qt", "/select", "fq", "id:42");
+    assertEquals(2, listener.getHottest().size());
+
+    listener.snapshot();
+    assertTrue(Files.exists(listener.getSnapshotPath()));
+    List<SolrParams> snapshot = listener.readSnapshot();
+    assertEquals(2, snapshot.size());
+    Set<String> queries = new HashSet<>();
+    for (SolrParams params : snapshot) {
+      assertEquals("/select", params.get(CommonParams.QT));
+      assertNull("only cache relevant params are kept", params.get(CommonParams.ROWS));
+      queries.add(params.get(CommonParams.Q));
+    }
+    assertEquals(Set.of("*:*", "id:42"), queries);
+
+    // replaying on a first searcher fills its filterCache
+    HotQueriesListener restarted = new HotQueriesListener(core);
+    restarted.init(args);
+    core.withSearcher(
+        searcher -> {
+          TermQuery filter = new TermQuery(new Term("id", "42"));
+          searcher.getFilterCache().remove(filter);
+          restarted.newSearcher(searcher, null);
+          assertNotNull(searcher.getFilterCache().get(filter));
+          return null;
+        });
+  }
+}
@@ -84,6 +84,7 @@ public class TestSolrXml extends SolrTestCaseJ4 {
     assertEquals("core sorter class", "testCoreSorter", cfg.getCoreSorterClass());
     assertEquals("core load threads", 11, cfg.getCoreLoadThreadCount(false));
     assertEquals("replay update threads", 100, cfg.getReplayUpdatesThreads());
+    assertEquals("cache ram budget", 512, cfg.getCacheRamBudgetMB());
     assertThat(
         "core root dir",
         cfg.getCoreRootDirectory().toString(),
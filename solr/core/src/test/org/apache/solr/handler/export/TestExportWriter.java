@@ -17,7 +17,10 @@
 package org.apache.solr.handler.export;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -27,14 +30,20 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.apache.lucene.tests.util.TestUtil;
 import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.client.solrj.io.stream.ColumnarTupleStreamParser;
+import org.apache.solr.common.IteratorWriter;
+import org.apache.solr.common.MapWriter;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.StreamParams;
 import org.apache.solr.common.util.SuppressForbidden;
 import org.apache.solr.common.util.Utils;
 import org.apache.solr.index.LogDocMergePolicyFactory;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.request.SolrRequestInfo;
+import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.schema.SchemaField;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -1172,6 +1181,177 @@ public class TestExportWriter extends SolrTestCaseJ4 {
     validateSort(numDocs);
   }
 
+  @Test
+  public void testSortThreads() throws Exception {
+    String[] strVals = new String[20];
+    for (int i = 0; i < strVals.length; i++) {
+      strVals[i] = TestUtil.randomSimpleString(random(), 1, 5);
+    }
+    int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      assertU(
+          adoc(
+              "id", String.valueOf(i),
+              "intdv", String.valueOf(random().nextInt(1000)),
+              "longdv", String.valueOf(random().nextLong()),
+              "doubledv", String.valueOf(random().nextDouble()),
+              "stringdv", strVals[random().nextInt(strVals.length)]));
+      if (random().nextInt(100) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+    // runs are only sorted ahead when there is more than one segment
+    if (h.getCore().withSearcher(searcher -> searcher.getIndexReader().leaves().size()) < 2) {
+      assertU(adoc("id", String.valueOf(numDocs), "intdv", "1", "stringdv", strVals[0]));
+      assertU(commit());
+    }
+
+    // don't fall back to sorting serially on a single CPU
+    int origMaxSortThreads = ExportWriter.MAX_SORT_THREADS;
+    ExportWriter.MAX_SORT_THREADS = Math.max(4, origMaxSortThreads);
+    try {
+      ThreadPoolExecutor sortExecutor = (ThreadPoolExecutor) h.getCore().getExportSortExecutor();
+      // a small queue size makes every segment sort many runs
+      String queueSize = String.valueOf(TestUtil.nextInt(random(), 10, 100));
+      for (String sort :
+          new String[] {
+            "intdv asc,id desc", "longdv desc", "stringdv asc,doubledv desc", "stringdv desc,id asc"
+          }) {
+        String fl = "id,intdv,longdv,doubledv,stringdv";
+        String expected =
+            h.query(
+                req("q", "*:*", "qt", "/export", "fl", fl, "sort", sort, "queueSize", queueSize));
+        long sortTasks = sortExecutor.getTaskCount();
+        String actual =
+            h.query(
+                req(
+                    "q", "*:*",
+                    "qt", "/export",
+                    "fl", fl,
+                    "sort", sort,
+                    "queueSize", queueSize,
+                    "sortThreads", String.valueOf(TestUtil.nextInt(random(), 2, 4))));
+        assertEquals(sort, expected, actual);
+        // the runs were sorted on the pool
+        assertTrue(sort, sortExecutor.getTaskCount() > sortTasks);
+      }
+    } finally {
+      ExportWriter.MAX_SORT_THREADS = origMaxSortThreads;
+    }
+  }
+
+  @Test
+  public void testColumnar() throws Exception {
+    assertU(
+        adoc(
+            "id", "1",
+            "intdv", "1",
+            "longdv", "10",
+            "floatdv", "1.5",
+            "doubledv", "2.5",
+            "datedv", "2017-01-01T00:00:00Z",
+            "stringdv", "a",
+            "booleandv", "true",
+            "intdv_m", "3",
+            "intdv_m", "2"));
+    assertU(adoc("id", "2", "intdv", "2", "stringdv", "b", "booleandv", "false"));
+    assertU(commit());
+    assertU(adoc("id", "3", "intdv", "3", "longdv", "30", "stringdv", "a"));
+    assertU(commit());
+
+    String fl = "id,intdv,longdv,floatdv,doubledv,datedv,stringdv,booleandv,intdv_m";
+    List<Map<String, Object>> docs =
+        exportColumnar(req("q", "*:*", "fl", fl, "sort", "intdv asc", "wt", "columnar"));
+    assertEquals(3, docs.size());
+    Map<String, Object> expected = new HashMap<>();
+    expected.put("id", "1");
+    expected.put("intdv", 1);
+    expected.put("longdv", 10L);
+    expected.put("floatdv", 1.5f);
+    expected.put("doubledv", 2.5d);
+    expected.put("datedv", new Date(Instant.parse("2017-01-01T00:00:00Z").toEpochMilli()));
+    expected.put("stringdv", "a");
+    expected.put("booleandv", true);
+    expected.put("intdv_m", List.of(2, 3));
+    assertEquals(expected, docs.get(0));
+    assertEquals(Map.of("id", "2", "intdv", 2, "stringdv", "b", "booleandv", false), docs.get(1));
+    assertEquals(Map.of("id", "3", "intdv", 3, "longdv", 30L, "stringdv", "a"), docs.get(2));
+
+    // the errors are sent as a doc
+    docs = exportColumnar(req("q", "*:*", "sort", "intdv asc", "wt", "columnar"));
+    assertEquals(1, docs.size());
+    assertTrue(docs.get(0).toString(), docs.get(0).get("EXCEPTION").toString().contains("fl"));
+  }
+
+  @Test
+  public void testColumnarBatches() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ColumnarExportWriter writer = new ColumnarExportWriter(bytes, 2)) {
+      writer.writeMap(
+          m ->
+              m.put(
+                  "response",
+                  (MapWriter)
+                      r ->
+                          r.put(
+                              "docs",
+                              (IteratorWriter)
+                                  w -> {
+                                    w.add((MapWriter) ew -> ew.put("a", 1).put("b", "x"));
+                                    w.add((MapWriter) ew -> ew.put("b", "x").put("c", 1.5d));
+                                    w.add((MapWriter) ew -> ew.put("a", 2L).put("b", "y"));
+                                    w.add((MapWriter) ew -> ew.put("a", "z").put("b", "x"));
+                                    w.add((MapWriter) ew -> ew.put("c", List.of(1, "2")));
+                                    // more terms than a batch start the dictionary over
+                                    for (int i = 0; i < 10; i++) {
+                                      String term = "t" + (i % 5);
+                                      w.add((MapWriter) ew -> ew.put("s", term));
+                                    }
+                                  })));
+    }
+    List<Map<String, Object>> docs = new ArrayList<>();
+    try (ColumnarTupleStreamParser parser =
+        new ColumnarTupleStreamParser(new ByteArrayInputStream(bytes.toByteArray()))) {
+      for (Map<String, Object> doc = parser.next(); doc != null; doc = parser.next()) {
+        docs.add(doc);
+      }
+    }
+    List<Map<String, Object>> expected =
+        new ArrayList<>(
+            List.of(
+                Map.of("a", 1, "b", "x"),
+                Map.of("b", "x", "c", 1.5d),
+                Map.of("a", 2L, "b", "y"),
+                Map.of("a", "z", "b", "x"),
+                Map.of("c", List.of(1, "2"))));
+    for (int i = 0; i < 10; i++) {
+      expected.add(Map.of("s", "t" + (i % 5)));
+    }
+    assertEquals(expected, docs);
+  }
+
+  private List<Map<String, Object>> exportColumnar(SolrQueryRequest req) throws Exception {
+    SolrQueryResponse rsp = new SolrQueryResponse();
+    SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+    try {
+      req.getCore().execute(req.getCore().getRequestHandler("/export"), req, rsp);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      req.getResponseWriter().write(bytes, req, rsp);
+      List<Map<String, Object>> docs = new ArrayList<>();
+      try (ColumnarTupleStreamParser parser =
+          new ColumnarTupleStreamParser(new ByteArrayInputStream(bytes.toByteArray()))) {
+        for (Map<String, Object> doc = parser.next(); doc != null; doc = parser.next()) {
+          docs.add(doc);
+        }
+      }
+      return docs;
+    } finally {
+      req.close();
+      SolrRequestInfo.clearRequestInfo();
+    }
+  }
+
   private void createLargeIndex() throws Exception {
     int BATCH_SIZE = 5000;
     int NUM_BATCHES = 20;
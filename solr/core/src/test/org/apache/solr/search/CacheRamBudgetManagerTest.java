@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.solr.SolrTestCase;
+
+public class CacheRamBudgetManagerTest extends SolrTestCase {
+
+  private CaffeineCache<Integer, String> newCache(String name) {
+    CaffeineCache<Integer, String> cache = new CaffeineCache<>();
+    Map<String, String> params = new HashMap<>();
+    params.put("name", name);
+    params.put("size", "100");
+    params.put("async", "false");
+    cache.init(params, null, new NoOpRegenerator());
+    return cache;
+  }
+
+  public void testRebalanceTowardsHits() throws Exception {
+    CacheRamBudgetManager manager = new CacheRamBudgetManager(100, false);
+    try {
+      CaffeineCache<Integer, String> hot = newCache("filterCache");
+      CaffeineCache<Integer, String> cold = newCache("filterCache");
+      manager.register("hot", hot);
+      manager.register("cold", cold);
+      // evenly split until there are hits
+      assertEquals(50, hot.getMaxRamMB());
+      assertEquals(50, cold.getMaxRamMB());
+
+      hot.put(1, "1");
+      for (int i = 0; i < 100; i++) {
+        assertEquals("1", hot.get(1));
+      }
+      long hits = hot.getHitCount();
+      manager.rebalance();
+      // resized in place, keeping the entries and stats of the cache
+      assertEquals(hits, hot.getHitCount());
+      assertEquals("1", hot.get(1));
+      CacheRamBudgetManager.Share hotShare = manager.getShare("hot", "filterCache");
+      CacheRamBudgetManager.Share coldShare = manager.getShare("cold", "filterCache");
+      assertTrue(hotShare.shareBytes > coldShare.shareBytes);
+      // the floor keeps the cold cache alive
+      assertEquals(manager.getBudgetBytes() / 8, coldShare.shareBytes);
+      assertTrue(hotShare.shareBytes + coldShare.shareBytes <= manager.getBudgetBytes());
+      assertEquals(hotShare.shareBytes / 1024 / 1024, hot.getMaxRamMB());
+
+      // a new searcher's cache takes over the share
+      CaffeineCache<Integer, String> hot2 = newCache("filterCache");
+      manager.register("hot", hot2);
+      assertEquals(hot.getMaxRamMB(), hot2.getMaxRamMB());
+      manager.unregister("hot", hot);
+      assertSame(hot2, manager.getShare("hot", "filterCache").cache);
+
+      manager.unregister("cold", cold);
+      assertNull(manager.getShare("cold", "filterCache"));
+      manager.rebalance();
+      assertEquals(100, hot2.getMaxRamMB());
+    } finally {
+      manager.close();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.tests.index.RandomIndexWriter;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+
+public class DocSetCollectorManagerTest extends SolrTestCase {
+
+  public void testMatchesSerialCollection() throws Exception {
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareFixedThreadPool(4, new SolrNamedThreadFactory("docSetTest"));
+    try (Directory dir = newDirectory()) {
+      try (RandomIndexWriter iw = new RandomIndexWriter(random(), dir)) {
+        int numDocs = atLeast(2000);
+        for (int i = 0; i < numDocs; i++) {
+          Document doc = new Document();
+          doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+          doc.add(new StringField("f", random().nextInt(4) == 0 ? "a" : "b", Field.Store.NO));
+          iw.addDocument(doc);
+          if (random().nextInt(100) == 0) {
+            iw.commit();
+          }
+          if (random().nextInt(50) == 0) {
+            iw.deleteDocuments(new Term("id", Integer.toString(random().nextInt(i + 1))));
+          }
+        }
+        if (random().nextInt(10) == 0) {
+          // a very sparse set, ending up as a SortedIntDocSet
+          Document doc = new Document();
+          doc.add(new StringField("f", "c", Field.Store.NO));
+          iw.addDocument(doc);
+        }
+
+        try (IndexReader reader = iw.getReader()) {
+          IndexSearcher searcher =
+              new IndexSearcher(reader, executor) {
+                @Override
+                protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+                  // one segment per slice, so that adjacent segments are collected concurrently
+                  return slices(leaves, 1, 1);
+                }
+              };
+
+          for (Query query :
+              new Query[] {
+                new TermQuery(new Term("f", "a")),
+                new TermQuery(new Term("f", "b")),
+                new TermQuery(new Term("f", "c")),
+                new MatchAllDocsQuery()
+              }) {
+            DocSetCollector collector = new DocSetCollector(reader.maxDoc());
+            searcher.search(query, collector);
+            DocSet expected = collector.getDocSet();
+
+            DocSet actual = searcher.search(query, new DocSetCollectorManager(reader.maxDoc()));
+            assertEquals(query.toString(), expected.size(), actual.size());
+            assertTrue(query.toString(), DocSetUtil.equals(expected, actual));
+          }
+        }
+      }
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+}
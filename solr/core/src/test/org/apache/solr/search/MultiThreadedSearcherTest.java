@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.List;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.tests.index.RandomIndexWriter;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.SolrTestCase;
+
+public class MultiThreadedSearcherTest extends SolrTestCase {
+
+  public void testPartitionedDocSetMatchesFullCollection() throws Exception {
+    try (Directory dir = newDirectory()) {
+      int numDocs = atLeast(1000);
+      try (RandomIndexWriter iw = new RandomIndexWriter(random(), dir)) {
+        for (int i = 0; i < numDocs; i++) {
+          Document doc = new Document();
+          doc.add(new StringField("f", random().nextInt(3) == 0 ? "a" : "b", Field.Store.NO));
+          iw.addDocument(doc);
+          if (random().nextInt(200) == 0) {
+            iw.commit();
+          }
+        }
+        iw.forceMerge(random().nextBoolean() ? 1 : 3);
+      }
+
+      try (IndexReader reader = DirectoryReader.open(dir)) {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Weight weight =
+            searcher.createWeight(
+                new TermQuery(new Term("f", "a")), ScoreMode.COMPLETE_NO_SCORES, 1f);
+
+        MultiThreadedSearcher.FixedBitSetCollector whole =
+            new MultiThreadedSearcher.FixedBitSetCollector();
+        for (LeafReaderContext ctx : reader.leaves()) {
+          score(
+              weight,
+              whole,
+              new MultiThreadedSearcher.LeafPartition(ctx, 0, ctx.reader().maxDoc()));
+        }
+        FixedBitSet expected = new FixedBitSet(reader.maxDoc());
+        whole.update(expected);
+
+        int maxDocsPerPartition = 1 + random().nextInt(300);
+        List<List<MultiThreadedSearcher.LeafPartition>> tasks =
+            MultiThreadedSearcher.partitionSlices(
+                new IndexSearcher.LeafSlice[] {new IndexSearcher.LeafSlice(reader.leaves())},
+                maxDocsPerPartition);
+
+        FixedBitSet actual = new FixedBitSet(reader.maxDoc());
+        int[] covered = new int[reader.leaves().size()];
+        for (List<MultiThreadedSearcher.LeafPartition> task : tasks) {
+          MultiThreadedSearcher.FixedBitSetCollector collector =
+              new MultiThreadedSearcher.FixedBitSetCollector();
+          for (MultiThreadedSearcher.LeafPartition partition : task) {
+            assertTrue(partition.maxDoc - partition.minDoc <= maxDocsPerPartition);
+            assertEquals(covered[partition.ctx.ord], partition.minDoc);
+            covered[partition.ctx.ord] = partition.maxDoc;
+            score(weight, collector, partition);
+          }
+          collector.update(actual);
+        }
+        for (LeafReaderContext ctx : reader.leaves()) {
+          assertEquals(ctx.reader().maxDoc(), covered[ctx.ord]);
+        }
+        assertEquals(expected, actual);
+      }
+    }
+  }
+
+  private static void score(
+      Weight weight,
+      MultiThreadedSearcher.FixedBitSetCollector collector,
+      MultiThreadedSearcher.LeafPartition partition)
+      throws Exception {
+    BulkScorer scorer = weight.bulkScorer(partition.ctx);
+    if (scorer != null) {
+      scorer.score(
+          collector.getLeafCollector(partition.ctx),
+          partition.ctx.reader().getLiveDocs(),
+          partition.minDoc,
+          partition.maxDoc);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
+
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.SolrTestCase;
+
+public class RoaringDocSetTest extends SolrTestCase {
+
+  /** Random bits mixing sparse, dense and clustered blocks. */
+  private FixedBitSet randomBits(int maxDoc) {
+    FixedBitSet bits = new FixedBitSet(maxDoc);
+    int doc = 0;
+    while (doc < maxDoc) {
+      int len = Math.min(maxDoc - doc, 1 + random().nextInt(RoaringDocSet.BLOCK_SIZE));
+      switch (random().nextInt(4)) {
+        case 0: // sparse
+          for (int i = 0; i < len / 100; i++) {
+            bits.set(doc + random().nextInt(len));
+          }
+          break;
+        case 1: // dense
+          for (int i = 0; i < len; i++) {
+            if (random().nextInt(3) == 0) bits.set(doc + i);
+          }
+          break;
+        case 2: // runs
+          int start = doc + random().nextInt(len);
+          bits.set(start, Math.min(doc + len, start + 1 + random().nextInt(2000)));
+          break;
+        default: // empty
+      }
+      doc += len;
+    }
+    return bits;
+  }
+
+  private RoaringDocSet roaring(FixedBitSet bits) {
+    return RoaringDocSet.fromBits(bits, bits.cardinality());
+  }
+
+  private void assertSameDocs(DocSet expected, DocSet actual) {
+    assertEquals(expected.size(), actual.size());
+    assertTrue(DocSetUtil.equals(expected, actual));
+  }
+
+  public void testMatchesBitDocSet() {
+    for (int iter = 0; iter < atLeast(10); iter++) {
+      int maxDoc = 1 + random().nextInt(5 * RoaringDocSet.BLOCK_SIZE);
+      FixedBitSet bitsA = randomBits(maxDoc);
+      FixedBitSet bitsB = randomBits(maxDoc);
+      BitDocSet a = new BitDocSet(bitsA);
+      BitDocSet b = new BitDocSet(bitsB);
+      RoaringDocSet ra = roaring(bitsA);
+      RoaringDocSet rb = roaring(bitsB);
+      DocSet sb = DocSetUtil.toSmallSet(b);
+
+      assertSameDocs(a, ra);
+      for (int i = 0; i < 100; i++) {
+        int doc = random().nextInt(maxDoc);
+        assertEquals(a.exists(doc), ra.exists(doc));
+      }
+      Bits bits = ra.getBits();
+      assertEquals(maxDoc, bits.length());
+      FixedBitSet added = new FixedBitSet(maxDoc);
+      ra.addAllTo(added);
+      assertEquals(bitsA, added);
+      assertEquals(bitsA, ra.getFixedBitSet());
+
+      for (DocSet other : new DocSet[] {rb, b, sb}) {
+        assertSameDocs(a.intersection(b), ra.intersection(other));
+        assertSameDocs(a.intersection(b), other.intersection(ra));
+        assertEquals(a.intersectionSize(b), ra.intersectionSize(other));
+        assertEquals(a.intersectionSize(b), other.intersectionSize(ra));
+        assertEquals(a.intersects(b), ra.intersects(other));
+        assertSameDocs(a.union(b), ra.union(other));
+        assertSameDocs(a.union(b), other.union(ra));
+        assertSameDocs(a.andNot(b), ra.andNot(other));
+        assertSameDocs(b.andNot(a), other.andNot(ra));
+        assertEquals(a.andNotSize(b), ra.andNotSize(other));
+      }
+      assertSameDocs(a, ra.clone());
+    }
+  }
+
+  public void testContainerSelection() {
+    int maxDoc = 3 * RoaringDocSet.BLOCK_SIZE;
+    FixedBitSet bits = new FixedBitSet(maxDoc);
+    // block 0: a few docs, block 1: a long run, block 2: every other doc
+    bits.set(10);
+    bits.set(1000);
+    bits.set(RoaringDocSet.BLOCK_SIZE, 2 * RoaringDocSet.BLOCK_SIZE - 10);
+    for (int doc = 2 * RoaringDocSet.BLOCK_SIZE; doc < maxDoc; doc += 2) {
+      bits.set(doc);
+    }
+    RoaringDocSet set = roaring(bits);
+    assertSameDocs(new BitDocSet(bits), set);
+    assertTrue(set.ramBytesUsed() < new BitDocSet(bits).ramBytesUsed());
+
+    long[] words = new long[RoaringDocSet.BLOCK_WORDS];
+    words[0] = 0b1011L;
+    assertTrue(RoaringDocSet.Container.fromWords(words) instanceof RoaringDocSet.ArrayContainer);
+    words[5] = -1L;
+    words[6] = -1L;
+    assertTrue(RoaringDocSet.Container.fromWords(words) instanceof RoaringDocSet.RunContainer);
+    for (int i = 0; i < words.length; i++) {
+      words[i] = 0x5555555555555555L;
+    }
+    assertTrue(RoaringDocSet.Container.fromWords(words) instanceof RoaringDocSet.BitmapContainer);
+    assertNull(RoaringDocSet.Container.fromWords(new long[RoaringDocSet.BLOCK_WORDS]));
+  }
+
+  public void testIterator() {
+    int maxDoc = 1 + random().nextInt(3 * RoaringDocSet.BLOCK_SIZE);
+    FixedBitSet bits = randomBits(maxDoc);
+    DocIterator iter = roaring(bits).iterator();
+    BitSetIterator expected = new BitSetIterator(bits, bits.cardinality());
+    for (int doc = expected.nextDoc(); doc != NO_MORE_DOCS; doc = expected.nextDoc()) {
+      assertTrue(iter.hasNext());
+      assertEquals(doc, iter.nextDoc());
+    }
+    assertFalse(iter.hasNext());
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.tests.store.BaseDirectoryWrapper;
+import org.apache.solr.SolrTestCase;
+
+public class SegmentFilterCacheTest extends SolrTestCase {
+
+  private static void addDocs(IndexWriter writer, int start, int count) throws Exception {
+    for (int i = start; i < start + count; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(new StringField("even", Boolean.toString(i % 2 == 0), Field.Store.NO));
+      writer.addDocument(doc);
+    }
+    writer.commit();
+  }
+
+  private static int count(DirectoryReader reader, Query query) throws Exception {
+    IndexSearcher searcher = new IndexSearcher(reader);
+    searcher.setQueryCache(null);
+    DocSetCollector collector = new DocSetCollector(reader.maxDoc());
+    searcher.search(query, collector);
+    return collector.size();
+  }
+
+  public void testOnlyNewSegmentsMiss() throws Exception {
+    SegmentFilterCache cache = new SegmentFilterCache(100, 10);
+    try (BaseDirectoryWrapper dir = newDirectory();
+        IndexWriter writer =
+            new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+      addDocs(writer, 0, 100);
+      addDocs(writer, 100, 100);
+      Query filter =
+          new BooleanQuery.Builder()
+              .add(new TermQuery(new Term("even", "true")), Occur.FILTER)
+              .add(new TermQuery(new Term("even", "false")), Occur.MUST_NOT)
+              .build();
+
+      try (DirectoryReader reader = DirectoryReader.open(writer)) {
+        assertEquals(100, count(reader, cache.wrap(filter)));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+      }
+
+      // a commit adds a segment and deletes from an old one, the cached bits of which still apply
+      writer.deleteDocuments(new Term("id", "0"));
+      addDocs(writer, 200, 100);
+      try (DirectoryReader reader = DirectoryReader.open(writer)) {
+        assertEquals(149, count(reader, cache.wrap(filter)));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.size());
+        assertTrue(cache.ramBytesUsed() > 0);
+      }
+    } finally {
+      cache.close();
+    }
+  }
+
+  public void testSegmentLocalQueries() {
+    Query term = new TermQuery(new Term("even", "true"));
+    assertTrue(SegmentFilterCache.isSegmentLocal(term));
+    assertTrue(SegmentFilterCache.isSegmentLocal(IntPoint.newRangeQuery("i", 1, 10)));
+    assertTrue(SegmentFilterCache.isSegmentLocal(new PrefixQuery(new Term("id", "1"))));
+    assertTrue(
+        SegmentFilterCache.isSegmentLocal(
+            SortedNumericDocValuesField.newSlowRangeQuery("i", 1, 10)));
+    assertTrue(
+        SegmentFilterCache.isSegmentLocal(
+            new BooleanQuery.Builder()
+                .add(new ConstantScoreQuery(term), Occur.FILTER)
+                .add(IntPoint.newExactQuery("i", 3), Occur.MUST_NOT)
+                .build()));
+
+    // the matches of a segment may depend on the others
+    Query other =
+        new Query() {
+          @Override
+          public void visit(QueryVisitor visitor) {}
+
+          @Override
+          public String toString(String field) {
+            return "other";
+          }
+
+          @Override
+          public boolean equals(Object obj) {
+            return this == obj;
+          }
+
+          @Override
+          public int hashCode() {
+            return System.identityHashCode(this);
+          }
+        };
+    assertFalse(SegmentFilterCache.isSegmentLocal(other));
+    assertFalse(
+        SegmentFilterCache.isSegmentLocal(
+            new BooleanQuery.Builder()
+                .add(term, Occur.FILTER)
+                .add(other, Occur.FILTER)
+                .build()));
+  }
+}
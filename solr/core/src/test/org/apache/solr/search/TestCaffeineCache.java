@@ -87,6 +87,7 @@ public class TestCaffeineCache extends SolrTestCase {
     assertEquals(2L, nl.get("hits"));
     assertEquals(1L, nl.get("inserts"));
     assertEquals(0L, nl.get("evictions"));
+    assertEquals(25L, nl.get("warmedKeys"));
 
     assertEquals(7L, nl.get("cumulative_lookups"));
     assertEquals(4L, nl.get("cumulative_hits"));
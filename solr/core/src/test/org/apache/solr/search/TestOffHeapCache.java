@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.tests.util.TestUtil;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.metrics.SolrMetricManager;
+import org.apache.solr.metrics.SolrMetricsContext;
+import org.junit.Test;
+
+/** Test for {@link OffHeapCache}. */
+public class TestOffHeapCache extends SolrTestCase {
+
+  SolrMetricManager metricManager = new SolrMetricManager();
+  String registry = TestUtil.randomSimpleString(random(), 2, 10);
+  String scope = TestUtil.randomSimpleString(random(), 2, 10);
+
+  private OffHeapCache<String, Object> newCache(Map<String, String> params, Object persistence) {
+    OffHeapCache<String, Object> cache = new OffHeapCache<>();
+    cache.initializeMetrics(
+        new SolrMetricsContext(metricManager, registry, "foo"),
+        scope + "-" + random().nextInt(1000000));
+    cache.init(params, persistence, new NoOpRegenerator());
+    cache.setState(SolrCache.State.LIVE);
+    return cache;
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Map<String, String> params = new HashMap<>();
+    params.put("size", "100");
+    params.put("async", Boolean.toString(random().nextBoolean()));
+    OffHeapCache<String, Object> cache = newCache(params, null);
+
+    int maxDoc = 1 + random().nextInt(100000);
+    FixedBitSet bits = new FixedBitSet(maxDoc);
+    for (int i = 0; i < maxDoc / 3; i++) {
+      bits.set(random().nextInt(maxDoc));
+    }
+    BitDocSet bitSet = new BitDocSet(bits);
+    DocSet smallSet = DocSetUtil.toSmallSet(bitSet);
+    DocSet roaringSet = RoaringDocSet.fromBits(bits, bits.cardinality());
+    DocSlice slice =
+        new DocSlice(
+            0,
+            3,
+            new int[] {7, 3, 11, 5},
+            new float[] {4f, 3f, 2f, 1f},
+            42,
+            4f,
+            TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO);
+
+    cache.put("bits", bitSet);
+    cache.put("small", smallSet);
+    cache.put("roaring", roaringSet);
+    cache.put("slice", slice);
+    cache.put("other", "on heap");
+    assertSame(slice, cache.computeIfAbsent("slice2", k -> slice));
+    assertTrue(cache.offHeapBytesUsed() >= maxDoc / 8);
+
+    assertTrue(cache.get("bits") instanceof OffHeapDocSet);
+    assertTrue(DocSetUtil.equals(bitSet, (DocSet) cache.get("bits")));
+    assertEquals(bitSet.size(), ((DocSet) cache.get("bits")).size());
+    assertTrue(DocSetUtil.equals(smallSet, (DocSet) cache.get("small")));
+    assertTrue(DocSetUtil.equals(roaringSet, (DocSet) cache.get("roaring")));
+    assertEquals("on heap", cache.get("other"));
+
+    for (String key : new String[] {"slice", "slice2"}) {
+      DocSlice cached = (DocSlice) cache.get(key);
+      assertEquals(0, cached.offset());
+      assertEquals(3, cached.size());
+      assertEquals(42, cached.matches());
+      assertEquals(4f, cached.maxScore(), 0f);
+      assertEquals(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO, cached.hitCountRelation());
+      DocIterator iter = cached.iterator();
+      assertEquals(7, iter.nextDoc());
+      assertEquals(4f, iter.score(), 0f);
+      assertEquals(3, iter.nextDoc());
+      assertEquals(11, iter.nextDoc());
+      assertFalse(iter.hasNext());
+      // the superset beyond the slice survives too
+      DocIterator superset = cached.subset(0, 4).iterator();
+      for (int i = 0; i < 3; i++) {
+        superset.nextDoc();
+      }
+      assertEquals(5, superset.nextDoc());
+    }
+
+    Map<String, Object> metrics = cache.getMetricsMap().getValue();
+    assertEquals(cache.offHeapBytesUsed(), metrics.get("offHeapBytesUsed"));
+    assertTrue((Long) metrics.get("ramBytesUsed") > cache.offHeapBytesUsed());
+
+    cache.remove("bits");
+    cache.remove("roaring");
+    cache.remove("small");
+    cache.remove("slice");
+    cache.remove("slice2");
+    cache.remove("other");
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.offHeapBytesUsed());
+    cache.close();
+  }
+
+  @Test
+  public void testViewsAndRelease() throws Exception {
+    FixedBitSet bits = new FixedBitSet(1 << 16);
+    bits.set(0, 1 << 15);
+    BitDocSet bitSet = new BitDocSet(bits, 1 << 15);
+
+    OffHeapCache.Handle handle = OffHeapCache.Handle.of(bitSet);
+    DocSet view = (DocSet) handle.get();
+    // a hit reads the buffer in place rather than allocating the bitset on the heap
+    assertTrue(view instanceof OffHeapDocSet);
+    assertTrue(view.ramBytesUsed() < 1024);
+    assertTrue(bitSet.ramBytesUsed() > 8192);
+    assertTrue(DocSetUtil.equals(bitSet, view));
+    // a view in use keeps the entry readable once released
+    handle.release();
+    assertTrue(DocSetUtil.equals(bitSet, view));
+    assertEquals(bitSet.size(), view.size());
+
+    // a released entry can't be read anymore
+    OffHeapCache.Handle released = OffHeapCache.Handle.of(bitSet);
+    released.release();
+    assertNull(released.get());
+
+    // on heap values aren't reference counted
+    OffHeapCache.Handle onHeap = OffHeapCache.Handle.of("on heap");
+    onHeap.release();
+    assertEquals("on heap", onHeap.get());
+  }
+
+  @Test
+  public void testViewOperations() throws Exception {
+    int maxDoc = 1 + random().nextInt(100000);
+    DocSet[] sets = new DocSet[3];
+    for (int i = 0; i < sets.length; i++) {
+      FixedBitSet bits = new FixedBitSet(maxDoc);
+      // dense or sparse, stored as bits or as ints
+      int numDocs = random().nextBoolean() ? maxDoc / 2 : 1 + random().nextInt(20);
+      for (int j = 0; j < numDocs; j++) {
+        bits.set(random().nextInt(maxDoc));
+      }
+      sets[i] = new BitDocSet(bits, bits.cardinality());
+    }
+    DocSet a = sets[0];
+    DocSet view = (DocSet) OffHeapCache.Handle.of(a).get();
+    assertTrue(view instanceof OffHeapDocSet);
+    assertTrue(DocSetUtil.equals(a, view));
+    assertEquals(a.size(), view.size());
+    for (int doc = 0; doc < maxDoc; doc++) {
+      assertEquals(a.exists(doc), view.exists(doc));
+    }
+    assertTrue(DocSetUtil.equals(a, new BitDocSet(view.getFixedBitSet())));
+    assertTrue(DocSetUtil.equals(a, view.clone()));
+
+    FixedBitSet otherBits = sets[1].getFixedBitSet();
+    DocSet otherView = (DocSet) OffHeapCache.Handle.of(sets[1]).get();
+    DocSet[] others = {
+      sets[1],
+      DocSetUtil.toSmallSet((BitDocSet) sets[1]),
+      RoaringDocSet.fromBits(otherBits, otherBits.cardinality()),
+      otherView
+    };
+    for (DocSet other : others) {
+      assertTrue(DocSetUtil.equals(a.intersection(sets[1]), view.intersection(other)));
+      assertTrue(DocSetUtil.equals(a.intersection(sets[1]), other.intersection(view)));
+      assertEquals(a.intersectionSize(sets[1]), view.intersectionSize(other));
+      assertEquals(a.intersectionSize(sets[1]), other.intersectionSize(view));
+      assertEquals(a.intersects(sets[1]), view.intersects(other));
+      assertEquals(a.intersects(sets[1]), other.intersects(view));
+      assertTrue(DocSetUtil.equals(a.union(sets[1]), view.union(other)));
+      assertTrue(DocSetUtil.equals(a.union(sets[1]), other.union(view)));
+      assertTrue(DocSetUtil.equals(a.andNot(sets[1]), view.andNot(other)));
+      assertTrue(DocSetUtil.equals(sets[1].andNot(a), other.andNot(view)));
+      assertEquals(a.unionSize(sets[1]), view.unionSize(other));
+      assertEquals(a.andNotSize(sets[1]), view.andNotSize(other));
+    }
+  }
+
+  @Test
+  public void testMaxRamBytesAndWarming() throws Exception {
+    Map<String, String> params = new HashMap<>();
+    params.put("maxRamMB", "1");
+    params.put("autowarmCount", "100%");
+    OffHeapCache<String, Object> cache = newCache(params, null);
+
+    // 16 sets of 128KB each can't all fit into 1MB
+    for (int i = 0; i < 16; i++) {
+      FixedBitSet bits = new FixedBitSet(1 << 20);
+      bits.set(0, 1 << 19);
+      cache.put(Integer.toString(i), new BitDocSet(bits, 1 << 19));
+    }
+    assertTrue(cache.size() < 16);
+    assertTrue(cache.ramBytesUsed() <= 1024 * 1024 + 16384);
+    Map<String, Object> metrics = cache.getMetricsMap().getValue();
+    assertTrue((Long) metrics.get("evictions") > 0);
+
+    OffHeapCache<String, Object> warmed = newCache(params, null);
+    warmed.warm(null, cache);
+    assertEquals(cache.size(), warmed.size());
+    assertEquals(cache.offHeapBytesUsed(), warmed.offHeapBytesUsed());
+    cache.close();
+    warmed.close();
+  }
+}
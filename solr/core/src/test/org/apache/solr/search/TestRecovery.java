@@ -49,6 +49,7 @@ import org.apache.solr.metrics.SolrMetricManager;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.schema.IndexSchema;
 import org.apache.solr.update.UpdateHandler;
+import org.apache.solr.update.UpdateLocks;
 import org.apache.solr.update.UpdateLog;
 import org.apache.solr.update.processor.DistributedUpdateProcessor.DistribPhase;
 import org.apache.solr.util.TestInjection;
@@ -256,6 +257,26 @@ public class TestRecovery extends SolrTestCaseJ4 {
       assertTrue(replayingDocs.getValue() > 0);
       Meter replayDocs = (Meter) metrics.get("TLOG.replay.ops");
       long initialOps = replayDocs.getCount();
+      @SuppressWarnings({"unchecked"})
+      Gauge<Integer> pendingOps = (Gauge<Integer>) metrics.get("TLOG.replay.pending.ops");
+      @SuppressWarnings({"unchecked"})
+      Gauge<Long> currentLogBytes =
+          (Gauge<Long>) metrics.get("TLOG.replay.currentLog.remaining.bytes");
+      // the replay is blocked before its first read, with the whole log left
+      TimeOut timeOut = new TimeOut(timeout, TimeUnit.SECONDS, TimeSource.NANO_TIME);
+      timeOut.waitFor("replay didn't start", () -> currentLogBytes.getValue() > 0);
+      assertEquals(0, pendingOps.getValue().intValue());
+
+      // hold the replayed updates back, so that the first one stays pending once read
+      UpdateLocks updateLocks = h.getCore().getUpdateHandler().getUpdateLog().getLocks();
+      updateLocks.blockUpdates();
+      try {
+        logReplay.release(1);
+        timeOut.waitFor("replayed update isn't pending", () -> pendingOps.getValue() > 0);
+        assertTrue(currentLogBytes.getValue() > 0);
+      } finally {
+        updateLocks.unblockUpdates();
+      }
 
       // unblock recovery
       logReplay.release(1000);
@@ -273,6 +294,8 @@ public class TestRecovery extends SolrTestCaseJ4 {
 
       assertEquals(7L, replayDocs.getCount() - initialOps);
       assertEquals(UpdateLog.State.ACTIVE.ordinal(), state.getValue().intValue());
+      assertEquals(0, pendingOps.getValue().intValue());
+      assertEquals(0L, currentLogBytes.getValue().longValue());
 
       // make sure we can still access versions after recovery
       assertJQ(req("qt", "/get", "getVersions", "" + versions.size()), "/versions==" + versions);
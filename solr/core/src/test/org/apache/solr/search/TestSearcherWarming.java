@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests the concurrent autowarming of a new searcher and its time limit */
+public class TestSearcherWarming extends SolrTestCaseJ4 {
+
+  private static final int SLOW_ENTRIES = 600;
+  private static final long REGENERATE_MILLIS = 50;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig-warming.xml", "schema-minimal.xml");
+  }
+
+  /** Takes {@link #REGENERATE_MILLIS} to regenerate an entry. */
+  public static class SlowRegenerator implements CacheRegenerator {
+    @Override
+    public <K, V> boolean regenerateItem(
+        SolrIndexSearcher newSearcher,
+        SolrCache<K, V> newCache,
+        SolrCache<K, V> oldCache,
+        K oldKey,
+        V oldVal)
+        throws IOException {
+      try {
+        Thread.sleep(REGENERATE_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      newCache.put(oldKey, oldVal);
+      return true;
+    }
+  }
+
+  @Test
+  public void testMaxWarmingTime() throws Exception {
+    assertU(adoc("id", "1"));
+    assertU(commit());
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              SolrCache<Object, Object> cache = searcher.getCache("slowCache");
+              for (int i = 0; i < SLOW_ENTRIES; i++) {
+                cache.put("key" + i, "value" + i);
+              }
+              return null;
+            });
+
+    // regenerating everything takes at least this long, even with the pool and the calling thread
+    // all regenerating entries
+    long fullWarmingMillis = SLOW_ENTRIES * REGENERATE_MILLIS / 3;
+    long start = System.nanoTime();
+    assertU(adoc("id", "2"));
+    assertU(commit());
+    long commitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // the commit waited for the new searcher, which was registered before it was fully warmed
+    assertTrue(
+        "commit took " + commitMillis + " ms, warming everything " + fullWarmingMillis + " ms",
+        commitMillis < fullWarmingMillis);
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              assertEquals(2, searcher.maxDoc());
+              int size = searcher.getCache("slowCache").size();
+              assertTrue(String.valueOf(size), size > 0 && size < SLOW_ENTRIES);
+              return null;
+            });
+  }
+
+  @Test
+  public void testRunConcurrently() throws Exception {
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareFixedThreadPool(2, new SolrNamedThreadFactory("testWarming"));
+    try {
+      AtomicInteger ran = new AtomicInteger();
+      List<Runnable> inner = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        inner.add(ran::incrementAndGet);
+      }
+      inner.add(
+          () -> {
+            throw new RuntimeException("logged, not rethrown");
+          });
+      // nested use of the same bounded pool, as when caches warm their entries concurrently
+      List<Runnable> outer = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        outer.add(() -> SolrIndexSearcher.runConcurrently(inner, executor));
+      }
+      SolrIndexSearcher.runConcurrently(outer, executor);
+      assertEquals(400, ran.get());
+    } finally {
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+
+  @Test
+  public void testRunConcurrentlyInterrupted() throws Exception {
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareFixedThreadPool(2, new SolrNamedThreadFactory("testWarming"));
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      CountDownLatch poolStarted = new CountDownLatch(2);
+      AtomicInteger finished = new AtomicInteger();
+      AtomicInteger finishedOnReturn = new AtomicInteger(-1);
+      AtomicBoolean interruptedOnReturn = new AtomicBoolean();
+      CountDownLatch returned = new CountDownLatch(1);
+      Thread[] caller = new Thread[1];
+      List<Runnable> tasks = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        tasks.add(
+            () -> {
+              if (Thread.currentThread() == caller[0]) {
+                // leaves the other tasks to the pool threads
+                awaitUninterruptibly(poolStarted);
+              } else {
+                poolStarted.countDown();
+                awaitUninterruptibly(release);
+              }
+              finished.incrementAndGet();
+            });
+      }
+      caller[0] =
+          new Thread(
+              () -> {
+                SolrIndexSearcher.runConcurrently(tasks, executor);
+                finishedOnReturn.set(finished.get());
+                interruptedOnReturn.set(Thread.currentThread().isInterrupted());
+                returned.countDown();
+              });
+      caller[0].start();
+      assertTrue(poolStarted.await(30, TimeUnit.SECONDS));
+
+      caller[0].interrupt();
+      // the tasks running on the pool are still waited for
+      assertFalse(returned.await(200, TimeUnit.MILLISECONDS));
+
+      release.countDown();
+      assertTrue(returned.await(30, TimeUnit.SECONDS));
+      caller[0].join();
+      assertEquals(3, finishedOnReturn.get());
+      assertTrue(interruptedOnReturn.get());
+    } finally {
+      release.countDown();
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
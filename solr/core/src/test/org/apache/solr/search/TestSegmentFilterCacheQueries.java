@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests which filters of the requests are cached by the {@code segmentFilterCache} */
+public class TestSegmentFilterCacheQueries extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.segmentFilterCache.size", "100");
+    // the segments of the first commits must stay as is
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig.xml", "schema_latest.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty("solr.segmentFilterCache.size");
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  private long segmentFilterCacheSize() {
+    return h.getCore().getSegmentFilterCache().size();
+  }
+
+  @Test
+  public void testGraphFilterFollowsCommits() throws Exception {
+    assertU(adoc("id", "doc_1", "node_s", "1", "edge_ss", "2"));
+    assertU(adoc("id", "doc_4", "node_s", "4"));
+    assertU(commit());
+
+    String graph = "{!graph from=node_s to=edge_ss}id:doc_1";
+    assertJQ(req("q", "*:*", "fq", graph, "fl", "id"), "/response/numFound==1");
+
+    // doc_2 links doc_1 to doc_4, which is in the first segment: its matches for the graph filter
+    // depend on the new segment
+    assertU(adoc("id", "doc_2", "node_s", "2", "edge_ss", "4"));
+    assertU(commit());
+    assertJQ(
+        req("q", "*:*", "fq", graph, "fl", "id", "sort", "id asc"),
+        "/response/numFound==3",
+        "/response/docs==[{id:doc_1},{id:doc_2},{id:doc_4}]");
+    assertEquals(0, segmentFilterCacheSize());
+
+    // a point range filter is cached per segment
+    assertU(adoc("id", "doc_5", "node_s", "5", "node_ip", "5"));
+    assertU(commit());
+    assertJQ(req("q", "*:*", "fq", "node_ip:[1 TO 10]", "fl", "id"), "/response/numFound==1");
+    assertTrue(segmentFilterCacheSize() > 0);
+  }
+}
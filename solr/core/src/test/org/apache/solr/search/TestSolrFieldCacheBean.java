@@ -79,6 +79,7 @@ public class TestSolrFieldCacheBean extends SolrTestCaseJ4 {
     Map<String, Object> metrics = checkJmx ? metricsMap.getValue(true) : metricsMap.getValue();
     assertTrue(((Number) metrics.get("entries_count")).longValue() > 0);
     assertNotNull(metrics.get("total_size"));
+    assertNotNull(metrics.get("total_bytes"));
     assertNotNull(metrics.get("entry#0"));
   }
 
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests {@code method:approx} terms facets */
+public class TestApproxFacets extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @Test
+  public void testSpaceSavingBounds() {
+    Random r = random();
+    int capacity = 16;
+    FacetFieldProcessorBySketch.SpaceSaving sketch =
+        new FacetFieldProcessorBySketch.SpaceSaving(capacity);
+    Map<Long, Long> exact = new HashMap<>();
+    for (int i = 0; i < 5000; i++) {
+      // a few heavy hitters in a long tail
+      long key = r.nextInt(4) == 0 ? r.nextInt(3) : 3 + r.nextInt(1000);
+      sketch.add(key);
+      exact.merge(key, 1L, Long::sum);
+    }
+    assertEquals(capacity, sketch.size());
+    long maxError = sketch.maxError();
+    assertTrue(maxError <= 5000 / capacity);
+    List<Long> keys = new ArrayList<>();
+    for (int slot = 0; slot < sketch.size(); slot++) {
+      long real = exact.get(sketch.keys[slot]);
+      assertTrue(sketch.counts[slot] >= real);
+      assertTrue(sketch.counts[slot] - maxError <= real);
+      keys.add(sketch.keys[slot]);
+    }
+    for (long heavy = 0; heavy < 3; heavy++) {
+      assertTrue("missing heavy hitter " + heavy, keys.contains(heavy));
+    }
+  }
+
+  @Test
+  public void testApproxFacet() throws Exception {
+    String[] cats = {"a", "a", "a", "a", "b", "b", "b", "c", "d", "e"};
+    for (int i = 0; i < cats.length; i++) {
+      assertU(adoc("id", Integer.toString(i), "cat_s_dvo", cats[i], "val_i", Integer.toString(i)));
+    }
+    assertU(commit());
+
+    // with room for all terms the counts are exact
+    assertJQ(
+        req(
+            "q", "*:*",
+            "rows", "0",
+            "json.facet",
+                "{f:{type:terms, field:cat_s_dvo, method:approx, limit:2,"
+                    + " facet:{x:'sum(val_i)'}}}"),
+        "facets/f=={maxError:0, buckets:[{val:a,count:4,x:6.0},{val:b,count:3,x:15.0}]}");
+
+    // with fewer slots than terms, a term with more than 1/sketchSize of the values is still found
+    assertJQ(
+        req(
+            "q", "id:(0 1 2 3 7 8)",
+            "rows", "0",
+            "json.facet",
+                "{f:{type:terms, field:cat_s_dvo, method:approx, limit:1, sketchSize:2}}"),
+        "facets/f/buckets/[0]/val=='a'");
+
+    // other sorts fall back to an exact method
+    assertJQ(
+        req(
+            "q", "*:*",
+            "rows", "0",
+            "json.facet",
+                "{f:{type:terms, field:cat_s_dvo, method:approx, limit:2, sort:'index asc'}}"),
+        "facets/f=={buckets:[{val:a,count:4},{val:b,count:3}]}");
+  }
+
+  private static SimpleOrderedMap<Object> shardResult(long maxError, Object... valsAndCounts) {
+    List<SimpleOrderedMap<?>> buckets = new ArrayList<>();
+    for (int i = 0; i < valsAndCounts.length; i += 2) {
+      SimpleOrderedMap<Object> bucket = new SimpleOrderedMap<>();
+      bucket.add("val", valsAndCounts[i]);
+      bucket.add("count", valsAndCounts[i + 1]);
+      buckets.add(bucket);
+    }
+    SimpleOrderedMap<Object> result = new SimpleOrderedMap<>();
+    result.add("buckets", buckets);
+    result.add("maxError", maxError);
+    return result;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testMergeAddsMaxErrorOfMissingShards() {
+    FacetField freq = new FacetField();
+    freq.field = "cat_s_dvo";
+    freq.method = FacetField.FacetMethod.APPROX;
+    freq.sort = FacetRequest.FacetSort.COUNT_DESC;
+    assertTrue(freq.isApproximate());
+    assertFalse(freq.doRefine());
+
+    FacetFieldMerger merger = new FacetFieldMerger(freq);
+    FacetMerger.Context mcontext = new FacetMerger.Context(2);
+    mcontext.newShard("shard0");
+    merger.merge(shardResult(2, "a", 10L, "b", 5L), mcontext);
+    mcontext.newShard("shard1");
+    merger.merge(shardResult(1, "a", 4L, "c", 6L), mcontext);
+
+    SimpleOrderedMap<Object> result = (SimpleOrderedMap<Object>) merger.getMergedResult();
+    assertEquals(3L, result.get("maxError"));
+    List<SimpleOrderedMap<?>> buckets = (List<SimpleOrderedMap<?>>) result.get("buckets");
+    assertEquals(3, buckets.size());
+    assertEquals("a", buckets.get(0).get("val"));
+    assertEquals(14L, buckets.get(0).get("count"));
+    assertEquals("c", buckets.get(1).get("val"));
+    assertEquals(8L, buckets.get(1).get("count"));
+    assertEquals("b", buckets.get(2).get("val"));
+    assertEquals(6L, buckets.get(2).get("count"));
+  }
+}
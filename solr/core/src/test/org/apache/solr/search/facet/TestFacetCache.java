@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests the {@code facetCache} of a searcher */
+public class TestFacetCache extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty("solr.facetCache.enabled", "true");
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    System.clearProperty("solr.facetCache.enabled");
+  }
+
+  private int facetCacheSize() throws Exception {
+    return h.getCore().withSearcher(searcher -> searcher.getFacetCache().size());
+  }
+
+  @Test
+  public void testCachedAndAutowarmed() throws Exception {
+    assertU(adoc("id", "1", "cat_s", "a"));
+    assertU(adoc("id", "2", "cat_s", "b"));
+    assertU(adoc("id", "3", "cat_s", "a"));
+    assertU(commit());
+    assertEquals(0, facetCacheSize());
+
+    String facet = "{f:{type:terms, field:cat_s}}";
+    for (int i = 0; i < 2; i++) {
+      assertJQ(
+          req("q", "*:*", "rows", "0", "json.facet", facet),
+          "facets/f/buckets==[{val:a,count:2},{val:b,count:1}]");
+      assertEquals(1, facetCacheSize());
+    }
+    // another filter is another entry
+    assertJQ(
+        req("q", "*:*", "fq", "id:1", "json.facet", facet),
+        "facets/f/buckets==[{val:a,count:1}]");
+    assertEquals(2, facetCacheSize());
+
+    // not cached when asked not to, or when the facets depend on the time of the request
+    assertJQ(
+        req("q", "*:*", "fq", "id:2", "cache", "false", "json.facet", facet),
+        "facets/f/buckets==[{val:b,count:1}]");
+    String today =
+        "{f:{type:range, field:date_dt, start:'NOW/DAY', end:'NOW/DAY+1DAY', gap:'+1DAY'}}";
+    assertJQ(req("q", "*:*", "json.facet", today), "facets/f/buckets/[0]/count==0");
+    // the time of the request may be used by the params the facets refer to
+    String recent = "date_dt:[NOW/DAY-1DAY TO *]";
+    assertJQ(
+        req(
+            "q",
+            "*:*",
+            "json.facet",
+            "{f:{type:terms, field:cat_s, domain:{filter:{param:recent}}}}",
+            "recent",
+            recent),
+        "facets/f/buckets==[]");
+    assertJQ(
+        req(
+            "q", "*:*", "json.facet", "{f:{type:query, q:'{!query v=$recent}'}}", "recent", recent),
+        "facets/f/count==0");
+    assertEquals(2, facetCacheSize());
+
+    // the entries of the old searcher are computed again on the new one
+    assertU(adoc("id", "4", "cat_s", "b"));
+    assertU(adoc("id", "5", "cat_s", "b"));
+    assertU(commit());
+    assertEquals(2, facetCacheSize());
+    assertJQ(
+        req("q", "*:*", "rows", "0", "json.facet", facet),
+        "facets/f/buckets==[{val:b,count:3},{val:a,count:2}]");
+    assertEquals(2, facetCacheSize());
+  }
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import org.apache.lucene.tests.util.TestUtil;
 import org.apache.solr.JSONTestUtil;
 import org.apache.solr.SolrTestCaseHS;
@@ -332,6 +333,36 @@ public class TestJsonFacetRefinement extends SolrTestCaseHS {
         null);
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRefinementBatches() throws Exception {
+    SolrQueryRequest req = req();
+    try {
+      FacetRequest facetRequest =
+          new FacetParser.FacetTopParser(req)
+              .parse(
+                  Utils.fromJSONString(
+                      "{cat0:{type:terms, field:cat_s, facet:{sub:{type:terms, field:xy_s}}},"
+                          + " q1:{type:query, q:'*:*', facet:{cat1:{type:terms, field:cat_s}}}}"));
+      Map<String, Object> refinement =
+          (Map<String, Object>)
+              Utils.fromJSONString(
+                  "{cat0:{_l:[A,B,C], _s:[[D,{sub:{_l:[x,y]}}]]}, q1:{cat1:{_l:[E]}}}");
+      assertEquals(7, RefinementBatches.count(refinement));
+
+      // the path to the buckets of a skipped bucket is repeated in every batch they are sent in
+      assertEquals(
+          Utils.fromJSONString(
+              "[{cat0:{_l:[A,B]}},"
+                  + " {cat0:{_l:[C], _s:[[D,{sub:{_l:[x]}}]]}},"
+                  + " {cat0:{_s:[[D,{sub:{_l:[y]}}]]}, q1:{cat1:{_l:[E]}}}]"),
+          RefinementBatches.split(facetRequest, refinement, 2));
+      assertEquals(List.of(refinement), RefinementBatches.split(facetRequest, refinement, 10));
+    } finally {
+      req.close();
+    }
+  }
+
   @Test
   public void testMergeWithOverrefine() throws Exception {
     // overrefine heuristic should use explicit overrequest as default
@@ -1226,6 +1257,27 @@ public class TestJsonFacetRefinement extends SolrTestCaseHS {
     doBasicRefinement(p);
   }
 
+  @Test
+  public void testBasicRefinementInBatches() throws Exception {
+    int origBatchSize = FacetModule.REFINE_BATCH_SIZE;
+    int origMaxPendingBatches = FacetModule.REFINE_MAX_PENDING_BATCHES;
+    FacetModule.REFINE_BATCH_SIZE = 1;
+    FacetModule.REFINE_MAX_PENDING_BATCHES = TestUtil.nextInt(random(), 1, 3);
+    try {
+      doBasicRefinement(
+          params(
+              "cat_s", "cat_s", "cat_i", "cat_i", "date", "cat_dt", "xy_s", "xy_s", "num_d",
+              "num_d", "qw_s", "qw_s", "er_s", "er_s"));
+      doBasicRefinement(
+          params(
+              "cat_s", "cat_ss", "cat_i", "cat_is", "date", "cat_dts", "xy_s", "xy_ss", "num_d",
+              "num_d", "qw_s", "qw_ss", "er_s", "er_ss"));
+    } finally {
+      FacetModule.REFINE_BATCH_SIZE = origBatchSize;
+      FacetModule.REFINE_MAX_PENDING_BATCHES = origMaxPendingBatches;
+    }
+  }
+
   public void doBasicRefinement(ModifiableSolrParams p) throws Exception {
     initServers();
     Client client = servers.getClient(random().nextInt());
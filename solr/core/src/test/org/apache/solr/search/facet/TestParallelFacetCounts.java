@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.core.NodeConfig;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.apache.solr.update.UpdateShardHandlerConfig;
+import org.apache.solr.util.TestHarness;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests {@link FacetFieldProcessorByArrayDV#PARALLEL_COUNTS} */
+public class TestParallelFacetCounts extends SolrTestCaseJ4 {
+
+  private static boolean origParallelCounts;
+  private static int origMinDomain;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    origParallelCounts = FacetFieldProcessorByArrayDV.PARALLEL_COUNTS;
+    origMinDomain = FacetFieldProcessorByArrayDV.PARALLEL_COUNTS_MIN_DOMAIN;
+    FacetFieldProcessorByArrayDV.PARALLEL_COUNTS_MIN_DOMAIN = 0;
+    // keep the segments apart
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    // initCore() doesn't read a solr.xml, the searchers only get an executor with this
+    NodeConfig nodeConfig =
+        new NodeConfig.NodeConfigBuilder("testNode", TEST_PATH())
+            .setUpdateShardHandlerConfig(UpdateShardHandlerConfig.TEST_DEFAULT)
+            .setIndexSearcherExecutorThreads(4)
+            .build();
+    createCoreContainer(
+        nodeConfig,
+        new TestHarness.TestCoresLocator(
+            DEFAULT_TEST_CORENAME,
+            initAndGetDataDir().toString(),
+            "solrconfig.xml",
+            "schema.xml"));
+    h.coreName = DEFAULT_TEST_CORENAME;
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    FacetFieldProcessorByArrayDV.PARALLEL_COUNTS = origParallelCounts;
+    FacetFieldProcessorByArrayDV.PARALLEL_COUNTS_MIN_DOMAIN = origMinDomain;
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  private void assertFacet(String q, String facet, String expected) throws Exception {
+    for (boolean parallel : new boolean[] {false, true}) {
+      FacetFieldProcessorByArrayDV.PARALLEL_COUNTS = parallel;
+      long counted = FacetFieldProcessorByArrayDV.PARALLEL_COUNTED_SEGMENTS.sum();
+      assertJQ(req("q", q, "rows", "0", "json.facet", "{f:" + facet + "}"), expected);
+      counted = FacetFieldProcessorByArrayDV.PARALLEL_COUNTED_SEGMENTS.sum() - counted;
+      if (parallel) {
+        // every segment is counted on the executor
+        assertEquals(3, counted);
+      } else {
+        assertEquals(0, counted);
+      }
+    }
+  }
+
+  @Test
+  public void testCountsAcrossSegments() throws Exception {
+    String[][] docs = {{"a", "x"}, {"b", "x"}, {"a", "y"}, {"c", "z"}, {"a", "x"}, {"b", "y"}};
+    for (int i = 0; i < docs.length; i++) {
+      assertU(
+          adoc(
+              "id", Integer.toString(i),
+              "cat_s_dvo", docs[i][0],
+              "uifperseg_mfacet", docs[i][1],
+              "uifperseg_mfacet", docs[i][0]));
+      if (i % 2 == 1) {
+        assertU(commit()); // three segments
+      }
+    }
+    h.getCore()
+        .withSearcher(
+            searcher -> {
+              assertNotNull(searcher.getExecutor());
+              assertEquals(3, searcher.getIndexReader().leaves().size());
+              return null;
+            });
+
+    assertFacet(
+        "*:*",
+        "{type:terms, field:cat_s_dvo, method:dv}",
+        "facets/f/buckets==[{val:a,count:3},{val:b,count:2},{val:c,count:1}]");
+    assertFacet(
+        "id:[1 TO 4]",
+        "{type:terms, field:cat_s_dvo, method:dv, sort:'index asc'}",
+        "facets/f/buckets==[{val:a,count:1},{val:b,count:1},{val:c,count:1}]");
+    assertFacet(
+        "*:*",
+        "{type:terms, field:uifperseg_mfacet, method:dv, limit:2}",
+        "facets/f/buckets==[{val:a,count:3},{val:x,count:3}]");
+    // the stats of the returned buckets are computed after counting
+    assertFacet(
+        "*:*",
+        "{type:terms, field:cat_s_dvo, method:dv, limit:1, facet:{u:'unique(uifperseg_mfacet)'}}",
+        "facets/f/buckets==[{val:a,count:3,u:3}]");
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests {@code percentile()} with {@code sketch:ddsketch}, and {@link QuantileSketch} */
+public class TestPercentileSketch extends SolrTestCaseJ4 {
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @Test
+  public void testRelativeAccuracy() {
+    Random r = random();
+    double accuracy = 0.02;
+    int n = atLeast(1000);
+    double[] values = new double[n];
+    QuantileSketch left = new QuantileSketch(accuracy);
+    QuantileSketch right = new QuantileSketch(accuracy);
+    for (int i = 0; i < n; i++) {
+      // a few orders of magnitude of both signs, and some zeros
+      values[i] = r.nextInt(10) == 0 ? 0 : (r.nextBoolean() ? 1 : -1) * Math.exp(r.nextGaussian());
+      (r.nextBoolean() ? left : right).add(values[i]);
+    }
+    Arrays.sort(values);
+
+    // what the shards send is merged without a loss
+    QuantileSketch merged = QuantileSketch.fromBytes(left.toBytes());
+    merged.merge(QuantileSketch.fromBytes(right.toBytes()));
+    assertEquals(n, merged.count());
+
+    assertEquals(values[0], merged.quantile(0), 0);
+    assertEquals(values[n - 1], merged.quantile(1), 0);
+    for (double q = 0.05; q < 1; q += 0.05) {
+      double expected = values[(int) (q * (n - 1))];
+      assertEquals("q=" + q, expected, merged.quantile(q), accuracy * Math.abs(expected) + 1e-12);
+    }
+  }
+
+  @Test
+  public void testPercentileFacet() throws Exception {
+    String[] cats = {"a", "a", "a", "b", "b"};
+    int[] vals = {1, 2, 3, 10, 20};
+    for (int i = 0; i < cats.length; i++) {
+      assertU(
+          adoc("id", Integer.toString(i), "cat_s", cats[i], "val_i", Integer.toString(vals[i])));
+    }
+    assertU(commit());
+
+    // the lowest and highest percentiles are exact
+    assertJQ(
+        req(
+            "q", "*:*",
+            "rows", "0",
+            "json.facet",
+                "{p:{type:func, func:'percentile(val_i,0,100)', sketch:ddsketch, accuracy:0.05}}"),
+        "facets=={count:5, p:[1.0,20.0]}");
+
+    assertJQ(
+        req(
+            "q", "*:*",
+            "rows", "0",
+            "json.facet",
+                "{f:{type:terms, field:cat_s, sort:'p desc',"
+                    + " facet:{p:{type:func, func:'percentile(val_i,100)', sketch:ddsketch}}}}"),
+        "facets/f/buckets==[{val:b,count:2,p:20.0},{val:a,count:3,p:3.0}]");
+
+    assertQEx(
+        "unknown sketch",
+        req(
+            "q", "*:*",
+            "json.facet", "{p:{type:func, func:'percentile(val_i,50)', sketch:kll}}"),
+        SolrException.ErrorCode.BAD_REQUEST);
+  }
+
+  @Test
+  public void testMerger() {
+    PercentileAgg agg = new PercentileAgg(null, List.of(0.0, 100.0));
+    agg.sketch = PercentileAgg.DDSKETCH;
+    QuantileSketch shard1 = new QuantileSketch(agg.accuracy);
+    shard1.add(5);
+    shard1.add(1);
+    QuantileSketch shard2 = new QuantileSketch(agg.accuracy);
+    shard2.add(7);
+
+    FacetMerger merger = agg.createFacetMerger(null);
+    FacetMerger.Context mcontext = new FacetMerger.Context(3);
+    merger.merge(shard1.toBytes(), mcontext);
+    merger.merge(null, mcontext); // a shard without values
+    merger.merge(shard2.toBytes(), mcontext);
+    assertEquals(List.of(1.0, 7.0), merger.getMergedResult());
+  }
+}
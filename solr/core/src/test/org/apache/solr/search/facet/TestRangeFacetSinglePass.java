@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.Random;
+import org.apache.solr.SolrTestCaseJ4;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests range facets with and without {@link FacetRangeProcessor#SINGLE_PASS} */
+public class TestRangeFacetSinglePass extends SolrTestCaseJ4 {
+
+  private static boolean origSinglePass;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    origSinglePass = FacetRangeProcessor.SINGLE_PASS;
+    initCore("solrconfig.xml", "schema.xml");
+
+    Random r = random();
+    int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      int val = r.nextInt(120) - 10; // some docs fall outside of the ranges
+      if (r.nextInt(10) == 0) {
+        assertU(adoc("id", Integer.toString(i))); // no values
+      } else {
+        assertU(
+            adoc(
+                "id", Integer.toString(i),
+                "num_i_p", Integer.toString(val),
+                "num_l_p", Long.toString(val * 1000L),
+                "num_f_p", Float.toString(val / 4f),
+                "num_d_p", Double.toString(-val / 8d),
+                "num_i_dv", Integer.toString(val),
+                "num_dt_dv", "2024-01-01T00:00:00Z+" + (val + 10) + "DAYS",
+                "stat_i_p", Integer.toString(r.nextInt(1000))));
+      }
+      if (r.nextInt(50) == 0) {
+        assertU(commit());
+      }
+    }
+    assertU(commit());
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    FacetRangeProcessor.SINGLE_PASS = origSinglePass;
+  }
+
+  private void assertSameResponse(String q, String facet) throws Exception {
+    String[] responses = new String[2];
+    for (int i = 0; i < 2; i++) {
+      FacetRangeProcessor.SINGLE_PASS = i == 1;
+      String json = "{f:" + facet + "}";
+      responses[i] = h.query(req("q", q, "rows", "0", "omitHeader", "true", "json.facet", json));
+    }
+    assertEquals(facet, responses[0], responses[1]);
+  }
+
+  @Test
+  public void testSameCountsAndStats() throws Exception {
+    String[] ranges = {
+      "field:num_i_p, start:0, end:100, gap:7",
+      "field:num_i_dv, start:0, end:100, gap:10, hardend:true",
+      "field:num_l_p, start:-5000, end:50000, gap:2500",
+      "field:num_f_p, start:0.5, end:20, gap:1.5",
+      "field:num_d_p, start:-12, end:1, gap:0.25",
+      "field:num_dt_dv, start:'2024-01-01T00:00:00Z', end:'2024-04-01T00:00:00Z', gap:'+1MONTH'"
+    };
+    String[] includes = {"lower", "upper", "edge", "outer", "[lower,upper]", "[upper,edge]"};
+    for (String range : ranges) {
+      String include = includes[random().nextInt(includes.length)];
+      String facet = "{type:range, " + range + ", include:" + include + ", other:all";
+      assertSameResponse("*:*", facet + "}");
+      assertSameResponse(
+          "id:[10 TO 150]",
+          facet + ", mincount:1, facet:{x:'sum(stat_i_p)', y:'min(stat_i_p)'}}");
+    }
+  }
+}
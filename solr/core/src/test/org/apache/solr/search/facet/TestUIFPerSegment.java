@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.search.facet;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.index.NoMergePolicyFactory;
+import org.apache.solr.uninverting.FieldCache;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** Tests uif faceting with {@link FacetField#UIF_PER_SEGMENT} */
+public class TestUIFPerSegment extends SolrTestCaseJ4 {
+
+  private static final String FIELD = "uifperseg_mfacet";
+  private static boolean origUifPerSegment;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    origUifPerSegment = FacetField.UIF_PER_SEGMENT;
+    // the test relies on the segments of each commit staying as they are
+    systemSetPropertySolrTestsMergePolicyFactory(NoMergePolicyFactory.class.getName());
+    initCore("solrconfig.xml", "schema.xml");
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    FacetField.UIF_PER_SEGMENT = origUifPerSegment;
+    systemClearPropertySolrTestsMergePolicyFactory();
+  }
+
+  private static Set<Object> uninvertedSegments() {
+    Set<Object> readerKeys = new HashSet<>();
+    for (FieldCache.CacheEntry entry : FieldCache.DEFAULT.getCacheEntries()) {
+      if (FIELD.equals(entry.getFieldName())) {
+        readerKeys.add(entry.getReaderKey());
+      }
+    }
+    return readerKeys;
+  }
+
+  private void assertFacet(String expectedBuckets) {
+    for (boolean perSegment : new boolean[] {false, true}) {
+      FacetField.UIF_PER_SEGMENT = perSegment;
+      assertJQ(
+          req(
+              "q", "*:*",
+              "rows", "0",
+              "json.facet", "{f:{type:terms, field:" + FIELD + ", method:uif, sort:'count desc'}}"),
+          "facets/f/buckets==" + expectedBuckets);
+    }
+  }
+
+  @Test
+  public void testOnlyNewSegmentsAreUninverted() throws Exception {
+    assertU(adoc("id", "1", FIELD, "a", FIELD, "b"));
+    assertU(adoc("id", "2", FIELD, "a"));
+    assertU(commit());
+    assertFacet("[{val:'a',count:2},{val:'b',count:1}]");
+    Set<Object> firstSegments = uninvertedSegments();
+    assertFalse(firstSegments.isEmpty());
+
+    assertU(adoc("id", "3", FIELD, "c", FIELD, "b"));
+    assertU(adoc("id", "4", FIELD, "b"));
+    assertU(commit());
+    assertFacet("[{val:'b',count:3},{val:'a',count:2},{val:'c',count:1}]");
+    // segments aren't merged, so the first one is not uninverted again
+    Set<Object> segments = uninvertedSegments();
+    assertTrue(segments.containsAll(firstSegments));
+    assertTrue(segments.size() > firstSegments.size());
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.update.UpdateLog.LogPtr;
+import org.junit.Test;
+
+public class CompactLogPtrMapTest extends SolrTestCase {
+
+  @Test
+  public void testPutGetOverwrite() {
+    CompactLogPtrMap map = new CompactLogPtrMap();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(new BytesRef("1")));
+
+    assertNull(map.put(new BytesRef("1"), new LogPtr(10, 100)));
+    assertNull(map.put(new BytesRef("2"), new LogPtr(20, 200, 10)));
+    assertEquals(2, map.size());
+
+    LogPtr ptr = map.get(new BytesRef("2"));
+    assertEquals(20, ptr.pointer);
+    assertEquals(200, ptr.version);
+    assertEquals(10, ptr.previousPointer);
+
+    LogPtr previous = map.put(new BytesRef("1"), new LogPtr(30, 300, 10));
+    assertEquals(100, previous.version);
+    assertEquals(2, map.size());
+    assertEquals(300, map.get(new BytesRef("1")).version);
+    assertTrue(map.containsKey(new BytesRef("1")));
+    assertFalse(map.containsKey("1"));
+
+    map.clear();
+    assertEquals(0, map.size());
+    assertNull(map.get(new BytesRef("1")));
+    assertNull(map.put(new BytesRef("1"), new LogPtr(40, 400)));
+    assertEquals(400, map.get(new BytesRef("1")).version);
+  }
+
+  @Test
+  public void testRandomAgainstHashMap() {
+    CompactLogPtrMap map = new CompactLogPtrMap();
+    Map<BytesRef, LogPtr> expected = new HashMap<>();
+    int numIds = atLeast(500);
+    int numOps = atLeast(5000);
+    for (int i = 0; i < numOps; i++) {
+      if (random().nextInt(1000) == 0) {
+        map.clear();
+        expected.clear();
+      }
+      BytesRef id = new BytesRef("id" + random().nextInt(numIds));
+      LogPtr ptr = new LogPtr(random().nextLong(), random().nextLong(), random().nextLong());
+      LogPtr previous = map.put(id, ptr);
+      LogPtr expectedPrevious = expected.put(BytesRef.deepCopyOf(id), ptr);
+      if (expectedPrevious == null) {
+        assertNull(previous);
+      } else {
+        assertEquals(expectedPrevious.version, previous.version);
+      }
+    }
+
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<BytesRef, LogPtr> entry : expected.entrySet()) {
+      LogPtr actual = map.get(entry.getKey());
+      assertEquals(entry.getValue().pointer, actual.pointer);
+      assertEquals(entry.getValue().version, actual.version);
+      assertEquals(entry.getValue().previousPointer, actual.previousPointer);
+    }
+    int iterated = 0;
+    for (Map.Entry<BytesRef, LogPtr> entry : map.entrySet()) {
+      assertEquals(expected.get(entry.getKey()).version, entry.getValue().version);
+      iterated++;
+    }
+    assertEquals(expected.size(), iterated);
+    assertTrue(map.ramBytesUsed() > 0);
+  }
+}
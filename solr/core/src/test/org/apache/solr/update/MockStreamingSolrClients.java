@@ -19,6 +19,9 @@ package org.apache.solr.update;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import org.apache.lucene.tests.util.LuceneTestCase;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrRequest;
@@ -35,6 +38,7 @@ public class MockStreamingSolrClients extends StreamingSolrClients {
   }
 
   private volatile Exp exp = null;
+  private volatile CountDownLatch asyncGate = null;
 
   public MockStreamingSolrClients(UpdateShardHandler updateShardHandler) {
     super(updateShardHandler);
@@ -46,10 +50,39 @@ public class MockStreamingSolrClients extends StreamingSolrClients {
     return new MockSolrClient(client);
   }
 
+  @Override
+  protected CompletableFuture<NamedList<Object>> sendAsync(
+      SolrCmdDistributor.Node node, List<SolrCmdDistributor.Req> batch) {
+    if (exp != null) {
+      return CompletableFuture.failedFuture(exception());
+    }
+    final CountDownLatch gate = asyncGate;
+    if (gate == null) {
+      return super.sendAsync(node, batch);
+    }
+    // a slow replica: nothing is sent before the gate is opened
+    return CompletableFuture.runAsync(
+            () -> {
+              try {
+                gate.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+              }
+            },
+            getUpdateExecutor())
+        .thenCompose(v -> super.sendAsync(node, batch));
+  }
+
   public void setExp(Exp exp) {
     this.exp = exp;
   }
 
+  /** Holds back async batches until the given latch is counted down, or not if null. */
+  public void setAsyncGate(CountDownLatch asyncGate) {
+    this.asyncGate = asyncGate;
+  }
+
   private Exception exception() {
     switch (exp) {
       case CONNECT_EXCEPTION:
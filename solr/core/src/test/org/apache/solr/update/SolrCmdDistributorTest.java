@@ -16,6 +16,7 @@
  */
 package org.apache.solr.update;
 
+import com.codahale.metrics.Timer;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.SocketException;
@@ -23,7 +24,9 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.solr.BaseDistributedSearchTestCase;
@@ -46,6 +49,8 @@ import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrEventListener;
 import org.apache.solr.embedded.JettySolrRunner;
 import org.apache.solr.index.LogDocMergePolicyFactory;
+import org.apache.solr.metrics.SolrMetricManager;
+import org.apache.solr.metrics.SolrMetricsContext;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.update.MockStreamingSolrClients.Exp;
 import org.apache.solr.update.SolrCmdDistributor.ForwardNode;
@@ -373,9 +378,234 @@ public class SolrCmdDistributorTest extends BaseDistributedSearchTestCase {
     testDeletes(true, true);
     testDeletes(true, false);
     getRfFromResponseShouldNotCloseTheInputStream();
+    testAsyncDistrib();
+    testAsyncSlowReplicaDoesNotBlock();
+    testAsyncDeletesInOrder();
+    testAsyncRetries();
     testStuckUpdates();
   }
 
+  private List<Node> asyncNodes(HttpSolrClient solrclient) {
+    ZkNodeProps nodeProps =
+        new ZkNodeProps(
+            ZkStateReader.BASE_URL_PROP,
+            solrclient.getBaseURL(),
+            ZkStateReader.CORE_NAME_PROP,
+            solrclient.getDefaultCollection());
+    return Collections.singletonList(
+        new StdNode(new ZkCoreNodeProps(nodeProps), "collection1", "shard1", 5));
+  }
+
+  private void testAsyncDistrib() throws Exception {
+    final HttpSolrClient solrclient = (HttpSolrClient) clients.get(1);
+    long numFoundBefore = solrclient.query(new SolrQuery("*:*")).getResults().getNumFound();
+    SolrMetricManager metricManager = new SolrMetricManager();
+    updateShardHandler.initializeMetrics(
+        new SolrMetricsContext(metricManager, "solr.node", "test"), "updateShardHandler");
+    System.setProperty("solr.cloud.replication.async", "true");
+    System.setProperty("solr.cloud.replication.async.maxInFlight", "2");
+    try (SolrCmdDistributor cmdDistrib = new SolrCmdDistributor(updateShardHandler)) {
+      List<Node> nodes = asyncNodes(solrclient);
+
+      int numDocs = atLeast(20);
+      LeaderRequestReplicationTracker leaderReqTracker = null;
+      for (int i = 0; i < numDocs; i++) {
+        AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = sdoc("id", uniqueId.incrementAndGet());
+        leaderReqTracker = new LeaderRequestReplicationTracker("shard1");
+        cmdDistrib.distribAdd(
+            cmd, nodes, new ModifiableSolrParams(), false, null, leaderReqTracker);
+      }
+
+      ModifiableSolrParams params = new ModifiableSolrParams();
+      params.set(DistributedUpdateProcessor.COMMIT_END_POINT, true);
+      cmdDistrib.distribCommit(new CommitUpdateCommand(null, false), nodes, params);
+
+      // the replica has its own ack timer while updates are sent to it
+      Map<String, Timer> ackTimers = asyncAckTimers(metricManager);
+      assertEquals(ackTimers.toString(), 1, ackTimers.size());
+      String timerName = ackTimers.keySet().iterator().next();
+      assertTrue(timerName, timerName.contains(nodes.get(0).getUrl()));
+      assertTrue(ackTimers.get(timerName).getCount() > 0);
+
+      cmdDistrib.finish();
+
+      assertEquals(cmdDistrib.getErrors().toString(), 0, cmdDistrib.getErrors().size());
+      assertEquals(2, leaderReqTracker.getAchievedRf());
+      assertEquals(0, updateShardHandler.getAsyncUpdatesInFlight().get());
+      assertEquals(
+          numFoundBefore + numDocs,
+          solrclient.query(new SolrQuery("*:*")).getResults().getNumFound());
+      // ... and it goes away with the last distributor sending to the replica
+      assertEquals(Collections.emptyMap(), asyncAckTimers(metricManager));
+    } finally {
+      System.clearProperty("solr.cloud.replication.async");
+      System.clearProperty("solr.cloud.replication.async.maxInFlight");
+    }
+  }
+
+  private Map<String, Timer> asyncAckTimers(SolrMetricManager metricManager) {
+    return metricManager
+        .registry("solr.node")
+        .getTimers(
+            (name, metric) ->
+                name.startsWith("UPDATE.updateShardHandler.asyncUpdates.")
+                    && name.endsWith(".ackLatency"));
+  }
+
+  private void testAsyncSlowReplicaDoesNotBlock() throws Exception {
+    final HttpSolrClient solrclient = (HttpSolrClient) clients.get(1);
+    long numFoundBefore = solrclient.query(new SolrQuery("*:*")).getResults().getNumFound();
+    final int maxInFlight = 10;
+    System.setProperty("solr.cloud.replication.async", "true");
+    System.setProperty("solr.cloud.replication.async.maxInFlight", String.valueOf(maxInFlight));
+    final MockStreamingSolrClients streamingClients =
+        new MockStreamingSolrClients(updateShardHandler);
+    final CountDownLatch gate = new CountDownLatch(1);
+    streamingClients.setAsyncGate(gate);
+    try (SolrCmdDistributor cmdDistrib = new SolrCmdDistributor(streamingClients, 0)) {
+      List<Node> nodes = asyncNodes(solrclient);
+
+      // the replica doesn't acknowledge anything, yet the indexing thread doesn't wait for it
+      // until the queue bound is reached
+      for (int i = 0; i < maxInFlight; i++) {
+        AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = sdoc("id", uniqueId.incrementAndGet());
+        cmdDistrib.distribAdd(cmd, nodes, new ModifiableSolrParams());
+      }
+      assertEquals(maxInFlight, updateShardHandler.getAsyncUpdatesInFlight().get());
+
+      // one more has to wait for the replica
+      final CountDownLatch added = new CountDownLatch(1);
+      Thread indexer =
+          new Thread(
+              () -> {
+                try {
+                  AddUpdateCommand cmd = new AddUpdateCommand(null);
+                  cmd.solrDoc = sdoc("id", uniqueId.incrementAndGet());
+                  cmdDistrib.distribAdd(cmd, nodes, new ModifiableSolrParams());
+                  added.countDown();
+                } catch (IOException e) {
+                  throw new RuntimeException(e);
+                }
+              });
+      indexer.start();
+      assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+
+      gate.countDown();
+      assertTrue(added.await(30, TimeUnit.SECONDS));
+      indexer.join();
+
+      cmdDistrib.distribCommit(
+          new CommitUpdateCommand(null, false), nodes, new ModifiableSolrParams());
+      cmdDistrib.finish();
+
+      assertEquals(cmdDistrib.getErrors().toString(), 0, cmdDistrib.getErrors().size());
+      assertEquals(0, updateShardHandler.getAsyncUpdatesInFlight().get());
+      assertEquals(
+          numFoundBefore + maxInFlight + 1,
+          solrclient.query(new SolrQuery("*:*")).getResults().getNumFound());
+    } finally {
+      gate.countDown();
+      System.clearProperty("solr.cloud.replication.async");
+      System.clearProperty("solr.cloud.replication.async.maxInFlight");
+    }
+  }
+
+  private void testAsyncDeletesInOrder() throws Exception {
+    final HttpSolrClient solrclient = (HttpSolrClient) clients.get(1);
+    long numFoundBefore = solrclient.query(new SolrQuery("*:*")).getResults().getNumFound();
+    System.setProperty("solr.cloud.replication.async", "true");
+    System.setProperty("solr.cloud.replication.async.maxInFlight", "8");
+    try (SolrCmdDistributor cmdDistrib = new SolrCmdDistributor(updateShardHandler)) {
+      List<Node> nodes = asyncNodes(solrclient);
+      final String tag = "async" + uniqueId.incrementAndGet();
+
+      int numDocs = atLeast(20);
+      for (int i = 0; i < numDocs; i++) {
+        int id = uniqueId.incrementAndGet();
+        AddUpdateCommand cmd = new AddUpdateCommand(null);
+        cmd.solrDoc = sdoc("id", id, "a_t", tag);
+        cmdDistrib.distribAdd(cmd, nodes, new ModifiableSolrParams());
+        if (i % 2 == 0) {
+          // a delete by id right behind the add of the same doc, sent in the same window
+          DeleteUpdateCommand dcmd = new DeleteUpdateCommand(null);
+          dcmd.setId(String.valueOf(id));
+          cmdDistrib.distribDelete(dcmd, nodes, new ModifiableSolrParams());
+        }
+      }
+      DeleteUpdateCommand dbq = new DeleteUpdateCommand(null);
+      dbq.setQuery("a_t:" + tag);
+      cmdDistrib.distribDelete(dbq, nodes, new ModifiableSolrParams());
+
+      // added after the delete-by-query, must survive it
+      AddUpdateCommand cmd = new AddUpdateCommand(null);
+      cmd.solrDoc = sdoc("id", uniqueId.incrementAndGet(), "a_t", tag);
+      cmdDistrib.distribAdd(cmd, nodes, new ModifiableSolrParams());
+
+      cmdDistrib.distribCommit(
+          new CommitUpdateCommand(null, false), nodes, new ModifiableSolrParams());
+      cmdDistrib.finish();
+
+      assertEquals(cmdDistrib.getErrors().toString(), 0, cmdDistrib.getErrors().size());
+      assertEquals(
+          1, solrclient.query(new SolrQuery("a_t:" + tag)).getResults().getNumFound());
+      assertEquals(
+          numFoundBefore + 1, solrclient.query(new SolrQuery("*:*")).getResults().getNumFound());
+    } finally {
+      System.clearProperty("solr.cloud.replication.async");
+      System.clearProperty("solr.cloud.replication.async.maxInFlight");
+    }
+  }
+
+  private void testAsyncRetries() throws Exception {
+    final HttpSolrClient solrclient = (HttpSolrClient) clients.get(1);
+    long numFoundBefore = solrclient.query(new SolrQuery("*:*")).getResults().getNumFound();
+    System.setProperty("solr.cloud.replication.async", "true");
+    final MockStreamingSolrClients streamingClients =
+        new MockStreamingSolrClients(updateShardHandler);
+    try (SolrCmdDistributor cmdDistrib = new SolrCmdDistributor(streamingClients, 0)) {
+      streamingClients.setExp(Exp.CONNECT_EXCEPTION);
+      final AtomicInteger retries = new AtomicInteger();
+      ZkNodeProps nodeProps =
+          new ZkNodeProps(
+              ZkStateReader.BASE_URL_PROP,
+              solrclient.getBaseURL(),
+              ZkStateReader.CORE_NAME_PROP,
+              solrclient.getDefaultCollection());
+      List<Node> nodes =
+          Collections.singletonList(
+              new StdNode(new ZkCoreNodeProps(nodeProps), "collection1", "shard1", 5) {
+                @Override
+                public boolean checkRetry(SolrError err) {
+                  if (retries.incrementAndGet() >= 3) {
+                    streamingClients.setExp(null);
+                  }
+                  return super.checkRetry(err);
+                }
+              });
+
+      AddUpdateCommand cmd = new AddUpdateCommand(null);
+      cmd.solrDoc = sdoc("id", uniqueId.incrementAndGet());
+      LeaderRequestReplicationTracker leaderReqTracker =
+          new LeaderRequestReplicationTracker("shard1");
+      cmdDistrib.distribAdd(cmd, nodes, new ModifiableSolrParams(), false, null, leaderReqTracker);
+      cmdDistrib.distribCommit(
+          new CommitUpdateCommand(null, false), nodes, new ModifiableSolrParams());
+      cmdDistrib.finish();
+
+      // each failure is checked with shouldRetry once by the response handler and once more
+      // by SolrCmdDistributor before resubmitting
+      assertTrue(String.valueOf(retries.get()), retries.get() >= 3);
+      assertEquals(2, leaderReqTracker.getAchievedRf());
+      assertEquals(cmdDistrib.getErrors().toString(), 0, cmdDistrib.getErrors().size());
+      assertEquals(
+          numFoundBefore + 1, solrclient.query(new SolrQuery("*:*")).getResults().getNumFound());
+    } finally {
+      System.clearProperty("solr.cloud.replication.async");
+    }
+  }
+
   private void testDeletes(boolean dbq, boolean withFailures) throws Exception {
     final HttpSolrClient solrclient = (HttpSolrClient) clients.get(0);
     solrclient.commit(true, true);
@@ -18,12 +18,24 @@
 package org.apache.solr.update;
 
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.solr.SolrTestCase;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.update.TransactionLog.LogReader;
 import org.junit.Test;
 
@@ -71,4 +83,205 @@ public class TransactionLogTest extends SolrTestCase {
       assertEquals(uuid, (UUID) doc.getFieldValue("uuid"));
     }
   }
+
+  @Test
+  public void testGroupFsyncConcurrentWriters() throws Exception {
+    String tlogFileName =
+        String.format(
+            Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, Long.MAX_VALUE);
+    Path path = createTempDir();
+    Path logFile = path.resolve(tlogFileName);
+    int numThreads = 8;
+    int docsPerThread = atLeast(50);
+    ExecutorService executor =
+        ExecutorUtil.newMDCAwareFixedThreadPool(
+            numThreads, new SolrNamedThreadFactory("testGroupFsync"));
+    AtomicInteger syncs = new AtomicInteger();
+    AtomicLong syncedPosition = new AtomicLong();
+    TransactionLog.testing_groupSyncHook =
+        position -> {
+          syncs.incrementAndGet();
+          syncedPosition.accumulateAndGet(position, Math::max);
+          // a slow sync, so that concurrent writers pile up behind it
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+    // position of each record, and the synced position observed once its finish() returned
+    Map<Long, Long> syncedAtReturn = new ConcurrentHashMap<>();
+    long logSize;
+    try (TransactionLog tlog = new TransactionLog(logFile, null)) {
+      tlog.deleteOnClose = false;
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < numThreads; t++) {
+        final int thread = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < docsPerThread; i++) {
+                    AddUpdateCommand updateCommand = new AddUpdateCommand(null);
+                    SolrInputDocument doc = new SolrInputDocument();
+                    doc.addField("id", thread + "_" + i);
+                    updateCommand.solrDoc = doc;
+                    long pos = tlog.write(updateCommand);
+                    tlog.finish(UpdateLog.SyncLevel.GROUP_FSYNC);
+                    syncedAtReturn.put(pos, syncedPosition.get());
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      logSize = tlog.getLogSize();
+    } finally {
+      TransactionLog.testing_groupSyncHook = null;
+      ExecutorUtil.shutdownAndAwaitTermination(executor);
+    }
+
+    int numWrites = numThreads * docsPerThread;
+    assertEquals(numWrites, syncedAtReturn.size());
+    assertTrue(
+        "concurrent writers should share syncs: " + syncs.get() + " syncs for " + numWrites,
+        syncs.get() < numWrites);
+    // records are contiguous: each one ends where the next one starts, the last one at the end
+    List<Long> positions = new ArrayList<>(syncedAtReturn.keySet());
+    Collections.sort(positions);
+    for (int i = 0; i < positions.size(); i++) {
+      long pos = positions.get(i);
+      long end = i + 1 < positions.size() ? positions.get(i + 1) : logSize;
+      assertTrue(
+          "write at " + pos + " returned before its record was synced",
+          syncedAtReturn.get(pos) >= end);
+    }
+
+    try (TransactionLog tlog = new TransactionLog(logFile, null, true)) {
+      LogReader reader = tlog.getReader(0);
+      int count = 0;
+      while (reader.next() != null) {
+        count++;
+      }
+      reader.close();
+      assertEquals(numWrites, count);
+    }
+  }
+
+  @Test
+  public void testSortedReaderAndHeaderScan() throws Exception {
+    String tlogFileName =
+        String.format(
+            Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, Long.MAX_VALUE);
+    Path logFile = createTempDir().resolve(tlogFileName);
+    long[] versions = {5, 2, 9, 7, 1};
+    try (TransactionLog tlog = new TransactionLog(logFile, null)) {
+      for (long version : versions) {
+        AddUpdateCommand updateCommand = new AddUpdateCommand(null);
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("id", Long.toString(version));
+        updateCommand.solrDoc = doc;
+        updateCommand.setVersion(version);
+        tlog.write(updateCommand);
+      }
+
+      List<Long> scanned = new ArrayList<>();
+      tlog.scanRecordHeaders(
+          0,
+          (pos, flags, version) -> {
+            assertEquals(UpdateLog.ADD, flags & UpdateLog.OPERATION_MASK);
+            assertEquals(version, ((List<?>) tlog.lookup(pos)).get(UpdateLog.VERSION_IDX));
+            scanned.add(version);
+            return true;
+          });
+      assertEquals(List.of(1L, 7L, 9L, 2L, 5L), scanned);
+
+      LogReader reader = tlog.getSortedReader(0);
+      List<Long> sorted = new ArrayList<>();
+      Object entry;
+      while ((entry = reader.next()) != null) {
+        sorted.add((Long) ((List<?>) entry).get(UpdateLog.VERSION_IDX));
+      }
+      reader.close();
+      assertEquals(List.of(1L, 2L, 5L, 7L, 9L), sorted);
+    }
+  }
+
+  @Test
+  public void testMappedReads() throws Exception {
+    String tlogFileName =
+        String.format(
+            Locale.ROOT, UpdateLog.LOG_FILENAME_PATTERN, UpdateLog.TLOG_NAME, Long.MAX_VALUE);
+    Path logFile = createTempDir().resolve(tlogFileName);
+    int numDocs = atLeast(200);
+    List<Long> positions = new ArrayList<>();
+    // tiny regions, so that records and buffer refills span several mappings
+    TransactionLog.MappedChannelInputStreamOpener opener =
+        new TransactionLog.MappedChannelInputStreamOpener(10);
+    try (TransactionLog tlog =
+        new TransactionLog(logFile, null, false, TransactionLog.OUTPUT_STREAM_OPENER, opener)) {
+      for (int i = 0; i < numDocs; i++) {
+        AddUpdateCommand updateCommand = new AddUpdateCommand(null);
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField("id", Integer.toString(i));
+        doc.addField("text", "some text for document " + i);
+        updateCommand.solrDoc = doc;
+        updateCommand.setVersion(i + 1);
+        positions.add(tlog.write(updateCommand));
+        if (random().nextInt(10) == 0) {
+          // reads while the log is still growing
+          int lookup = random().nextInt(positions.size());
+          List<?> entry = (List<?>) tlog.lookup(positions.get(lookup));
+          assertEquals((long) lookup + 1, entry.get(UpdateLog.VERSION_IDX));
+        }
+      }
+
+      LogReader reader = tlog.getReader(0);
+      for (int i = 0; i < numDocs; i++) {
+        List<?> entry = (List<?>) reader.next();
+        assertEquals((long) i + 1, entry.get(UpdateLog.VERSION_IDX));
+        SolrInputDocument doc = (SolrInputDocument) entry.get(2);
+        assertEquals(Integer.toString(i), doc.getFieldValue("id"));
+      }
+      assertNull(reader.next());
+      reader.close();
+
+      List<Long> scanned = new ArrayList<>();
+      tlog.scanRecordHeaders(
+          positions.get(numDocs / 2),
+          (pos, flags, version) -> {
+            scanned.add(version);
+            return true;
+          });
+      assertEquals(numDocs - numDocs / 2, scanned.size());
+      assertEquals(Long.valueOf(numDocs), scanned.get(0));
+      assertTrue(opener.mappedRegionCount() > 0);
+
+      // concurrent lookups read the same regions without blocking each other
+      ExecutorService executor =
+          ExecutorUtil.newMDCAwareFixedThreadPool(4, new SolrNamedThreadFactory("mappedReads"));
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+          final Random rand = new Random(random().nextLong());
+          futures.add(
+              executor.submit(
+                  () -> {
+                    for (int i = 0; i < numDocs; i++) {
+                      int lookup = rand.nextInt(numDocs);
+                      List<?> entry = (List<?>) tlog.lookup(positions.get(lookup));
+                      assertEquals((long) lookup + 1, entry.get(UpdateLog.VERSION_IDX));
+                    }
+                  }));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        ExecutorUtil.shutdownAndAwaitTermination(executor);
+      }
+    }
+    // closing the log unmaps its regions
+    assertEquals(0, opener.mappedRegionCount());
+    expectThrows(ClosedChannelException.class, () -> opener.read(null, 0, new byte[1], 0, 1));
+  }
 }
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A block of tuples read at once from a stream with {@link
+ * org.apache.solr.client.solrj.io.stream.TupleStream#readBatch(TupleBatch)}. The batch holds up
+ * to {@link #capacity()} tuples, followed by the EOF tuple of the stream once it is reached.
+ *
+ * <p>The numeric values of a field can be read as a {@link NumericColumn}, made of arrays of
+ * primitives extracted once per batch, so that the metrics of a rollup over the same field don't
+ * each look them up in every tuple.
+ */
+public class TupleBatch {
+
+  /** The capacity of the batches read by the streams reading their own input in batches */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final Tuple[] tuples;
+  private int size;
+  private Tuple eof;
+  private final Map<String, NumericColumn> columns = new HashMap<>();
+
+  public TupleBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TupleBatch(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid batch capacity: " + capacity);
+    }
+    this.tuples = new Tuple[capacity];
+  }
+
+  public int capacity() {
+    return tuples.length;
+  }
+
+  /** The number of tuples in the batch, not counting the EOF tuple */
+  public int size() {
+    return size;
+  }
+
+  /** Whether no more tuple can be added, either because the batch is full or it ends the stream */
+  public boolean isFull() {
+    return size == tuples.length || eof != null;
+  }
+
+  /** Whether the batch ends the stream */
+  public boolean isEOF() {
+    return eof != null;
+  }
+
+  /** The EOF tuple of the stream, or null if the stream doesn't end with this batch */
+  public Tuple getEOF() {
+    return eof;
+  }
+
+  public Tuple get(int index) {
+    return tuples[index];
+  }
+
+  /** Adds a tuple to the batch, or sets the EOF tuple ending the batch */
+  public void add(Tuple tuple) {
+    if (tuple.EOF) {
+      eof = tuple;
+    } else {
+      tuples[size++] = tuple;
+      invalidateColumns();
+    }
+  }
+
+  /** Replaces the tuple at the given index */
+  public void set(int index, Tuple tuple) {
+    tuples[index] = tuple;
+    invalidateColumns();
+  }
+
+  /** Keeps the first tuples of the batch only */
+  public void truncate(int size) {
+    for (int i = size; i < this.size; i++) {
+      tuples[i] = null;
+    }
+    this.size = size;
+    invalidateColumns();
+  }
+
+  public void clear() {
+    truncate(0);
+    eof = null;
+  }
+
+  /** The numeric values of the given field in the tuples of the batch */
+  public NumericColumn getNumericColumn(String field) {
+    NumericColumn column = columns.get(field);
+    if (column == null) {
+      column = new NumericColumn(tuples.length);
+      columns.put(field, column);
+    }
+    if (!column.filled) {
+      column.fill(tuples, size, field);
+    }
+    return column;
+  }
+
+  private void invalidateColumns() {
+    if (!columns.isEmpty()) {
+      for (NumericColumn column : columns.values()) {
+        column.filled = false;
+      }
+    }
+  }
+
+  /**
+   * The values of a field in the tuples of a batch, the integers and longs as longs, the floats and
+   * doubles as doubles.
+   */
+  public static final class NumericColumn {
+    /** The kind of a missing value */
+    public static final byte NONE = 0;
+
+    /** The kind of an integer or long value */
+    public static final byte LONG = 1;
+
+    /** The kind of a float or double value */
+    public static final byte DOUBLE = 2;
+
+    /** The kind of a value which isn't a number */
+    public static final byte OTHER = 3;
+
+    private final byte[] kinds;
+    private final long[] longs;
+    private final double[] doubles;
+    private boolean filled;
+
+    private NumericColumn(int capacity) {
+      this.kinds = new byte[capacity];
+      this.longs = new long[capacity];
+      this.doubles = new double[capacity];
+    }
+
+    private void fill(Tuple[] tuples, int size, String field) {
+      for (int i = 0; i < size; i++) {
+        Object o = tuples[i].get(field);
+        if (o instanceof Long || o instanceof Integer) {
+          kinds[i] = LONG;
+          longs[i] = ((Number) o).longValue();
+        } else if (o instanceof Double || o instanceof Float) {
+          kinds[i] = DOUBLE;
+          doubles[i] = ((Number) o).doubleValue();
+        } else {
+          kinds[i] = o == null ? NONE : OTHER;
+        }
+      }
+      filled = true;
+    }
+
+    public byte getKind(int index) {
+      return kinds[index];
+    }
+
+    /** The value at the given index, if of the {@link #LONG} kind */
+    public long getLong(int index) {
+      return longs[index];
+    }
+
+    /** The value at the given index, if of the {@link #DOUBLE} kind */
+    public double getDouble(int index) {
+      return doubles[index];
+    }
+  }
+}
@@ -37,6 +37,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.ComparatorOrder;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.MultipleFieldComparator;
@@ -76,6 +77,8 @@ public class CloudSolrStream extends TupleStream implements Expressible {
   protected transient List<TupleStream> solrStreams;
   protected transient TreeSet<TupleWrapper> tuples;
   protected transient StreamContext streamContext;
+  // the params of the work pushed down to the shards by the decorators of this stream
+  transient ModifiableSolrParams pushedDownParams;
 
   // Used by parallel stream
   protected CloudSolrStream() {}
@@ -379,6 +382,9 @@ public class CloudSolrStream extends TupleStream implements Expressible {
   protected void constructStreams() throws IOException {
     final ModifiableSolrParams mParams = adjustParams(new ModifiableSolrParams(params));
     mParams.set(DISTRIB, "false"); // We are the aggregator.
+    if (pushedDownParams != null) {
+      mParams.add(pushedDownParams);
+    }
     try {
       final Stream<SolrStream> streamOfSolrStream;
       if (streamContext != null && streamContext.get("shards") != null) {
@@ -470,6 +476,36 @@ public class CloudSolrStream extends TupleStream implements Expressible {
     }
   }
 
+  /**
+   * Merges the tuples of the shards a run at a time: the tuples of a shard are added to the batch
+   * while they come before the next tuple of the other shards, without going through the sorted set
+   * of the shards for each of them.
+   */
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    batch.clear();
+    while (!batch.isFull()) {
+      TupleWrapper tw = tuples.pollFirst();
+      if (tw == null) {
+        batch.add(_read());
+        return;
+      }
+      TupleWrapper next = tuples.isEmpty() ? null : tuples.first();
+      boolean more;
+      do {
+        Tuple t = tw.getTuple();
+        if (trace) {
+          t.put("_COLLECTION_", this.collection);
+        }
+        batch.add(t);
+        more = tw.next();
+      } while (more && !batch.isFull() && (next == null || tw.compareTo(next) < 0));
+      if (more) {
+        tuples.add(tw);
+      }
+    }
+  }
+
   protected class TupleWrapper implements Comparable<TupleWrapper> {
     private Tuple tuple;
     private final SolrStream stream;
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the tuples of an /export response written in the {@value #WT} format.
+ *
+ * <p>The format is a sequence of batches of rows, each of them made of the column vectors of the
+ * fields of its rows, so that the values of a field are decoded as an array of primitives instead
+ * of being parsed one by one, and a string field repeating the same values is sent as a
+ * dictionary of terms and their ordinals. The dictionary of a string column is kept from one batch
+ * to the next, a batch only sending the terms that weren't sent yet. The tuples are then built
+ * lazily, one row at a time.
+ *
+ * <pre>
+ * stream: MAGIC VERSION (BATCH batch)* END
+ * batch:  rowCount:vint columnCount:vint column*
+ * column: name:string type:byte presence values
+ * presence: 0 if every row has a value, else 1 followed by a bitmap of (rowCount + 7) / 8 bytes
+ * values: one value per row having one, as int32, int64, float32, float64 or a byte for the
+ *         numeric and boolean columns, the epoch millis of the dates as int64, the terms added
+ *         to the dictionary of the column (cleared:byte size:vint string*) followed by an
+ *         ord:vint per row for the string columns, and a tagged value per row for the columns
+ *         of any other or of mixed types. A dictionary is started over when cleared is 1.
+ * string: length:vint followed by the UTF-8 bytes
+ * </pre>
+ */
+public class ColumnarTupleStreamParser implements TupleStreamParser {
+  /** The {@code wt} param of the requests asking for this format */
+  public static final String WT = "columnar";
+
+  public static final String CONTENT_TYPE = "application/x-solr-columnar";
+
+  /** The first bytes of the stream: "SCOL" */
+  public static final int MAGIC = 0x53434F4C;
+  public static final int VERSION = 1;
+
+  public static final byte END = 0;
+  public static final byte BATCH = 1;
+
+  public static final byte TYPE_NULL = 0;
+  public static final byte TYPE_INT = 1;
+  public static final byte TYPE_LONG = 2;
+  public static final byte TYPE_FLOAT = 3;
+  public static final byte TYPE_DOUBLE = 4;
+  public static final byte TYPE_BOOLEAN = 5;
+  public static final byte TYPE_DATE = 6;
+  public static final byte TYPE_STRING = 7;
+  // the column or the value is tagged with the type of each value
+  public static final byte TYPE_OBJECT = 8;
+  // the tag of a value made of a list of tagged values
+  public static final byte TYPE_LIST = 9;
+  // the tag of a value made of a map of names and tagged values
+  public static final byte TYPE_MAP = 10;
+
+  private final DataInputStream in;
+  // the dictionaries of the string columns, by column name
+  private final Map<String, List<String>> dictionaries = new HashMap<>();
+  private Column[] columns = new Column[0];
+  private int rowCount;
+  private int row;
+  private boolean done;
+
+  public ColumnarTupleStreamParser(InputStream is) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(is));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a " + WT + " stream");
+    }
+    int version = in.readByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported " + WT + " stream version: " + version);
+    }
+  }
+
+  @Override
+  public Map<String, Object> next() throws IOException {
+    while (row == rowCount) {
+      if (done || !readBatch()) {
+        done = true;
+        return null;
+      }
+    }
+    Map<String, Object> tuple = new HashMap<>(columns.length * 2);
+    for (Column column : columns) {
+      if (column.isPresent(row)) {
+        tuple.put(column.name, column.nextValue());
+      }
+    }
+    ++row;
+    return tuple;
+  }
+
+  private boolean readBatch() throws IOException {
+    byte marker = in.readByte();
+    if (marker == END) {
+      return false;
+    }
+    if (marker != BATCH) {
+      throw new IOException("Corrupt " + WT + " stream, unexpected marker: " + marker);
+    }
+    rowCount = readVInt(in);
+    row = 0;
+    columns = new Column[readVInt(in)];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = readColumn();
+    }
+    return true;
+  }
+
+  private Column readColumn() throws IOException {
+    Column column = new Column(readString(in), in.readByte());
+    int valueCount = rowCount;
+    if (in.readByte() != 0) {
+      column.presence = new byte[(rowCount + 7) >>> 3];
+      in.readFully(column.presence);
+      valueCount = 0;
+      for (byte b : column.presence) {
+        valueCount += Integer.bitCount(b & 0xFF);
+      }
+    }
+    switch (column.type) {
+      case TYPE_INT:
+        column.ints = new int[valueCount];
+        for (int i = 0; i < valueCount; i++) column.ints[i] = in.readInt();
+        break;
+      case TYPE_LONG:
+      case TYPE_DATE:
+        column.longs = new long[valueCount];
+        for (int i = 0; i < valueCount; i++) column.longs[i] = in.readLong();
+        break;
+      case TYPE_FLOAT:
+        column.floats = new float[valueCount];
+        for (int i = 0; i < valueCount; i++) column.floats[i] = in.readFloat();
+        break;
+      case TYPE_DOUBLE:
+        column.doubles = new double[valueCount];
+        for (int i = 0; i < valueCount; i++) column.doubles[i] = in.readDouble();
+        break;
+      case TYPE_BOOLEAN:
+        column.bytes = new byte[valueCount];
+        in.readFully(column.bytes);
+        break;
+      case TYPE_STRING:
+        column.terms = dictionaries.computeIfAbsent(column.name, k -> new ArrayList<>());
+        if (in.readByte() != 0) {
+          column.terms.clear();
+        }
+        for (int i = readVInt(in); i > 0; i--) column.terms.add(readString(in));
+        column.ints = new int[valueCount];
+        for (int i = 0; i < valueCount; i++) column.ints[i] = readVInt(in);
+        break;
+      case TYPE_OBJECT:
+        column.objects = new Object[valueCount];
+        for (int i = 0; i < valueCount; i++) column.objects[i] = readValue(in);
+        break;
+      default:
+        throw new IOException("Unknown type of column " + column.name + ": " + column.type);
+    }
+    return column;
+  }
+
+  /** Reads a value tagged with its type */
+  static Object readValue(DataInputStream in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case TYPE_NULL:
+        return null;
+      case TYPE_INT:
+        return in.readInt();
+      case TYPE_LONG:
+        return in.readLong();
+      case TYPE_FLOAT:
+        return in.readFloat();
+      case TYPE_DOUBLE:
+        return in.readDouble();
+      case TYPE_BOOLEAN:
+        return in.readByte() != 0;
+      case TYPE_DATE:
+        return new Date(in.readLong());
+      case TYPE_STRING:
+        return readString(in);
+      case TYPE_LIST:
+        {
+          int size = readVInt(in);
+          List<Object> list = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) list.add(readValue(in));
+          return list;
+        }
+      case TYPE_MAP:
+        {
+          int size = readVInt(in);
+          Map<String, Object> map = new LinkedHashMap<>();
+          for (int i = 0; i < size; i++) map.put(readString(in), readValue(in));
+          return map;
+        }
+      default:
+        throw new IOException("Unknown value type: " + tag);
+    }
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[readVInt(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static int readVInt(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = in.readByte();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new EOFException("Corrupt " + WT + " stream, invalid vint");
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /** The decoded values of a column of the current batch */
+  private static final class Column {
+    final String name;
+    final byte type;
+    byte[] presence; // null if every row has a value
+    int[] ints; // the values of an int column, or the ordinals of a string column
+    long[] longs;
+    float[] floats;
+    double[] doubles;
+    byte[] bytes;
+    List<String> terms;
+    Object[] objects;
+    int index; // the index of the next value
+
+    Column(String name, byte type) {
+      this.name = name;
+      this.type = type;
+    }
+
+    boolean isPresent(int row) {
+      return presence == null || (presence[row >>> 3] & (1 << (row & 7))) != 0;
+    }
+
+    Object nextValue() {
+      int i = index++;
+      switch (type) {
+        case TYPE_INT:
+          return ints[i];
+        case TYPE_LONG:
+          return longs[i];
+        case TYPE_DATE:
+          return new Date(longs[i]);
+        case TYPE_FLOAT:
+          return floats[i];
+        case TYPE_DOUBLE:
+          return doubles[i];
+        case TYPE_BOOLEAN:
+          return bytes[i] != 0;
+        case TYPE_STRING:
+          return terms.get(ints[i]);
+        default:
+          return objects[i];
+      }
+    }
+  }
+}
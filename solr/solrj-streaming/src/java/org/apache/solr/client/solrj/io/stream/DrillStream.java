@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -254,6 +255,13 @@ public class DrillStream extends CloudSolrStream implements Expressible {
     return l;
   }
 
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    // the tuples are post-processed one at a time by read()
+    batch.clear();
+    readTuples(batch);
+  }
+
   @Override
   public Tuple read() throws IOException {
     Tuple tuple = _read();
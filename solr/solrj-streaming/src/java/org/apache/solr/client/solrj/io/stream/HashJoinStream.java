@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation.ExpressionType;
@@ -57,6 +58,10 @@ public class HashJoinStream extends TupleStream implements Expressible {
   protected String workingFullHash = null;
   protected int workingHashSetIdx = 0;
 
+  // the batch read from the full stream, and the index of its next tuple
+  private transient TupleBatch fullBatch;
+  private transient int fullIndex;
+
   public HashJoinStream(TupleStream fullStream, TupleStream hashStream, List<String> hashOn)
       throws IOException {
     init(fullStream, hashStream, hashOn);
@@ -226,20 +231,26 @@ public class HashJoinStream extends TupleStream implements Expressible {
     hashStream.open();
     fullStream.open();
 
-    Tuple tuple = hashStream.read();
-    while (!tuple.EOF) {
-      String hash = computeHash(tuple, rightHashOn);
-      if (null != hash) {
-        if (hashedTuples.containsKey(hash)) {
-          hashedTuples.get(hash).add(tuple);
-        } else {
-          ArrayList<Tuple> set = new ArrayList<>();
-          set.add(tuple);
-          hashedTuples.put(hash, set);
+    TupleBatch batch = new TupleBatch();
+    do {
+      hashStream.readBatch(batch);
+      for (int i = 0; i < batch.size(); i++) {
+        Tuple tuple = batch.get(i);
+        String hash = computeHash(tuple, rightHashOn);
+        if (null != hash) {
+          if (hashedTuples.containsKey(hash)) {
+            hashedTuples.get(hash).add(tuple);
+          } else {
+            ArrayList<Tuple> set = new ArrayList<>();
+            set.add(tuple);
+            hashedTuples.put(hash, set);
+          }
         }
       }
-      tuple = hashStream.read();
-    }
+    } while (!batch.isEOF());
+
+    fullBatch = new TupleBatch();
+    fullIndex = 0;
   }
 
   protected String computeHash(Tuple tuple, List<String> hashOn) {
@@ -305,6 +316,59 @@ public class HashJoinStream extends TupleStream implements Expressible {
     return returnTuple;
   }
 
+  /** Joins the tuples of the full stream a batch at a time */
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    batch.clear();
+    while (!batch.isFull()) {
+      if (null == workingFullTuple) {
+        if (fullIndex == fullBatch.size()) {
+          if (fullBatch.isEOF()) {
+            batch.add(fullBatch.getEOF());
+            return;
+          }
+          fullStream.readBatch(fullBatch);
+          fullIndex = 0;
+          continue;
+        }
+
+        Tuple fullTuple = fullBatch.get(fullIndex++);
+        String fullHash = computeHash(fullTuple, leftHashOn);
+        if (null == fullHash || !hashedTuples.containsKey(fullHash)) {
+          Tuple unmatchedTuple = unmatchedTuple(fullTuple);
+          if (null != unmatchedTuple) {
+            batch.add(unmatchedTuple);
+          }
+          continue;
+        }
+
+        workingFullTuple = fullTuple;
+        workingFullHash = fullHash;
+        workingHashSetIdx = 0;
+      }
+
+      List<Tuple> matches = hashedTuples.get(workingFullHash);
+      Tuple returnTuple = workingFullTuple.clone();
+      returnTuple.merge(matches.get(workingHashSetIdx));
+      batch.add(returnTuple);
+
+      workingHashSetIdx++;
+      if (workingHashSetIdx >= matches.size()) {
+        workingFullTuple = null;
+        workingFullHash = null;
+        workingHashSetIdx = 0;
+      }
+    }
+  }
+
+  /**
+   * Returns the tuple to read for a tuple of the full stream without any match in the hashed
+   * stream, or null if there's none.
+   */
+  protected Tuple unmatchedTuple(Tuple fullTuple) {
+    return null;
+  }
+
   @Override
   public StreamComparator getStreamSort() {
     return fullStream.getStreamSort();
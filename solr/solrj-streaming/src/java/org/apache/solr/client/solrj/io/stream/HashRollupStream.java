@@ -45,8 +45,11 @@ public class HashRollupStream extends TupleStream implements Expressible {
   private static final long serialVersionUID = 1;
 
   private PushBackStream tupleStream;
+  private TupleStream source;
   private Bucket[] buckets;
   private Metric[] metrics;
+  // the metrics of the tuples read, which merge the metrics of the shards when pushed down
+  private Metric[] readMetrics;
 
   private Iterator<Tuple> tupleIterator;
 
@@ -127,6 +130,7 @@ public class HashRollupStream extends TupleStream implements Expressible {
   }
 
   private void init(TupleStream tupleStream, Bucket[] buckets, Metric[] metrics) {
+    this.source = tupleStream;
     this.tupleStream = new PushBackStream(tupleStream);
     this.buckets = buckets;
     this.metrics = metrics;
@@ -199,6 +203,7 @@ public class HashRollupStream extends TupleStream implements Expressible {
 
   @Override
   public void open() throws IOException {
+    readMetrics = RollupPushDown.pushDown("hashRollup", source, buckets, metrics, false);
     tupleStream.open();
   }
 
@@ -248,9 +253,9 @@ public class HashRollupStream extends TupleStream implements Expressible {
             bucketMetric.update(tuple);
           }
         } else {
-          currentMetrics = new Metric[metrics.length];
-          for (int i = 0; i < metrics.length; i++) {
-            Metric bucketMetric = metrics[i].newInstance();
+          currentMetrics = new Metric[readMetrics.length];
+          for (int i = 0; i < readMetrics.length; i++) {
+            Metric bucketMetric = readMetrics[i].newInstance();
             bucketMetric.update(tuple);
             currentMetrics[i] = bucketMetric;
           }
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -44,6 +45,9 @@ public class MergeStream extends TupleStream implements Expressible {
 
   private PushBackStream[] streams;
   private StreamComparator comp;
+  // the batches read from the streams, and the index of their next tuple
+  private transient TupleBatch[] batches;
+  private transient int[] indexes;
 
   public MergeStream(TupleStream streamA, TupleStream streamB, StreamComparator comp)
       throws IOException {
@@ -174,6 +178,7 @@ public class MergeStream extends TupleStream implements Expressible {
 
   @Override
   public void open() throws IOException {
+    batches = null;
     for (PushBackStream stream : streams) {
       stream.open();
     }
@@ -257,6 +262,44 @@ public class MergeStream extends TupleStream implements Expressible {
     //    }
   }
 
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    if (batches == null) {
+      batches = new TupleBatch[streams.length];
+      indexes = new int[streams.length];
+      for (int i = 0; i < streams.length; i++) {
+        batches[i] = new TupleBatch(batch.capacity());
+      }
+    }
+    batch.clear();
+    while (!batch.isFull()) {
+      // the first stream with the minimum tuple, as done by read()
+      int minimum = -1;
+      for (int i = 0; i < streams.length; i++) {
+        if (indexes[i] == batches[i].size()) {
+          if (batches[i].isEOF()) {
+            continue;
+          }
+          streams[i].readBatch(batches[i]);
+          indexes[i] = 0;
+          if (batches[i].size() == 0) {
+            continue;
+          }
+        }
+        if (minimum == -1
+            || comp.compare(batches[i].get(indexes[i]), batches[minimum].get(indexes[minimum]))
+                < 0) {
+          minimum = i;
+        }
+      }
+      if (minimum == -1) {
+        batch.add(batches[0].getEOF());
+        return;
+      }
+      batch.add(batches[minimum].get(indexes[minimum]++));
+    }
+  }
+
   /** Return the stream sort - ie, the order in which records are returned */
   @Override
   public StreamComparator getStreamSort() {
@@ -134,4 +134,10 @@ public class OuterHashJoinStream extends HashJoinStream implements Expressible {
 
     return returnTuple;
   }
+
+  @Override
+  protected Tuple unmatchedTuple(Tuple fullTuple) {
+    // an outer join returns the tuples of the full stream without match as well
+    return fullTuple.clone();
+  }
 }
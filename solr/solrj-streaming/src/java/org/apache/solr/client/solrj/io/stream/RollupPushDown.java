@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
+import org.apache.solr.client.solrj.io.comp.FieldComparator;
+import org.apache.solr.client.solrj.io.comp.MultipleFieldComparator;
+import org.apache.solr.client.solrj.io.comp.StreamComparator;
+import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
+import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionNamedParameter;
+import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionParameter;
+import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
+import org.apache.solr.client.solrj.io.stream.metrics.Bucket;
+import org.apache.solr.client.solrj.io.stream.metrics.CountMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.MaxMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.MeanMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.Metric;
+import org.apache.solr.client.solrj.io.stream.metrics.MinMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.SumMetric;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.params.StreamParams;
+import org.apache.solr.common.util.EnvUtils;
+
+/**
+ * Pushes the rollup of the tuples of a search of the /export handler down to the shards: the
+ * shards roll up their own docs with the {@code expr} param of the /export handler, and only
+ * their buckets are sent back to be merged, instead of all the docs.
+ *
+ * <p>The rollup is only pushed down when its metrics can be merged exactly: sums, counts, mins,
+ * maxes and means, the means being computed from the sums and counts of the shards. It also
+ * requires the search to be sorted on the fields of the buckets, which keeps the buckets of the
+ * shards ordered for their merge.
+ */
+final class RollupPushDown {
+  static boolean ENABLED = EnvUtils.getPropertyAsBool("solr.streaming.rollup.pushDown", true);
+
+  private RollupPushDown() {}
+
+  /**
+   * Pushes a rollup down to the shards of the given stream if possible.
+   *
+   * @param functionName the function rolling up the tuples on the shards
+   * @param stream the stream of the tuples to roll up
+   * @param sorted whether the rollup requires the tuples to be sorted by bucket
+   * @return the metrics merging the metrics of the shards if the rollup was pushed down, the given
+   *     metrics otherwise
+   */
+  static Metric[] pushDown(
+      String functionName, TupleStream stream, Bucket[] buckets, Metric[] metrics, boolean sorted)
+      throws IOException {
+    if (stream instanceof SearchFacadeStream) {
+      // the search function of the default factory
+      stream = ((SearchFacadeStream) stream).getInnerStream();
+    }
+    if (!ENABLED || metrics == null || stream.getClass() != CloudSolrStream.class) {
+      return metrics;
+    }
+    CloudSolrStream search = (CloudSolrStream) stream;
+    search.pushedDownParams = null;
+    if (!"/export".equals(search.params.get(CommonParams.QT))
+        || search.params.get(StreamParams.EXPR) != null
+        || search.fieldMappings != null) {
+      return metrics;
+    }
+
+    List<String> over = new ArrayList<>();
+    for (Bucket bucket : buckets) {
+      over.add(bucket.toString());
+    }
+    Set<String> sortFields = new HashSet<>();
+    if (!addSortFields(search.getStreamSort(), sortFields)
+        || (sorted ? !sortFields.equals(new HashSet<>(over)) : !over.containsAll(sortFields))) {
+      return metrics;
+    }
+
+    // the metrics computed by the shards, with the default names of their functions, by identifier
+    Map<String, Metric> shardMetrics = new LinkedHashMap<>();
+    Metric[] mergedMetrics = new Metric[metrics.length];
+    for (int i = 0; i < metrics.length; i++) {
+      Metric metric = metrics[i];
+      Class<?> metricClass = metric.getClass();
+      String column = metric.getColumns().length == 0 ? "*" : metric.getColumns()[0];
+      if (metricClass == MeanMetric.class) {
+        // the mean counts every tuple of the bucket
+        Metric sum = shardMetric(shardMetrics, new SumMetric(column));
+        Metric count = shardMetric(shardMetrics, new CountMetric());
+        mergedMetrics[i] = new MergedMeanMetric(metric, sum.getIdentifier(), count.getIdentifier());
+      } else if (metricClass == SumMetric.class) {
+        String values = shardMetric(shardMetrics, new SumMetric(column)).getIdentifier();
+        mergedMetrics[i] = new MergedMetric(metric, new SumMetric(values));
+      } else if (metricClass == CountMetric.class) {
+        String values = shardMetric(shardMetrics, new CountMetric(column)).getIdentifier();
+        mergedMetrics[i] = new MergedMetric(metric, new SumMetric(values));
+      } else if (metricClass == MinMetric.class) {
+        String values = shardMetric(shardMetrics, new MinMetric(column)).getIdentifier();
+        mergedMetrics[i] = new MergedMetric(metric, new MinMetric(values));
+      } else if (metricClass == MaxMetric.class) {
+        String values = shardMetric(shardMetrics, new MaxMetric(column)).getIdentifier();
+        mergedMetrics[i] = new MergedMetric(metric, new MaxMetric(values));
+      } else {
+        return metrics;
+      }
+    }
+
+    StreamFactory factory = new StreamFactory();
+    StreamExpression expr =
+        new StreamExpression(functionName)
+            .withParameter(new StreamExpression("input"))
+            .withParameter(new StreamExpressionNamedParameter("over", String.join(",", over)));
+    for (Metric metric : shardMetrics.values()) {
+      expr.addParameter(metric.toExpression(factory));
+    }
+    ModifiableSolrParams pushedDownParams = new ModifiableSolrParams();
+    pushedDownParams.set(StreamParams.EXPR, expr.toString());
+    search.pushedDownParams = pushedDownParams;
+    return mergedMetrics;
+  }
+
+  private static boolean addSortFields(StreamComparator comp, Set<String> fields) {
+    if (comp instanceof FieldComparator) {
+      fields.add(((FieldComparator) comp).getLeftFieldName());
+      return true;
+    } else if (comp instanceof MultipleFieldComparator) {
+      for (StreamComparator sub : ((MultipleFieldComparator) comp).getComps()) {
+        if (!addSortFields(sub, fields)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private static Metric shardMetric(Map<String, Metric> shardMetrics, Metric metric) {
+    return shardMetrics.computeIfAbsent(metric.getIdentifier(), k -> metric);
+  }
+
+  /** Merges the values of a metric computed by the shards, with a metric over their values */
+  private static final class MergedMetric extends Metric {
+    private final Metric metric;
+    private final Metric merger;
+
+    MergedMetric(Metric metric, Metric merger) {
+      this.metric = metric;
+      this.merger = merger;
+      this.outputLong = metric.outputLong;
+      setFunctionName(metric.getFunctionName());
+      setIdentifier(metric.getIdentifier());
+    }
+
+    @Override
+    public Number getValue() {
+      Number value = merger.getValue();
+      // the sum of the counts is still a count
+      return metric instanceof CountMetric ? Long.valueOf(value.longValue()) : value;
+    }
+
+    @Override
+    public void update(Tuple tuple) {
+      merger.update(tuple);
+    }
+
+    @Override
+    public void update(TupleBatch batch, int from, int to) {
+      merger.update(batch, from, to);
+    }
+
+    @Override
+    public Metric newInstance() {
+      return new MergedMetric(metric, merger.newInstance());
+    }
+
+    @Override
+    public String[] getColumns() {
+      return merger.getColumns();
+    }
+
+    @Override
+    public StreamExpressionParameter toExpression(StreamFactory factory) throws IOException {
+      return metric.toExpression(factory);
+    }
+  }
+
+  /** Merges the sums and the counts of the shards into the mean of a {@link MeanMetric} */
+  private static final class MergedMeanMetric extends Metric {
+    private final Metric metric;
+    private final String sumColumn;
+    private final String countColumn;
+    private long longSum;
+    private double doubleSum;
+    private long count;
+
+    MergedMeanMetric(Metric metric, String sumColumn, String countColumn) {
+      this.metric = metric;
+      this.sumColumn = sumColumn;
+      this.countColumn = countColumn;
+      this.outputLong = metric.outputLong;
+      setFunctionName(metric.getFunctionName());
+      setIdentifier(metric.getIdentifier());
+    }
+
+    @Override
+    public Number getValue() {
+      // as computed by MeanMetric
+      double dcount = (double) count;
+      if (longSum == 0) {
+        return doubleSum / dcount;
+      } else {
+        double mean = longSum / dcount;
+        return outputLong ? Math.round(mean) : mean;
+      }
+    }
+
+    @Override
+    public void update(Tuple tuple) {
+      Object sum = tuple.get(sumColumn);
+      if (sum instanceof Long || sum instanceof Integer) {
+        longSum += ((Number) sum).longValue();
+      } else if (sum instanceof Number) {
+        doubleSum += ((Number) sum).doubleValue();
+      }
+      Object c = tuple.get(countColumn);
+      if (c instanceof Number) {
+        count += ((Number) c).longValue();
+      }
+    }
+
+    @Override
+    public Metric newInstance() {
+      return new MergedMeanMetric(metric, sumColumn, countColumn);
+    }
+
+    @Override
+    public String[] getColumns() {
+      return new String[] {sumColumn, countColumn};
+    }
+
+    @Override
+    public StreamExpressionParameter toExpression(StreamFactory factory) throws IOException {
+      return metric.toExpression(factory);
+    }
+  }
+}
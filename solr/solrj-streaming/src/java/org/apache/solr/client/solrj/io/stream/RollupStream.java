@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.HashKey;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.eq.FieldEqualitor;
@@ -45,13 +46,21 @@ public class RollupStream extends TupleStream implements Expressible {
   private static final long serialVersionUID = 1;
 
   private PushBackStream tupleStream;
+  private TupleStream source;
   private Bucket[] buckets;
   private Metric[] metrics;
+  // the metrics of the tuples read, which merge the metrics of the shards when pushed down
+  private Metric[] readMetrics;
 
   private HashKey currentKey = new HashKey("-");
   private Metric[] currentMetrics;
   private boolean finished = false;
 
+  // the batch of tuples read, the keys of their buckets, and the index of the next tuple
+  private transient TupleBatch batch;
+  private transient HashKey[] batchKeys;
+  private transient int batchIndex;
+
   public RollupStream(TupleStream tupleStream, Bucket[] buckets, Metric[] metrics) {
     init(tupleStream, buckets, metrics);
   }
@@ -129,6 +138,7 @@ public class RollupStream extends TupleStream implements Expressible {
   }
 
   private void init(TupleStream tupleStream, Bucket[] buckets, Metric[] metrics) {
+    this.source = tupleStream;
     this.tupleStream = new PushBackStream(tupleStream);
     this.buckets = buckets;
     this.metrics = metrics;
@@ -201,84 +211,99 @@ public class RollupStream extends TupleStream implements Expressible {
 
   @Override
   public void open() throws IOException {
+    readMetrics = RollupPushDown.pushDown("rollup", source, buckets, metrics, true);
+    batch = new TupleBatch();
+    batchKeys = new HashKey[batch.capacity()];
+    batchIndex = 0;
     tupleStream.open();
   }
 
   @Override
   public void close() throws IOException {
     tupleStream.close();
+    this.batch = null;
     this.currentMetrics = null;
     this.currentKey = new HashKey("-");
     this.finished = false;
   }
 
+  /**
+   * Reads the tuples a batch at a time: the metrics of a bucket are updated with the whole run of
+   * its tuples in a batch at once.
+   */
   @Override
   public Tuple read() throws IOException {
 
     while (true) {
-      Tuple tuple = tupleStream.read();
-      if (tuple.EOF) {
-        if (!finished) {
-
-          if (currentMetrics == null) {
+      if (batchIndex == batch.size()) {
+        if (batch.isEOF()) {
+          Tuple tuple = batch.getEOF();
+          if (finished || currentMetrics == null) {
             return tuple;
           }
-
-          Tuple t = new Tuple();
-          for (Metric metric : currentMetrics) {
-            t.put(metric.getIdentifier(), metric.getValue());
-          }
-
-          for (int i = 0; i < buckets.length; i++) {
-            t.put(buckets[i].toString(), currentKey.getParts()[i]);
-          }
-          tupleStream.pushBack(tuple);
           finished = true;
-          return t;
-        } else {
-          return tuple;
+          return bucketTuple();
+        }
+        tupleStream.readBatch(batch);
+        for (int i = 0; i < batch.size(); i++) {
+          batchKeys[i] = hashKey(batch.get(i));
         }
+        batchIndex = 0;
+        continue;
       }
 
-      Object[] bucketValues = new Object[buckets.length];
-      for (int i = 0; i < buckets.length; i++) {
-        bucketValues[i] = buckets[i].getBucketValue(tuple);
+      HashKey hashKey = batchKeys[batchIndex];
+      int end = batchIndex + 1;
+      while (end < batch.size() && hashKey.equals(batchKeys[end])) {
+        end++;
       }
 
-      HashKey hashKey = new HashKey(bucketValues);
-
-      if (hashKey.equals(currentKey)) {
-        for (Metric bucketMetric : currentMetrics) {
-          bucketMetric.update(tuple);
-        }
-      } else {
-        Tuple t = null;
+      Tuple t = null;
+      if (!hashKey.equals(currentKey)) {
         if (currentMetrics != null) {
-          t = new Tuple();
-          for (Metric metric : currentMetrics) {
-            t.put(metric.getIdentifier(), metric.getValue());
-          }
-
-          for (int i = 0; i < buckets.length; i++) {
-            t.put(buckets[i].toString(), currentKey.getParts()[i]);
-          }
+          t = bucketTuple();
         }
 
         currentKey = hashKey;
-        if (metrics != null) {
-          currentMetrics = new Metric[metrics.length];
-          for (int i = 0; i < metrics.length; i++) {
-            Metric bucketMetric = metrics[i].newInstance();
-            bucketMetric.update(tuple);
-            currentMetrics[i] = bucketMetric;
+        if (readMetrics != null) {
+          currentMetrics = new Metric[readMetrics.length];
+          for (int i = 0; i < readMetrics.length; i++) {
+            currentMetrics[i] = readMetrics[i].newInstance();
           }
         }
+      }
 
-        if (t != null) {
-          return t;
+      if (currentMetrics != null) {
+        for (Metric bucketMetric : currentMetrics) {
+          bucketMetric.update(batch, batchIndex, end);
         }
       }
+      batchIndex = end;
+
+      if (t != null) {
+        return t;
+      }
+    }
+  }
+
+  private HashKey hashKey(Tuple tuple) {
+    Object[] bucketValues = new Object[buckets.length];
+    for (int i = 0; i < buckets.length; i++) {
+      bucketValues[i] = buckets[i].getBucketValue(tuple);
+    }
+    return new HashKey(bucketValues);
+  }
+
+  private Tuple bucketTuple() {
+    Tuple t = new Tuple();
+    for (Metric metric : currentMetrics) {
+      t.put(metric.getIdentifier(), metric.getValue());
+    }
+
+    for (int i = 0; i < buckets.length; i++) {
+      t.put(buckets[i].toString(), currentKey.getParts()[i]);
     }
+    return t;
   }
 
   @Override
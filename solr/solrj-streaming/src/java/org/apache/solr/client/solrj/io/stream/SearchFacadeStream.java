@@ -104,6 +104,11 @@ public class SearchFacadeStream extends TupleStream implements Expressible {
     }
   }
 
+  /** The stream the search is delegated to, a CloudSolrStream for the /export handler */
+  TupleStream getInnerStream() {
+    return innerStream;
+  }
+
   @Override
   public StreamExpressionParameter toExpression(StreamFactory factory) throws IOException {
     return ((Expressible) innerStream).toExpression(factory);
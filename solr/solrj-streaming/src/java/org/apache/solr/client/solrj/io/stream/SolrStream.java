@@ -335,6 +335,8 @@ public class SolrStream extends TupleStream {
     this.closeableHttpResponse = httpResponse;
     if (CommonParams.JAVABIN.equals(wt)) {
       return new JavabinTupleStreamParser(stream, true);
+    } else if (ColumnarTupleStreamParser.WT.equals(wt)) {
+      return new ColumnarTupleStreamParser(stream);
     } else {
       InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
       return new JSONTupleStream(reader);
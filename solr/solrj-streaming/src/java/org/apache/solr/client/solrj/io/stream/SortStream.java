@@ -22,6 +22,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.FieldComparator;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
@@ -102,12 +103,14 @@ public class SortStream extends TupleStream implements Expressible {
 
           @Override
           public void readStream(TupleStream stream) throws IOException {
-            Tuple tuple = stream.read();
-            while (!tuple.EOF) {
-              tuples.add(tuple);
-              tuple = stream.read();
-            }
-            eofTuple = tuple;
+            TupleBatch batch = new TupleBatch();
+            do {
+              stream.readBatch(batch);
+              for (int i = 0; i < batch.size(); i++) {
+                tuples.add(batch.get(i));
+              }
+            } while (!batch.isEOF());
+            eofTuple = batch.getEOF();
           }
 
           @Override
@@ -122,6 +125,14 @@ public class SortStream extends TupleStream implements Expressible {
             }
             return tuples.removeFirst();
           }
+
+          @Override
+          public void read(TupleBatch batch) {
+            batch.clear();
+            while (!batch.isFull()) {
+              batch.add(tuples.isEmpty() ? eofTuple : tuples.removeFirst());
+            }
+          }
         };
   }
 
@@ -202,6 +213,11 @@ public class SortStream extends TupleStream implements Expressible {
     return worker.read();
   }
 
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    worker.read(batch);
+  }
+
   /** Return the stream sort - ie, the order in which records are returned */
   @Override
   public StreamComparator getStreamSort() {
@@ -219,5 +235,7 @@ public class SortStream extends TupleStream implements Expressible {
     public void sort();
 
     public Tuple read();
+
+    public void read(TupleBatch batch);
   }
 }
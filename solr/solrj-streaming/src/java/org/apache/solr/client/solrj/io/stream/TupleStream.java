@@ -30,6 +30,7 @@ import java.util.stream.Collectors;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
 import org.apache.solr.client.solrj.io.SolrClientCache;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
@@ -66,6 +67,30 @@ public abstract class TupleStream implements Closeable, Serializable, MapWriter
 
   public abstract Tuple read() throws IOException;
 
+  /**
+   * Reads the next tuples of this stream into the given batch, which is cleared first. The batch
+   * holds at least one tuple unless the batch ends the stream, in which case it is ended by the EOF
+   * tuple of the stream. It may hold fewer tuples than its capacity without ending the stream, so
+   * callers must check {@link TupleBatch#isEOF()} rather than whether the batch is full. A stream
+   * is read either one tuple or one batch at a time, the two are not to be mixed.
+   *
+   * <p>This implementation reads the tuples one at a time with {@link #read()}, the streams which
+   * can process whole batches of their input override it.
+   */
+  public void readBatch(TupleBatch batch) throws IOException {
+    batch.clear();
+    readTuples(batch);
+  }
+
+  /** Fills the given batch with the tuples read one at a time with {@link #read()} */
+  protected final void readTuples(TupleBatch batch) throws IOException {
+    while (!batch.isFull()) {
+      Tuple tuple = read();
+      // as in writeMap, a null tuple ends the stream
+      batch.add(tuple != null ? tuple : Tuple.EOF());
+    }
+  }
+
   public abstract StreamComparator getStreamSort();
 
   public abstract Explanation toExplanation(StreamFactory factory) throws IOException;
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.comp.StreamComparator;
 import org.apache.solr.client.solrj.io.eq.FieldEqualitor;
 import org.apache.solr.client.solrj.io.eq.StreamEqualitor;
@@ -49,6 +50,8 @@ public class UniqueStream extends TupleStream implements Expressible {
   private StreamEqualitor originalEqualitor;
 
   private ReducerStream reducerStream;
+  // the first tuple of the last group of the batches read
+  private transient Tuple groupHead;
 
   public UniqueStream(TupleStream stream, StreamEqualitor eq) throws IOException {
     init(stream, eq);
@@ -169,6 +172,7 @@ public class UniqueStream extends TupleStream implements Expressible {
 
   @Override
   public void open() throws IOException {
+    groupHead = null;
     reducerStream.open();
     // opens originalStream as well
   }
@@ -184,6 +188,23 @@ public class UniqueStream extends TupleStream implements Expressible {
     return reducerStream.read();
   }
 
+  /** Keeps the first tuple of each group in the batches of the original stream */
+  @Override
+  public void readBatch(TupleBatch batch) throws IOException {
+    do {
+      originalStream.readBatch(batch);
+      int size = 0;
+      for (int i = 0; i < batch.size(); i++) {
+        Tuple tuple = batch.get(i);
+        if (groupHead == null || !originalEqualitor.test(groupHead, tuple)) {
+          groupHead = tuple;
+          batch.set(size++, tuple);
+        }
+      }
+      batch.truncate(size);
+    } while (batch.size() == 0 && !batch.isEOF());
+  }
+
   /** Return the stream sort - ie, the order in which records are returned */
   @Override
   public StreamComparator getStreamSort() {
@@ -19,6 +19,7 @@ package org.apache.solr.client.solrj.io.stream.metrics;
 import java.io.IOException;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionParameter;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
@@ -76,6 +77,20 @@ public class CountMetric extends Metric {
     }
   }
 
+  @Override
+  public void update(TupleBatch batch, int from, int to) {
+    if (isAllColumns()) {
+      count += to - from;
+      return;
+    }
+    TupleBatch.NumericColumn column = batch.getNumericColumn(columnName);
+    for (int i = from; i < to; i++) {
+      if (column.getKind(i) != TupleBatch.NumericColumn.NONE) {
+        ++count;
+      }
+    }
+  }
+
   @Override
   public Long getValue() {
     return count;
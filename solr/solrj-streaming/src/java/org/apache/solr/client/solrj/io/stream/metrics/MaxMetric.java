@@ -19,6 +19,7 @@ package org.apache.solr.client.solrj.io.stream.metrics;
 import java.io.IOException;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionParameter;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
@@ -100,6 +101,25 @@ public class MaxMetric extends Metric {
     }
   }
 
+  @Override
+  public void update(TupleBatch batch, int from, int to) {
+    TupleBatch.NumericColumn column = batch.getNumericColumn(columnName);
+    for (int i = from; i < to; i++) {
+      byte kind = column.getKind(i);
+      if (kind == TupleBatch.NumericColumn.LONG) {
+        long l = column.getLong(i);
+        if (l > longMax) {
+          longMax = l;
+        }
+      } else if (kind == TupleBatch.NumericColumn.DOUBLE) {
+        double d = column.getDouble(i);
+        if (d > doubleMax) {
+          doubleMax = d;
+        }
+      }
+    }
+  }
+
   @Override
   public Metric newInstance() {
     return new MaxMetric(columnName);
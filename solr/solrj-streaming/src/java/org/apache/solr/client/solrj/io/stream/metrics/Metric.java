@@ -19,6 +19,7 @@ package org.apache.solr.client.solrj.io.stream.metrics;
 import java.io.IOException;
 import java.util.UUID;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation;
 import org.apache.solr.client.solrj.io.stream.expr.Explanation.ExpressionType;
 import org.apache.solr.client.solrj.io.stream.expr.Expressible;
@@ -72,6 +73,13 @@ public abstract class Metric implements Expressible {
 
   public abstract void update(Tuple tuple);
 
+  /** Updates the metric with the tuples of the batch from index {@code from} to {@code to} */
+  public void update(TupleBatch batch, int from, int to) {
+    for (int i = from; i < to; i++) {
+      update(batch.get(i));
+    }
+  }
+
   public abstract Metric newInstance();
 
   public abstract String[] getColumns();
@@ -19,6 +19,7 @@ package org.apache.solr.client.solrj.io.stream.metrics;
 import java.io.IOException;
 import java.util.Locale;
 import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionParameter;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
@@ -79,6 +80,19 @@ public class SumMetric extends Metric {
     }
   }
 
+  @Override
+  public void update(TupleBatch batch, int from, int to) {
+    TupleBatch.NumericColumn column = batch.getNumericColumn(columnName);
+    for (int i = from; i < to; i++) {
+      byte kind = column.getKind(i);
+      if (kind == TupleBatch.NumericColumn.LONG) {
+        longSum += column.getLong(i);
+      } else if (kind == TupleBatch.NumericColumn.DOUBLE) {
+        doubleSum += column.getDouble(i);
+      }
+    }
+  }
+
   @Override
   public Metric newInstance() {
     return new SumMetric(columnName);
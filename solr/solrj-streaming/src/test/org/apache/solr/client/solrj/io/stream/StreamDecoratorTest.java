@@ -47,6 +47,7 @@ import org.apache.solr.client.solrj.io.eval.RawValueEvaluator;
 import org.apache.solr.client.solrj.io.ops.ConcatOperation;
 import org.apache.solr.client.solrj.io.ops.GroupOperation;
 import org.apache.solr.client.solrj.io.ops.ReplaceOperation;
+import org.apache.solr.client.solrj.io.stream.expr.DefaultStreamFactory;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpression;
 import org.apache.solr.client.solrj.io.stream.expr.StreamExpressionParser;
 import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
@@ -1607,6 +1608,84 @@ public class StreamDecoratorTest extends SolrCloudTestCase {
     }
   }
 
+  @Test
+  public void testRollupPushDown() throws Exception {
+
+    new UpdateRequest()
+        .add(id, "0", "a_s", "hello0", "a_i", "0", "a_f", "1")
+        .add(id, "2", "a_s", "hello0", "a_i", "2", "a_f", "2")
+        .add(id, "3", "a_s", "hello3", "a_i", "3", "a_f", "3")
+        .add(id, "4", "a_s", "hello4", "a_i", "4", "a_f", "4")
+        .add(id, "1", "a_s", "hello0", "a_i", "1", "a_f", "5")
+        .add(id, "5", "a_s", "hello3", "a_i", "10", "a_f", "6")
+        .add(id, "6", "a_s", "hello4", "a_i", "11", "a_f", "7")
+        .add(id, "7", "a_s", "hello3", "a_i", "12", "a_f", "8")
+        .add(id, "8", "a_s", "hello3", "a_i", "13", "a_f", "9")
+        .add(id, "9", "a_s", "hello0", "a_i", "14", "a_f", "10")
+        .commit(cluster.getSolrClient(), COLLECTIONORALIAS);
+
+    // the search function of the default factory wraps the CloudSolrStream
+    StreamFactory factory =
+        new DefaultStreamFactory()
+            .withCollectionZkHost(COLLECTIONORALIAS, cluster.getZkServer().getZkAddress());
+
+    String[] metrics = {
+      "sum(a_i)", "sum(a_f)", "min(a_i)", "min(a_f)", "max(a_i)", "max(a_f)", "avg(a_i)",
+      "avg(a_f)", "count(*)", "count(a_i)"
+    };
+    String search =
+        "search("
+            + COLLECTIONORALIAS
+            + ", q=*:*, fl=\"a_s,a_i,a_f\", sort=\"a_s asc\", qt=\"/export\")";
+    String[] expressions = {
+      "rollup(" + search + ", over=\"a_s\", " + String.join(", ", metrics) + ")",
+      "sort(hashRollup("
+          + search
+          + ", over=\"a_s\", "
+          + String.join(", ", metrics)
+          + "), by=\"a_s asc\")"
+    };
+
+    StreamContext streamContext = new StreamContext();
+    SolrClientCache solrClientCache = new SolrClientCache();
+    streamContext.setSolrClientCache(solrClientCache);
+    boolean enabled = RollupPushDown.ENABLED;
+    try {
+      for (String expr : expressions) {
+        RollupPushDown.ENABLED = false;
+        TupleStream stream = factory.constructStream(expr);
+        stream.setStreamContext(streamContext);
+        List<Tuple> expected = getTuples(stream);
+
+        RollupPushDown.ENABLED = true;
+        stream = factory.constructStream(expr);
+        stream.setStreamContext(streamContext);
+        List<Tuple> tuples = getTuples(stream);
+        // the rollup was pushed down to the shards
+        TupleStream rollup = expr.startsWith("sort") ? stream.children().get(0) : stream;
+        SearchFacadeStream searchStream = (SearchFacadeStream) rollup.children().get(0);
+        assertNotNull(((CloudSolrStream) searchStream.getInnerStream()).pushedDownParams);
+
+        assertEquals(3, tuples.size());
+        assertEquals(expected.size(), tuples.size());
+        for (int i = 0; i < tuples.size(); i++) {
+          assertEquals(expected.get(i).getString("a_s"), tuples.get(i).getString("a_s"));
+          for (String metric : metrics) {
+            assertEquals(
+                metric,
+                expected.get(i).getDouble(metric),
+                tuples.get(i).getDouble(metric),
+                0.0001);
+          }
+          assertTrue(tuples.get(i).get("count(*)") instanceof Long);
+        }
+      }
+    } finally {
+      RollupPushDown.ENABLED = enabled;
+      solrClientCache.close();
+    }
+  }
+
   @Test
   public void testParallelUniqueStream() throws Exception {
 
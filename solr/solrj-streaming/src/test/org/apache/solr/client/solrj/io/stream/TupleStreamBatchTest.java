@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.client.solrj.io.stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.solr.SolrTestCase;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.TupleBatch;
+import org.apache.solr.client.solrj.io.comp.ComparatorOrder;
+import org.apache.solr.client.solrj.io.comp.FieldComparator;
+import org.apache.solr.client.solrj.io.comp.StreamComparator;
+import org.apache.solr.client.solrj.io.eq.FieldEqualitor;
+import org.apache.solr.client.solrj.io.stream.expr.Explanation;
+import org.apache.solr.client.solrj.io.stream.expr.StreamExplanation;
+import org.apache.solr.client.solrj.io.stream.expr.StreamFactory;
+import org.apache.solr.client.solrj.io.stream.metrics.Bucket;
+import org.apache.solr.client.solrj.io.stream.metrics.CountMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.MaxMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.MeanMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.Metric;
+import org.apache.solr.client.solrj.io.stream.metrics.MinMetric;
+import org.apache.solr.client.solrj.io.stream.metrics.SumMetric;
+import org.junit.Test;
+
+public class TupleStreamBatchTest extends SolrTestCase {
+
+  private static final FieldComparator ID_ASC =
+      new FieldComparator("id", ComparatorOrder.ASCENDING);
+  private static final FieldComparator K_ASC =
+      new FieldComparator("k", ComparatorOrder.ASCENDING);
+
+  private interface StreamBuilder {
+    TupleStream build() throws IOException;
+  }
+
+  @Test
+  public void testRollup() throws Exception {
+    List<Tuple> tuples = tuples(2500);
+    Metric[] metrics = {
+      new SumMetric("v"),
+      new SumMetric("d"),
+      new MinMetric("v"),
+      new MaxMetric("v"),
+      new MinMetric("d"),
+      new MaxMetric("d"),
+      new MeanMetric("v"),
+      new CountMetric(),
+      new CountMetric("v")
+    };
+
+    // the metrics of the buckets updated one tuple at a time
+    List<Map<String, Object>> expected = new ArrayList<>();
+    Metric[] bucketMetrics = null;
+    Object key = null;
+    for (Tuple tuple : tuples) {
+      if (bucketMetrics == null || !tuple.get("k").equals(key)) {
+        if (bucketMetrics != null) {
+          expected.add(bucketTuple(key, bucketMetrics).getFields());
+        }
+        key = tuple.get("k");
+        bucketMetrics = new Metric[metrics.length];
+        for (int i = 0; i < metrics.length; i++) {
+          bucketMetrics[i] = metrics[i].newInstance();
+        }
+      }
+      for (Metric metric : bucketMetrics) {
+        metric.update(tuple);
+      }
+    }
+    expected.add(bucketTuple(key, bucketMetrics).getFields());
+
+    StreamBuilder rollup =
+        () -> new RollupStream(new ListTupleStream(tuples, K_ASC), buckets("k"), metrics);
+    assertEquals(expected, fields(readTuples(rollup.build())));
+    assertEquals(expected, fields(readBatches(rollup.build(), 7)));
+  }
+
+  @Test
+  public void testOperators() throws Exception {
+    List<Tuple> tuples = tuples(500);
+    List<Tuple> evens = new ArrayList<>();
+    List<Tuple> odds = new ArrayList<>();
+    for (Tuple tuple : tuples) {
+      (tuple.getLong("id") % 2 == 0 ? evens : odds).add(tuple);
+    }
+    List<Tuple> names = new ArrayList<>();
+    for (long k = 0; k < 50; k += 3) {
+      names.add(new Tuple("k", k, "name", "name" + k));
+      names.add(new Tuple("k", k, "name", "other" + k));
+    }
+
+    List<StreamBuilder> builders = new ArrayList<>();
+    builders.add(() -> new SelectStream(new ListTupleStream(tuples, ID_ASC), List.of("id", "k")));
+    builders.add(
+        () -> new UniqueStream(new ListTupleStream(tuples, K_ASC), new FieldEqualitor("k")));
+    builders.add(
+        () ->
+            new SortStream(
+                new ListTupleStream(tuples, ID_ASC),
+                new FieldComparator("id", ComparatorOrder.DESCENDING)));
+    builders.add(
+        () ->
+            new MergeStream(
+                ID_ASC, new ListTupleStream(evens, ID_ASC), new ListTupleStream(odds, ID_ASC)));
+    builders.add(
+        () ->
+            new HashJoinStream(
+                new ListTupleStream(tuples, ID_ASC),
+                new ListTupleStream(names, K_ASC),
+                List.of("k")));
+    builders.add(
+        () ->
+            new OuterHashJoinStream(
+                new ListTupleStream(tuples, ID_ASC),
+                new ListTupleStream(names, K_ASC),
+                List.of("k")));
+
+    for (StreamBuilder builder : builders) {
+      List<Map<String, Object>> expected = fields(readTuples(builder.build()));
+      assertFalse(expected.isEmpty());
+      for (int capacity : new int[] {1, 7, TupleBatch.DEFAULT_CAPACITY}) {
+        assertEquals(expected, fields(readBatches(builder.build(), capacity)));
+      }
+    }
+  }
+
+  @Test
+  public void testNumericColumn() {
+    TupleBatch batch = new TupleBatch(4);
+    batch.add(new Tuple("v", 1));
+    batch.add(new Tuple("v", 2.5f));
+    batch.add(new Tuple("v", "a"));
+    batch.add(new Tuple());
+    assertTrue(batch.isFull());
+    assertFalse(batch.isEOF());
+
+    TupleBatch.NumericColumn column = batch.getNumericColumn("v");
+    assertEquals(TupleBatch.NumericColumn.LONG, column.getKind(0));
+    assertEquals(1L, column.getLong(0));
+    assertEquals(TupleBatch.NumericColumn.DOUBLE, column.getKind(1));
+    assertEquals(2.5, column.getDouble(1), 0.0);
+    assertEquals(TupleBatch.NumericColumn.OTHER, column.getKind(2));
+    assertEquals(TupleBatch.NumericColumn.NONE, column.getKind(3));
+
+    // the column follows the changes of the batch
+    batch.set(3, new Tuple("v", 3L));
+    assertEquals(3L, batch.getNumericColumn("v").getLong(3));
+    batch.clear();
+    batch.add(Tuple.EOF());
+    assertEquals(0, batch.size());
+    assertTrue(batch.isEOF());
+    assertTrue(batch.isFull());
+  }
+
+  /** Tuples sorted by id and by k, with runs of k crossing the batches */
+  private static List<Tuple> tuples(int count) {
+    List<Tuple> tuples = new ArrayList<>();
+    for (long id = 0; id < count; id++) {
+      Tuple tuple = new Tuple("id", id, "k", id / 11);
+      if (random().nextInt(5) != 0) {
+        // ints and longs
+        Object v = random().nextBoolean() ? random().nextInt(100) : (Object) random().nextLong();
+        tuple.put("v", v);
+      }
+      tuple.put("d", random().nextDouble());
+      tuples.add(tuple);
+    }
+    return Collections.unmodifiableList(tuples);
+  }
+
+  private static Bucket[] buckets(String field) {
+    return new Bucket[] {new Bucket(field)};
+  }
+
+  private static Tuple bucketTuple(Object key, Metric[] metrics) {
+    Tuple tuple = new Tuple();
+    for (Metric metric : metrics) {
+      tuple.put(metric.getIdentifier(), metric.getValue());
+    }
+    tuple.put("k", key);
+    return tuple;
+  }
+
+  private static List<Tuple> readTuples(TupleStream stream) throws IOException {
+    List<Tuple> tuples = new ArrayList<>();
+    stream.setStreamContext(new StreamContext());
+    stream.open();
+    try {
+      for (Tuple tuple = stream.read(); !tuple.EOF; tuple = stream.read()) {
+        tuples.add(tuple);
+      }
+    } finally {
+      stream.close();
+    }
+    return tuples;
+  }
+
+  private static List<Tuple> readBatches(TupleStream stream, int capacity) throws IOException {
+    List<Tuple> tuples = new ArrayList<>();
+    TupleBatch batch = new TupleBatch(capacity);
+    stream.setStreamContext(new StreamContext());
+    stream.open();
+    try {
+      do {
+        stream.readBatch(batch);
+        // a batch only holds no tuple when it ends the stream
+        assertTrue(batch.size() > 0 || batch.isEOF());
+        for (int i = 0; i < batch.size(); i++) {
+          tuples.add(batch.get(i));
+        }
+      } while (!batch.isEOF());
+    } finally {
+      stream.close();
+    }
+    return tuples;
+  }
+
+  private static List<Map<String, Object>> fields(List<Tuple> tuples) {
+    List<Map<String, Object>> fields = new ArrayList<>();
+    for (Tuple tuple : tuples) {
+      fields.add(tuple.getFields());
+    }
+    return fields;
+  }
+
+  /** A stream of a list of tuples, read one at a time */
+  private static class ListTupleStream extends TupleStream {
+    private final List<Tuple> tuples;
+    private final StreamComparator sort;
+    private int index;
+
+    ListTupleStream(List<Tuple> tuples, StreamComparator sort) {
+      this.tuples = tuples;
+      this.sort = sort;
+    }
+
+    @Override
+    public void setStreamContext(StreamContext context) {}
+
+    @Override
+    public List<TupleStream> children() {
+      return new ArrayList<>();
+    }
+
+    @Override
+    public void open() {
+      index = 0;
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public Tuple read() {
+      return index < tuples.size() ? tuples.get(index++) : Tuple.EOF();
+    }
+
+    @Override
+    public StreamComparator getStreamSort() {
+      return sort;
+    }
+
+    @Override
+    public Explanation toExplanation(StreamFactory factory) {
+      return new StreamExplanation(getStreamNodeId().toString());
+    }
+  }
+}
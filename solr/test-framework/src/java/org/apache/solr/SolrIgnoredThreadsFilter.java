@@ -77,6 +77,11 @@ public class SolrIgnoredThreadsFilter implements ThreadFilter {
       return true;
     }
 
+    // the JVM wide cleaner of OffHeapCache views, which lives as long as the class
+    if (threadName.startsWith("offHeapCacheCleaner")) {
+      return true;
+    }
+
     // ZOOKEEPER-4608, yes it's spelled with 3 n's
     if (threadName.equals("ConnnectionExpirer")) {
       return true;